@@ -1,5 +1,7 @@
 package cz.samofujera.auth;
 
+import cz.samofujera.email.EmailTemplates;
+import cz.samofujera.outbox.OutboxService;
 import cz.samofujera.security.PasswordService;
 import cz.samofujera.security.SessionService;
 import cz.samofujera.security.entity.UserEntity;
@@ -8,6 +10,7 @@ import io.quarkus.security.Authenticated;
 import io.quarkus.security.identity.SecurityIdentity;
 import io.smallrye.mutiny.Uni;
 import io.vertx.core.http.CookieSameSite;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import jakarta.annotation.security.PermitAll;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -35,6 +38,9 @@ public class AuthResource {
     @Inject
     PasswordService passwordService;
 
+    @Inject
+    OutboxService outboxService;
+
     @Inject
     SecurityIdentity identity;
 
@@ -51,31 +57,33 @@ public class AuthResource {
             RoutingContext context) {
 
         return UserEntity.findByEmail(request.email())
-                .onItem().ifNotNull().transformToUni(user -> {
-                    if (!passwordService.verify(request.password(), user.passwordHash)) {
-                        return Uni.createFrom().item(
-                                RestResponse.<AuthDtos.ApiResponse<AuthDtos.UserResponse>>status(
-                                        RestResponse.Status.UNAUTHORIZED));
-                    }
-                    if (!user.isActive) {
-                        return Uni.createFrom().item(
-                                RestResponse.<AuthDtos.ApiResponse<AuthDtos.UserResponse>>status(
-                                        RestResponse.Status.FORBIDDEN));
-                    }
-                    return sessionService.createSessionInline(user, context)
-                            .onItem().transform(session -> {
-                                context.response().addCookie(
-                                        io.vertx.core.http.Cookie.cookie("SESSION_ID", session.id)
-                                                .setHttpOnly(true)
-                                                .setSecure(false)
-                                                .setSameSite(CookieSameSite.LAX)
-                                                .setPath("/")
-                                                .setMaxAge(86400)
-                                );
-                                return RestResponse.ok(
-                                        AuthDtos.ApiResponse.ok(AuthDtos.UserResponse.from(user)));
-                            });
-                })
+                .onItem().ifNotNull().transformToUni(user -> passwordService
+                        .verify(request.password(), user.passwordHash)
+                        .flatMap(valid -> {
+                            if (!valid) {
+                                return Uni.createFrom().item(
+                                        RestResponse.<AuthDtos.ApiResponse<AuthDtos.UserResponse>>status(
+                                                RestResponse.Status.UNAUTHORIZED));
+                            }
+                            if (!user.isActive) {
+                                return Uni.createFrom().item(
+                                        RestResponse.<AuthDtos.ApiResponse<AuthDtos.UserResponse>>status(
+                                                RestResponse.Status.FORBIDDEN));
+                            }
+                            return sessionService.createSessionInline(user, context)
+                                    .onItem().transform(session -> {
+                                        context.response().addCookie(
+                                                io.vertx.core.http.Cookie.cookie("SESSION_ID", session.id)
+                                                        .setHttpOnly(true)
+                                                        .setSecure(false)
+                                                        .setSameSite(CookieSameSite.LAX)
+                                                        .setPath("/")
+                                                        .setMaxAge(86400)
+                                        );
+                                        return RestResponse.ok(
+                                                AuthDtos.ApiResponse.ok(AuthDtos.UserResponse.from(user)));
+                                    });
+                        }))
                 .onItem().ifNull().continueWith(
                         RestResponse.status(RestResponse.Status.UNAUTHORIZED));
     }
@@ -92,22 +100,29 @@ public class AuthResource {
                 .onItem().ifNotNull().transform(existing ->
                         RestResponse.<AuthDtos.ApiResponse<AuthDtos.UserResponse>>status(
                                 RestResponse.Status.CONFLICT))
-                .onItem().ifNull().switchTo(() -> {
-                    var user = new UserEntity();
-                    user.email = request.email();
-                    user.passwordHash = passwordService.hash(request.password());
-                    user.displayName = request.displayName();
-                    user.role = superadminEmail
-                            .filter(sa -> !sa.isBlank() && sa.equalsIgnoreCase(request.email()))
-                            .map(sa -> "ADMIN")
-                            .orElse("USER");
-                    user.isActive = true;
-                    user.createdAt = Instant.now();
-                    user.updatedAt = Instant.now();
-                    return user.<UserEntity>persist()
-                            .map(saved -> RestResponse.status(RestResponse.Status.CREATED,
-                                    AuthDtos.ApiResponse.ok(AuthDtos.UserResponse.from(saved))));
-                });
+                .onItem().ifNull().switchTo(() -> passwordService
+                        .hash(request.password())
+                        .flatMap(hash -> {
+                            var user = new UserEntity();
+                            user.email = request.email();
+                            user.passwordHash = hash;
+                            user.displayName = request.displayName();
+                            user.role = superadminEmail
+                                    .filter(sa -> !sa.isBlank() && sa.equalsIgnoreCase(request.email()))
+                                    .map(sa -> "ADMIN")
+                                    .orElse("USER");
+                            user.isActive = true;
+                            user.createdAt = Instant.now();
+                            user.updatedAt = Instant.now();
+                            return user.<UserEntity>persist()
+                                    .call(saved -> outboxService.enqueueEmail("welcome", saved.email,
+                                            EmailTemplates.DEFAULT_LOCALE,
+                                            new JsonObject().put("name", saved.displayName)))
+                                    .call(saved -> outboxService.enqueueEvent("user.registered",
+                                            new JsonObject().put("user_id", saved.id)))
+                                    .map(saved -> RestResponse.status(RestResponse.Status.CREATED,
+                                            AuthDtos.ApiResponse.ok(AuthDtos.UserResponse.from(saved))));
+                        }));
     }
 
     @POST
@@ -6,13 +6,15 @@ import io.quarkus.hibernate.reactive.panache.PanacheQuery;
 import io.quarkus.hibernate.reactive.panache.common.WithSession;
 import io.quarkus.panache.common.Page;
 import io.quarkus.panache.common.Parameters;
-import io.quarkus.panache.common.Sort;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
 import jakarta.annotation.security.PermitAll;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import org.jboss.resteasy.reactive.RestResponse;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -27,17 +29,16 @@ public class CatalogPublicResource {
     @jakarta.inject.Inject
     LocalStorageService storageService;
 
+    @jakarta.inject.Inject
+    ReferenceData referenceData;
+
+    @jakarta.inject.Inject
+    StockChannel stockChannel;
+
     @GET
     @Path("/categories")
-    @WithSession
     public Uni<RestResponse<AuthDtos.ApiResponse<List<CatalogDtos.CategoryResponse>>>> getCategories() {
-        return CategoryEntity.findAll(Sort.by("sortOrder"))
-                .<CategoryEntity>list()
-                .map(categories -> categories.stream()
-                        .map(cat -> new CatalogDtos.CategoryResponse(
-                                cat.id, cat.name, cat.slug, cat.description,
-                                cat.sortOrder, cat.createdAt, cat.updatedAt))
-                        .toList())
+        return referenceData.categories()
                 .map(items -> RestResponse.ok(AuthDtos.ApiResponse.ok(items)));
     }
 
@@ -72,18 +73,18 @@ public class CatalogPublicResource {
 
         // If filtering by category slug, resolve category first
         if (categorySlug != null && !categorySlug.isBlank()) {
-            return CategoryEntity.findBySlug(categorySlug)
+            return referenceData.categoryBySlug(categorySlug)
                     .chain(cat -> {
                         if (cat == null) {
                             return Uni.createFrom().item(RestResponse.ok(AuthDtos.ApiResponse.ok(
                                     new CatalogDtos.ProductListResponse(List.of(), page, limit, 0, 0))));
                         }
-                        return filterByCategoryPublic(cat.id, query, params, pageIndex, limit, page);
+                        return filterByCategoryPublic(cat.id(), query, params, pageIndex, limit, page);
                     });
         }
 
         PanacheQuery<ProductEntity> pq = ProductEntity.find(query, params);
-        return pq.page(Page.of(pageIndex, limit)).list()
+        return pq.project(ProductEntity.Summary.class).page(Page.of(pageIndex, limit)).list()
                 .chain(products -> pq.count().chain(total -> {
                     int totalPages = (int) Math.ceil((double) total / limit);
                     if (products.isEmpty()) {
@@ -96,6 +97,19 @@ public class CatalogPublicResource {
                 }));
     }
 
+    /**
+     * Live availability of a product page: a snapshot, then at most one delta per
+     * second with the changed availability and variant stock. Use this instead of
+     * polling the product detail.
+     */
+    @GET
+    @Path("/products/{slug}/availability/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<JsonObject> streamAvailability(@PathParam("slug") String slug) {
+        return stockChannel.watch(slug);
+    }
+
     @GET
     @Path("/products/{slug}")
     @WithSession
@@ -136,7 +150,7 @@ public class CatalogPublicResource {
                     params.map().forEach(fullParams::and);
 
                     PanacheQuery<ProductEntity> pq = ProductEntity.find(fullQuery, fullParams);
-                    return pq.page(Page.of(pageIndex, limit)).list()
+                    return pq.project(ProductEntity.Summary.class).page(Page.of(pageIndex, limit)).list()
                             .chain(products -> pq.count().chain(total -> {
                                 int totalPages = (int) Math.ceil((double) total / limit);
                                 if (products.isEmpty()) {
@@ -153,8 +167,8 @@ public class CatalogPublicResource {
     /**
      * Batch-enrich a list of products with prices and categories sequentially.
      */
-    private Uni<List<CatalogDtos.ProductResponse>> enrichProductList(List<ProductEntity> products) {
-        List<UUID> productIds = products.stream().map(p -> p.id).toList();
+    private Uni<List<CatalogDtos.ProductResponse>> enrichProductList(List<ProductEntity.Summary> products) {
+        List<UUID> productIds = products.stream().map(ProductEntity.Summary::id).toList();
         return ProductPriceEntity.<ProductPriceEntity>list("productId in ?1", productIds)
                 .chain(allPrices -> ProductCategoryAssignmentEntity.<ProductCategoryAssignmentEntity>list("productId in ?1", productIds)
                         .chain(allAssignments -> {
@@ -174,22 +188,23 @@ public class CatalogPublicResource {
                                         .collect(Collectors.toMap(c -> c.id, c -> c));
 
                                 return products.stream().map(product -> {
-                                    Map<String, BigDecimal> prices = priceMap.getOrDefault(product.id, Map.of());
+                                    Map<String, BigDecimal> prices = priceMap.getOrDefault(product.id(), Map.of());
                                     List<CatalogDtos.CategorySummary> categories = assignmentMap
-                                            .getOrDefault(product.id, List.of()).stream()
+                                            .getOrDefault(product.id(), List.of()).stream()
                                             .map(catEntityMap::get)
                                             .filter(Objects::nonNull)
                                             .map(cat -> new CatalogDtos.CategorySummary(cat.id, cat.name, cat.slug))
                                             .toList();
+                                    // Lists never carry the full description; detail endpoints do
                                     return new CatalogDtos.ProductResponse(
-                                            product.id, product.title, product.slug, product.description,
-                                            product.shortDescription, product.productType, product.status,
-                                            product.thumbnailUrl, product.metaTitle, product.metaDescription,
-                                            product.sku, product.badge, product.comparePriceCzk, product.comparePriceEur,
-                                            product.availability, product.stockLimit, product.weightKg,
-                                            product.ogImageUrl, product.variantCategoryName,
+                                            product.id(), product.title(), product.slug(), null,
+                                            product.shortDescription(), product.productType(), product.status(),
+                                            product.thumbnailUrl(), product.metaTitle(), product.metaDescription(),
+                                            product.sku(), product.badge(), product.comparePriceCzk(), product.comparePriceEur(),
+                                            product.availability(), product.stockLimit(), product.weightKg(),
+                                            product.ogImageUrl(), product.variantCategoryName(),
                                             prices, categories,
-                                            product.createdAt, product.updatedAt);
+                                            product.createdAt(), product.updatedAt());
                                 }).toList();
                             });
                         }));
@@ -0,0 +1,115 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.auth.AuthDtos;
+import cz.samofujera.domain.entity.EmailCampaignEntity;
+import cz.samofujera.email.EmailCampaignRunner;
+import cz.samofujera.email.EmailTemplates;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.common.WithSession;
+import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.RestResponse;
+
+import java.util.List;
+import java.util.UUID;
+
+@Path("/api/admin/email-campaigns")
+@ApplicationScoped
+@RolesAllowed("ADMIN")
+@Produces(MediaType.APPLICATION_JSON)
+public class EmailCampaignAdminResource {
+
+    @Inject
+    EmailCampaignRunner runner;
+
+    @Inject
+    SecurityIdentity identity;
+
+    @GET
+    @WithSession
+    public Uni<RestResponse<AuthDtos.ApiResponse<List<EmailCampaignDtos.CampaignResponse>>>> listCampaigns() {
+        return EmailCampaignEntity.<EmailCampaignEntity>listAll(Sort.descending("createdAt"))
+                .onItem().transform(campaigns -> RestResponse.ok(AuthDtos.ApiResponse.ok(
+                        campaigns.stream().map(EmailCampaignDtos.CampaignResponse::from).toList())));
+    }
+
+    @GET
+    @Path("/{id}")
+    @WithSession
+    public Uni<RestResponse<AuthDtos.ApiResponse<EmailCampaignDtos.CampaignResponse>>> getCampaign(
+            @PathParam("id") UUID id) {
+        return EmailCampaignEntity.<EmailCampaignEntity>findById(id)
+                .onItem().transform(campaign -> campaign == null
+                        ? RestResponse.<AuthDtos.ApiResponse<EmailCampaignDtos.CampaignResponse>>status(
+                                RestResponse.Status.NOT_FOUND)
+                        : RestResponse.ok(AuthDtos.ApiResponse.ok(EmailCampaignDtos.CampaignResponse.from(campaign))));
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @WithTransaction
+    public Uni<RestResponse<AuthDtos.ApiResponse<EmailCampaignDtos.CampaignResponse>>> createCampaign(
+            @Valid EmailCampaignDtos.CreateCampaignRequest request) {
+
+        if (!EmailTemplates.isKnown(request.templateKey())) {
+            return Uni.createFrom().item(RestResponse.status(RestResponse.Status.BAD_REQUEST));
+        }
+
+        var campaign = new EmailCampaignEntity();
+        campaign.name = request.name();
+        campaign.templateKey = request.templateKey();
+        campaign.locale = request.locale() != null ? request.locale() : EmailTemplates.DEFAULT_LOCALE;
+        campaign.ratePerSecond = request.ratePerSecond() != null ? request.ratePerSecond() : 10;
+        campaign.createdBy = identity.getAttribute("user_id");
+
+        return campaign.<EmailCampaignEntity>persist()
+                .onItem().transform(saved -> RestResponse.status(RestResponse.Status.CREATED,
+                        AuthDtos.ApiResponse.ok(EmailCampaignDtos.CampaignResponse.from(saved))));
+    }
+
+    /** Starts a draft campaign or resumes a paused one from its saved cursor. */
+    @POST
+    @Path("/{id}/start")
+    public Uni<RestResponse<AuthDtos.ApiResponse<EmailCampaignDtos.CampaignResponse>>> startCampaign(
+            @PathParam("id") UUID id) {
+        return runner.start(id)
+                .chain(started -> started
+                        ? current(id)
+                        // Completed, missing, or the previous runner has not released its lease yet
+                        : Uni.createFrom().item(RestResponse.status(RestResponse.Status.CONFLICT)));
+    }
+
+    /**
+     * Flags the campaign as paused. The runner notices after the page in flight,
+     * persists its cursor and releases the lease.
+     */
+    @POST
+    @Path("/{id}/pause")
+    public Uni<RestResponse<AuthDtos.ApiResponse<EmailCampaignDtos.CampaignResponse>>> pauseCampaign(
+            @PathParam("id") UUID id) {
+        return Panache.withTransaction(() -> EmailCampaignEntity.update(
+                        "status = 'PAUSED' where id = ?1 and status = 'RUNNING'", id))
+                .chain(count -> count > 0
+                        ? current(id)
+                        : Uni.createFrom().item(RestResponse.status(RestResponse.Status.CONFLICT)));
+    }
+
+    private Uni<RestResponse<AuthDtos.ApiResponse<EmailCampaignDtos.CampaignResponse>>> current(UUID id) {
+        return Panache.withSession(() -> EmailCampaignEntity.<EmailCampaignEntity>findById(id))
+                .onItem().transform(campaign -> RestResponse.ok(
+                        AuthDtos.ApiResponse.ok(EmailCampaignDtos.CampaignResponse.from(campaign))));
+    }
+}
@@ -0,0 +1,44 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.domain.entity.EmailCampaignEntity;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public final class EmailCampaignDtos {
+    private EmailCampaignDtos() {}
+
+    public record CampaignResponse(
+            UUID id,
+            String name,
+            String templateKey,
+            String locale,
+            String audience,
+            String status,
+            int ratePerSecond,
+            int sentCount,
+            int failedCount,
+            String lastError,
+            Instant createdAt,
+            Instant startedAt,
+            Instant completedAt
+    ) {
+        public static CampaignResponse from(EmailCampaignEntity entity) {
+            return new CampaignResponse(
+                    entity.id, entity.name, entity.templateKey, entity.locale, entity.audience,
+                    entity.status, entity.ratePerSecond, entity.sentCount, entity.failedCount,
+                    entity.lastError, entity.createdAt, entity.startedAt, entity.completedAt
+            );
+        }
+    }
+
+    public record CreateCampaignRequest(
+            @NotBlank String name,
+            @NotBlank String templateKey,
+            String locale,
+            @Min(1) @Max(1000) Integer ratePerSecond
+    ) {}
+}
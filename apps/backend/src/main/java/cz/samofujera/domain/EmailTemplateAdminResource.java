@@ -2,11 +2,14 @@ package cz.samofujera.domain;
 
 import cz.samofujera.auth.AuthDtos;
 import cz.samofujera.domain.entity.EmailTemplateOverrideEntity;
+import cz.samofujera.email.EmailTemplateEngine;
+import cz.samofujera.email.EmailTemplates;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.common.WithSession;
-import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -23,7 +26,6 @@ import org.jboss.resteasy.reactive.RestResponse;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 @Path("/api/admin/email-templates")
 @ApplicationScoped
@@ -31,31 +33,18 @@ import java.util.Set;
 @Produces(MediaType.APPLICATION_JSON)
 public class EmailTemplateAdminResource {
 
-    private static final Set<String> KNOWN_TEMPLATES = Set.of(
-            "welcome", "password-reset", "account-blocked", "account-unblocked",
-            "account-deleted", "order-confirmation", "digital-delivery"
-    );
-
-    private static final Map<String, Map<String, String>> DEFAULT_SUBJECTS = Map.of(
-            "welcome", Map.of("cs", "Vítejte na Samo Fujera", "sk", "Vitajte na Samo Fujera"),
-            "password-reset", Map.of("cs", "Obnovení hesla", "sk", "Obnovenie hesla"),
-            "account-blocked", Map.of("cs", "Váš účet byl zablokován", "sk", "Váš účet bol zablokovaný"),
-            "account-unblocked", Map.of("cs", "Váš účet byl odblokován", "sk", "Váš účet bol odblokovaný"),
-            "account-deleted", Map.of("cs", "Váš účet byl smazán", "sk", "Váš účet bol zmazaný"),
-            "order-confirmation", Map.of("cs", "Potvrzení objednávky", "sk", "Potvrdenie objednávky"),
-            "digital-delivery", Map.of("cs", "Váš digitální obsah je připraven", "sk", "Váš digitálny obsah je pripravený")
-    );
+    @Inject
+    EmailTemplateEngine templateEngine;
 
     @GET
-    @WithSession
     public Uni<RestResponse<AuthDtos.ApiResponse<List<EmailTemplateDtos.TemplateListItem>>>> listTemplates() {
-        return EmailTemplateOverrideEntity.<EmailTemplateOverrideEntity>listAll()
+        return templateEngine.overrides()
                 .onItem().transform(overrides -> {
-                    var overrideKeys = overrides.stream()
-                            .map(o -> o.templateKey)
+                    var overrideKeys = overrides.keySet().stream()
+                            .map(k -> k.substring(0, k.lastIndexOf('.')))
                             .collect(java.util.stream.Collectors.toSet());
 
-                    var items = KNOWN_TEMPLATES.stream()
+                    var items = EmailTemplates.KNOWN_TEMPLATES.stream()
                             .sorted()
                             .map(key -> new EmailTemplateDtos.TemplateListItem(key, overrideKeys.contains(key)))
                             .toList();
@@ -71,41 +60,29 @@ public class EmailTemplateAdminResource {
             @PathParam("key") String key,
             @QueryParam("locale") @DefaultValue("cs") String locale) {
 
-        if (!KNOWN_TEMPLATES.contains(key)) {
+        if (!EmailTemplates.isKnown(key)) {
             return Uni.createFrom().item(RestResponse.status(RestResponse.Status.NOT_FOUND));
         }
 
-        String subjects = DEFAULT_SUBJECTS.getOrDefault(key, Map.of()).getOrDefault(locale, key);
-        String html = """
-                <!DOCTYPE html>
-                <html>
-                <head><meta charset="utf-8"><title>%s</title></head>
-                <body style="font-family: sans-serif; padding: 20px;">
-                <h1>%s</h1>
-                <p>Template preview for <strong>%s</strong> (%s)</p>
-                </body>
-                </html>
-                """.formatted(subjects, subjects, key, locale);
-
-        return Uni.createFrom().item(RestResponse.ok(html));
+        return templateEngine.render(key, locale, EmailTemplates.PREVIEW_VARS)
+                .onItem().transform(email -> RestResponse.ok(email.html()));
     }
 
     @GET
     @Path("/{key}/source")
     @Produces(MediaType.TEXT_HTML)
-    @WithSession
     public Uni<RestResponse<String>> getTemplateSource(
             @PathParam("key") String key,
             @QueryParam("locale") @DefaultValue("cs") String locale) {
 
-        if (!KNOWN_TEMPLATES.contains(key)) {
+        if (!EmailTemplates.isKnown(key)) {
             return Uni.createFrom().item(RestResponse.status(RestResponse.Status.NOT_FOUND));
         }
 
-        return EmailTemplateOverrideEntity.findByKeyAndLocale(key, locale)
+        return templateEngine.override(key, locale)
                 .onItem().transform(override -> {
-                    if (override != null && override.customBodyHtml != null) {
-                        return RestResponse.ok(override.customBodyHtml);
+                    if (override.customBodyHtml() != null) {
+                        return RestResponse.ok(override.customBodyHtml());
                     }
                     return RestResponse.ok("");
                 });
@@ -114,10 +91,10 @@ public class EmailTemplateAdminResource {
     @GET
     @Path("/{key}/default-subject")
     public Uni<RestResponse<Map<String, String>>> getDefaultSubject(@PathParam("key") String key) {
-        if (!KNOWN_TEMPLATES.contains(key)) {
+        if (!EmailTemplates.isKnown(key)) {
             return Uni.createFrom().item(RestResponse.status(RestResponse.Status.NOT_FOUND));
         }
-        var subjects = DEFAULT_SUBJECTS.getOrDefault(key, Map.of("cs", "", "sk", ""));
+        var subjects = EmailTemplates.DEFAULT_SUBJECTS.getOrDefault(key, Map.of("cs", "", "sk", ""));
         return Uni.createFrom().item(RestResponse.ok(subjects));
     }
 
@@ -128,7 +105,7 @@ public class EmailTemplateAdminResource {
             @PathParam("key") String key,
             @QueryParam("locale") @DefaultValue("cs") String locale) {
 
-        if (!KNOWN_TEMPLATES.contains(key)) {
+        if (!EmailTemplates.isKnown(key)) {
             return Uni.createFrom().item(RestResponse.status(RestResponse.Status.NOT_FOUND));
         }
 
@@ -145,16 +122,16 @@ public class EmailTemplateAdminResource {
     @PUT
     @Path("/{key}")
     @Consumes(MediaType.APPLICATION_JSON)
-    @WithTransaction
     public Uni<RestResponse<AuthDtos.ApiResponse<EmailTemplateDtos.CurrentOverrideResponse>>> upsertOverride(
             @PathParam("key") String key,
             @Valid EmailTemplateDtos.UpdateOverrideRequest request) {
 
-        if (!KNOWN_TEMPLATES.contains(key)) {
+        if (!EmailTemplates.isKnown(key)) {
             return Uni.createFrom().item(RestResponse.status(RestResponse.Status.NOT_FOUND));
         }
 
-        return EmailTemplateOverrideEntity.findByKeyAndLocale(key, request.locale())
+        // Explicit transaction so compiled templates are invalidated only after commit
+        return Panache.withTransaction(() -> EmailTemplateOverrideEntity.findByKeyAndLocale(key, request.locale())
                 .onItem().transformToUni(existing -> {
                     if (existing != null) {
                         existing.customSubject = request.customSubject();
@@ -172,17 +149,18 @@ public class EmailTemplateAdminResource {
                                 .onItem().transform(saved -> RestResponse.ok(
                                         AuthDtos.ApiResponse.ok(EmailTemplateDtos.CurrentOverrideResponse.from(saved))));
                     }
-                });
+                }))
+                .invoke(() -> templateEngine.invalidate(key, request.locale()));
     }
 
     @DELETE
     @Path("/{key}")
-    @WithTransaction
     public Uni<RestResponse<Void>> deleteOverride(
             @PathParam("key") String key,
             @QueryParam("locale") @DefaultValue("cs") String locale) {
 
-        return EmailTemplateOverrideEntity.deleteByKeyAndLocale(key, locale)
+        return Panache.withTransaction(() -> EmailTemplateOverrideEntity.deleteByKeyAndLocale(key, locale))
+                .invoke(() -> templateEngine.invalidate(key, locale))
                 .onItem().transform(count -> RestResponse.noContent());
     }
 
@@ -0,0 +1,97 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.auth.AuthDtos;
+import cz.samofujera.domain.entity.EntitlementGrantJobEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.common.WithSession;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.RestResponse;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Grants or revokes one entity for a whole audience (active members, optionally
+ * of one plan, or an uploaded email list). Jobs run in the background; poll
+ * {@code GET /{id}} for {@code processedCount} of {@code totalCount}.
+ */
+@Path("/api/admin/entitlement-grants")
+@ApplicationScoped
+@RolesAllowed("ADMIN")
+@Produces(MediaType.APPLICATION_JSON)
+public class EntitlementGrantAdminResource {
+
+    @Inject
+    EntitlementGrantRunner runner;
+
+    @Inject
+    SecurityIdentity identity;
+
+    @GET
+    @WithSession
+    public Uni<RestResponse<AuthDtos.ApiResponse<List<EntitlementGrantDtos.JobResponse>>>> listJobs() {
+        return EntitlementGrantJobEntity.<EntitlementGrantJobEntity>listAll(Sort.descending("createdAt"))
+                .onItem().transform(jobs -> RestResponse.ok(AuthDtos.ApiResponse.ok(
+                        jobs.stream().map(EntitlementGrantDtos.JobResponse::from).toList())));
+    }
+
+    @GET
+    @Path("/{id}")
+    @WithSession
+    public Uni<RestResponse<AuthDtos.ApiResponse<EntitlementGrantDtos.JobResponse>>> getJob(
+            @PathParam("id") UUID id) {
+        return EntitlementGrantJobEntity.<EntitlementGrantJobEntity>findById(id)
+                .onItem().transform(job -> job == null
+                        ? RestResponse.<AuthDtos.ApiResponse<EntitlementGrantDtos.JobResponse>>status(
+                                RestResponse.Status.NOT_FOUND)
+                        : RestResponse.ok(AuthDtos.ApiResponse.ok(EntitlementGrantDtos.JobResponse.from(job))));
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<RestResponse<AuthDtos.ApiResponse<EntitlementGrantDtos.JobResponse>>> createJob(
+            @Valid EntitlementGrantDtos.CreateJobRequest request) {
+
+        boolean userList = "USER_LIST".equals(request.audience());
+        if (userList && (request.emails() == null || request.emails().isEmpty())) {
+            return Uni.createFrom().item(RestResponse.status(RestResponse.Status.BAD_REQUEST));
+        }
+        if (request.sourceJobId() != null && !"REVOKE".equals(request.action())) {
+            return Uni.createFrom().item(RestResponse.status(RestResponse.Status.BAD_REQUEST));
+        }
+
+        var job = new EntitlementGrantJobEntity();
+        job.action = request.action();
+        job.audience = request.audience();
+        job.planId = request.planId();
+        job.entityType = request.entityType();
+        job.entityId = request.entityId();
+        job.expiresAt = request.expiresAt();
+        job.sourceJobId = request.sourceJobId();
+        job.createdBy = identity.getAttribute("user_id");
+
+        return Panache.withTransaction(job::<EntitlementGrantJobEntity>persist)
+                .chain(saved -> (userList
+                                ? runner.stageUsers(saved.id, request.emails())
+                                : Uni.createFrom().item(0))
+                        .chain(() -> runner.countAudience(saved.id))
+                        .chain(() -> runner.start(saved.id))
+                        .chain(() -> Panache.withSession(
+                                () -> EntitlementGrantJobEntity.<EntitlementGrantJobEntity>findById(saved.id))))
+                .onItem().transform(current -> RestResponse.status(RestResponse.Status.CREATED,
+                        AuthDtos.ApiResponse.ok(EntitlementGrantDtos.JobResponse.from(current))));
+    }
+}
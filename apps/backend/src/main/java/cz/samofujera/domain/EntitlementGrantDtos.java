@@ -0,0 +1,60 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.domain.entity.EntitlementGrantJobEntity;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public final class EntitlementGrantDtos {
+    private EntitlementGrantDtos() {}
+
+    public record JobResponse(
+            UUID id,
+            String action,
+            String audience,
+            UUID planId,
+            String entityType,
+            UUID entityId,
+            Instant expiresAt,
+            UUID sourceJobId,
+            String status,
+            int attempts,
+            int totalCount,
+            int processedCount,
+            int affectedCount,
+            String lastError,
+            Instant createdAt,
+            Instant startedAt,
+            Instant completedAt
+    ) {
+        public static JobResponse from(EntitlementGrantJobEntity job) {
+            return new JobResponse(
+                    job.id, job.action, job.audience, job.planId, job.entityType, job.entityId,
+                    job.expiresAt, job.sourceJobId, job.status, job.attempts, job.totalCount, job.processedCount, job.affectedCount,
+                    job.lastError, job.createdAt, job.startedAt, job.completedAt
+            );
+        }
+    }
+
+    /**
+     * {@code ACTIVE_MEMBERS} targets users with an active subscription (optionally
+     * on {@code planId}); {@code USER_LIST} targets the uploaded {@code emails}.
+     * A {@code REVOKE} retires grants made by grant jobs, only those of
+     * {@code sourceJobId} when given; purchased entitlements are never touched.
+     */
+    public record CreateJobRequest(
+            @NotNull @Pattern(regexp = "GRANT|REVOKE") String action,
+            @NotNull @Pattern(regexp = "ACTIVE_MEMBERS|USER_LIST") String audience,
+            UUID planId,
+            @NotBlank String entityType,
+            @NotNull UUID entityId,
+            Instant expiresAt,
+            UUID sourceJobId,
+            @Size(max = 100_000) List<String> emails
+    ) {}
+}
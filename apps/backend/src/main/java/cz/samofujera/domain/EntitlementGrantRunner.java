@@ -0,0 +1,292 @@
+package cz.samofujera.domain;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs entitlement grant/revoke jobs as set-based statements over the job's
+ * audience, one chunk of users per transaction:
+ * <ul>
+ *   <li>a chunk is a single {@code INSERT ... SELECT} (or {@code UPDATE ... FROM})
+ *       over the next {@code chunk-size} audience users, walked by user id;</li>
+ *   <li>grants conflict on {@code uq_entitlements_live_grant} and are skipped, so a
+ *       chunk re-run after a crash changes nothing;</li>
+ *   <li>the job cursor and counters are saved in the chunk's transaction, so
+ *       progress is exact and a resumed job continues after the last chunk;</li>
+ *   <li>being one statement, a chunk publishes one {@code entity_changes}
+ *       notification listing the affected users.</li>
+ * </ul>
+ * A revoke only retires entitlements made by grant jobs ({@code source_type =
+ * 'GRANT'}), optionally only those of {@code source_job_id}; purchases and
+ * other sources of the same entity are left alone.
+ * <p>
+ * A lease on the job row keeps other nodes from running the same job. A failed
+ * chunk drops the lease so recovery retries from the saved cursor; after
+ * {@code app.entitlements.bulk.max-attempts} failures in a row the job is FAILED.
+ */
+@ApplicationScoped
+public class EntitlementGrantRunner {
+
+    private static final String CLAIM_SQL = """
+            UPDATE entitlement_grant_jobs
+            SET status = 'RUNNING', lease_until = $2, last_error = NULL,
+                attempts = CASE WHEN status = 'RUNNING' THEN attempts ELSE 0 END,
+                started_at = COALESCE(started_at, now()), updated_at = now()
+            WHERE id = $1
+              AND status IN ('PENDING', 'RUNNING')
+              AND (lease_until IS NULL OR lease_until < now())
+            RETURNING action, audience, plan_id, entity_type, entity_id, expires_at, source_job_id, cursor_user_id
+            """;
+
+    private static final String MEMBER_AUDIENCE = """
+            SELECT DISTINCT user_id FROM subscriptions
+            WHERE status = 'ACTIVE' AND user_id > $2 AND ($6::uuid IS NULL OR plan_id = $6)
+            ORDER BY user_id
+            LIMIT $3
+            """;
+
+    private static final String LIST_AUDIENCE = """
+            SELECT j.user_id FROM entitlement_grant_job_users j
+            WHERE j.job_id = $1 AND j.user_id > $2
+              AND ($6::uuid IS NULL OR EXISTS (SELECT 1 FROM subscriptions s
+                   WHERE s.user_id = j.user_id AND s.status = 'ACTIVE' AND s.plan_id = $6))
+            ORDER BY j.user_id
+            LIMIT $3
+            """;
+
+    private static final String GRANT_CHUNK = """
+            WITH audience AS (%s), changed AS (
+                INSERT INTO entitlements (user_id, source_type, source_id, entity_type, entity_id, expires_at)
+                SELECT user_id, 'GRANT', $1, $4, $5, $7 FROM audience
+                ON CONFLICT (user_id, entity_type, entity_id, source_type, source_id)
+                    WHERE revoked_at IS NULL DO NOTHING
+                RETURNING user_id
+            )
+            SELECT (SELECT count(*) FROM audience) AS scanned,
+                   (SELECT max(user_id) FROM audience) AS last_user_id,
+                   ARRAY(SELECT user_id FROM changed) AS affected
+            """;
+
+    private static final String REVOKE_CHUNK = """
+            WITH audience AS (%s), changed AS (
+                UPDATE entitlements e SET revoked_at = now()
+                FROM audience a
+                WHERE e.user_id = a.user_id AND e.entity_type = $4 AND e.entity_id = $5
+                  AND e.source_type = 'GRANT' AND ($7::uuid IS NULL OR e.source_id = $7)
+                  AND e.revoked_at IS NULL
+                RETURNING e.user_id
+            )
+            SELECT (SELECT count(*) FROM audience) AS scanned,
+                   (SELECT max(user_id) FROM audience) AS last_user_id,
+                   ARRAY(SELECT DISTINCT user_id FROM changed) AS affected
+            """;
+
+    private static final String PROGRESS_SQL = """
+            UPDATE entitlement_grant_jobs
+            SET cursor_user_id = $2,
+                processed_count = processed_count + $3,
+                affected_count = affected_count + $4,
+                attempts = 0,
+                lease_until = $5,
+                updated_at = now()
+            WHERE id = $1
+            """;
+
+    // Keeps RUNNING with the lease dropped so recovery retries, until the attempts run out
+    private static final String FAIL_SQL = """
+            UPDATE entitlement_grant_jobs
+            SET attempts = attempts + 1,
+                status = CASE WHEN attempts + 1 >= $3 THEN 'FAILED' ELSE status END,
+                lease_until = NULL, last_error = $2, updated_at = now()
+            WHERE id = $1 AND status = 'RUNNING'
+            RETURNING status
+            """;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.entitlements.bulk.chunk-size", defaultValue = "500")
+    int chunkSize;
+
+    @ConfigProperty(name = "app.entitlements.bulk.lease", defaultValue = "PT2M")
+    Duration lease;
+
+    @ConfigProperty(name = "app.entitlements.bulk.max-attempts", defaultValue = "5")
+    int maxAttempts;
+
+    private Counter grantedCounter;
+    private Counter revokedCounter;
+
+    private record Job(UUID id, String action, String audience, UUID planId, String entityType,
+                       UUID entityId, OffsetDateTime expiresAt, UUID sourceJobId) {}
+
+    private record Chunk(int scanned, long lastUserId, List<Long> affected) {}
+
+    @PostConstruct
+    void registerMetrics() {
+        grantedCounter = Counter.builder("entitlements.bulk.rows").tag("action", "grant").register(registry);
+        revokedCounter = Counter.builder("entitlements.bulk.rows").tag("action", "revoke").register(registry);
+    }
+
+    /** Stages the uploaded users of a USER_LIST job; unknown emails are ignored. */
+    public Uni<Integer> stageUsers(UUID jobId, List<String> emails) {
+        if (emails == null || emails.isEmpty()) {
+            return Uni.createFrom().item(0);
+        }
+        String[] normalized = emails.stream()
+                .map(email -> email.trim().toLowerCase())
+                .filter(email -> !email.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+        return client.preparedQuery("""
+                        INSERT INTO entitlement_grant_job_users (job_id, user_id)
+                        SELECT $1, u.id FROM users u WHERE lower(u.email) = ANY($2)
+                        ON CONFLICT DO NOTHING
+                        """)
+                .execute(Tuple.of(jobId, normalized))
+                .map(rows -> rows.rowCount());
+    }
+
+    /** Counts the job's audience into {@code total_count}, the denominator for progress. */
+    public Uni<Integer> countAudience(UUID jobId) {
+        return client.preparedQuery("""
+                        UPDATE entitlement_grant_jobs j SET total_count = CASE j.audience
+                            WHEN 'USER_LIST' THEN (SELECT count(*) FROM entitlement_grant_job_users u
+                                                   WHERE u.job_id = j.id
+                                                     AND (j.plan_id IS NULL OR EXISTS (
+                                                         SELECT 1 FROM subscriptions s
+                                                         WHERE s.user_id = u.user_id AND s.status = 'ACTIVE'
+                                                           AND s.plan_id = j.plan_id)))
+                            ELSE (SELECT count(DISTINCT s.user_id) FROM subscriptions s
+                                  WHERE s.status = 'ACTIVE' AND (j.plan_id IS NULL OR s.plan_id = j.plan_id))
+                        END, updated_at = now()
+                        WHERE j.id = $1
+                        RETURNING total_count
+                        """)
+                .execute(Tuple.of(jobId))
+                .map(rows -> rows.rowCount() == 0 ? 0 : rows.iterator().next().getInteger("total_count"));
+    }
+
+    /**
+     * Claims the job and processes it in the background. Returns false when the
+     * job is finished or another runner still holds its lease.
+     */
+    public Uni<Boolean> start(UUID jobId) {
+        return client.preparedQuery(CLAIM_SQL)
+                .execute(Tuple.of(jobId, leaseUntil()))
+                .map(rows -> {
+                    if (rows.rowCount() == 0) {
+                        return false;
+                    }
+                    Row row = rows.iterator().next();
+                    var job = new Job(jobId, row.getString("action"), row.getString("audience"),
+                            row.getUUID("plan_id"), row.getString("entity_type"), row.getUUID("entity_id"),
+                            row.getOffsetDateTime("expires_at"), row.getUUID("source_job_id"));
+                    long cursor = row.getLong("cursor_user_id");
+
+                    Log.infof("Starting entitlement %s job %s from user cursor %d", job.action(), jobId, cursor);
+                    runChunks(job, cursor).subscribe().with(
+                            v -> Log.infof("Entitlement job %s completed", jobId),
+                            err -> fail(jobId, err));
+                    return true;
+                });
+    }
+
+    /** Picks up RUNNING jobs whose runner died (lease expired). */
+    @Scheduled(every = "${app.entitlements.bulk.recovery-interval:1m}", delayed = "30s",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> recoverAbandoned() {
+        return client.query("""
+                        SELECT id FROM entitlement_grant_jobs
+                        WHERE status = 'RUNNING' AND (lease_until IS NULL OR lease_until < now())
+                        """)
+                .execute()
+                .chain(rows -> {
+                    List<UUID> ids = new ArrayList<>();
+                    rows.forEach(r -> ids.add(r.getUUID("id")));
+                    if (ids.isEmpty()) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    return Multi.createFrom().iterable(ids)
+                            .onItem().transformToUniAndConcatenate(this::start)
+                            .collect().last()
+                            .replaceWithVoid();
+                });
+    }
+
+    private Uni<Void> runChunks(Job job, long cursor) {
+        return client.withTransaction(conn -> runChunk(conn, job, cursor))
+                .chain(chunk -> chunk.scanned() == 0
+                        ? complete(job.id())
+                        : runChunks(job, chunk.lastUserId()));
+    }
+
+    private Uni<Chunk> runChunk(SqlConnection conn, Job job, long cursor) {
+        boolean grant = "GRANT".equals(job.action());
+        String audience = "USER_LIST".equals(job.audience()) ? LIST_AUDIENCE : MEMBER_AUDIENCE;
+        Tuple params = Tuple.of(job.id(), cursor, chunkSize, job.entityType(), job.entityId(), job.planId());
+        params.addValue(grant ? job.expiresAt() : job.sourceJobId());
+
+        return conn.preparedQuery((grant ? GRANT_CHUNK : REVOKE_CHUNK).formatted(audience)).execute(params)
+                .map(rows -> {
+                    Row row = rows.iterator().next();
+                    int scanned = row.getLong("scanned").intValue();
+                    Long lastUserId = row.getLong("last_user_id");
+                    List<Long> affected = List.of(row.getArrayOfLongs("affected"));
+                    return new Chunk(scanned, lastUserId != null ? lastUserId : cursor, affected);
+                })
+                .call(chunk -> chunk.scanned() == 0
+                        ? Uni.createFrom().voidItem()
+                        : conn.preparedQuery(PROGRESS_SQL)
+                                .execute(Tuple.of(job.id(), chunk.lastUserId(), chunk.scanned(),
+                                        chunk.affected().size(), leaseUntil())))
+                .invoke(chunk -> (grant ? grantedCounter : revokedCounter).increment(chunk.affected().size()));
+    }
+
+    private Uni<Void> complete(UUID jobId) {
+        return client.preparedQuery("""
+                        UPDATE entitlement_grant_jobs
+                        SET status = 'COMPLETED', completed_at = now(), lease_until = NULL, updated_at = now()
+                        WHERE id = $1 AND status = 'RUNNING'
+                        """)
+                .execute(Tuple.of(jobId))
+                .replaceWithVoid();
+    }
+
+    private void fail(UUID jobId, Throwable err) {
+        Log.errorf(err, "Entitlement job %s aborted", jobId);
+        client.preparedQuery(FAIL_SQL)
+                .execute(Tuple.of(jobId, String.valueOf(err.getMessage()), maxAttempts))
+                .subscribe().with(rows -> {
+                    if (rows.rowCount() > 0 && "FAILED".equals(rows.iterator().next().getString("status"))) {
+                        Log.errorf("Entitlement job %s failed %d times in a row, giving up", jobId, maxAttempts);
+                    }
+                }, e -> Log.error("Failed to record entitlement job error", e));
+    }
+
+    private OffsetDateTime leaseUntil() {
+        return OffsetDateTime.now(ZoneOffset.UTC).plus(lease);
+    }
+}
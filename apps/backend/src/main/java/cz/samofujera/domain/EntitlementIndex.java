@@ -0,0 +1,222 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.observability.CacheMetrics;
+import cz.samofujera.realtime.PgNotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory access checks against the {@code entitlements} table.
+ * <p>
+ * A user's active grants are loaded once (one index-only range scan on
+ * {@code idx_entitlements_active}) into a {@link Grants} set of sorted id arrays,
+ * after which every check is a binary search that also honours {@code expires_at}.
+ * Every statement that changes {@code entitlements} publishes the affected
+ * {@code user_ids} on {@code entity_changes}, which drops those users' sets; a
+ * notification without them drops everything.
+ */
+@ApplicationScoped
+public class EntitlementIndex {
+
+    private static final String ACTIVE_GRANTS = """
+            SELECT entity_type, entity_id, expires_at FROM entitlements
+            WHERE user_id = $1 AND revoked_at IS NULL AND expired_at IS NULL AND entity_id IS NOT NULL
+              AND (expires_at IS NULL OR expires_at > now())
+            """;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    MeterRegistry meters;
+
+    @ConfigProperty(name = "app.entitlements.cache-max-users", defaultValue = "20000")
+    int maxUsers;
+
+    // Memoized loads, so concurrent checks for a cold user share one query
+    private final Map<Long, Uni<Grants>> byUser = new ConcurrentHashMap<>();
+    private final CacheMetrics cacheMetrics = new CacheMetrics();
+
+    @PostConstruct
+    void registerMetrics() {
+        cacheMetrics.register(meters, "entitlements", byUser::size);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        notifications.stream("entity_changes")
+                .filter(change -> "entitlements".equals(change.getString("table")))
+                .subscribe().with(this::onEntitlementChange,
+                        err -> Log.error("Entitlement change listener failed", err));
+    }
+
+    void onEntitlementChange(JsonObject change) {
+        List<Long> userIds = PgNotificationService.userIds(change);
+        if (userIds != null) {
+            userIds.forEach(this::invalidate);
+        } else {
+            invalidateAll();
+        }
+    }
+
+    public Uni<Boolean> hasAccess(Long userId, String entityType, UUID entityId) {
+        return grants(userId).map(grants -> grants.has(entityType, entityId, System.currentTimeMillis()));
+    }
+
+    /** Access for each of {@code entityIds}, answered from a single in-memory set. */
+    public Uni<Map<UUID, Boolean>> hasAccess(Long userId, String entityType, Collection<UUID> entityIds) {
+        return grants(userId).map(grants -> {
+            long now = System.currentTimeMillis();
+            var result = new LinkedHashMap<UUID, Boolean>(entityIds.size() * 2);
+            for (UUID id : entityIds) {
+                result.put(id, grants.has(entityType, id, now));
+            }
+            return result;
+        });
+    }
+
+    /** Ids of every {@code entityType} the user can currently access. */
+    public Uni<List<UUID>> entityIds(Long userId, String entityType) {
+        return grants(userId).map(grants -> grants.ids(entityType, System.currentTimeMillis()));
+    }
+
+    public void invalidate(Long userId) {
+        byUser.remove(userId);
+    }
+
+    public void invalidateAll() {
+        byUser.clear();
+    }
+
+    public int size() {
+        return byUser.size();
+    }
+
+    private Uni<Grants> grants(Long userId) {
+        Uni<Grants> cached = byUser.get(userId);
+        if (cached != null) {
+            cacheMetrics.hit();
+            return cached;
+        }
+        cacheMetrics.miss();
+        if (byUser.size() >= maxUsers) {
+            byUser.clear();
+        }
+        var self = new AtomicReference<Uni<Grants>>();
+        Uni<Grants> load = client.preparedQuery(ACTIVE_GRANTS).execute(Tuple.of(userId))
+                .map(rows -> {
+                    var list = new ArrayList<Grant>(rows.rowCount());
+                    for (Row row : rows) {
+                        OffsetDateTime expires = row.getOffsetDateTime("expires_at");
+                        list.add(new Grant(row.getString("entity_type"), row.getUUID("entity_id"),
+                                expires == null ? Long.MAX_VALUE : expires.toInstant().toEpochMilli()));
+                    }
+                    return Grants.of(list);
+                })
+                // A failed load must not stay memoized, nor evict a newer load for the user
+                .onFailure().invoke(() -> byUser.remove(userId, self.get()))
+                .memoize().indefinitely();
+        self.set(load);
+        Uni<Grants> existing = byUser.putIfAbsent(userId, load);
+        return existing != null ? existing : load;
+    }
+
+    record Grant(String entityType, UUID entityId, long expiresAtMillis) {}
+
+    /**
+     * Immutable grant set: ids of each entity type as parallel sorted
+     * {@code long} arrays (most/least significant UUID bits) with expiry.
+     */
+    static final class Grants {
+        private final Map<String, long[][]> byType;
+
+        private Grants(Map<String, long[][]> byType) {
+            this.byType = byType;
+        }
+
+        static Grants of(List<Grant> grants) {
+            var grouped = new HashMap<String, List<Grant>>();
+            for (Grant grant : grants) {
+                grouped.computeIfAbsent(grant.entityType(), t -> new ArrayList<>()).add(grant);
+            }
+            var byType = new HashMap<String, long[][]>(grouped.size() * 2);
+            grouped.forEach((type, list) -> {
+                list.sort(Comparator.<Grant>comparingLong(g -> g.entityId().getMostSignificantBits())
+                        .thenComparingLong(g -> g.entityId().getLeastSignificantBits())
+                        .thenComparing(Comparator.comparingLong(Grant::expiresAtMillis).reversed()));
+                long[] msb = new long[list.size()];
+                long[] lsb = new long[list.size()];
+                long[] expires = new long[list.size()];
+                int n = 0;
+                for (Grant grant : list) {
+                    long hi = grant.entityId().getMostSignificantBits();
+                    long lo = grant.entityId().getLeastSignificantBits();
+                    // Duplicate grants for one id: keep the longest-lived (sorted first)
+                    if (n > 0 && msb[n - 1] == hi && lsb[n - 1] == lo) continue;
+                    msb[n] = hi;
+                    lsb[n] = lo;
+                    expires[n] = grant.expiresAtMillis();
+                    n++;
+                }
+                byType.put(type, new long[][]{
+                        Arrays.copyOf(msb, n), Arrays.copyOf(lsb, n), Arrays.copyOf(expires, n)});
+            });
+            return new Grants(byType);
+        }
+
+        boolean has(String entityType, UUID entityId, long nowMillis) {
+            long[][] arrays = byType.get(entityType);
+            if (arrays == null || entityId == null) return false;
+            int index = search(arrays[0], arrays[1], entityId.getMostSignificantBits(), entityId.getLeastSignificantBits());
+            return index >= 0 && arrays[2][index] > nowMillis;
+        }
+
+        List<UUID> ids(String entityType, long nowMillis) {
+            long[][] arrays = byType.get(entityType);
+            if (arrays == null) return List.of();
+            var ids = new ArrayList<UUID>(arrays[0].length);
+            for (int i = 0; i < arrays[0].length; i++) {
+                if (arrays[2][i] > nowMillis) ids.add(new UUID(arrays[0][i], arrays[1][i]));
+            }
+            return ids;
+        }
+
+        private static int search(long[] msb, long[] lsb, long hi, long lo) {
+            int low = 0, high = msb.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = msb[mid] != hi ? Long.compare(msb[mid], hi) : Long.compare(lsb[mid], lo);
+                if (cmp < 0) low = mid + 1;
+                else if (cmp > 0) high = mid - 1;
+                else return mid;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package cz.samofujera.domain;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Retires entitlements and subscriptions whose term has ended.
+ * <p>
+ * Each batch is one statement: it takes the next due rows in index order
+ * ({@code FOR UPDATE SKIP LOCKED}), marks them ({@code entitlements.expired_at},
+ * {@code subscriptions.status = 'EXPIRED'}) and writes an
+ * {@code entitlement.expired} / {@code subscription.expired} outbox event per
+ * row, so the state change and its event commit together. The statement
+ * trigger on {@code entitlements} notifies {@code entity_changes}, which drops
+ * the affected users from {@link EntitlementIndex} and {@link LibraryService}.
+ * Neither caches subscriptions; an expired subscription is announced by its
+ * outbox event.
+ * <p>
+ * A run holds a session-level advisory lock, so with several nodes only one
+ * sweeps at a time; the others skip the run.
+ */
+@ApplicationScoped
+public class ExpirySweeper {
+
+    // pg_try_advisory_lock(int, int) keys; ScheduledPublishWorker uses 0x5042
+    private static final int LOCK_CLASS = 0x4558;
+    private static final int LOCK_ID = 1;
+
+    private static final String EXPIRE_ENTITLEMENTS = """
+            WITH due AS (
+                SELECT id FROM entitlements
+                WHERE revoked_at IS NULL AND expired_at IS NULL
+                  AND expires_at IS NOT NULL AND expires_at <= now()
+                ORDER BY expires_at, id
+                LIMIT $1
+                FOR UPDATE SKIP LOCKED
+            ), expired AS (
+                UPDATE entitlements e SET expired_at = now()
+                FROM due WHERE e.id = due.id
+                RETURNING e.id, e.user_id, e.entity_type, e.entity_id, e.expires_at
+            )
+            INSERT INTO outbox_messages (kind, topic, payload)
+            SELECT 'EVENT', 'entitlement.expired', json_build_object(
+                'entitlementId', id, 'userId', user_id, 'entityType', entity_type,
+                'entityId', entity_id, 'expiresAt', expires_at)
+            FROM expired
+            """;
+
+    private static final String EXPIRE_SUBSCRIPTIONS = """
+            WITH due AS (
+                SELECT id FROM subscriptions
+                WHERE status = 'ACTIVE' AND current_period_end IS NOT NULL AND current_period_end <= $2
+                ORDER BY current_period_end, id
+                LIMIT $1
+                FOR UPDATE SKIP LOCKED
+            ), expired AS (
+                UPDATE subscriptions s SET status = 'EXPIRED', updated_at = now()
+                FROM due WHERE s.id = due.id
+                RETURNING s.id, s.user_id, s.plan_id, s.current_period_end
+            )
+            INSERT INTO outbox_messages (kind, topic, payload)
+            SELECT 'EVENT', 'subscription.expired', json_build_object(
+                'subscriptionId', id, 'userId', user_id, 'planId', plan_id,
+                'currentPeriodEnd', current_period_end)
+            FROM expired
+            """;
+
+    public record Result(boolean locked, int entitlements, int subscriptions) {}
+
+    @Inject
+    Pool client;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.expiry.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "app.expiry.max-batches-per-run", defaultValue = "20")
+    int maxBatchesPerRun;
+
+    // Renewals arrive by webhook after the period ends; give them time before expiring
+    @ConfigProperty(name = "app.expiry.subscription-grace", defaultValue = "P1D")
+    Duration subscriptionGrace;
+
+    private Counter expiredEntitlements;
+    private Counter expiredSubscriptions;
+    private Counter skippedRuns;
+    private Timer runDuration;
+
+    @PostConstruct
+    void registerMetrics() {
+        expiredEntitlements = Counter.builder("expiry.sweep.expired")
+                .description("Rows retired by the expiry sweeper")
+                .tag("type", "entitlement")
+                .register(registry);
+        expiredSubscriptions = Counter.builder("expiry.sweep.expired")
+                .description("Rows retired by the expiry sweeper")
+                .tag("type", "subscription")
+                .register(registry);
+        skippedRuns = Counter.builder("expiry.sweep.skipped")
+                .description("Sweeps skipped because another node held the lock")
+                .register(registry);
+        runDuration = Timer.builder("expiry.sweep.duration")
+                .description("Wall time of one expiry sweep")
+                .register(registry);
+    }
+
+    @Scheduled(every = "${app.expiry.sweep-interval:5m}", delayed = "30s",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledSweep() {
+        return sweep()
+                .invoke(result -> {
+                    if (result.entitlements() > 0 || result.subscriptions() > 0) {
+                        Log.infof("Expired %d entitlements and %d subscriptions",
+                                result.entitlements(), result.subscriptions());
+                    }
+                })
+                .onFailure().invoke(err -> Log.error("Expiry sweep failed", err))
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    public Uni<Result> sweep() {
+        long start = System.nanoTime();
+        return client.getConnection().chain(conn -> conn
+                .preparedQuery("SELECT pg_try_advisory_lock($1, $2) AS locked")
+                .execute(Tuple.of(LOCK_CLASS, LOCK_ID))
+                .chain(rows -> {
+                    if (!rows.iterator().next().getBoolean("locked")) {
+                        skippedRuns.increment();
+                        return Uni.createFrom().item(new Result(false, 0, 0));
+                    }
+                    return drain(conn, EXPIRE_ENTITLEMENTS, false, 0, 0)
+                            .invoke(count -> expiredEntitlements.increment(count))
+                            .chain(entitlements -> drain(conn, EXPIRE_SUBSCRIPTIONS, true, 0, 0)
+                                    .invoke(count -> expiredSubscriptions.increment(count))
+                                    .map(subscriptions -> new Result(true, entitlements, subscriptions)))
+                            .eventually(() -> conn
+                                    .preparedQuery("SELECT pg_advisory_unlock($1, $2)")
+                                    .execute(Tuple.of(LOCK_CLASS, LOCK_ID)))
+                            .invoke(() -> runDuration.record(Duration.ofNanos(System.nanoTime() - start)));
+                })
+                .eventually(conn::close));
+    }
+
+    /** Runs batches until one comes back short or the per-run cap is hit; returns rows expired. */
+    private Uni<Integer> drain(SqlConnection conn, String sql, boolean withCutoff, int batchNo, int expired) {
+        if (batchNo >= maxBatchesPerRun) {
+            return Uni.createFrom().item(expired);
+        }
+        Tuple params = withCutoff
+                ? Tuple.of(batchSize, OffsetDateTime.now(ZoneOffset.UTC).minus(subscriptionGrace))
+                : Tuple.of(batchSize);
+        return conn.preparedQuery(sql).execute(params).chain(rows -> rows.rowCount() < batchSize
+                ? Uni.createFrom().item(expired + rows.rowCount())
+                : drain(conn, sql, withCutoff, batchNo + 1, expired + rows.rowCount()));
+    }
+}
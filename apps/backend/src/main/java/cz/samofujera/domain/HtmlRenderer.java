@@ -0,0 +1,423 @@
+package cz.samofujera.domain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Server-side HTML for the page block model, mirroring {@code PageRenderer.tsx}
+ * (content versions 1–3 and bare Lexical state), plus complete documents with
+ * SEO head tags for published pages and product details.
+ * <p>
+ * Output is plain semantic markup for crawlers and link previews: product list
+ * blocks are left out, images are plain {@code <img>} tags and all text and
+ * attributes are escaped.
+ */
+public final class HtmlRenderer {
+    private HtmlRenderer() {}
+
+    public static final List<String> LOCALES = List.of("cs", "sk");
+
+    public record PageMeta(
+            String title, String metaTitle, String metaDescription, String metaKeywords,
+            String ogTitle, String ogDescription, String ogImageUrl,
+            boolean noindex, boolean nofollow
+    ) {}
+
+    public record ProductView(
+            String title, String slug, String shortDescription, String description,
+            String metaTitle, String metaDescription, String sku, String availability,
+            Map<String, BigDecimal> prices, List<String> imageUrls, String brand
+    ) {}
+
+    public static final String HOME_SLUG = "home";
+
+    /** Public URL path of a page, matching the Next.js routes. */
+    public static String pagePath(String slug) {
+        return HOME_SLUG.equals(slug) ? "/" : "/" + slug;
+    }
+
+    public static String productPath(String slug) {
+        return "/produkty/" + slug;
+    }
+
+    public static String locale(String requested) {
+        return requested != null && LOCALES.contains(requested) ? requested : LOCALES.get(0);
+    }
+
+    // ── Documents ───────────────────────────────────────────────
+
+    public static String pageDocument(ObjectMapper mapper, PageMeta page, String content,
+                                      String locale, String canonicalUrl) {
+        var body = new StringBuilder(4096);
+        body.append("<main class=\"page-content\">");
+        renderContent(body, parse(mapper, content));
+        body.append("</main>");
+
+        return document(locale,
+                firstNonBlank(page.metaTitle(), page.title() + " | Sámo Fujera"),
+                page.metaDescription(), page.metaKeywords(),
+                robots(page.noindex(), page.nofollow()), canonicalUrl,
+                firstNonBlank(page.ogTitle(), page.metaTitle(), page.title()),
+                firstNonBlank(page.ogDescription(), page.metaDescription()),
+                page.ogImageUrl(), "website", null, body);
+    }
+
+    public static String productDocument(ObjectMapper mapper, ProductView product,
+                                         String locale, String canonicalUrl) {
+        String currency = currency(locale);
+        BigDecimal price = product.prices() != null ? product.prices().get(currency) : null;
+        String description = firstNonBlank(product.metaDescription(), product.shortDescription());
+
+        var body = new StringBuilder(4096);
+        body.append("<main class=\"product-detail\"><h1>").append(escape(product.title())).append("</h1>");
+        for (String url : product.imageUrls()) {
+            body.append("<img src=\"").append(escape(url)).append("\" alt=\"").append(escape(product.title())).append("\">");
+        }
+        if (price != null) {
+            body.append("<p class=\"product-price\">").append(formatPrice(price, currency)).append("</p>");
+        }
+        String availability = availabilityLabel(product.availability(), locale);
+        if (availability != null) {
+            body.append("<p class=\"product-availability\">").append(availability).append("</p>");
+        }
+        if (!isBlank(product.shortDescription())) {
+            body.append("<p class=\"product-summary\">").append(escape(product.shortDescription())).append("</p>");
+        }
+        if (!isBlank(product.description())) {
+            body.append("<section class=\"product-detail-description\"><h2>Popis</h2>");
+            renderDescription(body, mapper, product.description());
+            body.append("</section>");
+        }
+        body.append("</main>");
+
+        return document(locale,
+                firstNonBlank(product.metaTitle(), product.title() + " | Sámo Fujera"),
+                description, null, robots(false, false), canonicalUrl,
+                firstNonBlank(product.metaTitle(), product.title()), description,
+                product.imageUrls().isEmpty() ? null : product.imageUrls().get(0),
+                "product", productJsonLd(mapper, product, price, currency, canonicalUrl), body);
+    }
+
+    private static String document(String locale, String title, String description, String keywords,
+                                   String robots, String canonicalUrl, String ogTitle, String ogDescription,
+                                   String ogImage, String ogType, String jsonLd, CharSequence body) {
+        var html = new StringBuilder(body.length() + 1024);
+        html.append("<!DOCTYPE html><html lang=\"").append(escape(locale)).append("\"><head><meta charset=\"utf-8\">")
+                .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">")
+                .append("<title>").append(escape(title)).append("</title>");
+        meta(html, "name", "description", description);
+        meta(html, "name", "keywords", keywords);
+        meta(html, "name", "robots", robots);
+        if (canonicalUrl != null) {
+            html.append("<link rel=\"canonical\" href=\"").append(escape(canonicalUrl)).append("\">");
+        }
+        meta(html, "property", "og:type", ogType);
+        meta(html, "property", "og:title", ogTitle);
+        meta(html, "property", "og:description", ogDescription);
+        meta(html, "property", "og:url", canonicalUrl);
+        meta(html, "property", "og:image", ogImage);
+        meta(html, "property", "og:locale", "cs".equals(locale) ? "cs_CZ" : "sk_SK");
+        meta(html, "name", "twitter:card", ogImage != null ? "summary_large_image" : "summary");
+        if (jsonLd != null) {
+            // "</" is escaped so the JSON can never close the script element
+            html.append("<script type=\"application/ld+json\">").append(jsonLd.replace("</", "<\\/")).append("</script>");
+        }
+        return html.append("</head><body>").append(body).append("</body></html>").toString();
+    }
+
+    private static void meta(StringBuilder html, String attribute, String name, String content) {
+        if (isBlank(content)) return;
+        html.append("<meta ").append(attribute).append("=\"").append(name)
+                .append("\" content=\"").append(escape(content)).append("\">");
+    }
+
+    private static String robots(boolean noindex, boolean nofollow) {
+        return (noindex ? "noindex" : "index") + ", " + (nofollow ? "nofollow" : "follow");
+    }
+
+    private static String productJsonLd(ObjectMapper mapper, ProductView product, BigDecimal price,
+                                        String currency, String canonicalUrl) {
+        ObjectNode ld = JsonNodeFactory.instance.objectNode();
+        ld.put("@context", "https://schema.org");
+        ld.put("@type", "Product");
+        ld.put("name", product.title());
+        if (!isBlank(product.shortDescription())) ld.put("description", product.shortDescription());
+        if (!isBlank(product.sku())) ld.put("sku", product.sku());
+        if (!product.imageUrls().isEmpty()) {
+            var images = ld.putArray("image");
+            product.imageUrls().forEach(images::add);
+        }
+        if (product.brand() != null) {
+            ld.putObject("brand").put("@type", "Brand").put("name", product.brand());
+        }
+        if (price != null) {
+            ObjectNode offer = ld.putObject("offers");
+            offer.put("@type", "Offer");
+            offer.put("price", price.toPlainString());
+            offer.put("priceCurrency", currency);
+            if (canonicalUrl != null) offer.put("url", canonicalUrl);
+            offer.put("availability", switch (product.availability() == null ? "" : product.availability()) {
+                case "out_of_stock" -> "https://schema.org/OutOfStock";
+                case "preorder" -> "https://schema.org/PreOrder";
+                default -> "https://schema.org/InStock";
+            });
+        }
+        try {
+            return mapper.writeValueAsString(ld);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String currency(String locale) {
+        return "cs".equals(locale) ? "CZK" : "EUR";
+    }
+
+    static String formatPrice(BigDecimal amount, String currency) {
+        var symbols = DecimalFormatSymbols.getInstance(Locale.forLanguageTag("cs-CZ"));
+        symbols.setGroupingSeparator(' ');
+        var format = new DecimalFormat("CZK".equals(currency) ? "#,##0.##" : "#,##0.00", symbols);
+        return format.format(amount) + ("CZK".equals(currency) ? " Kč" : " €");
+    }
+
+    private static String availabilityLabel(String availability, String locale) {
+        if (availability == null) return null;
+        boolean cs = "cs".equals(locale);
+        return switch (availability) {
+            case "in_stock" -> cs ? "Skladem" : "Na sklade";
+            case "out_of_stock" -> cs ? "Není skladem" : "Nie je na sklade";
+            case "preorder" -> cs ? "Na objednávku" : "Na objednávku";
+            default -> null;
+        };
+    }
+
+    // ── Block model ─────────────────────────────────────────────
+
+    static void renderContent(StringBuilder out, JsonNode content) {
+        if (content == null || content.isNull() || content.isMissingNode()) return;
+        int version = content.path("version").asInt(0);
+        JsonNode sections = content.path("sections");
+        if (version >= 1 && version <= 3 && sections.isArray()) {
+            for (JsonNode section : sections) {
+                out.append("<section>");
+                switch (version) {
+                    case 3 -> section.path("blocks").forEach(block -> renderBlock(out, block));
+                    case 2 -> section.path("slots").forEach(slot -> renderLexical(out, slot.path("content")));
+                    default -> renderLexical(out, section.path("content"));
+                }
+                out.append("</section>");
+            }
+            return;
+        }
+        renderLexical(out, content);
+    }
+
+    private static void renderBlock(StringBuilder out, JsonNode block) {
+        switch (block.path("type").asText()) {
+            case "text" -> {
+                int before = out.length();
+                renderLexical(out, block.path("content"));
+                if (out.length() == before) out.append("<p><br></p>");
+            }
+            case "image" -> {
+                String src = block.path("src").asText("");
+                if (!src.isEmpty()) {
+                    out.append("<figure><img src=\"").append(escape(src)).append("\" alt=\"")
+                            .append(escape(block.path("altText").asText(""))).append("\"");
+                    if (block.path("width").isNumber()) out.append(" width=\"").append(block.path("width").asInt()).append('"');
+                    if (block.path("height").isNumber()) out.append(" height=\"").append(block.path("height").asInt()).append('"');
+                    out.append(" loading=\"lazy\"></figure>");
+                }
+            }
+            case "separator" -> out.append("<hr>");
+            case "button" -> {
+                out.append("<p><a href=\"").append(escape(safeUrl(block.path("url").asText("#")))).append('"');
+                if (block.path("openInNewTab").asBoolean(false)) out.append(" target=\"_blank\" rel=\"noopener noreferrer\"");
+                out.append('>').append(escape(block.path("text").asText("Zjistit více"))).append("</a></p>");
+            }
+            default -> {
+                // products / product blocks need live catalog data, crawlers get the product pages directly
+            }
+        }
+    }
+
+    private static void renderLexical(StringBuilder out, JsonNode state) {
+        JsonNode children = state.path("root").path("children");
+        if (children.isArray()) {
+            children.forEach(node -> renderNode(out, node));
+        }
+    }
+
+    private static void renderNode(StringBuilder out, JsonNode node) {
+        switch (node.path("type").asText()) {
+            case "paragraph" -> {
+                out.append("<p").append(alignment(node)).append('>');
+                if (node.path("children").isEmpty()) out.append("<br>");
+                else renderChildren(out, node);
+                out.append("</p>");
+            }
+            case "heading" -> {
+                String tag = node.path("tag").asText("h2");
+                if (!tag.matches("h[1-6]")) tag = "h2";
+                out.append('<').append(tag).append(alignment(node)).append('>');
+                renderChildren(out, node);
+                out.append("</").append(tag).append('>');
+            }
+            case "quote" -> {
+                out.append("<blockquote>");
+                renderChildren(out, node);
+                out.append("</blockquote>");
+            }
+            case "list" -> {
+                String tag = "number".equals(node.path("listType").asText()) ? "ol" : "ul";
+                out.append('<').append(tag).append('>');
+                renderChildren(out, node);
+                out.append("</").append(tag).append('>');
+            }
+            case "listitem" -> {
+                out.append("<li>");
+                renderChildren(out, node);
+                out.append("</li>");
+            }
+            case "link" -> {
+                String url = node.path("url").asText("#");
+                out.append("<a href=\"").append(escape(safeUrl(url))).append('"');
+                if ("_blank".equals(node.path("target").asText()) || url.startsWith("http")) {
+                    out.append(" target=\"_blank\" rel=\"noopener noreferrer\"");
+                }
+                out.append('>');
+                renderChildren(out, node);
+                out.append("</a>");
+            }
+            case "image" -> {
+                String src = node.path("src").asText("");
+                if (!src.isEmpty()) {
+                    out.append("<img src=\"").append(escape(src)).append("\" alt=\"")
+                            .append(escape(node.path("altText").asText(""))).append("\" loading=\"lazy\">");
+                }
+            }
+            case "cta-button" -> out.append("<p><a href=\"").append(escape(safeUrl(node.path("url").asText("#")))).append("\">")
+                    .append(escape(node.path("text").asText("Zjistit více"))).append("</a></p>");
+            case "separator" -> out.append("<hr>");
+            case "text" -> {
+                int format = node.path("format").asInt(0);
+                if ((format & 1) != 0) out.append("<strong>");
+                if ((format & 2) != 0) out.append("<em>");
+                if ((format & 8) != 0) out.append("<u>");
+                out.append(escape(node.path("text").asText("")));
+                if ((format & 8) != 0) out.append("</u>");
+                if ((format & 2) != 0) out.append("</em>");
+                if ((format & 1) != 0) out.append("</strong>");
+            }
+            case "linebreak" -> out.append("<br>");
+            default -> {
+            }
+        }
+    }
+
+    private static void renderChildren(StringBuilder out, JsonNode node) {
+        node.path("children").forEach(child -> renderNode(out, child));
+    }
+
+    private static String alignment(JsonNode node) {
+        JsonNode format = node.path("format");
+        String align = switch (format.isNumber() ? String.valueOf(format.asInt()) : format.asText("")) {
+            case "center", "2" -> "center";
+            case "right", "3" -> "right";
+            case "justify", "4" -> "justify";
+            default -> null;
+        };
+        return align == null ? "" : " style=\"text-align:" + align + "\"";
+    }
+
+    private static void renderDescription(StringBuilder out, ObjectMapper mapper, String description) {
+        JsonNode parsed = null;
+        if (description.startsWith("{")) {
+            try {
+                parsed = mapper.readTree(description);
+            } catch (IOException e) {
+                // Not JSON — plain text
+            }
+        }
+        if (parsed != null && parsed.has("root")) {
+            renderLexical(out, parsed);
+        } else {
+            for (String paragraph : description.split("\\R{2,}")) {
+                out.append("<p>").append(escape(paragraph).replaceAll("\\R", "<br>")).append("</p>");
+            }
+        }
+    }
+
+    // ── Helpers ─────────────────────────────────────────────────
+
+    private static JsonNode parse(ObjectMapper mapper, String content) {
+        if (content == null || content.isBlank()) return null;
+        try {
+            return mapper.readTree(content);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Drops {@code javascript:} and other script-capable schemes from editor-supplied links. */
+    static String safeUrl(String url) {
+        String trimmed = url.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon < 0 || trimmed.indexOf('/') >= 0 && trimmed.indexOf('/') < colon) {
+            return trimmed;
+        }
+        String scheme = trimmed.substring(0, colon).toLowerCase(Locale.ROOT);
+        return switch (scheme) {
+            case "http", "https", "mailto", "tel" -> trimmed;
+            default -> "#";
+        };
+    }
+
+    static String escape(String text) {
+        if (text == null) return "";
+        var out = new StringBuilder(text.length() + 16);
+        try {
+            escape(text, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /** Appends {@code text} with HTML special characters escaped; the one escaper for pages and emails. */
+    public static void escape(String text, Appendable out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static String firstNonBlank(String... values) {
+        for (String value : values) {
+            if (!isBlank(value)) return value;
+        }
+        return null;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,229 @@
+package cz.samofujera.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.samofujera.domain.entity.ImageEntity;
+import cz.samofujera.domain.entity.PageEntity;
+import cz.samofujera.domain.entity.PageRevisionEntity;
+import cz.samofujera.domain.entity.ProductEntity;
+import cz.samofujera.domain.entity.ProductGalleryEntity;
+import cz.samofujera.domain.entity.ProductPriceEntity;
+import cz.samofujera.observability.CacheMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.vertx.core.runtime.context.VertxContextSafetyToggle;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Rendered HTML documents for crawlers, cached per (slug, locale) together with
+ * the revision they were rendered from.
+ * <p>
+ * Page documents are tied to {@code publishedRevisionId}, which never changes in
+ * place, so they live until the page is invalidated; publishing re-renders them
+ * ahead of the first request. Product documents depend on several tables
+ * (prices, gallery), so they are invalidated on product edits and otherwise
+ * expire after {@code app.seo.product-ttl}.
+ */
+@ApplicationScoped
+public class HtmlSnapshotService {
+
+    private static final int MAX_PRODUCT_IMAGES = 6;
+
+    public record Entry(UUID ownerId, String revision, byte[] body, String etag, long expiresAtNanos) {
+        public boolean matches(String ifNoneMatch) {
+            return PageDeliveryCache.etagMatches(etag, ifNoneMatch);
+        }
+
+        boolean expired(long now) {
+            return expiresAtNanos != 0 && now - expiresAtNanos > 0;
+        }
+    }
+
+    private record Key(boolean product, String slug, String locale) {}
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry meters;
+
+    @Inject
+    PageRevisionStore revisionStore;
+
+    @Inject
+    LocalStorageService storageService;
+
+    @ConfigProperty(name = "app.site.url", defaultValue = "http://localhost:3000")
+    String siteUrl;
+
+    @ConfigProperty(name = "app.seo.max-entries", defaultValue = "5000")
+    int maxEntries;
+
+    @ConfigProperty(name = "app.seo.product-ttl", defaultValue = "PT10M")
+    Duration productTtl;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final CacheMetrics cacheMetrics = new CacheMetrics();
+
+    // Same race guard as PageDeliveryCache: a render that overlapped an invalidation is not stored
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        cacheMetrics.register(meters, "seo-snapshots", entries::size);
+    }
+
+    /** Cached or freshly rendered document of a published page; null item when not public. */
+    public Uni<Entry> page(String slug, String locale) {
+        var key = new Key(false, slug, locale);
+        Entry cached = entries.get(key);
+        if (cached != null) {
+            cacheMetrics.hit();
+            return Uni.createFrom().item(cached);
+        }
+        cacheMetrics.miss();
+        long loadedAt = generation.get();
+        return Panache.withSession(() -> PageEntity.findBySlug(slug)
+                .chain(page -> page == null || !"PUBLISHED".equals(page.status)
+                        ? Uni.createFrom().<Entry>nullItem()
+                        : renderPage(page, locale).map(html -> store(key, page.id,
+                                String.valueOf(page.publishedRevisionId), html, 0, loadedAt))));
+    }
+
+    /** Cached or freshly rendered document of an active product; null item when not public. */
+    public Uni<Entry> product(String slug, String locale) {
+        var key = new Key(true, slug, locale);
+        Entry cached = entries.get(key);
+        if (cached != null && !cached.expired(System.nanoTime())) {
+            cacheMetrics.hit();
+            return Uni.createFrom().item(cached);
+        }
+        cacheMetrics.miss();
+        long loadedAt = generation.get();
+        return Panache.withSession(() -> ProductEntity.findBySlug(slug)
+                .chain(product -> product == null || !"ACTIVE".equals(product.status)
+                        ? Uni.createFrom().<Entry>nullItem()
+                        : renderProduct(product, locale).map(html -> store(key, product.id,
+                                String.valueOf(product.updatedAt), html,
+                                System.nanoTime() + productTtl.toNanos(), loadedAt))));
+    }
+
+    public void invalidate(UUID ownerId) {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> entry.ownerId().equals(ownerId));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Drops the page's documents and renders them again for every locale in the
+     * background, so the first crawler after a publish is served from memory.
+     * Call after the publishing transaction committed.
+     */
+    public void prewarmPage(UUID pageId) {
+        invalidate(pageId);
+        var context = VertxContext.getOrCreateDuplicatedContext(vertx.getDelegate());
+        VertxContextSafetyToggle.setContextSafe(context, true);
+        context.runOnContext(v -> Panache.withSession(() -> PageEntity.<PageEntity>findById(pageId))
+                .chain(page -> {
+                    if (page == null || !"PUBLISHED".equals(page.status)) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    Uni<Void> chain = Uni.createFrom().voidItem();
+                    for (String locale : HtmlRenderer.LOCALES) {
+                        chain = chain.chain(() -> page(page.slug, locale)).replaceWithVoid();
+                    }
+                    return chain;
+                })
+                .subscribe().with(
+                        ignored -> Log.debugf("Pre-rendered page %s", pageId),
+                        err -> Log.warnf(err, "Pre-rendering page %s failed", pageId)));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // ── Rendering ───────────────────────────────────────────────
+
+    private Uni<String> renderPage(PageEntity page, String locale) {
+        Uni<String> content = page.publishedRevisionId == null
+                ? Uni.createFrom().item(page.content)
+                : PageRevisionEntity.<PageRevisionEntity>findById(page.publishedRevisionId)
+                        .chain(revision -> revision != null
+                                ? revisionStore.content(revision)
+                                : Uni.createFrom().item(page.content));
+        Uni<String> ogImageUrl = page.ogImageId == null
+                ? Uni.createFrom().nullItem()
+                : ImageEntity.<ImageEntity>findById(page.ogImageId)
+                        .map(image -> image != null ? storageService.getUrl(image.storageKey) : null);
+
+        return content.chain(json -> ogImageUrl.map(imageUrl -> HtmlRenderer.pageDocument(objectMapper,
+                new HtmlRenderer.PageMeta(page.title, page.metaTitle, page.metaDescription, page.metaKeywords,
+                        page.ogTitle, page.ogDescription, imageUrl, page.noindex, page.nofollow),
+                json, locale, siteUrl + HtmlRenderer.pagePath(page.slug))));
+    }
+
+    private Uni<String> renderProduct(ProductEntity product, String locale) {
+        return ProductPriceEntity.findByProductId(product.id)
+                .map(prices -> prices.stream().collect(Collectors.toMap(p -> p.currency, p -> p.amount)))
+                .chain(prices -> ProductGalleryEntity.findByProductId(product.id)
+                        .chain(galleries -> {
+                            List<UUID> imageIds = galleries.stream()
+                                    .limit(MAX_PRODUCT_IMAGES).map(g -> g.imageId).toList();
+                            return imageIds.isEmpty()
+                                    ? Uni.createFrom().item(List.<String>of())
+                                    : ImageEntity.<ImageEntity>list("id in ?1", imageIds).map(images -> {
+                                        Map<UUID, ImageEntity> byId = images.stream()
+                                                .collect(Collectors.toMap(img -> img.id, img -> img));
+                                        return imageIds.stream().map(byId::get).filter(Objects::nonNull)
+                                                .map(img -> storageService.getUrl(img.storageKey)).toList();
+                                    });
+                        })
+                        .map(galleryUrls -> {
+                            var imageUrls = new ArrayList<String>();
+                            if (product.thumbnailUrl != null) imageUrls.add(product.thumbnailUrl);
+                            galleryUrls.stream().filter(url -> !imageUrls.contains(url)).forEach(imageUrls::add);
+                            return HtmlRenderer.productDocument(objectMapper, new HtmlRenderer.ProductView(
+                                            product.title, product.slug, product.shortDescription, product.description,
+                                            product.metaTitle, product.metaDescription, product.sku,
+                                            product.availability, prices, imageUrls, "Sámo Fujera"),
+                                    locale, siteUrl + HtmlRenderer.productPath(product.slug));
+                        }));
+    }
+
+    private Entry store(Key key, UUID ownerId, String revision, String html, long expiresAtNanos, long loadedAt) {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        var entry = new Entry(ownerId, revision, body, PageDeliveryCache.etag(body), expiresAtNanos);
+        if (generation.get() == loadedAt) {
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+}
@@ -65,11 +65,11 @@ public class ImageAdminResource {
                 ? ImageEntity.find(query, params)
                 : ImageEntity.findAll();
 
-        return pq.page(Page.of(pageIndex, limit)).list()
+        return pq.project(ImageEntity.Summary.class).page(Page.of(pageIndex, limit)).list()
                 .chain(images -> pq.count().map(total -> {
                     int totalPages = (int) Math.ceil((double) total / limit);
                     List<CatalogDtos.ImageDetailResponse> items = images.stream()
-                            .map(this::toImageDetailResponse)
+                            .map(this::toImageListItem)
                             .toList();
                     return RestResponse.ok(AuthDtos.ApiResponse.ok(
                             new CatalogDtos.ImageListResponse(items, page, limit, total, totalPages)));
@@ -176,6 +176,22 @@ public class ImageAdminResource {
                         : RestResponse.status(RestResponse.Status.NOT_FOUND));
     }
 
+    private CatalogDtos.ImageDetailResponse toImageListItem(ImageEntity.Summary img) {
+        return new CatalogDtos.ImageDetailResponse(
+                img.id(),
+                storageService.getUrl(img.storageKey()),
+                img.originalFilename(),
+                img.mimeType(),
+                img.fileSizeBytes() != null ? img.fileSizeBytes() : 0,
+                img.width(),
+                img.height(),
+                img.title(),
+                img.altText(),
+                img.createdAt(),
+                List.of()
+        );
+    }
+
     private CatalogDtos.ImageDetailResponse toImageDetailResponse(ImageEntity img) {
         return new CatalogDtos.ImageDetailResponse(
                 img.id,
@@ -0,0 +1,248 @@
+package cz.samofujera.domain;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Minimal RFC 6902 JSON Patch over Jackson trees: {@link #apply} supports all six
+ * operations, {@link #diff} produces add/remove/replace patches. Arrays are diffed
+ * by trimming the common prefix and suffix, which keeps a patch for an inserted,
+ * removed or edited page block down to that one block.
+ */
+public final class JsonPatch {
+    private JsonPatch() {}
+
+    public static final class PatchException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public PatchException(String message) {
+            super(message);
+        }
+    }
+
+    /** Thrown when a {@code test} operation does not match. */
+    public static final class TestFailedException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public TestFailedException(String path) {
+            super("JSON Patch test failed at " + path);
+        }
+    }
+
+    // ── Apply ───────────────────────────────────────────────────
+
+    public static JsonNode apply(JsonNode document, JsonNode patch) {
+        return applyInPlace(document == null ? JsonNodeFactory.instance.nullNode() : document.deepCopy(), patch);
+    }
+
+    /**
+     * Like {@link #apply} but mutates {@code document}, for callers that own the
+     * tree (e.g. replaying a chain of deltas). The returned node must be used, as
+     * operations on the root replace it.
+     */
+    public static JsonNode applyInPlace(JsonNode document, JsonNode patch) {
+        if (patch == null || !patch.isArray()) {
+            throw new PatchException("Patch must be a JSON array");
+        }
+        JsonNode result = document;
+        for (JsonNode operation : patch) {
+            result = applyOperation(result, operation);
+        }
+        return result;
+    }
+
+    private static JsonNode applyOperation(JsonNode document, JsonNode operation) {
+        String op = requiredText(operation, "op");
+        String path = requiredText(operation, "path");
+        return switch (op) {
+            case "add" -> add(document, path, requiredValue(operation));
+            case "remove" -> {
+                remove(document, path);
+                yield document;
+            }
+            case "replace" -> {
+                if (path.isEmpty()) yield requiredValue(operation).deepCopy();
+                existing(document, path);
+                remove(document, path);
+                yield add(document, path, requiredValue(operation));
+            }
+            case "move" -> {
+                String from = requiredText(operation, "from");
+                if (path.startsWith(from + "/")) {
+                    throw new PatchException("Cannot move " + from + " into its own child " + path);
+                }
+                JsonNode value = existing(document, from);
+                if (from.equals(path)) yield document;
+                remove(document, from);
+                yield add(document, path, value);
+            }
+            case "copy" -> add(document, path, existing(document, requiredText(operation, "from")).deepCopy());
+            case "test" -> {
+                if (!existing(document, path).equals(requiredValue(operation))) {
+                    throw new TestFailedException(path);
+                }
+                yield document;
+            }
+            default -> throw new PatchException("Unknown operation " + op);
+        };
+    }
+
+    private static JsonNode add(JsonNode document, String path, JsonNode value) {
+        if (path.isEmpty()) {
+            return value.deepCopy();
+        }
+        JsonPointer pointer = pointer(path);
+        JsonNode parent = existing(document, pointer.head());
+        String token = pointer.last().getMatchingProperty();
+        if (parent instanceof ObjectNode object) {
+            object.set(token, value.deepCopy());
+        } else if (parent instanceof ArrayNode array) {
+            int index = "-".equals(token) ? array.size() : index(token, path);
+            if (index > array.size()) {
+                throw new PatchException("Index out of bounds: " + path);
+            }
+            array.insert(index, value.deepCopy());
+        } else {
+            throw new PatchException("Parent is not a container: " + path);
+        }
+        return document;
+    }
+
+    private static void remove(JsonNode document, String path) {
+        if (path.isEmpty()) {
+            throw new PatchException("Cannot remove the document root");
+        }
+        JsonPointer pointer = pointer(path);
+        JsonNode parent = existing(document, pointer.head());
+        String token = pointer.last().getMatchingProperty();
+        if (parent instanceof ObjectNode object && object.has(token)) {
+            object.remove(token);
+        } else if (parent instanceof ArrayNode array && index(token, path) < array.size()) {
+            array.remove(index(token, path));
+        } else {
+            throw new PatchException("No value at " + path);
+        }
+    }
+
+    private static JsonNode existing(JsonNode document, String path) {
+        return existing(document, pointer(path));
+    }
+
+    private static JsonNode existing(JsonNode document, JsonPointer pointer) {
+        JsonNode node = document.at(pointer);
+        if (node.isMissingNode()) {
+            throw new PatchException("No value at " + pointer);
+        }
+        return node;
+    }
+
+    private static JsonPointer pointer(String path) {
+        try {
+            return JsonPointer.compile(path);
+        } catch (IllegalArgumentException e) {
+            throw new PatchException("Invalid JSON pointer " + path);
+        }
+    }
+
+    private static int index(String token, String path) {
+        if (token.isEmpty() || (token.length() > 1 && token.charAt(0) == '0') || !token.chars().allMatch(Character::isDigit)) {
+            throw new PatchException("Invalid array index in " + path);
+        }
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new PatchException("Invalid array index in " + path);
+        }
+    }
+
+    private static String requiredText(JsonNode operation, String field) {
+        JsonNode node = operation.get(field);
+        if (node == null || !node.isTextual()) {
+            throw new PatchException("Operation is missing '" + field + "'");
+        }
+        return node.asText();
+    }
+
+    private static JsonNode requiredValue(JsonNode operation) {
+        if (!operation.has("value")) {
+            throw new PatchException("Operation is missing 'value'");
+        }
+        return operation.get("value");
+    }
+
+    // ── Diff ────────────────────────────────────────────────────
+
+    public static ArrayNode diff(JsonNode source, JsonNode target) {
+        ArrayNode operations = JsonNodeFactory.instance.arrayNode();
+        diff("", source, target, operations);
+        return operations;
+    }
+
+    private static void diff(String path, JsonNode source, JsonNode target, ArrayNode operations) {
+        if (source.equals(target)) {
+            return;
+        }
+        if (source.isObject() && target.isObject()) {
+            var removed = new ArrayList<String>();
+            for (Iterator<String> names = source.fieldNames(); names.hasNext(); ) {
+                String name = names.next();
+                if (!target.has(name)) removed.add(name);
+            }
+            for (String name : removed) {
+                operations.add(operation("remove", path + "/" + escape(name), null));
+            }
+            for (Iterator<String> names = target.fieldNames(); names.hasNext(); ) {
+                String name = names.next();
+                String childPath = path + "/" + escape(name);
+                if (source.has(name)) {
+                    diff(childPath, source.get(name), target.get(name), operations);
+                } else {
+                    operations.add(operation("add", childPath, target.get(name)));
+                }
+            }
+        } else if (source.isArray() && target.isArray()) {
+            int shorter = Math.min(source.size(), target.size());
+            int prefix = 0;
+            while (prefix < shorter && source.get(prefix).equals(target.get(prefix))) prefix++;
+            int suffix = 0;
+            while (suffix < shorter - prefix
+                    && source.get(source.size() - 1 - suffix).equals(target.get(target.size() - 1 - suffix))) suffix++;
+
+            int sourceEnd = source.size() - suffix;
+            int targetEnd = target.size() - suffix;
+            int paired = Math.min(sourceEnd, targetEnd) - prefix;
+            for (int i = prefix; i < prefix + paired; i++) {
+                diff(path + "/" + i, source.get(i), target.get(i), operations);
+            }
+            // Remove surplus from the back so earlier indices stay valid
+            for (int i = sourceEnd - 1; i >= prefix + paired; i--) {
+                operations.add(operation("remove", path + "/" + i, null));
+            }
+            for (int i = prefix + paired; i < targetEnd; i++) {
+                operations.add(operation("add", path + "/" + i, target.get(i)));
+            }
+        } else {
+            operations.add(operation("replace", path, target));
+        }
+    }
+
+    private static ObjectNode operation(String op, String path, JsonNode value) {
+        ObjectNode operation = JsonNodeFactory.instance.objectNode();
+        operation.put("op", op);
+        operation.put("path", path);
+        if (value != null) {
+            operation.set("value", value);
+        }
+        return operation;
+    }
+
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+}
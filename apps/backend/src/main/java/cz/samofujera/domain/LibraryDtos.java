@@ -1,28 +1,53 @@
 package cz.samofujera.domain;
 
-import cz.samofujera.domain.entity.EntitlementEntity;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 public final class LibraryDtos {
     private LibraryDtos() {}
 
-    public record EntitlementResponse(
-            UUID id,
-            String sourceType,
-            UUID sourceId,
-            String entityType,
-            UUID entityId,
+    public record LibraryItemResponse(
+            UUID productId,
+            String productTitle,
+            String productSlug,
+            String productType,
+            String thumbnailUrl,
             Instant grantedAt,
-            Instant expiresAt
-    ) {
-        public static EntitlementResponse from(EntitlementEntity e) {
-            return new EntitlementResponse(
-                    e.id, e.sourceType, e.sourceId,
-                    e.entityType, e.entityId,
-                    e.grantedAt, e.expiresAt
-            );
-        }
-    }
+            Instant expiresAt,
+            List<CatalogDtos.ContentResponse> contents,
+            EventAccessResponse event
+    ) {}
+
+    public record EventAccessResponse(
+            UUID eventId,
+            String venue,
+            Integer capacity,
+            boolean isOnline,
+            String streamUrl,
+            List<OccurrenceItem> occurrences
+    ) {}
+
+    public record OccurrenceItem(
+            UUID id,
+            Instant startsAt,
+            Instant endsAt,
+            String status,
+            String streamUrl
+    ) {}
+
+    public record PresenceRequest(
+            @NotBlank @Size(max = 64) String sessionId
+    ) {}
+
+    public record PresenceResponse(
+            String sessionId,
+            boolean active,
+            int activeStreams,
+            int maxStreams,
+            long ttlSeconds
+    ) {}
 }
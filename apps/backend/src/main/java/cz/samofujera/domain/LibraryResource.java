@@ -1,14 +1,17 @@
 package cz.samofujera.domain;
 
 import cz.samofujera.auth.AuthDtos;
-import cz.samofujera.domain.entity.EntitlementEntity;
-import io.quarkus.hibernate.reactive.panache.common.WithSession;
+import cz.samofujera.realtime.PresenceRegistry;
 import io.quarkus.security.Authenticated;
 import io.quarkus.security.identity.SecurityIdentity;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
@@ -27,56 +30,126 @@ public class LibraryResource {
     @Inject
     SecurityIdentity identity;
 
+    @Inject
+    EntitlementIndex entitlements;
+
+    @Inject
+    LibraryService library;
+
+    @Inject
+    PresenceRegistry presence;
+
     @GET
-    @WithSession
-    public Uni<RestResponse<AuthDtos.ApiResponse<List<LibraryDtos.EntitlementResponse>>>> getLibrary() {
+    public Uni<RestResponse<AuthDtos.ApiResponse<List<LibraryDtos.LibraryItemResponse>>>> getLibrary() {
         Long userId = identity.getAttribute("user_id");
 
-        return EntitlementEntity.findActiveByUserId(userId)
-                .onItem().transform(entitlements -> {
-                    var responses = entitlements.stream()
-                            .map(LibraryDtos.EntitlementResponse::from)
-                            .toList();
-                    return RestResponse.ok(AuthDtos.ApiResponse.ok(responses));
-                });
+        return library.library(userId)
+                .onItem().transform(items -> RestResponse.ok(AuthDtos.ApiResponse.ok(items)));
     }
 
     @GET
     @Path("/{productId}/content")
-    @WithSession
-    public Uni<RestResponse<AuthDtos.ApiResponse<List<Object>>>> getProductContent(
+    public Uni<RestResponse<AuthDtos.ApiResponse<List<CatalogDtos.ContentResponse>>>> getProductContent(
             @PathParam("productId") UUID productId) {
 
         Long userId = identity.getAttribute("user_id");
 
-        return EntitlementEntity.findActiveForUserAndEntity(userId, "PRODUCT", productId)
-                .onItem().transform(entitlement -> {
-                    if (entitlement == null) {
-                        return RestResponse.<AuthDtos.ApiResponse<List<Object>>>status(
-                                RestResponse.Status.FORBIDDEN);
+        return entitlements.hasAccess(userId, "PRODUCT", productId)
+                .chain(allowed -> {
+                    if (!allowed) {
+                        return Uni.createFrom().item(RestResponse.<AuthDtos.ApiResponse<List<CatalogDtos.ContentResponse>>>status(
+                                RestResponse.Status.FORBIDDEN));
                     }
-                    // Return empty list - actual content loading would query product_content table
-                    return RestResponse.ok(AuthDtos.ApiResponse.ok(List.<Object>of()));
+                    return library.item(userId, productId)
+                            .onItem().transform(item -> RestResponse.ok(AuthDtos.ApiResponse.ok(
+                                    item != null ? item.contents() : List.<CatalogDtos.ContentResponse>of())));
                 });
     }
 
     @GET
     @Path("/{productId}/event")
-    @WithSession
-    public Uni<RestResponse<AuthDtos.ApiResponse<Object>>> getProductEvent(
+    public Uni<RestResponse<AuthDtos.ApiResponse<LibraryDtos.EventAccessResponse>>> getProductEvent(
             @PathParam("productId") UUID productId) {
 
         Long userId = identity.getAttribute("user_id");
 
-        return EntitlementEntity.findActiveForUserAndEntity(userId, "PRODUCT", productId)
-                .onItem().transform(entitlement -> {
-                    if (entitlement == null) {
-                        return RestResponse.<AuthDtos.ApiResponse<Object>>status(
-                                RestResponse.Status.FORBIDDEN);
+        return entitlements.hasAccess(userId, "PRODUCT", productId)
+                .chain(allowed -> {
+                    if (!allowed) {
+                        return Uni.createFrom().item(RestResponse.<AuthDtos.ApiResponse<LibraryDtos.EventAccessResponse>>status(
+                                RestResponse.Status.FORBIDDEN));
                     }
-                    // Return not found - actual event loading would query events table
-                    return RestResponse.<AuthDtos.ApiResponse<Object>>status(
-                            RestResponse.Status.NOT_FOUND);
+                    return library.item(userId, productId)
+                            .onItem().transform(item -> item == null || item.event() == null
+                                    ? RestResponse.<AuthDtos.ApiResponse<LibraryDtos.EventAccessResponse>>status(
+                                            RestResponse.Status.NOT_FOUND)
+                                    : RestResponse.ok(AuthDtos.ApiResponse.ok(item.event())));
                 });
     }
+
+    /**
+     * Viewer heartbeat for streamed content, sent by the player every few
+     * seconds. A session this node already admitted is renewed in memory without
+     * any lookup; a new one is checked against entitlements and the product's
+     * content, then admitted unless the user already has
+     * {@code app.presence.max-streams} streams of the item open (409).
+     */
+    @POST
+    @Path("/{productId}/content/{contentId}/presence")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<RestResponse<AuthDtos.ApiResponse<LibraryDtos.PresenceResponse>>> heartbeat(
+            @PathParam("productId") UUID productId,
+            @PathParam("contentId") UUID contentId,
+            @Valid LibraryDtos.PresenceRequest request) {
+
+        Long userId = identity.getAttribute("user_id");
+        String sessionId = request.sessionId();
+
+        if (presence.renew(userId, contentId, sessionId)) {
+            return Uni.createFrom().item(RestResponse.ok(AuthDtos.ApiResponse.ok(presenceResponse(sessionId,
+                    new PresenceRegistry.Heartbeat(PresenceRegistry.Outcome.RENEWED,
+                            presence.active(userId, contentId), presence.limit())))));
+        }
+
+        return entitlements.hasAccess(userId, "PRODUCT", productId)
+                .chain(allowed -> {
+                    if (!allowed) {
+                        return Uni.createFrom().item(RestResponse.<AuthDtos.ApiResponse<LibraryDtos.PresenceResponse>>status(
+                                RestResponse.Status.FORBIDDEN));
+                    }
+                    return library.item(userId, productId)
+                            .onItem().transform(item -> {
+                                boolean streamed = item != null && item.contents().stream()
+                                        .anyMatch(c -> c.id().equals(contentId) && c.streamUid() != null);
+                                if (!streamed) {
+                                    return RestResponse.<AuthDtos.ApiResponse<LibraryDtos.PresenceResponse>>status(
+                                            RestResponse.Status.NOT_FOUND);
+                                }
+                                var heartbeat = presence.admit(userId, contentId, sessionId);
+                                var body = AuthDtos.ApiResponse.ok(presenceResponse(sessionId, heartbeat));
+                                return heartbeat.outcome() == PresenceRegistry.Outcome.REJECTED
+                                        ? RestResponse.status(RestResponse.Status.CONFLICT, body)
+                                        : RestResponse.ok(body);
+                            });
+                });
+    }
+
+    /** Frees the session's slot at once, e.g. when the player closes. */
+    @DELETE
+    @Path("/{productId}/content/{contentId}/presence/{sessionId}")
+    public RestResponse<Void> endPresence(
+            @PathParam("productId") UUID productId,
+            @PathParam("contentId") UUID contentId,
+            @PathParam("sessionId") String sessionId) {
+
+        Long userId = identity.getAttribute("user_id");
+        presence.release(userId, contentId, sessionId);
+        return RestResponse.noContent();
+    }
+
+    private LibraryDtos.PresenceResponse presenceResponse(String sessionId, PresenceRegistry.Heartbeat heartbeat) {
+        return new LibraryDtos.PresenceResponse(sessionId,
+                heartbeat.outcome() != PresenceRegistry.Outcome.REJECTED,
+                heartbeat.active(), heartbeat.limit(), presence.ttl().toSeconds());
+    }
 }
@@ -0,0 +1,217 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.domain.entity.EntitlementEntity;
+import cz.samofujera.domain.entity.EventEntity;
+import cz.samofujera.domain.entity.EventOccurrenceEntity;
+import cz.samofujera.domain.entity.ProductContentEntity;
+import cz.samofujera.domain.entity.ProductEntity;
+import cz.samofujera.observability.CacheMetrics;
+import cz.samofujera.realtime.PgNotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A customer's owned products with their content and event schedule.
+ * <p>
+ * The library is hydrated in five batched queries however many products the
+ * user owns (entitlements, products, content, events, occurrences) and cached
+ * per user. Entitlement changes for the user drop the cached library; changes
+ * to products, their content or events drop all of them.
+ * {@code app.library.cache-ttl} bounds staleness should a notification be missed
+ * (e.g. while the LISTEN connection reconnects). Items whose {@code expires_at}
+ * has passed are left out of every read, cached or not, without waiting for
+ * the expiry sweeper.
+ */
+@ApplicationScoped
+public class LibraryService {
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    MeterRegistry meters;
+
+    @ConfigProperty(name = "app.library.cache-ttl", defaultValue = "PT15M")
+    Duration cacheTtl;
+
+    @ConfigProperty(name = "app.library.cache-max-users", defaultValue = "5000")
+    int maxUsers;
+
+    private static final class Entry {
+        final long expiresAtNanos;
+        Uni<List<LibraryDtos.LibraryItemResponse>> items;
+
+        Entry(long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean expired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    private final Map<Long, Entry> byUser = new ConcurrentHashMap<>();
+    private final CacheMetrics cacheMetrics = new CacheMetrics();
+
+    @PostConstruct
+    void registerMetrics() {
+        cacheMetrics.register(meters, "library", byUser::size);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        notifications.stream("entity_changes").subscribe().with(this::onEntityChange,
+                err -> Log.error("Library change listener failed", err));
+    }
+
+    void onEntityChange(JsonObject change) {
+        switch (change.getString("table", "")) {
+            case "entitlements" -> {
+                List<Long> userIds = PgNotificationService.userIds(change);
+                if (userIds != null) {
+                    userIds.forEach(byUser::remove);
+                } else {
+                    byUser.clear();
+                }
+            }
+            case "products", "product_content", "events", "event_occurrences" -> byUser.clear();
+            default -> {
+            }
+        }
+    }
+
+    public Uni<List<LibraryDtos.LibraryItemResponse>> library(Long userId) {
+        long now = System.nanoTime();
+        Entry seen = byUser.get(userId);
+        if (seen != null && !seen.expired(now)) {
+            cacheMetrics.hit();
+            return seen.items.map(items -> current(items, Instant.now()));
+        }
+        cacheMetrics.miss();
+        if (seen == null && byUser.size() >= maxUsers) {
+            byUser.clear();
+        }
+        var fresh = new Entry(now + cacheTtl.toNanos());
+        fresh.items = Panache.withSession(() -> load(userId))
+                .onFailure().invoke(() -> byUser.remove(userId, fresh))
+                .memoize().indefinitely();
+        // Another caller may have started a load for the same user meanwhile; share it
+        Entry winner = byUser.compute(userId, (id, current) ->
+                current != null && current != seen && !current.expired(now) ? current : fresh);
+        return winner.items.map(items -> current(items, Instant.now()));
+    }
+
+    /** The owned product, or a null item when the user does not own it. */
+    public Uni<LibraryDtos.LibraryItemResponse> item(Long userId, UUID productId) {
+        return library(userId).map(items -> items.stream()
+                .filter(item -> item.productId().equals(productId))
+                .findFirst().orElse(null));
+    }
+
+    public void invalidate(Long userId) {
+        byUser.remove(userId);
+    }
+
+    /** {@code items} without those whose access ended by {@code now}. */
+    static List<LibraryDtos.LibraryItemResponse> current(List<LibraryDtos.LibraryItemResponse> items, Instant now) {
+        for (var item : items) {
+            if (item.expiresAt() != null && !item.expiresAt().isAfter(now)) {
+                return items.stream()
+                        .filter(i -> i.expiresAt() == null || i.expiresAt().isAfter(now))
+                        .toList();
+            }
+        }
+        return items;
+    }
+
+    // ── Hydration ───────────────────────────────────────────────
+
+    private record Ownership(Instant grantedAt, Instant expiresAt) {}
+
+    private Uni<List<LibraryDtos.LibraryItemResponse>> load(Long userId) {
+        return EntitlementEntity.<EntitlementEntity>list(
+                        "userId = ?1 and entityType = 'PRODUCT' and entityId is not null and revokedAt is null"
+                                + " and expiredAt is null and (expiresAt is null or expiresAt > ?2) order by grantedAt",
+                        userId, Instant.now())
+                .chain(entitlements -> {
+                    // Several grants for one product: earliest purchase, longest-lived access
+                    Map<UUID, Ownership> owned = new LinkedHashMap<>();
+                    for (EntitlementEntity e : entitlements) {
+                        owned.merge(e.entityId, new Ownership(e.grantedAt, e.expiresAt), (a, b) ->
+                                new Ownership(a.grantedAt(), a.expiresAt() == null || b.expiresAt() == null ? null
+                                        : a.expiresAt().isAfter(b.expiresAt()) ? a.expiresAt() : b.expiresAt()));
+                    }
+                    if (owned.isEmpty()) {
+                        return Uni.createFrom().item(List.<LibraryDtos.LibraryItemResponse>of());
+                    }
+                    List<UUID> productIds = new ArrayList<>(owned.keySet());
+                    return ProductEntity.find("id in ?1", productIds).project(ProductEntity.Summary.class).list()
+                            .chain(products -> ProductContentEntity.<ProductContentEntity>list(
+                                            "productId in ?1 order by sortOrder", productIds)
+                                    .chain(contents -> EventEntity.<EventEntity>list("productId in ?1", productIds)
+                                            .chain(events -> occurrences(events)
+                                                    .map(occurrences -> assemble(owned, products, contents,
+                                                            events, occurrences)))));
+                });
+    }
+
+    private Uni<List<EventOccurrenceEntity>> occurrences(List<EventEntity> events) {
+        if (events.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        return EventOccurrenceEntity.list("eventId in ?1 order by startsAt",
+                events.stream().map(event -> event.id).toList());
+    }
+
+    private static List<LibraryDtos.LibraryItemResponse> assemble(
+            Map<UUID, Ownership> owned, List<ProductEntity.Summary> products,
+            List<ProductContentEntity> contents, List<EventEntity> events,
+            List<EventOccurrenceEntity> occurrences) {
+
+        Map<UUID, ProductEntity.Summary> productById = products.stream()
+                .collect(Collectors.toMap(ProductEntity.Summary::id, p -> p));
+        Map<UUID, List<CatalogDtos.ContentResponse>> contentByProduct = contents.stream()
+                .collect(Collectors.groupingBy(c -> c.productId, Collectors.mapping(c -> new CatalogDtos.ContentResponse(
+                        c.id, c.productId, c.contentType, c.title, c.isPreview,
+                        null, // storage keys stay server-side, files go through /api/delivery
+                        c.originalFilename, c.mimeType, c.fileSizeBytes, c.streamUid,
+                        c.durationSeconds, c.sortOrder, c.createdAt, c.updatedAt), Collectors.toList())));
+        Map<UUID, List<LibraryDtos.OccurrenceItem>> occurrencesByEvent = occurrences.stream()
+                .collect(Collectors.groupingBy(o -> o.eventId, Collectors.mapping(o -> new LibraryDtos.OccurrenceItem(
+                        o.id, o.startsAt, o.endsAt, o.status, o.streamUrl), Collectors.toList())));
+        Map<UUID, LibraryDtos.EventAccessResponse> eventByProduct = events.stream()
+                .collect(Collectors.toMap(e -> e.productId, e -> new LibraryDtos.EventAccessResponse(
+                        e.id, e.venue, e.capacity, e.isOnline, e.streamUrl,
+                        occurrencesByEvent.getOrDefault(e.id, List.of())), (a, b) -> a));
+
+        var items = new ArrayList<LibraryDtos.LibraryItemResponse>(owned.size());
+        owned.forEach((productId, ownership) -> {
+            ProductEntity.Summary product = productById.get(productId);
+            if (product == null) return;
+            items.add(new LibraryDtos.LibraryItemResponse(
+                    product.id(), product.title(), product.slug(), product.productType(), product.thumbnailUrl(),
+                    ownership.grantedAt(), ownership.expiresAt(),
+                    contentByProduct.getOrDefault(productId, List.of()),
+                    eventByProduct.get(productId)));
+        });
+        return items;
+    }
+}
@@ -2,11 +2,11 @@ package cz.samofujera.domain;
 
 import cz.samofujera.auth.AuthDtos;
 import cz.samofujera.domain.entity.MembershipPlanEntity;
-import io.quarkus.hibernate.reactive.panache.common.WithSession;
 import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
@@ -27,16 +27,13 @@ import java.util.UUID;
 @Produces(MediaType.APPLICATION_JSON)
 public class MembershipAdminResource {
 
+    @Inject
+    ReferenceData referenceData;
+
     @GET
-    @WithSession
     public Uni<RestResponse<AuthDtos.ApiResponse<List<MembershipDtos.PlanResponse>>>> listPlans() {
-        return MembershipPlanEntity.findActivePlans()
-                .onItem().transform(plans -> {
-                    var responses = plans.stream()
-                            .map(MembershipDtos.PlanResponse::from)
-                            .toList();
-                    return RestResponse.ok(AuthDtos.ApiResponse.ok(responses));
-                });
+        return referenceData.activePlans()
+                .onItem().transform(responses -> RestResponse.ok(AuthDtos.ApiResponse.ok(responses)));
     }
 
     @POST
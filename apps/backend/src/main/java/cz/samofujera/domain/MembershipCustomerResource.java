@@ -1,7 +1,6 @@
 package cz.samofujera.domain;
 
 import cz.samofujera.auth.AuthDtos;
-import cz.samofujera.domain.entity.MembershipPlanEntity;
 import cz.samofujera.domain.entity.SubscriptionEntity;
 import io.quarkus.hibernate.reactive.panache.common.WithSession;
 import io.quarkus.security.Authenticated;
@@ -26,17 +25,17 @@ public class MembershipCustomerResource {
     @Inject
     SecurityIdentity identity;
 
+    @Inject
+    ReferenceData referenceData;
+
     @GET
     @WithSession
     public Uni<RestResponse<AuthDtos.ApiResponse<MembershipDtos.MembershipOverview>>> getMembership() {
         Long userId = identity.getAttribute("user_id");
 
         return SubscriptionEntity.<SubscriptionEntity>findActiveByUserId(userId)
-                .chain(subscription -> MembershipPlanEntity.<MembershipPlanEntity>findActivePlans()
-                        .map(plans -> {
-                            var planResponses = plans.stream()
-                                    .map(MembershipDtos.PlanResponse::from)
-                                    .toList();
+                .chain(subscription -> referenceData.activePlans()
+                        .map(planResponses -> {
                             var subResponse = subscription != null
                                     ? MembershipDtos.SubscriptionResponse.from(subscription)
                                     : null;
@@ -39,19 +39,21 @@ public class OrderAdminResource {
             @QueryParam("status") String status) {
 
         Uni<Long> countUni;
-        Uni<java.util.List<OrderEntity>> listUni;
+        Uni<java.util.List<OrderEntity.Summary>> listUni;
 
         if (status != null && !status.isBlank()) {
             countUni = OrderEntity.count("status", status);
             listUni = OrderEntity.find("status = ?1 ORDER BY createdAt DESC", status)
+                    .project(OrderEntity.Summary.class)
                     .page(page - 1, limit).list();
         } else {
             countUni = OrderEntity.count();
             listUni = OrderEntity.find("ORDER BY createdAt DESC")
+                    .project(OrderEntity.Summary.class)
                     .page(page - 1, limit).list();
         }
 
-        // Sequential: count first, then list, then enrich each order sequentially
+        // Sequential on one session: count, list, then the items of the page
         return countUni.chain(total -> listUni.chain(orders -> {
             if (orders.isEmpty()) {
                 return Uni.createFrom().item(RestResponse.ok(
@@ -60,17 +62,13 @@ public class OrderAdminResource {
                                 (int) Math.ceil((double) total / limit)))));
             }
 
-            // Enrich each order with items sequentially
-            Uni<List<OrderDtos.OrderListResponse>> enriched = Uni.createFrom().item(
-                    new java.util.ArrayList<OrderDtos.OrderListResponse>());
-            for (OrderEntity order : orders) {
-                enriched = enriched.chain(list ->
-                        OrderItemEntity.findByOrderId(order.id)
-                                .map(items -> {
-                                    list.add(OrderDtos.OrderListResponse.from(order, items));
-                                    return list;
-                                }));
-            }
+            // One query for the items of the whole page
+            Uni<List<OrderDtos.OrderListResponse>> enriched = OrderItemEntity.findByOrderIds(
+                            orders.stream().map(OrderEntity.Summary::id).toList())
+                    .map(itemsByOrder -> orders.stream()
+                            .map(order -> OrderDtos.OrderListResponse.from(order,
+                                    itemsByOrder.getOrDefault(order.id(), List.of())))
+                            .toList());
 
             return enriched.map(responses -> RestResponse.ok(
                     AuthDtos.ApiResponse.ok(new StubDtos.PaginatedResponse<>(
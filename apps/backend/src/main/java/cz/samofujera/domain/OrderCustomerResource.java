@@ -46,10 +46,11 @@ public class OrderCustomerResource {
 
         Long userId = identity.getAttribute("user_id");
 
-        // Sequential: count first, then list, then enrich
+        // Sequential on one session: count, list, then the items of the page
         return OrderEntity.count("userId", userId)
                 .chain(total -> OrderEntity.find("userId = ?1 ORDER BY createdAt DESC", userId)
-                        .page(page - 1, limit).<OrderEntity>list()
+                        .project(OrderEntity.Summary.class)
+                        .page(page - 1, limit).list()
                         .chain(orders -> {
                             if (orders.isEmpty()) {
                                 return Uni.createFrom().item(RestResponse.ok(
@@ -57,17 +58,13 @@ public class OrderCustomerResource {
                                                 List.of(), page, limit, total, 0))));
                             }
 
-                            // Enrich each order with items sequentially
-                            Uni<List<OrderDtos.OrderListResponse>> enriched = Uni.createFrom().item(
-                                    new ArrayList<OrderDtos.OrderListResponse>());
-                            for (OrderEntity order : orders) {
-                                enriched = enriched.chain(list ->
-                                        OrderItemEntity.findByOrderId(order.id)
-                                                .map(items -> {
-                                                    list.add(OrderDtos.OrderListResponse.from(order, items));
-                                                    return list;
-                                                }));
-                            }
+                            // One query for the items of the whole page
+                            Uni<List<OrderDtos.OrderListResponse>> enriched = OrderItemEntity.findByOrderIds(
+                                            orders.stream().map(OrderEntity.Summary::id).toList())
+                                    .map(itemsByOrder -> orders.stream()
+                                            .map(order -> OrderDtos.OrderListResponse.from(order,
+                                                    itemsByOrder.getOrDefault(order.id(), List.of())))
+                                            .toList());
 
                             return enriched.map(responses -> RestResponse.ok(
                                     AuthDtos.ApiResponse.ok(new StubDtos.PaginatedResponse<>(
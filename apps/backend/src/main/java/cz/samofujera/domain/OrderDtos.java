@@ -79,10 +79,10 @@ public final class OrderDtos {
             Instant createdAt,
             List<OrderItemResponse> items
     ) {
-        public static OrderListResponse from(OrderEntity order, List<OrderItemEntity> items) {
+        public static OrderListResponse from(OrderEntity.Summary order, List<OrderItemEntity> items) {
             return new OrderListResponse(
-                    order.id, order.userId, order.status,
-                    order.totalAmount, order.currency, order.createdAt,
+                    order.id(), order.userId(), order.status(),
+                    order.totalAmount(), order.currency(), order.createdAt(),
                     items.stream().map(OrderItemResponse::from).toList()
             );
         }
@@ -1,10 +1,12 @@
 package cz.samofujera.domain;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cz.samofujera.auth.AuthDtos;
 import cz.samofujera.domain.entity.PageEntity;
 import cz.samofujera.domain.entity.PageRevisionEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.common.WithSession;
 import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
 import io.quarkus.panache.common.Page;
@@ -14,8 +16,10 @@ import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import org.jboss.resteasy.reactive.RestResponse;
 
@@ -32,12 +36,29 @@ import java.util.UUID;
 @Produces(MediaType.APPLICATION_JSON)
 public class PageAdminResource {
 
+    static final String JSON_PATCH = "application/json-patch+json";
+
     @Inject
     SecurityIdentity identity;
 
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    PageDeliveryCache deliveryCache;
+
+    @Inject
+    HtmlSnapshotService htmlSnapshots;
+
+    @Inject
+    PagePublisher publisher;
+
+    @Inject
+    PageRevisionStore revisionStore;
+
+    @Inject
+    ScheduledPublishWorker publishWorker;
+
     // ── List pages (paginated + filtered) ──────────────────────
 
     @GET
@@ -77,8 +98,9 @@ public class PageAdminResource {
         // Sequential: count first, then list
         return PageEntity.count(query, params)
                 .chain(totalItems -> PageEntity.find(query, Sort.by("updatedAt", Sort.Direction.Descending), params)
+                        .project(PageEntity.Summary.class)
                         .page(Page.of(pageIndex, limit))
-                        .<PageEntity>list()
+                        .list()
                         .map(entities -> {
                             int totalPages = (int) Math.ceil((double) totalItems / limit);
 
@@ -153,20 +175,40 @@ public class PageAdminResource {
 
     // ── Update page ────────────────────────────────────────────
 
+    /**
+     * Replaces the given fields. {@code If-Match} must carry the page's current
+     * {@code contentVersion} (428 without it, 412 if someone saved in between),
+     * the same check {@link #patchContent} makes; the resulting version is
+     * returned as the ETag.
+     */
     @PUT
     @Path("/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
-    @WithTransaction
     public Uni<RestResponse<AuthDtos.ApiResponse<PageDtos.PageDetailResponse>>> updatePage(
             @PathParam("id") UUID id,
+            @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
             PageDtos.UpdatePageRequest request) {
 
-        return PageEntity.<PageEntity>findById(id)
+        Integer expectedVersion = parseVersionTag(ifMatch);
+        if (expectedVersion == null) {
+            return Uni.createFrom().item(RestResponse.status(RestResponse.Status.PRECONDITION_REQUIRED));
+        }
+
+        // Explicit transaction so the public delivery cache is invalidated only after commit
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id, LockModeType.PESSIMISTIC_WRITE)
                 .onItem().ifNotNull().transformToUni(page -> {
+                    if (page.contentVersion != expectedVersion) {
+                        return Uni.createFrom().item(RestResponse.ResponseBuilder
+                                .<AuthDtos.ApiResponse<PageDtos.PageDetailResponse>>create(
+                                        RestResponse.Status.PRECONDITION_FAILED)
+                                .header(HttpHeaders.ETAG, versionTag(page.contentVersion))
+                                .build());
+                    }
                     if (request.slug() != null) page.slug = request.slug();
                     if (request.title() != null) page.title = request.title();
                     if (request.content() != null) {
                         page.content = serializeContent(request.content());
+                        page.contentVersion++;
                     }
                     if (request.metaTitle() != null) page.metaTitle = request.metaTitle();
                     if (request.metaDescription() != null) page.metaDescription = request.metaDescription();
@@ -180,67 +222,101 @@ public class PageAdminResource {
                     page.updatedAt = Instant.now();
 
                     return page.<PageEntity>persist()
-                            .map(saved -> RestResponse.ok(
-                                    AuthDtos.ApiResponse.ok(toPageDetailResponse(saved))));
+                            .map(saved -> RestResponse.ResponseBuilder
+                                    .ok(AuthDtos.ApiResponse.ok(toPageDetailResponse(saved)))
+                                    .header(HttpHeaders.ETAG, versionTag(saved.contentVersion))
+                                    .build());
                 })
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> {
+                    deliveryCache.invalidatePage(id);
+                    htmlSnapshots.invalidate(id);
+                });
+    }
+
+    // ── Patch page content (JSON Patch) ────────────────────────
+
+    /**
+     * Applies RFC 6902 operations to {@code content} so autosave only sends the
+     * changed blocks. {@code If-Match} must carry the {@code contentVersion} the
+     * patch was made against; the new version is returned as the ETag.
+     */
+    @PATCH
+    @Path("/{id}/content")
+    @Consumes({JSON_PATCH, MediaType.APPLICATION_JSON})
+    public Uni<RestResponse<Void>> patchContent(
+            @PathParam("id") UUID id,
+            @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch,
+            String body) {
+
+        Integer expectedVersion = parseVersionTag(ifMatch);
+        if (expectedVersion == null) {
+            return Uni.createFrom().item(RestResponse.status(RestResponse.Status.PRECONDITION_REQUIRED));
+        }
+        JsonNode patch;
+        try {
+            patch = objectMapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            return Uni.createFrom().item(RestResponse.status(RestResponse.Status.BAD_REQUEST));
+        }
+
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id, LockModeType.PESSIMISTIC_WRITE)
+                .onItem().ifNotNull().transformToUni(page -> {
+                    if (page.contentVersion != expectedVersion) {
+                        return Uni.createFrom().item(RestResponse.ResponseBuilder
+                                .<Void>create(RestResponse.Status.PRECONDITION_FAILED)
+                                .header(HttpHeaders.ETAG, versionTag(page.contentVersion))
+                                .build());
+                    }
+                    try {
+                        JsonNode content = objectMapper.readTree(page.content != null ? page.content : "{}");
+                        page.content = objectMapper.writeValueAsString(JsonPatch.applyInPlace(content, patch));
+                    } catch (JsonPatch.PatchException | JsonProcessingException e) {
+                        return Uni.createFrom().item(RestResponse.<Void>status(RestResponse.Status.BAD_REQUEST));
+                    } catch (JsonPatch.TestFailedException e) {
+                        return Uni.createFrom().item(RestResponse.<Void>status(RestResponse.Status.CONFLICT));
+                    }
+                    page.contentVersion++;
+                    page.updatedAt = Instant.now();
+                    return page.<PageEntity>persist()
+                            .map(saved -> RestResponse.ResponseBuilder.<Void>noContent()
+                                    .header(HttpHeaders.ETAG, versionTag(saved.contentVersion))
+                                    .build());
+                })
+                .onItem().ifNull().continueWith(
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)));
     }
 
     // ── Publish page ───────────────────────────────────────────
 
     @PUT
     @Path("/{id}/publish")
-    @WithTransaction
     public Uni<RestResponse<Void>> publishPage(@PathParam("id") UUID id) {
 
-        return PageEntity.<PageEntity>findById(id)
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(page -> {
                     Long userId = identity.getAttribute("user_id");
 
-                    return PageRevisionEntity.findMaxVersion(page.id)
-                            .chain(maxVersion -> {
-                                var revision = new PageRevisionEntity();
-                                revision.pageId = page.id;
-                                revision.version = maxVersion + 1;
-                                revision.content = page.content;
-                                revision.title = page.title;
-                                revision.slug = page.slug;
-                                revision.metaTitle = page.metaTitle;
-                                revision.metaDescription = page.metaDescription;
-                                revision.metaKeywords = page.metaKeywords;
-                                revision.ogTitle = page.ogTitle;
-                                revision.ogDescription = page.ogDescription;
-                                revision.ogImageId = page.ogImageId;
-                                revision.noindex = page.noindex;
-                                revision.nofollow = page.nofollow;
-                                revision.createdBy = userId;
-                                revision.createdAt = Instant.now();
-
-                                return revision.<PageRevisionEntity>persist();
-                            })
-                            .chain(savedRevision -> {
-                                page.status = "PUBLISHED";
-                                page.publishedAt = Instant.now();
-                                page.publishedRevisionId = savedRevision.id;
-                                page.scheduledPublishAt = null;
-                                page.updatedAt = Instant.now();
-                                return page.persist();
-                            })
+                    return publisher.publish(page, userId)
                             .map(v -> RestResponse.<Void>noContent());
                 })
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> {
+                    deliveryCache.invalidatePage(id);
+                    htmlSnapshots.prewarmPage(id);
+                    publishWorker.cancel(id);
+                });
     }
 
     // ── Unpublish page ─────────────────────────────────────────
 
     @PUT
     @Path("/{id}/unpublish")
-    @WithTransaction
     public Uni<RestResponse<Void>> unpublishPage(@PathParam("id") UUID id) {
 
-        return PageEntity.<PageEntity>findById(id)
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(page -> {
                     page.status = "DRAFT";
                     page.updatedAt = Instant.now();
@@ -248,7 +324,11 @@ public class PageAdminResource {
                             .map(v -> RestResponse.<Void>noContent());
                 })
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> {
+                    deliveryCache.invalidatePage(id);
+                    htmlSnapshots.invalidate(id);
+                });
     }
 
     // ── Schedule publish ───────────────────────────────────────
@@ -256,12 +336,11 @@ public class PageAdminResource {
     @PUT
     @Path("/{id}/schedule")
     @Consumes(MediaType.APPLICATION_JSON)
-    @WithTransaction
     public Uni<RestResponse<Void>> schedulePage(
             @PathParam("id") UUID id,
             @Valid PageDtos.SchedulePublishRequest request) {
 
-        return PageEntity.<PageEntity>findById(id)
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(page -> {
                     page.scheduledPublishAt = request.scheduledPublishAt();
                     page.updatedAt = Instant.now();
@@ -269,17 +348,21 @@ public class PageAdminResource {
                             .map(v -> RestResponse.<Void>noContent());
                 })
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(response -> {
+                    if (response.getStatus() == RestResponse.StatusCode.NO_CONTENT) {
+                        publishWorker.schedule(id, request.scheduledPublishAt());
+                    }
+                });
     }
 
     // ── Cancel scheduled publish ───────────────────────────────
 
     @PUT
     @Path("/{id}/schedule/cancel")
-    @WithTransaction
     public Uni<RestResponse<Void>> cancelSchedule(@PathParam("id") UUID id) {
 
-        return PageEntity.<PageEntity>findById(id)
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(page -> {
                     page.scheduledPublishAt = null;
                     page.updatedAt = Instant.now();
@@ -287,17 +370,17 @@ public class PageAdminResource {
                             .map(v -> RestResponse.<Void>noContent());
                 })
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> publishWorker.cancel(id));
     }
 
     // ── Delete page ────────────────────────────────────────────
 
     @DELETE
     @Path("/{id}")
-    @WithTransaction
     public Uni<RestResponse<Void>> deletePage(@PathParam("id") UUID id) {
 
-        return PageEntity.<PageEntity>findById(id)
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(page -> {
                     if ("SYSTEM".equals(page.pageType) || "PRODUCT".equals(page.pageType)) {
                         return Uni.createFrom().item(
@@ -307,7 +390,12 @@ public class PageAdminResource {
                             .map(v -> RestResponse.<Void>noContent());
                 })
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> {
+                    deliveryCache.invalidatePage(id);
+                    htmlSnapshots.invalidate(id);
+                    publishWorker.cancel(id);
+                });
     }
 
     // ── List revisions ─────────────────────────────────────────
@@ -332,37 +420,42 @@ public class PageAdminResource {
 
     @POST
     @Path("/{id}/revisions/{revisionId}/restore")
-    @WithTransaction
     public Uni<RestResponse<AuthDtos.ApiResponse<PageDtos.PageDetailResponse>>> restoreRevision(
             @PathParam("id") UUID id,
             @PathParam("revisionId") UUID revisionId) {
 
-        return PageEntity.<PageEntity>findById(id)
+        return Panache.withTransaction(() -> PageEntity.<PageEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(page ->
                         PageRevisionEntity.<PageRevisionEntity>findById(revisionId)
-                                .onItem().ifNotNull().transformToUni(revision -> {
-                                    page.content = revision.content;
-                                    page.title = revision.title;
-                                    page.slug = revision.slug;
-                                    page.metaTitle = revision.metaTitle;
-                                    page.metaDescription = revision.metaDescription;
-                                    page.metaKeywords = revision.metaKeywords;
-                                    page.ogTitle = revision.ogTitle;
-                                    page.ogDescription = revision.ogDescription;
-                                    page.ogImageId = revision.ogImageId;
-                                    page.noindex = revision.noindex;
-                                    page.nofollow = revision.nofollow;
-                                    page.updatedAt = Instant.now();
-
-                                    return page.<PageEntity>persist()
-                                            .map(saved -> RestResponse.ok(
-                                                    AuthDtos.ApiResponse.ok(toPageDetailResponse(saved))));
-                                })
+                                .onItem().ifNotNull().transformToUni(revision -> revisionStore.content(revision)
+                                        .chain(content -> {
+                                            page.content = content;
+                                            page.contentVersion++;
+                                            page.title = revision.title;
+                                            page.slug = revision.slug;
+                                            page.metaTitle = revision.metaTitle;
+                                            page.metaDescription = revision.metaDescription;
+                                            page.metaKeywords = revision.metaKeywords;
+                                            page.ogTitle = revision.ogTitle;
+                                            page.ogDescription = revision.ogDescription;
+                                            page.ogImageId = revision.ogImageId;
+                                            page.noindex = revision.noindex;
+                                            page.nofollow = revision.nofollow;
+                                            page.updatedAt = Instant.now();
+
+                                            return page.<PageEntity>persist()
+                                                    .map(saved -> RestResponse.ok(
+                                                            AuthDtos.ApiResponse.ok(toPageDetailResponse(saved))));
+                                        }))
                                 .onItem().ifNull().continueWith(
                                         RestResponse.status(RestResponse.Status.NOT_FOUND))
                 )
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> {
+                    deliveryCache.invalidatePage(id);
+                    htmlSnapshots.invalidate(id);
+                });
     }
 
     // ── Helpers ────────────────────────────────────────────────
@@ -377,13 +470,29 @@ public class PageAdminResource {
         }
     }
 
-    private PageDtos.PageResponse toPageResponse(PageEntity page) {
+    private static String versionTag(int contentVersion) {
+        return "\"" + contentVersion + "\"";
+    }
+
+    private static Integer parseVersionTag(String ifMatch) {
+        if (ifMatch == null) return null;
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        try {
+            return Integer.parseInt(tag);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private PageDtos.PageResponse toPageResponse(PageEntity.Summary page) {
         return new PageDtos.PageResponse(
-                page.id, page.slug, page.title, page.status, page.pageType,
-                page.metaTitle, page.metaDescription, page.ogImageId,
-                page.sortOrder, page.showInNav,
-                page.createdAt, page.updatedAt, page.publishedAt,
-                page.scheduledPublishAt, page.productId);
+                page.id(), page.slug(), page.title(), page.status(), page.pageType(),
+                page.metaTitle(), page.metaDescription(), page.ogImageId(),
+                page.sortOrder(), page.showInNav(),
+                page.createdAt(), page.updatedAt(), page.publishedAt(),
+                page.scheduledPublishAt(), page.productId());
     }
 
     private PageDtos.PageDetailResponse toPageDetailResponse(PageEntity page) {
@@ -395,6 +504,7 @@ public class PageAdminResource {
                 page.noindex, page.nofollow,
                 page.sortOrder, page.showInNav,
                 page.createdAt, page.updatedAt, page.publishedAt,
-                page.scheduledPublishAt, page.publishedRevisionId, page.productId);
+                page.scheduledPublishAt, page.publishedRevisionId, page.productId,
+                page.contentVersion);
     }
 }
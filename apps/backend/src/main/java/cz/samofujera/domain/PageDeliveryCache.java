@@ -0,0 +1,137 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.observability.CacheMetrics;
+import cz.samofujera.realtime.PgNotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.vertx.core.json.JsonObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized public responses of published pages, keyed by slug.
+ * <p>
+ * A published revision never changes, so the JSON body is built once per
+ * {@code publishedRevisionId} and served from memory with a strong ETag.
+ * {@link PageAdminResource} invalidates a page after every committed change
+ * that affects its public response (publish, unpublish, restore, edit, delete);
+ * other nodes learn about it from the {@code pages} entries of the
+ * {@code entity_changes} feed.
+ */
+@ApplicationScoped
+public class PageDeliveryCache {
+
+    public record Entry(UUID pageId, UUID revisionId, byte[] body, String etag) {
+        public boolean matches(String ifNoneMatch) {
+            return etagMatches(etag, ifNoneMatch);
+        }
+    }
+
+    @Inject
+    MeterRegistry meters;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @ConfigProperty(name = "app.pages.delivery-cache.max-entries", defaultValue = "2000")
+    int maxEntries;
+
+    private final Map<String, Entry> bySlug = new ConcurrentHashMap<>();
+    private final CacheMetrics cacheMetrics = new CacheMetrics();
+
+    // Bumped by every invalidation so a load that raced with it is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void registerMetrics() {
+        cacheMetrics.register(meters, "page-delivery", bySlug::size);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        notifications.stream("entity_changes")
+                .filter(change -> "pages".equals(change.getString("table")))
+                .subscribe().with(this::onPageChange,
+                        err -> Log.error("Page delivery change listener failed", err));
+    }
+
+    void onPageChange(JsonObject change) {
+        List<String> ids = PgNotificationService.ids(change);
+        if (ids != null) {
+            ids.forEach(id -> invalidatePage(UUID.fromString(id)));
+        } else {
+            invalidateAll();
+        }
+    }
+
+    public Entry get(String slug) {
+        Entry entry = bySlug.get(slug);
+        if (entry != null) {
+            cacheMetrics.hit();
+        } else {
+            cacheMetrics.miss();
+        }
+        return entry;
+    }
+
+    /** Generation to pass to {@link #put} for a load that starts now. */
+    public long generation() {
+        return generation.get();
+    }
+
+    public Entry put(String slug, UUID pageId, UUID revisionId, byte[] body, long loadedAtGeneration) {
+        var entry = new Entry(pageId, revisionId, body, etag(body));
+        if (generation.get() == loadedAtGeneration) {
+            if (bySlug.size() >= maxEntries) {
+                // Published pages are few; hitting the cap means slug probing, not real traffic
+                bySlug.clear();
+            }
+            bySlug.put(slug, entry);
+        }
+        return entry;
+    }
+
+    public void invalidatePage(UUID pageId) {
+        generation.incrementAndGet();
+        bySlug.values().removeIf(entry -> entry.pageId().equals(pageId));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        bySlug.clear();
+    }
+
+    public int size() {
+        return bySlug.size();
+    }
+
+    static boolean etagMatches(String etag, String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + '"';
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -50,7 +50,8 @@ public final class PageDtos {
             Instant publishedAt,
             Instant scheduledPublishAt,
             UUID publishedRevisionId,
-            UUID productId
+            UUID productId,
+            int contentVersion
     ) {}
 
     public record PublicPageResponse(
@@ -1,13 +1,18 @@
 package cz.samofujera.domain;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import cz.samofujera.auth.AuthDtos;
 import cz.samofujera.domain.entity.PageEntity;
 import cz.samofujera.domain.entity.PageRevisionEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.common.WithSession;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.PermitAll;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import org.jboss.resteasy.reactive.RestResponse;
 
@@ -17,38 +22,57 @@ import org.jboss.resteasy.reactive.RestResponse;
 @Produces(MediaType.APPLICATION_JSON)
 public class PagePublicResource {
 
+    @Inject
+    PageDeliveryCache deliveryCache;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    PageRevisionStore revisionStore;
+
     @GET
     @Path("/{slug}")
-    @WithSession
-    public Uni<RestResponse<AuthDtos.ApiResponse<PageDtos.PublicPageResponse>>> getPageBySlug(
+    public Uni<RestResponse<byte[]>> getPageBySlug(
             @PathParam("slug") String slug,
-            @QueryParam("preview") @DefaultValue("false") boolean preview) {
+            @QueryParam("preview") @DefaultValue("false") boolean preview,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+
+        // Published pages are served from memory, no session is opened
+        if (!preview) {
+            var cached = deliveryCache.get(slug);
+            if (cached != null) {
+                return Uni.createFrom().item(cachedResponse(cached, ifNoneMatch));
+            }
+        }
 
-        return PageEntity.findBySlug(slug)
+        long generation = deliveryCache.generation();
+        return Panache.withSession(() -> PageEntity.findBySlug(slug)
                 .onItem().ifNotNull().transformToUni(page -> {
                     // If not published and not preview mode, return 404
                     if (!"PUBLISHED".equals(page.status) && !preview) {
-                        return Uni.createFrom().item(
-                                RestResponse.<AuthDtos.ApiResponse<PageDtos.PublicPageResponse>>status(
-                                        RestResponse.Status.NOT_FOUND));
+                        return Uni.createFrom().item(RestResponse.<byte[]>status(RestResponse.Status.NOT_FOUND));
                     }
 
                     // Use published revision content if available, else page content
                     if (page.publishedRevisionId != null && !preview) {
                         return PageRevisionEntity.<PageRevisionEntity>findById(page.publishedRevisionId)
-                                .map(revision -> {
-                                    String content = revision != null ? revision.content : page.content;
-                                    return RestResponse.ok(AuthDtos.ApiResponse.ok(
-                                            toPublicResponse(page, content)));
+                                .chain(revision -> revision != null
+                                        ? revisionStore.content(revision)
+                                        : Uni.createFrom().item(page.content))
+                                .map(content -> {
+                                    var entry = deliveryCache.put(slug, page.id, page.publishedRevisionId,
+                                            serialize(toPublicResponse(page, content)), generation);
+                                    return cachedResponse(entry, ifNoneMatch);
                                 });
                     }
 
-                    return Uni.createFrom().item(
-                            RestResponse.ok(AuthDtos.ApiResponse.ok(
-                                    toPublicResponse(page, page.content))));
+                    return Uni.createFrom().item(RestResponse.ResponseBuilder
+                            .ok(serialize(toPublicResponse(page, page.content)), MediaType.APPLICATION_JSON_TYPE)
+                            .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                            .build());
                 })
-                .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                .onItem().ifNull().continueWith(RestResponse.status(RestResponse.Status.NOT_FOUND)));
     }
 
     @GET
@@ -76,6 +100,24 @@ public class PagePublicResource {
                         RestResponse.status(RestResponse.Status.NOT_FOUND));
     }
 
+    private RestResponse<byte[]> cachedResponse(PageDeliveryCache.Entry entry, String ifNoneMatch) {
+        var builder = entry.matches(ifNoneMatch)
+                ? RestResponse.ResponseBuilder.<byte[]>create(RestResponse.Status.NOT_MODIFIED)
+                : RestResponse.ResponseBuilder.ok(entry.body(), MediaType.APPLICATION_JSON_TYPE);
+        return builder
+                .header(HttpHeaders.ETAG, entry.etag())
+                .header(HttpHeaders.CACHE_CONTROL, "public, no-cache")
+                .build();
+    }
+
+    private byte[] serialize(PageDtos.PublicPageResponse response) {
+        try {
+            return objectMapper.writeValueAsBytes(AuthDtos.ApiResponse.ok(response));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize page", e);
+        }
+    }
+
     private PageDtos.PublicPageResponse toPublicResponse(PageEntity page, String content) {
         return new PageDtos.PublicPageResponse(
                 page.id, page.slug, page.title, content,
@@ -0,0 +1,51 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.domain.entity.PageEntity;
+import cz.samofujera.domain.entity.PageRevisionEntity;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.time.Instant;
+
+/**
+ * Snapshots a page into a new revision and makes it the published one.
+ * Must be called inside a transaction; shared by the admin endpoint and
+ * {@link ScheduledPublishWorker}.
+ */
+@ApplicationScoped
+public class PagePublisher {
+
+    @Inject
+    PageRevisionStore revisionStore;
+
+    public Uni<PageEntity> publish(PageEntity page, Long userId) {
+        return Uni.createFrom().deferred(() -> {
+                    var revision = new PageRevisionEntity();
+                    revision.pageId = page.id;
+                    revision.content = page.content;
+                    revision.title = page.title;
+                    revision.slug = page.slug;
+                    revision.metaTitle = page.metaTitle;
+                    revision.metaDescription = page.metaDescription;
+                    revision.metaKeywords = page.metaKeywords;
+                    revision.ogTitle = page.ogTitle;
+                    revision.ogDescription = page.ogDescription;
+                    revision.ogImageId = page.ogImageId;
+                    revision.noindex = page.noindex;
+                    revision.nofollow = page.nofollow;
+                    revision.createdBy = userId;
+                    revision.createdAt = Instant.now();
+
+                    return revisionStore.append(revision);
+                })
+                .chain(savedRevision -> {
+                    page.status = "PUBLISHED";
+                    page.publishedAt = Instant.now();
+                    page.publishedRevisionId = savedRevision.id;
+                    page.scheduledPublishAt = null;
+                    page.updatedAt = Instant.now();
+                    return page.persist();
+                });
+    }
+}
@@ -0,0 +1,154 @@
+package cz.samofujera.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.samofujera.domain.entity.PageRevisionEntity;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores page revisions as full snapshots every {@code snapshot-interval} versions
+ * and JSON Patch deltas in between.
+ * <p>
+ * The newest revision is always kept in full, because it is the one the public
+ * site reads through {@code publishedRevisionId}. When a newer revision is
+ * appended, the previous head is rewritten as a forward delta from its
+ * predecessor, unless it is a snapshot version or the delta would not be
+ * meaningfully smaller. Rebuilding version {@code v} replays at most
+ * {@code snapshot-interval - 1} deltas from the nearest snapshot.
+ */
+@ApplicationScoped
+public class PageRevisionStore {
+
+    public static final String FULL = "FULL";
+    public static final String DELTA = "DELTA";
+    public static final String DELTA_GZIP = "DELTA_GZIP";
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "app.pages.revisions.snapshot-interval", defaultValue = "10")
+    int snapshotInterval;
+
+    @ConfigProperty(name = "app.pages.revisions.compress-deltas", defaultValue = "true")
+    boolean compressDeltas;
+
+    @ConfigProperty(name = "app.pages.revisions.max-delta-ratio", defaultValue = "0.5")
+    double maxDeltaRatio;
+
+    /**
+     * Persists {@code revision} as the page's new head with the next version number.
+     * Must be called inside a transaction.
+     */
+    public Uni<PageRevisionEntity> append(PageRevisionEntity revision) {
+        return PageRevisionEntity.findLatest(revision.pageId)
+                .chain(previous -> {
+                    revision.version = previous == null ? 1 : previous.version + 1;
+                    revision.storage = FULL;
+                    revision.contentDelta = null;
+                    return revision.<PageRevisionEntity>persist()
+                            .call(saved -> previous == null ? Uni.createFrom().voidItem() : compact(previous));
+                });
+    }
+
+    /** Content of any revision, replaying deltas from the nearest snapshot when needed. */
+    public Uni<String> content(PageRevisionEntity revision) {
+        if (FULL.equals(revision.storage)) {
+            return Uni.createFrom().item(revision.content);
+        }
+        return PageRevisionEntity.findVersionRange(revision.pageId,
+                        snapshotVersion(revision.version, snapshotInterval), revision.version)
+                .map(chain -> replay(objectMapper, chain));
+    }
+
+    private Uni<Void> compact(PageRevisionEntity previous) {
+        if (!FULL.equals(previous.storage) || previous.content == null
+                || isSnapshotVersion(previous.version, snapshotInterval)) {
+            return Uni.createFrom().voidItem();
+        }
+        return PageRevisionEntity.findByPageAndVersion(previous.pageId, previous.version - 1)
+                .chain(base -> base == null ? Uni.createFrom().<String>nullItem() : content(base))
+                .invoke(baseContent -> {
+                    if (baseContent == null) return;
+                    byte[] delta = encodeDelta(objectMapper, baseContent, previous.content, compressDeltas);
+                    int fullSize = previous.content.getBytes(StandardCharsets.UTF_8).length;
+                    if (delta.length <= fullSize * maxDeltaRatio) {
+                        // Managed entity, flushed with the surrounding transaction
+                        previous.storage = compressDeltas ? DELTA_GZIP : DELTA;
+                        previous.contentDelta = delta;
+                        previous.content = null;
+                    }
+                })
+                .replaceWithVoid();
+    }
+
+    // ── Encoding ────────────────────────────────────────────────
+
+    static boolean isSnapshotVersion(int version, int interval) {
+        return (version - 1) % interval == 0;
+    }
+
+    static int snapshotVersion(int version, int interval) {
+        return version - (version - 1) % interval;
+    }
+
+    static byte[] encodeDelta(ObjectMapper mapper, String baseContent, String targetContent, boolean compress) {
+        try {
+            JsonNode patch = JsonPatch.diff(mapper.readTree(baseContent), mapper.readTree(targetContent));
+            byte[] bytes = mapper.writeValueAsBytes(patch);
+            return compress ? gzip(bytes) : bytes;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Rebuilds the last revision of an ascending chain that starts at (or after) a full snapshot. */
+    static String replay(ObjectMapper mapper, List<PageRevisionEntity> chain) {
+        int start = chain.size() - 1;
+        while (start >= 0 && !FULL.equals(chain.get(start).storage)) start--;
+        if (start < 0) {
+            throw new IllegalStateException("No full snapshot below revision " + chain.get(chain.size() - 1).version);
+        }
+        try {
+            JsonNode document = mapper.readTree(chain.get(start).content);
+            for (int i = start + 1; i < chain.size(); i++) {
+                var revision = chain.get(i);
+                byte[] bytes = DELTA_GZIP.equals(revision.storage) ? gunzip(revision.contentDelta) : revision.contentDelta;
+                document = JsonPatch.applyInPlace(document, mapper.readTree(bytes));
+            }
+            return mapper.writeValueAsString(document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        var out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) {
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package cz.samofujera.domain;
 
 import cz.samofujera.auth.AuthDtos;
 import cz.samofujera.domain.entity.*;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.PanacheQuery;
 import io.quarkus.hibernate.reactive.panache.common.WithSession;
 import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
@@ -27,6 +28,9 @@ public class ProductAdminResource {
     @jakarta.inject.Inject
     LocalStorageService storageService;
 
+    @jakarta.inject.Inject
+    HtmlSnapshotService htmlSnapshots;
+
     // ── Product CRUD ──────────────────────────────────────────
 
     @GET
@@ -72,7 +76,7 @@ public class ProductAdminResource {
                 ? ProductEntity.find(query, params)
                 : ProductEntity.findAll();
 
-        return pq.page(Page.of(pageIndex, limit)).list()
+        return pq.project(ProductEntity.Summary.class).page(Page.of(pageIndex, limit)).list()
                 .chain(products -> pq.count().chain(total -> {
                     int totalPages = (int) Math.ceil((double) total / limit);
                     if (products.isEmpty()) {
@@ -103,7 +107,7 @@ public class ProductAdminResource {
                         extraParams.map().forEach(params::and);
                     }
                     PanacheQuery<ProductEntity> pq = ProductEntity.find(where.toString(), params);
-                    return pq.page(Page.of(pageIndex, limit)).list()
+                    return pq.project(ProductEntity.Summary.class).page(Page.of(pageIndex, limit)).list()
                             .chain(products -> pq.count().chain(total -> {
                                 int totalPages = (int) Math.ceil((double) total / limit);
                                 if (products.isEmpty()) {
@@ -121,8 +125,8 @@ public class ProductAdminResource {
      * Batch-enrich a list of products with prices and categories sequentially.
      * Loads all prices, then all categories, then all category entities, and assembles in memory.
      */
-    private Uni<List<CatalogDtos.ProductResponse>> enrichProductList(List<ProductEntity> products) {
-        List<UUID> productIds = products.stream().map(p -> p.id).toList();
+    private Uni<List<CatalogDtos.ProductResponse>> enrichProductList(List<ProductEntity.Summary> products) {
+        List<UUID> productIds = products.stream().map(ProductEntity.Summary::id).toList();
         return ProductPriceEntity.<ProductPriceEntity>list("productId in ?1", productIds)
                 .chain(allPrices -> ProductCategoryAssignmentEntity.<ProductCategoryAssignmentEntity>list("productId in ?1", productIds)
                         .chain(allAssignments -> {
@@ -144,22 +148,23 @@ public class ProductAdminResource {
                                         .collect(Collectors.toMap(c -> c.id, c -> c));
 
                                 return products.stream().map(product -> {
-                                    Map<String, BigDecimal> prices = priceMap.getOrDefault(product.id, Map.of());
+                                    Map<String, BigDecimal> prices = priceMap.getOrDefault(product.id(), Map.of());
                                     List<CatalogDtos.CategorySummary> categories = assignmentMap
-                                            .getOrDefault(product.id, List.of()).stream()
+                                            .getOrDefault(product.id(), List.of()).stream()
                                             .map(catEntityMap::get)
                                             .filter(Objects::nonNull)
                                             .map(cat -> new CatalogDtos.CategorySummary(cat.id, cat.name, cat.slug))
                                             .toList();
+                                    // Lists never carry the full description; detail endpoints do
                                     return new CatalogDtos.ProductResponse(
-                                            product.id, product.title, product.slug, product.description,
-                                            product.shortDescription, product.productType, product.status,
-                                            product.thumbnailUrl, product.metaTitle, product.metaDescription,
-                                            product.sku, product.badge, product.comparePriceCzk, product.comparePriceEur,
-                                            product.availability, product.stockLimit, product.weightKg,
-                                            product.ogImageUrl, product.variantCategoryName,
+                                            product.id(), product.title(), product.slug(), null,
+                                            product.shortDescription(), product.productType(), product.status(),
+                                            product.thumbnailUrl(), product.metaTitle(), product.metaDescription(),
+                                            product.sku(), product.badge(), product.comparePriceCzk(), product.comparePriceEur(),
+                                            product.availability(), product.stockLimit(), product.weightKg(),
+                                            product.ogImageUrl(), product.variantCategoryName(),
                                             prices, categories,
-                                            product.createdAt, product.updatedAt);
+                                            product.createdAt(), product.updatedAt());
                                 }).toList();
                             });
                         }));
@@ -215,11 +220,10 @@ public class ProductAdminResource {
     @PUT
     @Path("/{id}")
     @Consumes(MediaType.APPLICATION_JSON)
-    @WithTransaction
     public Uni<RestResponse<AuthDtos.ApiResponse<CatalogDtos.ProductResponse>>> updateProduct(
             @PathParam("id") UUID id,
             CatalogDtos.UpdateProductRequest request) {
-        return ProductEntity.<ProductEntity>findById(id)
+        return Panache.withTransaction(() -> ProductEntity.<ProductEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(product -> {
                     applyUpdateFields(product, request);
                     return product.<ProductEntity>persist()
@@ -229,35 +233,41 @@ public class ProductAdminResource {
                 })
                 .onItem().ifNotNull().transform(resp -> RestResponse.ok(AuthDtos.ApiResponse.ok(resp)))
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> htmlSnapshots.invalidate(id));
     }
 
     @DELETE
     @Path("/{id}")
-    @WithTransaction
     public Uni<RestResponse<Void>> archiveProduct(@PathParam("id") UUID id) {
-        return ProductEntity.<ProductEntity>findById(id)
+        return Panache.withTransaction(() -> ProductEntity.<ProductEntity>findById(id)
                 .onItem().ifNotNull().transformToUni(product -> {
                     product.status = "ARCHIVED";
                     return product.persist().replaceWith(RestResponse.<Void>ok());
                 })
                 .onItem().ifNull().continueWith(
-                        RestResponse.status(RestResponse.Status.NOT_FOUND));
+                        RestResponse.status(RestResponse.Status.NOT_FOUND)))
+                .invoke(() -> htmlSnapshots.invalidate(id));
     }
 
     @DELETE
     @Path("/bulk")
     @Consumes(MediaType.APPLICATION_JSON)
-    @WithTransaction
     public Uni<RestResponse<Void>> bulkDeleteProducts(CatalogDtos.BulkDeleteRequest request) {
         if (request.ids() == null || request.ids().isEmpty()) {
             return Uni.createFrom().item(RestResponse.noContent());
         }
-        Uni<Void> chain = Uni.createFrom().voidItem();
-        for (UUID pid : request.ids()) {
-            chain = chain.chain(() -> ProductEntity.deleteById(pid).replaceWithVoid());
-        }
-        return chain.map(v -> RestResponse.noContent());
+        return Panache.withTransaction(() -> {
+                    Uni<Void> chain = Uni.createFrom().voidItem();
+                    for (UUID pid : request.ids()) {
+                        chain = chain.chain(() -> ProductEntity.deleteById(pid).replaceWithVoid());
+                    }
+                    return chain;
+                })
+                .map(v -> {
+                    request.ids().forEach(htmlSnapshots::invalidate);
+                    return RestResponse.<Void>noContent();
+                });
     }
 
     // ── Product Images (Gallery) ──────────────────────────────
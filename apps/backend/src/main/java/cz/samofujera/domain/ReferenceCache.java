@@ -0,0 +1,128 @@
+package cz.samofujera.domain;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for reference data that changes far less often than it is
+ * read. Create instances through {@link ReferenceCaches#create}, which wires
+ * them to {@code entity_changes} notifications of their tables and to metrics.
+ * <p>
+ * Loads are single-flight: the first miss for a key stores a memoized {@link Uni}
+ * that every concurrent caller shares, and a failed load is forgotten so the
+ * next call retries. Callers on a Vert.x context get the shared result back on
+ * their own context, not on the one of the request that ran the load, so
+ * session-bound code after {@code get} keeps its own Hibernate Reactive session.
+ * <p>
+ * Entries expire after {@code ttl}. At {@code maxEntries} expired entries are
+ * dropped first; if none are, a new key is loaded without being cached, so
+ * entries in use and loads in flight stay put. Values are shared between
+ * requests, so loaders should return immutable values (records,
+ * {@code List.copyOf}) rather than managed entities.
+ */
+public final class ReferenceCache<K, V> {
+
+    public record Stats(String name, int size, long hits, long misses, long loadFailures, long invalidations) {}
+
+    private static final class Entry<V> {
+        final long expiresAtNanos;
+        Uni<V> value;
+
+        Entry(long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean expired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    private final String name;
+    private final Set<String> tables;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Function<K, Uni<V>> loader;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    ReferenceCache(String name, Set<String> tables, Duration ttl, int maxEntries, Function<K, Uni<V>> loader) {
+        this.name = name;
+        this.tables = Set.copyOf(tables);
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.loader = loader;
+    }
+
+    public Uni<V> get(K key) {
+        long now = System.nanoTime();
+        Entry<V> seen = entries.get(key);
+        if (seen != null && !seen.expired(now)) {
+            hits.incrementAndGet();
+            return seen.value;
+        }
+        misses.incrementAndGet();
+        if (seen == null && entries.size() >= maxEntries) {
+            entries.values().removeIf(entry -> entry.expired(now));
+            if (entries.size() >= maxEntries) {
+                return onCallerContext(Uni.createFrom().deferred(() -> loader.apply(key))
+                        .onFailure().invoke(loadFailures::incrementAndGet));
+            }
+        }
+        var fresh = new Entry<V>(now + ttlNanos);
+        fresh.value = Uni.createFrom().deferred(() -> loader.apply(key))
+                .onFailure().invoke(() -> {
+                    loadFailures.incrementAndGet();
+                    entries.remove(key, fresh);
+                })
+                .memoize().indefinitely();
+        // Another caller may have started a load for the same key meanwhile; share it
+        Entry<V> winner = entries.compute(key, (k, current) ->
+                current != null && current != seen && !current.expired(now) ? current : fresh);
+        return onCallerContext(winner.value);
+    }
+
+    /** Resumes the caller on its own context, whichever caller's load produced the value. */
+    private static <V> Uni<V> onCallerContext(Uni<V> shared) {
+        Context context = Vertx.currentContext();
+        if (context == null) {
+            return shared;
+        }
+        return shared.emitOn(task -> context.runOnContext(v -> task.run()));
+    }
+
+    public void invalidate(K key) {
+        invalidations.incrementAndGet();
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Tables whose {@code entity_changes} notifications invalidate this cache. */
+    public Set<String> tables() {
+        return tables;
+    }
+
+    public Stats stats() {
+        return new Stats(name, entries.size(), hits.get(), misses.get(), loadFailures.get(), invalidations.get());
+    }
+}
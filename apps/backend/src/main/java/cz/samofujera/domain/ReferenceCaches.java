@@ -0,0 +1,80 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.realtime.PgNotificationService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Registry of {@link ReferenceCache}s. Any insert, update or delete on one of a
+ * cache's tables (published on {@code entity_changes} by statement triggers)
+ * drops the whole cache on every node, and each cache reports
+ * {@code reference.cache.*} meters tagged with its name.
+ */
+@ApplicationScoped
+public class ReferenceCaches {
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final List<ReferenceCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    void onStart(@Observes StartupEvent event) {
+        notifications.stream("entity_changes").subscribe().with(this::onEntityChange,
+                err -> Log.error("Reference cache change listener failed", err));
+    }
+
+    void onEntityChange(JsonObject change) {
+        String table = change.getString("table");
+        for (ReferenceCache<?, ?> cache : caches) {
+            if (cache.tables().contains(table)) {
+                cache.invalidateAll();
+            }
+        }
+    }
+
+    public <K, V> ReferenceCache<K, V> create(String name, Duration ttl, int maxEntries,
+                                              Set<String> tables, Function<K, Uni<V>> loader) {
+        var cache = new ReferenceCache<>(name, tables, ttl, maxEntries, loader);
+        caches.add(cache);
+        Tags tags = Tags.of("cache", name);
+        Gauge.builder("reference.cache.size", cache, c -> c.stats().size())
+                .tags(tags).description("Entries held by the reference cache").register(registry);
+        FunctionCounter.builder("reference.cache.gets", cache, c -> c.stats().hits())
+                .tags(tags).tag("result", "hit").register(registry);
+        FunctionCounter.builder("reference.cache.gets", cache, c -> c.stats().misses())
+                .tags(tags).tag("result", "miss").register(registry);
+        Gauge.builder("reference.cache.hit.ratio", cache, c -> {
+                    long hits = c.stats().hits();
+                    long total = hits + c.stats().misses();
+                    return total == 0 ? 0 : (double) hits / total;
+                })
+                .tags(tags).register(registry);
+        FunctionCounter.builder("reference.cache.load.failures", cache, c -> c.stats().loadFailures())
+                .tags(tags).register(registry);
+        FunctionCounter.builder("reference.cache.invalidations", cache, c -> c.stats().invalidations())
+                .tags(tags).register(registry);
+        return cache;
+    }
+
+    public List<ReferenceCache.Stats> stats() {
+        return caches.stream().map(ReferenceCache::stats).toList();
+    }
+}
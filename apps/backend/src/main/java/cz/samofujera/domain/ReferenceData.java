@@ -0,0 +1,60 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.domain.entity.CategoryEntity;
+import cz.samofujera.domain.entity.MembershipPlanEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.panache.common.Sort;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/** Cached membership plans and product categories, as immutable responses. */
+@ApplicationScoped
+public class ReferenceData {
+
+    private static final String ALL = "all";
+
+    @Inject
+    ReferenceCaches caches;
+
+    @ConfigProperty(name = "app.cache.reference.ttl", defaultValue = "PT1H")
+    Duration ttl;
+
+    private ReferenceCache<String, List<MembershipDtos.PlanResponse>> plans;
+    private ReferenceCache<String, List<CatalogDtos.CategoryResponse>> categories;
+
+    @PostConstruct
+    void createCaches() {
+        plans = caches.create("membership-plans", ttl, 1, Set.of("membership_plans"),
+                key -> Panache.withSession(MembershipPlanEntity::findActivePlans)
+                        .map(list -> list.stream().map(MembershipDtos.PlanResponse::from).toList()));
+        categories = caches.create("categories", ttl, 1, Set.of("product_categories"),
+                key -> Panache.withSession(() -> CategoryEntity.findAll(Sort.by("sortOrder")).<CategoryEntity>list())
+                        .map(list -> list.stream()
+                                .map(cat -> new CatalogDtos.CategoryResponse(
+                                        cat.id, cat.name, cat.slug, cat.description,
+                                        cat.sortOrder, cat.createdAt, cat.updatedAt))
+                                .toList()));
+    }
+
+    public Uni<List<MembershipDtos.PlanResponse>> activePlans() {
+        return plans.get(ALL);
+    }
+
+    public Uni<List<CatalogDtos.CategoryResponse>> categories() {
+        return categories.get(ALL);
+    }
+
+    /** The category with {@code slug}, or a null item. */
+    public Uni<CatalogDtos.CategoryResponse> categoryBySlug(String slug) {
+        return categories().map(list -> list.stream()
+                .filter(cat -> cat.slug().equals(slug))
+                .findFirst().orElse(null));
+    }
+}
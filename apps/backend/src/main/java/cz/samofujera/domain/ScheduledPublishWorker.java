@@ -0,0 +1,190 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.domain.entity.PageEntity;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.quarkus.vertx.core.runtime.context.VertxContextSafetyToggle;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes pages at their {@code scheduledPublishAt}.
+ * <p>
+ * Schedules inside the upcoming horizon live in a hashed wheel timer, so firing
+ * costs nothing until the instant arrives. Admin schedule/cancel calls update the
+ * wheel immediately. A periodic reload only reads the indexed upcoming window
+ * to pick up schedules made on other nodes, long-range ones entering the horizon
+ * and anything missed while the app was down. When a timer fires, the page is
+ * published under a transaction-scoped advisory lock and only if it is still due,
+ * so with several nodes exactly one publishes.
+ */
+@ApplicationScoped
+public class ScheduledPublishWorker {
+
+    // First key of pg_try_advisory_xact_lock(int, int); the second is the page id hash
+    private static final int LOCK_CLASS = 0x5042;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    PagePublisher publisher;
+
+    @Inject
+    PageDeliveryCache deliveryCache;
+
+    @Inject
+    HtmlSnapshotService htmlSnapshots;
+
+    @ConfigProperty(name = "app.pages.schedule.horizon", defaultValue = "PT30M")
+    Duration horizon;
+
+    @ConfigProperty(name = "app.pages.schedule.tick", defaultValue = "PT0.1S")
+    Duration tick;
+
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+
+    private volatile HashedWheelTimer wheel;
+
+    private record Pending(Instant at, Timeout timeout) {}
+
+    void onStart(@Observes StartupEvent event) {
+        wheel = new HashedWheelTimer(
+                runnable -> {
+                    var thread = new Thread(runnable, "page-publish-wheel");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                tick.toNanos(), TimeUnit.NANOSECONDS, 512);
+        loadUpcoming().subscribe().with(
+                count -> Log.infof("Loaded %d upcoming scheduled page publishes", count),
+                err -> Log.error("Failed to load scheduled page publishes", err));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    /** Arms (or re-arms) the timer for a page; schedules beyond the horizon wait for a reload. */
+    public void schedule(UUID pageId, Instant at) {
+        if (at == null) {
+            cancel(pageId);
+            return;
+        }
+        pending.compute(pageId, (id, existing) -> {
+            if (existing != null) {
+                if (existing.at().equals(at) && !existing.timeout().isExpired()) {
+                    return existing;
+                }
+                existing.timeout().cancel();
+            }
+            if (at.isAfter(Instant.now().plus(horizon))) {
+                return null;
+            }
+            long delayMillis = Math.max(0, Duration.between(Instant.now(), at).toMillis());
+            Timeout timeout = wheel.newTimeout(t -> fire(id, at), delayMillis, TimeUnit.MILLISECONDS);
+            return new Pending(at, timeout);
+        });
+    }
+
+    public void cancel(UUID pageId) {
+        Pending removed = pending.remove(pageId);
+        if (removed != null) {
+            removed.timeout().cancel();
+        }
+    }
+
+    /** When the armed timer of a page fires, or null when none is armed. */
+    Instant pendingAt(UUID pageId) {
+        Pending current = pending.get(pageId);
+        return current != null ? current.at() : null;
+    }
+
+    @Scheduled(every = "${app.pages.schedule.reload-interval:10m}", delayed = "1m",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> reloadUpcoming() {
+        return loadUpcoming().replaceWithVoid();
+    }
+
+    Uni<Integer> loadUpcoming() {
+        return client.preparedQuery("""
+                        SELECT id, scheduled_publish_at FROM pages
+                        WHERE scheduled_publish_at IS NOT NULL AND scheduled_publish_at < $1
+                        """)
+                .execute(Tuple.of(OffsetDateTime.now().plus(horizon)))
+                .map(rows -> {
+                    rows.forEach(row -> schedule(row.getUUID("id"),
+                            row.getOffsetDateTime("scheduled_publish_at").toInstant()));
+                    return rows.rowCount();
+                });
+    }
+
+    private void fire(UUID pageId, Instant at) {
+        pending.computeIfPresent(pageId, (id, current) -> current.at().equals(at) ? null : current);
+
+        // Hibernate Reactive needs a safe duplicated Vert.x context, the wheel thread has none
+        var context = VertxContext.getOrCreateDuplicatedContext(vertx.getDelegate());
+        VertxContextSafetyToggle.setContextSafe(context, true);
+        context.runOnContext(v -> publishIfDue(pageId).subscribe().with(
+                published -> {
+                    if (published) {
+                        Log.infof("Published scheduled page %s (due %s)", pageId, at);
+                    }
+                },
+                err -> Log.errorf(err, "Scheduled publish of page %s failed, will retry on reload", pageId)));
+    }
+
+    Uni<Boolean> publishIfDue(UUID pageId) {
+        return Panache.withTransaction(() -> Panache.getSession()
+                        .chain(session -> session
+                                .createNativeQuery("SELECT pg_try_advisory_xact_lock(:lockClass, hashtext(:pageId))",
+                                        Boolean.class)
+                                .setParameter("lockClass", LOCK_CLASS)
+                                .setParameter("pageId", pageId.toString())
+                                .getSingleResult())
+                        .chain(locked -> {
+                            if (!locked) {
+                                // Another node is publishing this page right now
+                                return Uni.createFrom().item(false);
+                            }
+                            return PageEntity.<PageEntity>find(
+                                            "id = ?1 and scheduledPublishAt <= ?2", pageId, Instant.now())
+                                    .firstResult()
+                                    .chain(page -> page == null
+                                            ? Uni.createFrom().item(false)
+                                            : publisher.publish(page, null).replaceWith(true));
+                        }))
+                .invoke(published -> {
+                    if (published) {
+                        deliveryCache.invalidatePage(pageId);
+                        htmlSnapshots.prewarmPage(pageId);
+                    }
+                });
+    }
+}
@@ -0,0 +1,84 @@
+package cz.samofujera.domain;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.PermitAll;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.reactive.RestResponse;
+
+/**
+ * Complete HTML documents of published pages and active products, for crawlers
+ * and link-preview bots routed here by the edge proxy instead of the Next.js
+ * frontend. Locale comes from {@code ?locale=} or {@code Accept-Language}.
+ */
+@Path("/api/render")
+@ApplicationScoped
+@PermitAll
+@Produces(MediaType.TEXT_HTML)
+public class SeoRenderResource {
+
+    private static final MediaType HTML_UTF8 = MediaType.valueOf("text/html; charset=utf-8");
+
+    @Inject
+    HtmlSnapshotService snapshots;
+
+    @GET
+    @Path("/pages/{slug}")
+    public Uni<RestResponse<byte[]>> renderPage(
+            @PathParam("slug") String slug,
+            @QueryParam("locale") String locale,
+            @HeaderParam(HttpHeaders.ACCEPT_LANGUAGE) String acceptLanguage,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        return snapshots.page(slug, resolveLocale(locale, acceptLanguage))
+                .map(entry -> toResponse(entry, ifNoneMatch));
+    }
+
+    @GET
+    @Path("/products/{slug}")
+    public Uni<RestResponse<byte[]>> renderProduct(
+            @PathParam("slug") String slug,
+            @QueryParam("locale") String locale,
+            @HeaderParam(HttpHeaders.ACCEPT_LANGUAGE) String acceptLanguage,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        return snapshots.product(slug, resolveLocale(locale, acceptLanguage))
+                .map(entry -> toResponse(entry, ifNoneMatch));
+    }
+
+    private RestResponse<byte[]> toResponse(HtmlSnapshotService.Entry entry, String ifNoneMatch) {
+        if (entry == null) {
+            return RestResponse.status(RestResponse.Status.NOT_FOUND);
+        }
+        var builder = entry.matches(ifNoneMatch)
+                ? RestResponse.ResponseBuilder.<byte[]>create(RestResponse.Status.NOT_MODIFIED)
+                : RestResponse.ResponseBuilder.ok(entry.body(), HTML_UTF8);
+        return builder
+                .header(HttpHeaders.ETAG, entry.etag())
+                .header(HttpHeaders.CACHE_CONTROL, "public, no-cache")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE)
+                .build();
+    }
+
+    static String resolveLocale(String requested, String acceptLanguage) {
+        if (requested != null) {
+            return HtmlRenderer.locale(requested);
+        }
+        if (acceptLanguage != null) {
+            for (String range : acceptLanguage.split(",")) {
+                String tag = range.split(";")[0].trim().toLowerCase();
+                String language = tag.length() >= 2 ? tag.substring(0, 2) : tag;
+                if (HtmlRenderer.LOCALES.contains(language)) {
+                    return language;
+                }
+            }
+        }
+        return HtmlRenderer.locale(null);
+    }
+}
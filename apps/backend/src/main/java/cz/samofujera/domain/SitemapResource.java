@@ -0,0 +1,56 @@
+package cz.samofujera.domain;
+
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.core.buffer.Buffer;
+import jakarta.annotation.security.PermitAll;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import org.jboss.resteasy.reactive.ResponseHeader;
+
+/**
+ * Sitemap index, sitemap shards and the product feed. The frontend rewrites
+ * {@code /sitemap.xml} and {@code /sitemaps/*} here.
+ */
+@Path("/api/seo")
+@ApplicationScoped
+@PermitAll
+@Produces("application/xml; charset=utf-8")
+public class SitemapResource {
+
+    @Inject
+    SitemapService sitemaps;
+
+    @GET
+    @Path("/sitemap.xml")
+    @ResponseHeader(name = "Cache-Control", value = "public, max-age=3600")
+    public Multi<Buffer> sitemapIndex() {
+        return sitemaps.index();
+    }
+
+    @GET
+    @Path("/sitemaps/{source:pages|products}-{shard:\\d+}.xml")
+    @ResponseHeader(name = "Cache-Control", value = "public, max-age=3600")
+    public Multi<Buffer> sitemapShard(@PathParam("source") String source, @PathParam("shard") int shard) {
+        if (shard < 1) {
+            throw new NotFoundException();
+        }
+        return sitemaps.shard(source, shard);
+    }
+
+    @GET
+    @Path("/feeds/products.xml")
+    @ResponseHeader(name = "Cache-Control", value = "public, max-age=3600")
+    public Multi<Buffer> productFeed(@QueryParam("currency") @DefaultValue("CZK") String currency) {
+        if (!"CZK".equals(currency) && !"EUR".equals(currency)) {
+            throw new NotFoundException();
+        }
+        return sitemaps.productFeed(currency);
+    }
+}
@@ -0,0 +1,366 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.realtime.PgNotificationService;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Streams {@code sitemap.xml} shards and the Google Merchant product feed
+ * straight from a database cursor, so no document is ever held in memory.
+ * <p>
+ * While a document streams to the client it is also written to a temp file in
+ * {@code app.seo.cache-dir}, which is moved into place only if it completed and
+ * no change to its source tables arrived meanwhile. Later requests stream the
+ * file. Changes to {@code pages}, {@code products} and {@code product_prices}
+ * arrive as {@code entity_changes} notifications and delete the affected files,
+ * along with the HTML snapshots of the changed pages and products.
+ */
+@ApplicationScoped
+public class SitemapService {
+
+    /** Protocol limit of URLs per sitemap file. */
+    public static final int URLS_PER_SHARD = 50_000;
+
+    public static final String PAGES = "pages";
+    public static final String PRODUCTS = "products";
+    private static final String FEED = "feed";
+    private static final String INDEX = "index";
+
+    private static final int FETCH_SIZE = 500;
+    private static final int URLS_PER_CHUNK = 200;
+
+    // Shards are slug ranges: each starts after the last slug of the previous one
+    private static final String PAGE_ROWS = """
+            SELECT slug, published_at, updated_at FROM pages
+            WHERE status = 'PUBLISHED' AND noindex = false AND slug > $1
+            ORDER BY slug LIMIT $2
+            """;
+
+    private static final String PRODUCT_ROWS = """
+            SELECT slug, updated_at FROM products
+            WHERE status = 'ACTIVE' AND slug > $1
+            ORDER BY slug LIMIT $2
+            """;
+
+    // Last slug of every full shard, from one pass over the slug index
+    private static final String PAGE_SHARD_ENDS = """
+            SELECT slug FROM (
+                SELECT slug, row_number() OVER (ORDER BY slug) AS n FROM pages
+                WHERE status = 'PUBLISHED' AND noindex = false
+            ) numbered
+            WHERE n % $1 = 0 ORDER BY slug
+            """;
+
+    private static final String PRODUCT_SHARD_ENDS = """
+            SELECT slug FROM (
+                SELECT slug, row_number() OVER (ORDER BY slug) AS n FROM products
+                WHERE status = 'ACTIVE'
+            ) numbered
+            WHERE n % $1 = 0 ORDER BY slug
+            """;
+
+    private static final String FEED_ROWS = """
+            SELECT p.id, p.slug, p.title, p.short_description, p.meta_description, p.thumbnail_url,
+                   p.og_image_url, p.sku, p.availability, pp.amount
+            FROM products p
+            JOIN product_prices pp ON pp.product_id = p.id AND pp.currency = $1
+            WHERE p.status = 'ACTIVE'
+            ORDER BY p.slug
+            """;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    HtmlSnapshotService htmlSnapshots;
+
+    @ConfigProperty(name = "app.site.url", defaultValue = "http://localhost:3000")
+    String siteUrl;
+
+    @ConfigProperty(name = "app.seo.cache-dir", defaultValue = "seo-cache")
+    String cacheDir;
+
+    // Bumped per source on every change; a file generated across a bump is discarded
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>(Map.of(
+            PAGES, new AtomicLong(), PRODUCTS, new AtomicLong()));
+
+    // Per source, dropped with its files on every change
+    private final Map<String, List<String>> shardEnds = new ConcurrentHashMap<>();
+
+    void onStart(@Observes StartupEvent event) throws Exception {
+        // Files from a previous run may predate changes made while it was down
+        Path dir = Path.of(cacheDir);
+        Files.createDirectories(dir);
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        notifications.stream("entity_changes").subscribe().with(this::onEntityChange,
+                err -> Log.error("Sitemap change listener failed", err));
+    }
+
+    void onEntityChange(JsonObject change) {
+        switch (change.getString("table", "")) {
+            case "pages" -> {
+                invalidate(PAGES, "pages-", INDEX);
+                invalidateSnapshots(change);
+            }
+            case "products" -> {
+                invalidate(PRODUCTS, "products-", FEED, INDEX);
+                invalidateSnapshots(change);
+            }
+            case "product_prices" -> invalidate(PRODUCTS, FEED);
+            default -> {
+            }
+        }
+    }
+
+    /** Drops the rendered HTML of the changed pages or products, or all of it on overflow. */
+    private void invalidateSnapshots(JsonObject change) {
+        List<String> ids = PgNotificationService.ids(change);
+        if (ids != null) {
+            ids.forEach(id -> htmlSnapshots.invalidate(UUID.fromString(id)));
+        } else {
+            htmlSnapshots.invalidateAll();
+        }
+    }
+
+    // ── Documents ───────────────────────────────────────────────
+
+    public Multi<Buffer> index() {
+        return cached(INDEX, List.of(PAGES, PRODUCTS), () -> client.query("""
+                        SELECT (SELECT count(*) FROM pages WHERE status = 'PUBLISHED' AND noindex = false) AS pages,
+                               (SELECT count(*) FROM products WHERE status = 'ACTIVE') AS products
+                        """).execute()
+                .onItem().transformToMulti(rows -> {
+                    Row counts = rows.iterator().next();
+                    var xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                            + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+                    appendShards(xml, PAGES, counts.getLong("pages"));
+                    appendShards(xml, PRODUCTS, counts.getLong("products"));
+                    xml.append("</sitemapindex>\n");
+                    return Multi.createFrom().item(Buffer.buffer(xml.toString()));
+                }));
+    }
+
+    /** One shard of up to {@link #URLS_PER_SHARD} URLs; {@code shard} is 1-based. */
+    public Multi<Buffer> shard(String source, int shard) {
+        boolean pages = PAGES.equals(source);
+        Multi<Row> rows = shardStart(source, shard).onItem().transformToMulti(after -> after.isEmpty()
+                ? Multi.createFrom().<Row>empty()
+                : cursor(pages ? PAGE_ROWS : PRODUCT_ROWS, Tuple.of(after.get(), URLS_PER_SHARD)));
+        return cached(source + "-" + shard, List.of(source), () -> xmlDocument(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n",
+                rows, row -> {
+                    String slug = row.getString("slug");
+                    OffsetDateTime modified = pages && row.getOffsetDateTime("published_at") != null
+                            ? row.getOffsetDateTime("published_at")
+                            : row.getOffsetDateTime("updated_at");
+                    return "<url><loc>" + HtmlRenderer.escape(siteUrl + (pages
+                            ? HtmlRenderer.pagePath(slug) : HtmlRenderer.productPath(slug)))
+                            + "</loc><lastmod>" + modified.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)
+                            + "</lastmod></url>\n";
+                },
+                "</urlset>\n"));
+    }
+
+    /** Google Merchant Center RSS 2.0 feed of active products priced in {@code currency}. */
+    public Multi<Buffer> productFeed(String currency) {
+        return cached(FEED + "-" + currency.toLowerCase(), List.of(PRODUCTS), () -> xmlDocument(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<rss version=\"2.0\" xmlns:g=\"http://base.google.com/ns/1.0\"><channel>\n"
+                        + "<title>Sámo Fujera</title><link>" + HtmlRenderer.escape(siteUrl) + "</link>"
+                        + "<description>Produkty</description>\n",
+                cursor(FEED_ROWS, Tuple.of(currency)), row -> feedItem(row, currency),
+                "</channel></rss>\n"));
+    }
+
+    private String feedItem(Row row, String currency) {
+        String description = row.getString("short_description") != null
+                ? row.getString("short_description") : row.getString("meta_description");
+        String image = row.getString("og_image_url") != null
+                ? row.getString("og_image_url") : row.getString("thumbnail_url");
+        BigDecimal price = row.getBigDecimal("amount");
+        String availability = switch (row.getString("availability")) {
+            case "out_of_stock" -> "out_of_stock";
+            case "preorder" -> "preorder";
+            default -> "in_stock";
+        };
+        var item = new StringBuilder(512).append("<item>")
+                .append("<g:id>").append(row.getUUID("id")).append("</g:id>")
+                .append("<title>").append(HtmlRenderer.escape(row.getString("title"))).append("</title>")
+                .append("<link>").append(HtmlRenderer.escape(siteUrl + HtmlRenderer.productPath(row.getString("slug"))))
+                .append("</link>");
+        if (description != null) {
+            item.append("<description>").append(HtmlRenderer.escape(description)).append("</description>");
+        }
+        if (image != null) {
+            item.append("<g:image_link>").append(HtmlRenderer.escape(image)).append("</g:image_link>");
+        }
+        item.append("<g:price>").append(price.setScale(2, RoundingMode.HALF_UP).toPlainString())
+                .append(' ').append(currency).append("</g:price>")
+                .append("<g:availability>").append(availability).append("</g:availability>")
+                .append("<g:condition>new</g:condition>")
+                .append("<g:brand>Sámo Fujera</g:brand>");
+        if (row.getString("sku") != null) {
+            item.append("<g:mpn>").append(HtmlRenderer.escape(row.getString("sku"))).append("</g:mpn>");
+        } else {
+            item.append("<g:identifier_exists>no</g:identifier_exists>");
+        }
+        return item.append("</item>\n").toString();
+    }
+
+    /**
+     * Slug the shard starts after: empty string for the first shard, nothing
+     * when the shard lies past the last URL.
+     */
+    private Uni<Optional<String>> shardStart(String source, int shard) {
+        if (shard == 1) {
+            return Uni.createFrom().item(Optional.of(""));
+        }
+        return shardEnds(source).map(ends -> shard - 2 < ends.size()
+                ? Optional.of(ends.get(shard - 2)) : Optional.empty());
+    }
+
+    private Uni<List<String>> shardEnds(String source) {
+        List<String> known = shardEnds.get(source);
+        if (known != null) {
+            return Uni.createFrom().item(known);
+        }
+        long generation = generations.get(source).get();
+        return client.preparedQuery(PAGES.equals(source) ? PAGE_SHARD_ENDS : PRODUCT_SHARD_ENDS)
+                .execute(Tuple.of(URLS_PER_SHARD))
+                .map(rows -> {
+                    var ends = new ArrayList<String>(rows.size());
+                    rows.forEach(row -> ends.add(row.getString("slug")));
+                    // Kept only when no change arrived while the query ran
+                    if (generations.get(source).get() == generation) {
+                        shardEnds.put(source, ends);
+                    }
+                    return ends;
+                });
+    }
+
+    private void appendShards(StringBuilder xml, String source, long urls) {
+        long shards = Math.max(1, (urls + URLS_PER_SHARD - 1) / URLS_PER_SHARD);
+        for (long i = 1; i <= shards; i++) {
+            xml.append("<sitemap><loc>").append(HtmlRenderer.escape(siteUrl)).append("/sitemaps/")
+                    .append(source).append('-').append(i).append(".xml</loc></sitemap>\n");
+        }
+    }
+
+    // ── Streaming ───────────────────────────────────────────────
+
+    /** Rows of {@code sql} fetched {@value #FETCH_SIZE} at a time from a server-side cursor. */
+    private Multi<Row> cursor(String sql, Tuple args) {
+        // Postgres cursors live inside a transaction; closing the connection rolls it back
+        return client.getConnection().onItem().transformToMulti(connection -> connection.begin()
+                .chain(() -> connection.prepare(sql))
+                .onItem().transformToMulti(statement -> statement.createStream(FETCH_SIZE, args).toMulti())
+                .onTermination().call(connection::close));
+    }
+
+    private static Multi<Buffer> xmlDocument(String header, Multi<Row> rows, Function<Row, String> element, String footer) {
+        Multi<Buffer> body = rows.group().intoLists().of(URLS_PER_CHUNK).map(batch -> {
+            var chunk = new StringBuilder(batch.size() * 128);
+            batch.forEach(row -> chunk.append(element.apply(row)));
+            return Buffer.buffer(chunk.toString());
+        });
+        return Multi.createBy().concatenating().streams(
+                Multi.createFrom().item(Buffer.buffer(header)), body, Multi.createFrom().item(Buffer.buffer(footer)));
+    }
+
+    /**
+     * Streams the cached file {@code name}.xml if present, otherwise streams
+     * {@code generator} while copying it to disk. The file is opened without
+     * checking first, since an invalidation may delete it at any moment; once
+     * open, a deletion no longer affects the read.
+     */
+    private Multi<Buffer> cached(String name, List<String> sources, Supplier<Multi<Buffer>> generator) {
+        String path = Path.of(cacheDir, name + ".xml").toString();
+        return vertx.fileSystem().open(path, new OpenOptions().setRead(true).setCreate(false))
+                .onItem().transform(file -> file.toMulti().onTermination().call(file::close))
+                .onFailure(SitemapService::isMissing).recoverWithItem(() -> generateToDisk(path, sources, generator.get()))
+                .onItem().transformToMulti(Function.identity());
+    }
+
+    private static boolean isMissing(Throwable failure) {
+        return failure instanceof NoSuchFileException || failure.getCause() instanceof NoSuchFileException;
+    }
+
+    private Multi<Buffer> generateToDisk(String path, List<String> sources, Multi<Buffer> document) {
+        long[] startedAt = sources.stream().mapToLong(source -> generations.get(source).get()).toArray();
+        String temp = path + "." + UUID.randomUUID() + ".tmp";
+        return vertx.fileSystem().open(temp, new OpenOptions().setWrite(true).setCreateNew(true))
+                .onItem().transformToMulti(file -> document
+                        .call(file::write)
+                        .onTermination().call((failure, cancelled) -> {
+                            boolean current = failure == null && !cancelled;
+                            for (int i = 0; i < startedAt.length && current; i++) {
+                                current = generations.get(sources.get(i)).get() == startedAt[i];
+                            }
+                            Uni<Void> finish = current
+                                    ? vertx.fileSystem().move(temp, path,
+                                            new CopyOptions().setReplaceExisting(true).setAtomicMove(true))
+                                    : vertx.fileSystem().delete(temp);
+                            return file.close().chain(() -> finish)
+                                    .onFailure().invoke(err -> Log.warnf(err, "Could not finish %s", path))
+                                    .onFailure().recoverWithNull();
+                        }));
+    }
+
+    private void invalidate(String source, String... prefixes) {
+        generations.get(source).incrementAndGet();
+        shardEnds.remove(source);
+        vertx.fileSystem().readDir(cacheDir).subscribe().with(files -> {
+            for (String file : files) {
+                String name = Path.of(file).getFileName().toString();
+                for (String prefix : prefixes) {
+                    if (name.startsWith(prefix) && name.endsWith(".xml")) {
+                        vertx.fileSystem().delete(file).subscribe().with(v -> {}, err -> {});
+                        break;
+                    }
+                }
+            }
+        }, err -> Log.warn("Could not clear sitemap cache", err));
+    }
+}
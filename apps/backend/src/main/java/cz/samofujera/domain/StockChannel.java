@@ -0,0 +1,328 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.realtime.PgNotificationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes availability and stock of watched products to public SSE viewers.
+ * <p>
+ * {@code entity_changes} for {@code products} and {@code product_variants} only
+ * mark watched products dirty. Every {@code app.stock.push-interval} one query
+ * reloads the dirty products, and each viewer of a product gets a single delta
+ * with what changed since the last push, so a burst of stock updates during a
+ * launch costs at most one message per product per interval, and the number of
+ * viewers never adds queries. A new viewer first gets a full snapshot.
+ */
+@ApplicationScoped
+public class StockChannel {
+
+    record VariantStock(UUID id, int stock, String availability) {}
+
+    record Snapshot(UUID productId, boolean active, String availability, Integer stockLimit,
+                    Map<UUID, VariantStock> variants) {}
+
+    private static final class Viewer {
+        final MultiEmitter<? super JsonObject> emitter;
+        boolean primed;
+
+        Viewer(MultiEmitter<? super JsonObject> emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    private static final class Watch {
+        final Set<Viewer> viewers = ConcurrentHashMap.newKeySet();
+        Snapshot last;
+    }
+
+    private static final String LOAD_SQL = """
+            SELECT p.id, p.status, p.availability, p.stock_limit,
+                   v.id AS variant_id, v.stock, v.availability AS variant_availability
+            FROM products p
+            LEFT JOIN product_variants v ON v.product_id = p.id AND NOT v.hidden
+            WHERE p.id = ANY($3)
+              AND (p.id = ANY($1) OR p.id IN (SELECT product_id FROM product_variants WHERE id = ANY($2)))
+            ORDER BY p.id, v.sort_order
+            """;
+
+    // Messages that fall this far behind end the stream; the client reconnects for a snapshot
+    private static final int VIEWER_BUFFER = 16;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.stock.max-products", defaultValue = "1000")
+    int maxProducts;
+
+    private final Map<UUID, Watch> watches = new ConcurrentHashMap<>();
+    private final Set<UUID> dirtyProducts = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> dirtyVariants = ConcurrentHashMap.newKeySet();
+    private volatile boolean allDirty;
+
+    private Counter messages;
+    private Counter loads;
+
+    @PostConstruct
+    void registerMetrics() {
+        messages = Counter.builder("stock.push.messages")
+                .description("Availability messages written to viewers")
+                .register(registry);
+        loads = Counter.builder("stock.push.loads")
+                .description("Batched availability reloads")
+                .register(registry);
+        Gauge.builder("stock.push.viewers", watches, w -> w.values().stream().mapToInt(x -> x.viewers.size()).sum())
+                .description("Open availability streams")
+                .register(registry);
+        Gauge.builder("stock.push.products", watches, Map::size)
+                .description("Products with at least one viewer")
+                .register(registry);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        notifications.stream("entity_changes").subscribe().with(this::onEntityChange,
+                err -> Log.error("Stock channel change listener failed", err));
+    }
+
+    void onEntityChange(JsonObject change) {
+        if (watches.isEmpty()) {
+            return;
+        }
+        String table = change.getString("table");
+        if (!"products".equals(table) && !"product_variants".equals(table)) {
+            return;
+        }
+        List<String> ids = PgNotificationService.ids(change);
+        // Deleted variants cannot be traced back to their product
+        if (ids == null || ("product_variants".equals(table) && "DELETE".equals(change.getString("operation")))) {
+            allDirty = true;
+            return;
+        }
+        for (String id : ids) {
+            UUID uuid = UUID.fromString(id);
+            if ("products".equals(table)) {
+                if (watches.containsKey(uuid)) dirtyProducts.add(uuid);
+            } else {
+                dirtyVariants.add(uuid);
+            }
+        }
+    }
+
+    /** Availability stream of an active product; completes at once for an unknown slug. */
+    public Multi<JsonObject> watch(String slug) {
+        return client.preparedQuery("SELECT id FROM products WHERE slug = $1 AND status = 'ACTIVE'")
+                .execute(Tuple.of(slug))
+                .onItem().transformToMulti(rows -> {
+                    if (rows.rowCount() == 0) {
+                        return Multi.createFrom().empty();
+                    }
+                    UUID productId = rows.iterator().next().getUUID("id");
+                    return Multi.createFrom().emitter(emitter -> attach(productId, emitter), VIEWER_BUFFER);
+                });
+    }
+
+    private void attach(UUID productId, MultiEmitter<? super JsonObject> emitter) {
+        if (!watches.containsKey(productId) && watches.size() >= maxProducts) {
+            emitter.fail(new IllegalStateException("Too many watched products"));
+            return;
+        }
+        var viewer = new Viewer(emitter);
+        Watch watch = watches.compute(productId, (id, current) -> {
+            Watch target = current != null ? current : new Watch();
+            target.viewers.add(viewer);
+            return target;
+        });
+        synchronized (watch) {
+            if (watch.last != null) {
+                send(viewer, snapshotMessage(watch.last));
+            } else {
+                // Loaded by the next push
+                dirtyProducts.add(productId);
+            }
+        }
+        emitter.onTermination(() -> watches.computeIfPresent(productId, (id, current) -> {
+            current.viewers.remove(viewer);
+            return current.viewers.isEmpty() ? null : current;
+        }));
+    }
+
+    @Scheduled(every = "${app.stock.push-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> push() {
+        if (watches.isEmpty()) {
+            dirtyProducts.clear();
+            dirtyVariants.clear();
+            allDirty = false;
+            return Uni.createFrom().voidItem();
+        }
+        Set<UUID> products = new HashSet<>();
+        if (allDirty) {
+            allDirty = false;
+            products.addAll(watches.keySet());
+        }
+        drainInto(dirtyProducts, products);
+        Set<UUID> variants = new HashSet<>();
+        drainInto(dirtyVariants, variants);
+        if (products.isEmpty() && variants.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        loads.increment();
+        return client.preparedQuery(LOAD_SQL)
+                .execute(Tuple.of(products.toArray(UUID[]::new), variants.toArray(UUID[]::new),
+                        watches.keySet().toArray(UUID[]::new)))
+                .invoke(rows -> {
+                    Map<UUID, Snapshot> loaded = snapshots(rows);
+                    // Watched products that were deleted come back as inactive
+                    for (UUID id : products) {
+                        if (!watches.containsKey(id)) continue;
+                        loaded.putIfAbsent(id, new Snapshot(id, false, null, null, Map.of()));
+                    }
+                    loaded.values().forEach(this::publish);
+                })
+                .onFailure().invoke(err -> {
+                    Log.error("Stock push failed", err);
+                    dirtyProducts.addAll(products);
+                    dirtyVariants.addAll(variants);
+                })
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    private void publish(Snapshot next) {
+        Watch watch = watches.get(next.productId());
+        if (watch == null) {
+            return;
+        }
+        synchronized (watch) {
+            JsonObject delta = watch.last != null ? deltaMessage(watch.last, next) : null;
+            watch.last = next;
+            for (Viewer viewer : watch.viewers) {
+                if (!viewer.primed) {
+                    send(viewer, snapshotMessage(next));
+                } else if (delta != null) {
+                    send(viewer, delta);
+                }
+            }
+        }
+    }
+
+    private void send(Viewer viewer, JsonObject message) {
+        viewer.primed = true;
+        viewer.emitter.emit(message);
+        messages.increment();
+    }
+
+    static JsonObject snapshotMessage(Snapshot snapshot) {
+        JsonArray variants = new JsonArray();
+        snapshot.variants().values().forEach(v -> variants.add(variantJson(v)));
+        return new JsonObject()
+                .put("type", "snapshot")
+                .put("productId", snapshot.productId().toString())
+                .put("active", snapshot.active())
+                .put("availability", snapshot.availability())
+                .put("stockLimit", snapshot.stockLimit())
+                .put("variants", variants);
+    }
+
+    /** Only the fields and variants that changed, or null when nothing did. */
+    static JsonObject deltaMessage(Snapshot previous, Snapshot next) {
+        JsonObject delta = new JsonObject()
+                .put("type", "delta")
+                .put("productId", next.productId().toString());
+        boolean changed = false;
+        if (previous.active() != next.active()) {
+            delta.put("active", next.active());
+            changed = true;
+        }
+        if (!Objects.equals(previous.availability(), next.availability())) {
+            delta.put("availability", next.availability());
+            changed = true;
+        }
+        if (!Objects.equals(previous.stockLimit(), next.stockLimit())) {
+            delta.put("stockLimit", next.stockLimit());
+            changed = true;
+        }
+        JsonArray variants = new JsonArray();
+        next.variants().forEach((id, variant) -> {
+            if (!variant.equals(previous.variants().get(id))) {
+                variants.add(variantJson(variant));
+            }
+        });
+        JsonArray removed = new JsonArray();
+        previous.variants().keySet().stream()
+                .filter(id -> !next.variants().containsKey(id))
+                .forEach(id -> removed.add(id.toString()));
+        if (!variants.isEmpty()) {
+            delta.put("variants", variants);
+            changed = true;
+        }
+        if (!removed.isEmpty()) {
+            delta.put("removedVariants", removed);
+            changed = true;
+        }
+        return changed ? delta : null;
+    }
+
+    private static JsonObject variantJson(VariantStock variant) {
+        return new JsonObject()
+                .put("id", variant.id().toString())
+                .put("stock", variant.stock())
+                .put("availability", variant.availability());
+    }
+
+    private static Map<UUID, Snapshot> snapshots(Iterable<Row> rows) {
+        Map<UUID, Snapshot> result = new HashMap<>();
+        for (Row row : rows) {
+            UUID productId = row.getUUID("id");
+            Snapshot snapshot = result.computeIfAbsent(productId, id -> new Snapshot(id,
+                    "ACTIVE".equals(row.getString("status")), row.getString("availability"),
+                    row.getInteger("stock_limit"), new LinkedHashMap<>()));
+            UUID variantId = row.getUUID("variant_id");
+            if (variantId != null) {
+                snapshot.variants().put(variantId, new VariantStock(variantId, row.getInteger("stock"),
+                        row.getString("variant_availability")));
+            }
+        }
+        return result;
+    }
+
+    private static void drainInto(Set<UUID> source, Set<UUID> target) {
+        for (UUID id : new ArrayList<>(source)) {
+            source.remove(id);
+            target.add(id);
+        }
+    }
+}
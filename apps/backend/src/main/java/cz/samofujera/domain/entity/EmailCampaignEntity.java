@@ -0,0 +1,93 @@
+package cz.samofujera.domain.entity;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "email_campaigns")
+public class EmailCampaignEntity extends PanacheEntityBase {
+
+    @Id
+    @Column(columnDefinition = "uuid")
+    public UUID id;
+
+    @Column(nullable = false)
+    public String name;
+
+    @Column(name = "template_key", nullable = false)
+    public String templateKey;
+
+    @Column(nullable = false)
+    public String locale;
+
+    @Column(nullable = false)
+    public String audience;
+
+    @Column(nullable = false)
+    public String status;
+
+    @Column(name = "rate_per_second", nullable = false)
+    public int ratePerSecond;
+
+    @Column(name = "cursor_user_id", nullable = false)
+    public long cursorUserId;
+
+    @Column(name = "sent_count", nullable = false)
+    public int sentCount;
+
+    @Column(name = "failed_count", nullable = false)
+    public int failedCount;
+
+    @Column(name = "lease_until")
+    public Instant leaseUntil;
+
+    @Column(nullable = false)
+    public int attempts;
+
+    @Column(name = "last_error", columnDefinition = "text")
+    public String lastError;
+
+    @Column(name = "created_by")
+    public Long createdBy;
+
+    @Column(name = "created_at", nullable = false)
+    public Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    public Instant updatedAt;
+
+    @Column(name = "started_at")
+    public Instant startedAt;
+
+    @Column(name = "completed_at")
+    public Instant completedAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (id == null) id = UUID.randomUUID();
+        Instant now = Instant.now();
+        createdAt = now;
+        updatedAt = now;
+        if (status == null) status = "DRAFT";
+        if (audience == null) audience = "ACTIVE_MEMBERS";
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        updatedAt = Instant.now();
+    }
+
+    public static Uni<List<EmailCampaignEntity>> findByStatus(String status) {
+        return list("status", status);
+    }
+}
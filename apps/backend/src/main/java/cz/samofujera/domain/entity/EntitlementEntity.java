@@ -38,6 +38,9 @@ public class EntitlementEntity extends PanacheEntityBase {
     @Column(name = "revoked_at")
     public Instant revokedAt;
 
+    @Column(name = "expired_at")
+    public Instant expiredAt;
+
     @Column(name = "entity_type", nullable = false)
     public String entityType;
 
@@ -51,12 +54,12 @@ public class EntitlementEntity extends PanacheEntityBase {
     }
 
     public static Uni<List<EntitlementEntity>> findActiveByUserId(Long userId) {
-        return list("userId = ?1 AND revokedAt IS NULL AND (expiresAt IS NULL OR expiresAt > ?2)",
+        return list("userId = ?1 AND revokedAt IS NULL AND expiredAt IS NULL AND (expiresAt IS NULL OR expiresAt > ?2)",
                 userId, Instant.now());
     }
 
     public static Uni<EntitlementEntity> findActiveForUserAndEntity(Long userId, String entityType, UUID entityId) {
-        return find("userId = ?1 AND entityType = ?2 AND entityId = ?3 AND revokedAt IS NULL AND (expiresAt IS NULL OR expiresAt > ?4)",
+        return find("userId = ?1 AND entityType = ?2 AND entityId = ?3 AND revokedAt IS NULL AND expiredAt IS NULL AND (expiresAt IS NULL OR expiresAt > ?4)",
                 userId, entityType, entityId, Instant.now()).firstResult();
     }
 }
@@ -0,0 +1,97 @@
+package cz.samofujera.domain.entity;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "entitlement_grant_jobs")
+public class EntitlementGrantJobEntity extends PanacheEntityBase {
+
+    @Id
+    @Column(columnDefinition = "uuid")
+    public UUID id;
+
+    @Column(nullable = false)
+    public String action;
+
+    @Column(nullable = false)
+    public String audience;
+
+    @Column(name = "plan_id")
+    public UUID planId;
+
+    @Column(name = "entity_type", nullable = false)
+    public String entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    public UUID entityId;
+
+    @Column(name = "expires_at")
+    public Instant expiresAt;
+
+    @Column(name = "source_job_id")
+    public UUID sourceJobId;
+
+    @Column(nullable = false)
+    public String status;
+
+    @Column(nullable = false)
+    public int attempts;
+
+    @Column(name = "cursor_user_id", nullable = false)
+    public long cursorUserId;
+
+    @Column(name = "total_count", nullable = false)
+    public int totalCount;
+
+    @Column(name = "processed_count", nullable = false)
+    public int processedCount;
+
+    @Column(name = "affected_count", nullable = false)
+    public int affectedCount;
+
+    @Column(name = "lease_until")
+    public Instant leaseUntil;
+
+    @Column(name = "last_error", columnDefinition = "text")
+    public String lastError;
+
+    @Column(name = "created_by")
+    public Long createdBy;
+
+    @Column(name = "created_at", nullable = false)
+    public Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    public Instant updatedAt;
+
+    @Column(name = "started_at")
+    public Instant startedAt;
+
+    @Column(name = "completed_at")
+    public Instant completedAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (id == null) id = UUID.randomUUID();
+        Instant now = Instant.now();
+        createdAt = now;
+        updatedAt = now;
+        if (status == null) status = "PENDING";
+        if (action == null) action = "GRANT";
+        if (audience == null) audience = "ACTIVE_MEMBERS";
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        updatedAt = Instant.now();
+    }
+}
@@ -52,6 +52,13 @@ public class ImageEntity extends PanacheEntityBase {
     @Column(name = "updated_at", nullable = false)
     public Instant updatedAt;
 
+    /** Media library row: skips source, visibility and update timestamp. */
+    public record Summary(
+            UUID id, String storageKey, String originalFilename, String mimeType,
+            Long fileSizeBytes, Integer width, Integer height,
+            String title, String altText, Instant createdAt
+    ) {}
+
     @PrePersist
     public void prePersist() {
         if (id == null) id = UUID.randomUUID();
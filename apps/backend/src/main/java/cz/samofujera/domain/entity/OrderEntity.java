@@ -72,6 +72,12 @@ public class OrderEntity extends PanacheEntityBase {
         updatedAt = Instant.now();
     }
 
+    /** Order list row: skips addresses and payment references. */
+    public record Summary(
+            UUID id, Long userId, String status, BigDecimal totalAmount,
+            String currency, Instant createdAt
+    ) {}
+
     public static Uni<List<OrderEntity>> findByUserId(Long userId) {
         return list("userId", userId);
     }
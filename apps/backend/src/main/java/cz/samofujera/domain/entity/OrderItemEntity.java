@@ -10,8 +10,11 @@ import jakarta.persistence.Table;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "order_items")
@@ -54,4 +57,10 @@ public class OrderItemEntity extends PanacheEntityBase {
     public static Uni<List<OrderItemEntity>> findByOrderId(UUID orderId) {
         return list("orderId", orderId);
     }
+
+    /** Items of several orders in one query, grouped by order id. */
+    public static Uni<Map<UUID, List<OrderItemEntity>>> findByOrderIds(Collection<UUID> orderIds) {
+        return OrderItemEntity.<OrderItemEntity>list("orderId in ?1", orderIds)
+                .map(items -> items.stream().collect(Collectors.groupingBy(item -> item.orderId)));
+    }
 }
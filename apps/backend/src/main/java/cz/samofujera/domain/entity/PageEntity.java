@@ -38,6 +38,10 @@ public class PageEntity extends PanacheEntityBase {
     @Column(columnDefinition = "jsonb")
     public String content;
 
+    // Bumped on every content change; clients send it back as If-Match when patching
+    @Column(name = "content_version", nullable = false)
+    public int contentVersion;
+
     @Column(name = "meta_title")
     public String metaTitle;
 
@@ -92,6 +96,15 @@ public class PageEntity extends PanacheEntityBase {
     @Column(name = "published_at")
     public Instant publishedAt;
 
+    /** Admin list row: every column except {@code content}. */
+    public record Summary(
+            UUID id, String slug, String title, String status, String pageType,
+            String metaTitle, String metaDescription, UUID ogImageId,
+            int sortOrder, boolean showInNav,
+            Instant createdAt, Instant updatedAt, Instant publishedAt,
+            Instant scheduledPublishAt, UUID productId
+    ) {}
+
     public static Uni<PageEntity> findBySlug(String slug) {
         return find("slug", slug).firstResult();
     }
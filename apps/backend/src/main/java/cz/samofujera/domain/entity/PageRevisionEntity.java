@@ -35,6 +35,12 @@ public class PageRevisionEntity extends PanacheEntityBase {
     @Column(columnDefinition = "jsonb")
     public String content;
 
+    @Column(nullable = false)
+    public String storage = "FULL";
+
+    @Column(name = "content_delta")
+    public byte[] contentDelta;
+
     public String title;
 
     public String slug;
@@ -74,6 +80,19 @@ public class PageRevisionEntity extends PanacheEntityBase {
         return list("pageId", Sort.by("version", Sort.Direction.Descending), pageId);
     }
 
+    public static Uni<PageRevisionEntity> findLatest(UUID pageId) {
+        return find("pageId", Sort.by("version", Sort.Direction.Descending), pageId).firstResult();
+    }
+
+    public static Uni<PageRevisionEntity> findByPageAndVersion(UUID pageId, int version) {
+        return find("pageId = ?1 and version = ?2", pageId, version).firstResult();
+    }
+
+    public static Uni<List<PageRevisionEntity>> findVersionRange(UUID pageId, int fromVersion, int toVersion) {
+        return list("pageId = ?1 and version >= ?2 and version <= ?3",
+                Sort.by("version"), pageId, fromVersion, toVersion);
+    }
+
     public static Uni<Integer> findMaxVersion(UUID pageId) {
         return find("pageId", Sort.by("version", Sort.Direction.Descending), pageId)
                 .firstResult()
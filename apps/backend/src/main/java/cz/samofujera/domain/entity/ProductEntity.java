@@ -93,6 +93,17 @@ public class ProductEntity extends PanacheEntityBase {
         updatedAt = Instant.now();
     }
 
+    /** List card row: every column except the (potentially large) {@code description}. */
+    public record Summary(
+            UUID id, String title, String slug, String shortDescription,
+            String productType, String status, String thumbnailUrl,
+            String metaTitle, String metaDescription, String sku, String badge,
+            BigDecimal comparePriceCzk, BigDecimal comparePriceEur,
+            String availability, Integer stockLimit, BigDecimal weightKg,
+            String ogImageUrl, String variantCategoryName,
+            Instant createdAt, Instant updatedAt
+    ) {}
+
     public static Uni<ProductEntity> findBySlug(String slug) {
         return find("slug", slug).firstResult();
     }
@@ -0,0 +1,113 @@
+package cz.samofujera.email;
+
+import cz.samofujera.domain.HtmlRenderer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code {{placeholder}}} template parsed once into alternating literal and
+ * variable segments. Rendering never re-scans the source HTML, it only appends
+ * the literals and the (HTML-escaped) values, so one instance can be reused for
+ * every recipient of a bulk send and from any thread.
+ */
+public final class CompiledTemplate {
+
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+    private final boolean escape;
+
+    private CompiledTemplate(String[] literals, String[] variables, boolean escape) {
+        this.literals = literals;
+        this.variables = variables;
+        this.escape = escape;
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        this.literalLength = length;
+    }
+
+    /** HTML body template — values are HTML-escaped. */
+    public static CompiledTemplate html(String source) {
+        return compile(source, true);
+    }
+
+    /** Plain-text template (subjects) — values are inserted verbatim. */
+    public static CompiledTemplate text(String source) {
+        return compile(source, false);
+    }
+
+    private static CompiledTemplate compile(String source, boolean escape) {
+        String src = source != null ? source : "";
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+
+        int pos = 0;
+        StringBuilder literal = new StringBuilder();
+        while (pos < src.length()) {
+            int open = src.indexOf("{{", pos);
+            int close = open >= 0 ? src.indexOf("}}", open + 2) : -1;
+            if (open < 0 || close < 0) {
+                literal.append(src, pos, src.length());
+                break;
+            }
+            String name = src.substring(open + 2, close).trim();
+            literal.append(src, pos, open);
+            if (name.isEmpty() || !isIdentifier(name)) {
+                // Not a placeholder (e.g. inline CSS/JS braces) — keep verbatim
+                literal.append(src, open, close + 2);
+            } else {
+                literals.add(literal.toString());
+                variables.add(name);
+                literal.setLength(0);
+            }
+            pos = close + 2;
+        }
+        literals.add(literal.toString());
+
+        return new CompiledTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]), escape);
+    }
+
+    private static boolean isIdentifier(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<String> variables() {
+        return List.of(variables);
+    }
+
+    /** Renders straight into {@code out} without building intermediate strings. */
+    public void render(Map<String, ?> vars, Appendable out) {
+        try {
+            out.append(literals[0]);
+            for (int i = 0; i < variables.length; i++) {
+                Object value = vars != null ? vars.get(variables[i]) : null;
+                if (value != null) {
+                    if (escape) {
+                        HtmlRenderer.escape(String.valueOf(value), out);
+                    } else {
+                        out.append(String.valueOf(value));
+                    }
+                }
+                out.append(literals[i + 1]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String render(Map<String, ?> vars) {
+        var out = new StringBuilder(literalLength + variables.length * 32);
+        render(vars, out);
+        return out.toString();
+    }
+}
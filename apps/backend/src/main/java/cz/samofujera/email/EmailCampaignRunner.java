@@ -0,0 +1,285 @@
+package cz.samofujera.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends a campaign to its audience page by page:
+ * <ul>
+ *   <li>the audience is streamed with keyset paging on {@code users.id}, so only
+ *       one page of recipients is ever held in memory;</li>
+ *   <li>every send takes a token from a {@link TokenBucket} sized to the
+ *       campaign's rate — waiting is a timer, never a blocked thread;</li>
+ *   <li>up to {@code concurrency} SMTP transactions are in flight at once over the
+ *       mailer's connection pool;</li>
+ *   <li>progress (cursor + counters) is persisted after each page, so pause/resume
+ *       and crash recovery continue from the last completed page.</li>
+ * </ul>
+ * A lease on the campaign row makes sure only one node runs a campaign at a time.
+ * It is renewed with every page, and pages are cut to what the rate limit sends
+ * in half a lease, so a slow campaign never outlives its lease mid-page and gets
+ * picked up by a second runner. A run that fails is retried by recovery from the
+ * saved cursor; after {@code app.campaigns.max-attempts} consecutive failures the
+ * campaign is marked FAILED until an admin starts it again.
+ */
+@ApplicationScoped
+public class EmailCampaignRunner {
+
+    private static final String CLAIM_SQL = """
+            UPDATE email_campaigns
+            SET status = 'RUNNING', lease_until = $2, last_error = NULL,
+                attempts = CASE WHEN status = 'RUNNING' THEN attempts ELSE 0 END,
+                started_at = COALESCE(started_at, now()), updated_at = now()
+            WHERE id = $1
+              AND status IN ('DRAFT', 'PAUSED', 'RUNNING', 'FAILED')
+              AND (lease_until IS NULL OR lease_until < now())
+            RETURNING template_key, locale, audience, rate_per_second, cursor_user_id
+            """;
+
+    private static final String ACTIVE_MEMBERS_PAGE_SQL = """
+            SELECT u.id, u.email, u.display_name
+            FROM users u
+            WHERE u.id > $1
+              AND u.is_active
+              AND EXISTS (SELECT 1 FROM subscriptions s WHERE s.user_id = u.id AND s.status = 'ACTIVE')
+            ORDER BY u.id
+            LIMIT $2
+            """;
+
+    private static final String PROGRESS_SQL = """
+            UPDATE email_campaigns
+            SET cursor_user_id = $2,
+                sent_count = sent_count + $3,
+                failed_count = failed_count + $4,
+                attempts = 0,
+                lease_until = CASE WHEN status = 'RUNNING' THEN $5 ELSE NULL END,
+                updated_at = now()
+            WHERE id = $1
+            RETURNING status
+            """;
+
+    // Keeps RUNNING with the lease dropped so recovery retries, until the attempts run out
+    private static final String FAIL_SQL = """
+            UPDATE email_campaigns
+            SET attempts = attempts + 1,
+                status = CASE WHEN attempts + 1 >= $3 THEN 'FAILED' ELSE status END,
+                lease_until = NULL, last_error = $2, updated_at = now()
+            WHERE id = $1 AND status = 'RUNNING'
+            RETURNING status
+            """;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    EmailTemplateEngine templateEngine;
+
+    @Inject
+    EmailService emailService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.campaigns.page-size", defaultValue = "500")
+    int pageSize;
+
+    @ConfigProperty(name = "app.campaigns.concurrency", defaultValue = "4")
+    int concurrency;
+
+    @ConfigProperty(name = "app.campaigns.lease", defaultValue = "PT2M")
+    Duration lease;
+
+    @ConfigProperty(name = "app.campaigns.max-attempts", defaultValue = "5")
+    int maxAttempts;
+
+    private Counter sentCounter;
+    private Counter failedCounter;
+
+    private record Campaign(UUID id, String templateKey, String locale, String audience, TokenBucket bucket,
+                            int pageSize) {}
+
+    private record Recipient(long userId, String email, String name) {}
+
+    private record PageResult(int sent, int failed) {}
+
+    @PostConstruct
+    void registerMetrics() {
+        sentCounter = Counter.builder("email.campaign.messages").tag("result", "sent").register(registry);
+        failedCounter = Counter.builder("email.campaign.messages").tag("result", "failed").register(registry);
+    }
+
+    /**
+     * Claims the campaign and starts sending in the background. Returns false when
+     * the campaign is completed or another runner still holds its lease.
+     */
+    public Uni<Boolean> start(UUID campaignId) {
+        return client.preparedQuery(CLAIM_SQL)
+                .execute(Tuple.of(campaignId, leaseUntil()))
+                .map(rows -> {
+                    if (rows.rowCount() == 0) {
+                        return false;
+                    }
+                    Row row = rows.iterator().next();
+                    int rate = Math.max(1, row.getInteger("rate_per_second"));
+                    var campaign = new Campaign(campaignId, row.getString("template_key"), row.getString("locale"),
+                            row.getString("audience"), new TokenBucket(rate, rate), pageSize(rate));
+                    long cursor = row.getLong("cursor_user_id");
+
+                    Log.infof("Starting email campaign %s from user cursor %d at %d/s", campaignId, cursor, rate);
+                    templateEngine.compiled(campaign.templateKey(), campaign.locale())
+                            .chain(template -> runPages(campaign, template, cursor))
+                            .subscribe().with(
+                                    v -> Log.infof("Email campaign %s stopped", campaignId),
+                                    err -> fail(campaignId, err));
+                    return true;
+                });
+    }
+
+    /** Picks up RUNNING campaigns whose runner died (lease expired). */
+    @Scheduled(every = "${app.campaigns.recovery-interval:1m}", delayed = "30s",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> recoverAbandoned() {
+        return client.query("""
+                        SELECT id FROM email_campaigns
+                        WHERE status = 'RUNNING' AND (lease_until IS NULL OR lease_until < now())
+                        """)
+                .execute()
+                .chain(rows -> {
+                    List<UUID> ids = new ArrayList<>();
+                    rows.forEach(r -> ids.add(r.getUUID("id")));
+                    if (ids.isEmpty()) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    return Multi.createFrom().iterable(ids)
+                            .onItem().transformToUniAndConcatenate(this::start)
+                            .collect().last()
+                            .replaceWithVoid();
+                });
+    }
+
+    private Uni<Void> runPages(Campaign campaign, EmailTemplateEngine.CompiledEmail template, long cursor) {
+        return fetchPage(campaign, cursor).chain(page -> {
+            if (page.isEmpty()) {
+                return complete(campaign.id());
+            }
+            long nextCursor = page.get(page.size() - 1).userId();
+            return sendPage(campaign, template, page)
+                    .chain(result -> saveProgress(campaign.id(), nextCursor, result))
+                    .chain(status -> "RUNNING".equals(status)
+                            ? runPages(campaign, template, nextCursor)
+                            : Uni.createFrom().voidItem());
+        });
+    }
+
+    private Uni<List<Recipient>> fetchPage(Campaign campaign, long cursor) {
+        if (!"ACTIVE_MEMBERS".equals(campaign.audience())) {
+            return Uni.createFrom().failure(new IllegalStateException("Unknown audience " + campaign.audience()));
+        }
+        return client.preparedQuery(ACTIVE_MEMBERS_PAGE_SQL)
+                .execute(Tuple.of(cursor, campaign.pageSize()))
+                .map(rows -> {
+                    List<Recipient> page = new ArrayList<>(rows.rowCount());
+                    rows.forEach(r -> page.add(new Recipient(
+                            r.getLong("id"), r.getString("email"), r.getString("display_name"))));
+                    return page;
+                });
+    }
+
+    private Uni<PageResult> sendPage(Campaign campaign, EmailTemplateEngine.CompiledEmail template,
+                                     List<Recipient> page) {
+        return Multi.createFrom().iterable(page)
+                .onItem().transformToUni(recipient -> throttle(campaign.bucket())
+                        .chain(() -> emailService.send(recipient.email(), template.render(personalize(recipient))))
+                        .map(v -> true)
+                        .onFailure().recoverWithItem(err -> {
+                            Log.warnf("Campaign %s failed to send to user %d: %s",
+                                    campaign.id(), recipient.userId(), err.getMessage());
+                            return false;
+                        }))
+                .merge(concurrency)
+                .collect().asList()
+                .map(results -> {
+                    int sent = (int) results.stream().filter(ok -> ok).count();
+                    sentCounter.increment(sent);
+                    failedCounter.increment(results.size() - sent);
+                    return new PageResult(sent, results.size() - sent);
+                });
+    }
+
+    private static Uni<Void> throttle(TokenBucket bucket) {
+        return Uni.createFrom().deferred(() -> {
+            Duration wait = bucket.reserve();
+            return wait.isZero()
+                    ? Uni.createFrom().voidItem()
+                    : Uni.createFrom().voidItem().onItem().delayIt().by(wait);
+        });
+    }
+
+    private static HashMap<String, Object> personalize(Recipient recipient) {
+        var vars = new HashMap<String, Object>(4);
+        vars.put("name", recipient.name() != null ? recipient.name() : recipient.email());
+        vars.put("email", recipient.email());
+        return vars;
+    }
+
+    private Uni<String> saveProgress(UUID campaignId, long cursor, PageResult result) {
+        return client.preparedQuery(PROGRESS_SQL)
+                .execute(Tuple.of(campaignId, cursor, result.sent(), result.failed(), leaseUntil()))
+                .map(rows -> rows.rowCount() == 0 ? "DELETED" : rows.iterator().next().getString("status"));
+    }
+
+    private Uni<Void> complete(UUID campaignId) {
+        return client.preparedQuery("""
+                        UPDATE email_campaigns
+                        SET status = 'COMPLETED', completed_at = now(), lease_until = NULL, updated_at = now()
+                        WHERE id = $1 AND status = 'RUNNING'
+                        """)
+                .execute(Tuple.of(campaignId))
+                .invoke(() -> Log.infof("Email campaign %s completed", campaignId))
+                .replaceWithVoid();
+    }
+
+    private void fail(UUID campaignId, Throwable err) {
+        Log.errorf(err, "Email campaign %s aborted", campaignId);
+        client.preparedQuery(FAIL_SQL)
+                .execute(Tuple.of(campaignId, String.valueOf(err.getMessage()), maxAttempts))
+                .subscribe().with(rows -> {
+                    if (rows.rowCount() > 0 && "FAILED".equals(rows.iterator().next().getString("status"))) {
+                        Log.errorf("Email campaign %s failed %d times in a row, giving up", campaignId, maxAttempts);
+                    }
+                }, e -> Log.error("Failed to record campaign error", e));
+    }
+
+    /**
+     * Recipients per page: at most {@code app.campaigns.page-size}, and no more
+     * than the rate limit lets through in half a lease, so the lease renewed
+     * with each page outlasts sending it.
+     */
+    int pageSize(int ratePerSecond) {
+        long perHalfLease = ratePerSecond * Math.max(1, lease.toSeconds() / 2);
+        return (int) Math.max(1, Math.min(pageSize, perHalfLease));
+    }
+
+    private OffsetDateTime leaseUntil() {
+        return OffsetDateTime.now(ZoneOffset.UTC).plus(lease);
+    }
+}
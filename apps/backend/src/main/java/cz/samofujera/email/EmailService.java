@@ -0,0 +1,36 @@
+package cz.samofujera.email;
+
+import io.quarkus.mailer.Mail;
+import io.quarkus.mailer.reactive.ReactiveMailer;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Map;
+
+/**
+ * Public API of the email module — resolves a template (default or DB override)
+ * and sends it over the pooled SMTP connections of the reactive mailer.
+ * Request paths should not call {@link #send} directly; they enqueue through
+ * {@code OutboxService} so SMTP latency never blocks checkout or registration.
+ */
+@ApplicationScoped
+public class EmailService {
+
+    @Inject
+    ReactiveMailer mailer;
+
+    @Inject
+    EmailTemplateEngine templateEngine;
+
+    public record RenderedEmail(String subject, String html) {}
+
+    public Uni<RenderedEmail> render(String templateKey, String locale, JsonObject vars) {
+        return templateEngine.render(templateKey, locale, vars != null ? vars.getMap() : Map.of());
+    }
+
+    public Uni<Void> send(String to, RenderedEmail email) {
+        return mailer.send(Mail.withHtml(to, email.subject(), email.html()));
+    }
+}
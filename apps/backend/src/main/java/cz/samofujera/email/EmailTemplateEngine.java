@@ -0,0 +1,164 @@
+package cz.samofujera.email;
+
+import cz.samofujera.domain.ReferenceCache;
+import cz.samofujera.domain.ReferenceCaches;
+import cz.samofujera.domain.entity.EmailTemplateOverrideEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles email templates (classpath defaults plus per-locale DB overrides) once
+ * and caches the compiled form keyed by (templateKey, locale, override version).
+ * <p>
+ * The override table is tiny, so all overrides are held in a {@link ReferenceCache};
+ * after the first load neither rendering nor the admin source/preview endpoints
+ * touch the database. Override changes on any node reach it through
+ * {@code entity_changes}; {@link #invalidate} also drops compiled variants
+ * immediately on the node that made the change.
+ */
+@ApplicationScoped
+public class EmailTemplateEngine {
+
+    /** Override state for one (templateKey, locale); version 0 = no override. */
+    public record OverrideState(long version, String customSubject, String customBodyHtml) {
+        static final OverrideState NONE = new OverrideState(0, null, null);
+
+        public boolean exists() {
+            return version != 0;
+        }
+    }
+
+    public record CompiledEmail(CompiledTemplate subject, CompiledTemplate body) {
+        public EmailService.RenderedEmail render(Map<String, ?> vars) {
+            return new EmailService.RenderedEmail(subject.render(vars), body.render(vars));
+        }
+    }
+
+    private record CacheKey(String templateKey, String locale, long overrideVersion) {}
+
+    private static final String ALL_OVERRIDES = "all";
+
+    private final Map<CacheKey, CompiledEmail> compiled = new ConcurrentHashMap<>();
+    private final Map<String, CompiledTemplate> defaultBodies = new ConcurrentHashMap<>();
+
+    @Inject
+    ReferenceCaches caches;
+
+    @ConfigProperty(name = "app.cache.reference.ttl", defaultValue = "PT1H")
+    Duration overridesTtl;
+
+    private ReferenceCache<String, Map<String, OverrideState>> overrides;
+
+    @PostConstruct
+    void createCache() {
+        overrides = caches.create("email-template-overrides", overridesTtl, 1, Set.of("email_template_overrides"),
+                key -> Panache.withSession(() -> EmailTemplateOverrideEntity.<EmailTemplateOverrideEntity>listAll())
+                        .map(this::index));
+    }
+
+    public Uni<CompiledEmail> compiled(String templateKey, String locale) {
+        String resolvedLocale = locale != null ? locale : EmailTemplates.DEFAULT_LOCALE;
+        return override(templateKey, resolvedLocale)
+                .map(state -> {
+                    var key = new CacheKey(templateKey, resolvedLocale, state.version());
+                    CompiledEmail email = compiled.get(key);
+                    if (email != null) {
+                        return email;
+                    }
+                    // Older versions of the same template can never be hit again
+                    compiled.keySet().removeIf(k -> k.templateKey().equals(templateKey)
+                            && k.locale().equals(resolvedLocale) && k.overrideVersion() != state.version());
+                    return compiled.computeIfAbsent(key, k -> compile(k, state));
+                });
+    }
+
+    public Uni<EmailService.RenderedEmail> render(String templateKey, String locale, Map<String, ?> vars) {
+        return compiled(templateKey, locale).map(email -> email.render(vars));
+    }
+
+    public Uni<OverrideState> override(String templateKey, String locale) {
+        return overrides().map(all -> all.getOrDefault(cacheKey(templateKey, locale), OverrideState.NONE));
+    }
+
+    public Uni<Map<String, OverrideState>> overrides() {
+        return overrides.get(ALL_OVERRIDES);
+    }
+
+    /**
+     * Drops the override snapshot and every compiled variant of (templateKey, locale).
+     * The next render reloads overrides and recompiles under the new version.
+     */
+    public void invalidate(String templateKey, String locale) {
+        overrides.invalidateAll();
+        compiled.keySet().removeIf(key -> key.templateKey().equals(templateKey) && key.locale().equals(locale));
+        Log.debugf("Invalidated email template %s (%s)", templateKey, locale);
+    }
+
+    public void invalidateAll() {
+        overrides.invalidateAll();
+        compiled.clear();
+    }
+
+    private Map<String, OverrideState> index(List<EmailTemplateOverrideEntity> entities) {
+        Map<String, OverrideState> result = new HashMap<>();
+        for (var entity : entities) {
+            long version = entity.updatedAt != null ? entity.updatedAt.toEpochMilli() : 1;
+            result.put(cacheKey(entity.templateKey, entity.locale),
+                    new OverrideState(version, entity.customSubject, entity.customBodyHtml));
+        }
+        return Map.copyOf(result);
+    }
+
+    private CompiledEmail compile(CacheKey key, OverrideState state) {
+        CompiledTemplate subject = CompiledTemplate.text(state.customSubject() != null
+                ? state.customSubject()
+                : EmailTemplates.defaultSubject(key.templateKey(), key.locale()));
+        CompiledTemplate body = state.customBodyHtml() != null
+                ? CompiledTemplate.html(state.customBodyHtml())
+                : defaultBody(key.templateKey(), key.locale());
+        return new CompiledEmail(subject, body);
+    }
+
+    private CompiledTemplate defaultBody(String templateKey, String locale) {
+        return defaultBodies.computeIfAbsent(templateKey + "." + locale, k -> {
+            String location = EmailTemplates.classpathLocation(templateKey, locale);
+            try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(location)) {
+                if (in != null) {
+                    return CompiledTemplate.html(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read email template " + location, e);
+            }
+            // Templates are generated by packages/emails; keep sending usable without the build
+            String subject = EmailTemplates.defaultSubject(templateKey, locale);
+            return CompiledTemplate.html("""
+                    <!DOCTYPE html>
+                    <html>
+                    <head><meta charset="utf-8"><title>%s</title></head>
+                    <body style="font-family: sans-serif; padding: 20px;">
+                    <h1>%s</h1>
+                    </body>
+                    </html>
+                    """.formatted(subject, subject));
+        });
+    }
+
+    private static String cacheKey(String templateKey, String locale) {
+        return templateKey + "." + locale;
+    }
+}
@@ -0,0 +1,51 @@
+package cz.samofujera.email;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of transactional email templates built by {@code packages/emails}
+ * into {@code templates/email/{key}.{locale}.html}.
+ */
+public final class EmailTemplates {
+    private EmailTemplates() {}
+
+    public static final String DEFAULT_LOCALE = "cs";
+
+    public static final Set<String> KNOWN_TEMPLATES = Set.of(
+            "welcome", "password-reset", "account-blocked", "account-unblocked",
+            "account-deleted", "order-confirmation", "digital-delivery"
+    );
+
+    public static final Map<String, Map<String, String>> DEFAULT_SUBJECTS = Map.of(
+            "welcome", Map.of("cs", "Vítejte na Samo Fujera", "sk", "Vitajte na Samo Fujera"),
+            "password-reset", Map.of("cs", "Obnovení hesla", "sk", "Obnovenie hesla"),
+            "account-blocked", Map.of("cs", "Váš účet byl zablokován", "sk", "Váš účet bol zablokovaný"),
+            "account-unblocked", Map.of("cs", "Váš účet byl odblokován", "sk", "Váš účet bol odblokovaný"),
+            "account-deleted", Map.of("cs", "Váš účet byl smazán", "sk", "Váš účet bol zmazaný"),
+            "order-confirmation", Map.of("cs", "Potvrzení objednávky", "sk", "Potvrdenie objednávky"),
+            "digital-delivery", Map.of("cs", "Váš digitální obsah je připraven", "sk", "Váš digitálny obsah je pripravený")
+    );
+
+    /** Sample values for admin previews of {@code {{placeholder}}} fields. */
+    public static final Map<String, Object> PREVIEW_VARS = Map.of(
+            "name", "Jan Novák",
+            "email", "jan.novak@example.com",
+            "orderId", "SF-2026-0042",
+            "total", "1 290 Kč",
+            "resetUrl", "https://samofujera.cz/reset-hesla?token=preview",
+            "downloadUrl", "https://samofujera.cz/knihovna"
+    );
+
+    public static boolean isKnown(String key) {
+        return KNOWN_TEMPLATES.contains(key);
+    }
+
+    public static String defaultSubject(String key, String locale) {
+        return DEFAULT_SUBJECTS.getOrDefault(key, Map.of()).getOrDefault(locale, key);
+    }
+
+    public static String classpathLocation(String key, String locale) {
+        return "templates/email/" + key + "." + locale + ".html";
+    }
+}
@@ -0,0 +1,43 @@
+package cz.samofujera.email;
+
+import java.time.Duration;
+
+/**
+ * Token bucket used to keep bulk sends within the SMTP provider's rate limit.
+ * <p>
+ * {@link #reserve()} never blocks: it takes a token (possibly going into debt)
+ * and returns how long the caller must wait before using it. Callers on the
+ * event loop turn that into a timer instead of sleeping a thread.
+ */
+public final class TokenBucket {
+
+    private final double ratePerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double permitsPerSecond, double burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.ratePerNano = permitsPerSecond / 1_000_000_000.0;
+        this.capacity = Math.max(1, burst);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public Duration reserve() {
+        return Duration.ofNanos(reserveNanos(System.nanoTime()));
+    }
+
+    synchronized long reserveNanos(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * ratePerNano);
+            lastRefillNanos = nowNanos;
+        }
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / ratePerNano);
+    }
+}
@@ -0,0 +1,63 @@
+package cz.samofujera.observability;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Hit and miss counts of an in-process cache, published under Micrometer's
+ * standard cache meter names ({@code cache.gets}, {@code cache.size}) plus a
+ * lifetime {@code cache.hit.ratio}, all tagged with the cache name. Counting
+ * works before {@link #register} is called, so unit tests need no registry.
+ */
+public final class CacheMetrics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public CacheMetrics register(MeterRegistry registry, String cache, IntSupplier size) {
+        FunctionCounter.builder("cache.gets", this, CacheMetrics::hits)
+                .description("Cache lookups")
+                .tag("cache", cache).tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, CacheMetrics::misses)
+                .description("Cache lookups")
+                .tag("cache", cache).tag("result", "miss")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", this, CacheMetrics::hitRatio)
+                .description("Share of lookups answered from the cache since startup")
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder("cache.size", size, s -> s.getAsInt())
+                .description("Entries in the cache")
+                .tag("cache", cache)
+                .strongReference(true)
+                .register(registry);
+        return this;
+    }
+}
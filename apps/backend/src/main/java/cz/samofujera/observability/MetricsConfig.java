@@ -0,0 +1,41 @@
+package cz.samofujera.observability;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+import java.util.Set;
+
+/**
+ * Publishes p50/p95/p99 and a percentile histogram for the latency meters we
+ * alert on: endpoint latency, time spent waiting for a database connection and
+ * event-loop delay. The histogram buckets let Prometheus aggregate quantiles
+ * across instances; the client-side percentiles are for a single node.
+ */
+public class MetricsConfig {
+
+    private static final Set<String> LATENCIES = Set.of(
+            "http.server.requests",
+            "sql.pool.queue.delay",
+            "vertx.eventloop.delay");
+
+    @Produces
+    @Singleton
+    public MeterFilter latencyPercentiles() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!LATENCIES.contains(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentiles(0.5, 0.95, 0.99)
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
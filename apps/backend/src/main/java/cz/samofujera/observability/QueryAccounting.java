@@ -0,0 +1,82 @@
+package cz.samofujera.observability;
+
+import io.vertx.core.Context;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * SQL statements one HTTP request ran and the time they took, keyed by
+ * statement shape so that a loop issuing the same query per row shows up as
+ * one shape with a high count. Lives in the request's Vert.x context, which
+ * both Hibernate Reactive and the plain {@code Pool} execute on.
+ */
+public final class QueryAccounting {
+
+    private static final String KEY = QueryAccounting.class.getName();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("(?<![\\w$])\\d+(?:\\.\\d+)?");
+    private static final Pattern PARAMETER = Pattern.compile("\\$\\d+|\\?");
+    private static final Pattern LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final LongAdder nanos = new LongAdder();
+    private final Map<String, AtomicInteger> shapes = new ConcurrentHashMap<>();
+
+    /** Starts accounting for the request handled on {@code context}. */
+    static QueryAccounting begin(Context context) {
+        var accounting = new QueryAccounting();
+        context.putLocal(KEY, accounting);
+        return accounting;
+    }
+
+    /** The accounting of the request {@code context} belongs to, or null outside of one. */
+    static QueryAccounting of(Context context) {
+        return context != null ? context.getLocal(KEY) : null;
+    }
+
+    void record(String sql, long elapsedNanos) {
+        statements.incrementAndGet();
+        nanos.add(elapsedNanos);
+        if (sql != null) {
+            shapes.computeIfAbsent(shape(sql), s -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    public int statements() {
+        return statements.get();
+    }
+
+    public long nanos() {
+        return nanos.sum();
+    }
+
+    /** Shapes run more than {@code threshold} times, most repeated first. */
+    public Map<String, Integer> repeated(int threshold) {
+        var result = new LinkedHashMap<String, Integer>();
+        shapes.entrySet().stream()
+                .filter(e -> e.getValue().get() > threshold)
+                .sorted((a, b) -> Integer.compare(b.getValue().get(), a.getValue().get()))
+                .forEach(e -> result.put(e.getKey(), e.getValue().get()));
+        return result;
+    }
+
+    /**
+     * The statement with literals and bind parameters replaced by {@code ?}
+     * and IN lists of any length folded into one, so the same query issued for
+     * different rows has the same shape.
+     */
+    static String shape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER.matcher(shape).replaceAll("?");
+        shape = PARAMETER.matcher(shape).replaceAll("?");
+        shape = LIST.matcher(shape).replaceAll("(?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,113 @@
+package cz.samofujera.observability;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.vertx.http.runtime.filters.Filters;
+import io.smallrye.common.vertx.VertxContext;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements and database time of every HTTP request.
+ * <p>
+ * Per route template they go to the {@code http.server.db.statements} and
+ * {@code http.server.db.time} histograms. A request that runs one statement
+ * shape more than {@code app.db.n-plus-one-threshold} times is logged as a
+ * likely per-row query loop and counted in {@code http.server.db.repeated}.
+ * With {@code app.db.query-headers} (dev and test) the totals are also sent as
+ * {@code X-DB-Queries} and {@code Server-Timing} response headers.
+ */
+@ApplicationScoped
+public class QueryAccountingFilter {
+
+    public static final String QUERIES_HEADER = "X-DB-Queries";
+
+    // Set by the REST layer once the request is matched to a resource method
+    private static final String URL_PATH_TEMPLATE = "UrlPathTemplate";
+
+    @Inject
+    MeterRegistry meters;
+
+    @ConfigProperty(name = "app.db.n-plus-one-threshold", defaultValue = "10")
+    int repeatThreshold;
+
+    @ConfigProperty(name = "app.db.query-headers", defaultValue = "false")
+    boolean queryHeaders;
+
+    public void init(@Observes Filters filters) {
+        // Ahead of the other filters, so whatever they query is counted too
+        filters.register(this::handle, 100);
+    }
+
+    private void handle(RoutingContext ctx) {
+        // Each request runs on its own duplicated context; never account on a shared one
+        Context context = Vertx.currentContext();
+        if (context == null || !VertxContext.isDuplicatedContext(context)) {
+            ctx.next();
+            return;
+        }
+        QueryAccounting accounting = QueryAccounting.begin(context);
+        if (queryHeaders) {
+            ctx.response().headersEndHandler(v -> ctx.response().headers()
+                    .set(QUERIES_HEADER, String.valueOf(accounting.statements()))
+                    .set("Server-Timing", "db;dur=%.1f;desc=\"%d queries\"".formatted(
+                            accounting.nanos() / 1e6, accounting.statements())));
+        }
+        ctx.addEndHandler(ar -> report(ctx, context, accounting));
+        ctx.next();
+    }
+
+    private void report(RoutingContext ctx, Context context, QueryAccounting accounting) {
+        if (accounting.statements() == 0) {
+            return;
+        }
+        String method = ctx.request().method().name();
+        String template = context.getLocal(URL_PATH_TEMPLATE);
+        String uri = template != null ? template : "UNKNOWN";
+
+        DistributionSummary.builder("http.server.db.statements")
+                .description("SQL statements per HTTP request")
+                .tag("method", method)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meters)
+                .record(accounting.statements());
+        Timer.builder("http.server.db.time")
+                .description("Accumulated SQL time per HTTP request")
+                .tag("method", method)
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .register(meters)
+                .record(accounting.nanos(), TimeUnit.NANOSECONDS);
+
+        Map<String, Integer> repeated = accounting.repeated(repeatThreshold);
+        if (repeated.isEmpty()) {
+            return;
+        }
+        Counter.builder("http.server.db.repeated")
+                .description("Requests that ran one statement shape more than the N+1 threshold")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meters)
+                .increment();
+        var shape = repeated.entrySet().iterator().next();
+        Log.warnf("%s %s ran one statement %d times (%d statements, %.1f ms in total), likely a per-row query loop: %s",
+                method, uri, shape.getValue(), accounting.statements(), accounting.nanos() / 1e6,
+                abbreviate(shape.getKey()));
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= 300 ? sql : sql.substring(0, 300) + "...";
+    }
+}
@@ -0,0 +1,71 @@
+package cz.samofujera.observability;
+
+import io.quarkus.vertx.VertxOptionsCustomizer;
+import io.vertx.core.Context;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.spi.tracing.SpanKind;
+import io.vertx.core.spi.tracing.TagExtractor;
+import io.vertx.core.spi.tracing.VertxTracer;
+import io.vertx.core.tracing.TracingOptions;
+import io.vertx.core.tracing.TracingPolicy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Installs a Vert.x tracer that times every statement of the reactive SQL
+ * client, and with it every Hibernate Reactive query, into the
+ * {@link QueryAccounting} of the request it runs for. Other traced operations
+ * (HTTP server and client) pass through untouched.
+ */
+@ApplicationScoped
+public class QueryTracer implements VertxOptionsCustomizer {
+
+    private record Pending(QueryAccounting accounting, String sql, long startNanos) {}
+
+    private static final VertxTracer<Object, Object> TRACER = new VertxTracer<>() {
+        @Override
+        public <R> Object sendRequest(Context context, SpanKind kind, TracingPolicy policy, R request,
+                                      String operation, BiConsumer<String, String> headers,
+                                      TagExtractor<R> tagExtractor) {
+            if (kind != SpanKind.RPC || !"Query".equals(operation)) {
+                return null;
+            }
+            QueryAccounting accounting = QueryAccounting.of(context);
+            if (accounting == null) {
+                return null;
+            }
+            return new Pending(accounting, statement(request, tagExtractor), System.nanoTime());
+        }
+
+        @Override
+        public <R> void receiveResponse(Context context, R response, Object payload, Throwable failure,
+                                        TagExtractor<R> tagExtractor) {
+            if (payload instanceof Pending pending) {
+                pending.accounting().record(pending.sql(), System.nanoTime() - pending.startNanos());
+            }
+        }
+    };
+
+    // Vert.x deprecates TracingOptions.setFactory in favour of VertxBuilder.withTracer, but Quarkus
+    // builds the Vertx instance itself and only hands out the options, so this is the only hook
+    @Override
+    @SuppressWarnings("deprecation")
+    public void accept(VertxOptions options) {
+        if (options.getTracingOptions() != null && options.getTracingOptions().getFactory() != null) {
+            // Another tracer (OpenTelemetry) is configured; leave it in place
+            return;
+        }
+        options.setTracingOptions(new TracingOptions().setFactory(tracingOptions -> TRACER));
+    }
+
+    private static <R> String statement(R request, TagExtractor<R> tags) {
+        int length = tags.len(request);
+        for (int i = 0; i < length; i++) {
+            if ("db.statement".equals(tags.name(request, i))) {
+                return tags.value(request, i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package cz.samofujera.observability;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.vertx.core.impl.VertxInternal;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes what the built-in binders do not measure.
+ * <ul>
+ *   <li>{@code vertx.eventloop.delay}: each event loop runs a task every
+ *       {@code app.metrics.event-loop-probe-interval} and records how late it
+ *       ran, i.e. how long some handler kept that loop blocked.</li>
+ *   <li>{@code jvm.memory.allocation.rate}: bytes allocated per second by
+ *       live threads, sampled every {@code app.metrics.allocation-sample-interval}.</li>
+ * </ul>
+ */
+@ApplicationScoped
+public class RuntimeProbes {
+
+    @Inject
+    io.vertx.mutiny.core.Vertx vertx;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.metrics.event-loop-probe-interval", defaultValue = "PT0.1S")
+    Duration probeInterval;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private volatile boolean stopped;
+    private volatile double allocationRate;
+    private long lastAllocated = -1;
+    private long lastSampledAt;
+
+    void onStart(@Observes StartupEvent event) {
+        Gauge.builder("jvm.memory.allocation.rate", this, p -> p.allocationRate)
+                .description("Bytes allocated per second by live threads")
+                .baseUnit("bytes")
+                .register(registry);
+
+        int index = 0;
+        for (EventExecutor loop : ((VertxInternal) vertx.getDelegate()).getEventLoopGroup()) {
+            Timer delay = Timer.builder("vertx.eventloop.delay")
+                    .description("How late a probe task ran on the event loop")
+                    .tag("loop", String.valueOf(index++))
+                    .register(registry);
+            probe(loop, delay);
+        }
+        Log.infof("Probing %d event loops every %d ms", index, probeInterval.toMillis());
+    }
+
+    @PreDestroy
+    void onStop() {
+        stopped = true;
+    }
+
+    private void probe(EventExecutor loop, Timer delay) {
+        long interval = probeInterval.toNanos();
+        long due = System.nanoTime() + interval;
+        loop.schedule(() -> {
+            delay.record(Math.max(0, System.nanoTime() - due), TimeUnit.NANOSECONDS);
+            if (!stopped) {
+                probe(loop, delay);
+            }
+        }, interval, TimeUnit.NANOSECONDS);
+    }
+
+    @Scheduled(every = "${app.metrics.allocation-sample-interval:10s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sampleAllocation() {
+        long allocated = threads.getTotalThreadAllocatedBytes();
+        long now = System.nanoTime();
+        if (allocated < 0) {
+            // Allocation tracking is disabled in this JVM
+            return;
+        }
+        if (lastAllocated >= 0 && now > lastSampledAt) {
+            // Threads that ended since the last sample take their bytes with them; never report negative
+            allocationRate = Math.max(0, allocated - lastAllocated) / ((now - lastSampledAt) / 1e9);
+        }
+        lastAllocated = allocated;
+        lastSampledAt = now;
+    }
+}
@@ -0,0 +1,16 @@
+package cz.samofujera.outbox;
+
+import io.vertx.core.json.JsonObject;
+
+import java.time.Instant;
+
+/**
+ * Domain event delivered by {@link OutboxDispatcher} after the transaction that
+ * recorded it committed. Observe with {@code @ObservesAsync DomainEvent}.
+ */
+public record DomainEvent(
+        long id,
+        String topic,
+        JsonObject payload,
+        Instant occurredAt
+) {}
@@ -0,0 +1,271 @@
+package cz.samofujera.outbox;
+
+import cz.samofujera.email.EmailService;
+import cz.samofujera.outbox.entity.OutboxMessageEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Claims due outbox rows in batches ({@code FOR UPDATE SKIP LOCKED}, so several
+ * nodes can run it side by side) and delivers them: emails over the pooled SMTP
+ * client, domain events as async CDI events.
+ * <p>
+ * Claiming pushes {@code available_at} forward by a lease instead of using a
+ * separate "processing" state — if a node dies mid-batch, its rows simply become
+ * due again once the lease runs out.
+ */
+@ApplicationScoped
+public class OutboxDispatcher {
+
+    private static final String CLAIM_SQL = """
+            UPDATE outbox_messages
+            SET attempts = attempts + 1, available_at = $2
+            WHERE id IN (
+                SELECT id FROM outbox_messages
+                WHERE status = 'PENDING' AND available_at <= now()
+                ORDER BY available_at, id
+                LIMIT $1
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING id, kind, topic, recipient, locale, payload, attempts, created_at
+            """;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    EmailService emailService;
+
+    @Inject
+    Event<DomainEvent> domainEvents;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.outbox.batch-size", defaultValue = "50")
+    int batchSize;
+
+    @ConfigProperty(name = "app.outbox.max-batches-per-run", defaultValue = "20")
+    int maxBatchesPerRun;
+
+    @ConfigProperty(name = "app.outbox.concurrency", defaultValue = "8")
+    int concurrency;
+
+    @ConfigProperty(name = "app.outbox.max-attempts", defaultValue = "8")
+    int maxAttempts;
+
+    @ConfigProperty(name = "app.outbox.backoff-base", defaultValue = "PT10S")
+    Duration backoffBase;
+
+    @ConfigProperty(name = "app.outbox.backoff-max", defaultValue = "PT1H")
+    Duration backoffMax;
+
+    @ConfigProperty(name = "app.outbox.claim-lease", defaultValue = "PT5M")
+    Duration claimLease;
+
+    @ConfigProperty(name = "app.outbox.sent-retention", defaultValue = "P7D")
+    Duration sentRetention;
+
+    private final AtomicLong pendingDepth = new AtomicLong();
+    private final AtomicLong oldestPendingAgeMillis = new AtomicLong();
+
+    private Timer deliveryLag;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("outbox.pending", pendingDepth, AtomicLong::get)
+                .description("Outbox rows waiting for delivery")
+                .register(registry);
+        Gauge.builder("outbox.oldest.pending.age", oldestPendingAgeMillis, v -> v.get() / 1000.0)
+                .description("Age of the oldest undelivered outbox row")
+                .baseUnit("seconds")
+                .register(registry);
+        deliveryLag = Timer.builder("outbox.delivery.lag")
+                .description("Time from enqueue (commit) to successful delivery")
+                .register(registry);
+    }
+
+    @Scheduled(every = "${app.outbox.poll-interval:2s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> poll() {
+        return dispatchPending()
+                .onFailure().invoke(err -> Log.error("Outbox dispatch failed", err))
+                .onFailure().recoverWithItem(0)
+                .chain(this::refreshStats);
+    }
+
+    @Scheduled(every = "${app.outbox.cleanup-interval:1h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> cleanupSent() {
+        var cutoff = OffsetDateTime.now(ZoneOffset.UTC).minus(sentRetention);
+        return client.preparedQuery("DELETE FROM outbox_messages WHERE status = 'SENT' AND processed_at < $1")
+                .execute(Tuple.of(cutoff))
+                .invoke(rows -> Log.debugf("Removed %d delivered outbox rows", rows.rowCount()))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Drains due rows batch by batch until a batch comes back short or the
+     * per-run cap is hit. Returns the number of rows processed.
+     */
+    public Uni<Integer> dispatchPending() {
+        return drain(0, 0);
+    }
+
+    private Uni<Integer> drain(int batchNo, int processed) {
+        if (batchNo >= maxBatchesPerRun) {
+            return Uni.createFrom().item(processed);
+        }
+        return claimBatch().chain(rows -> {
+            if (rows.isEmpty()) {
+                return Uni.createFrom().item(processed);
+            }
+            return deliverBatch(rows).chain(() -> rows.size() < batchSize
+                    ? Uni.createFrom().item(processed + rows.size())
+                    : drain(batchNo + 1, processed + rows.size()));
+        });
+    }
+
+    private Uni<List<Row>> claimBatch() {
+        var leaseUntil = OffsetDateTime.now(ZoneOffset.UTC).plus(claimLease);
+        return client.withTransaction(conn -> conn.preparedQuery(CLAIM_SQL)
+                .execute(Tuple.of(batchSize, leaseUntil))
+                .map(rowSet -> {
+                    List<Row> rows = new ArrayList<>(rowSet.rowCount());
+                    rowSet.forEach(rows::add);
+                    return rows;
+                }));
+    }
+
+    private Uni<Void> deliverBatch(List<Row> rows) {
+        return Multi.createFrom().iterable(rows)
+                .onItem().transformToUni(row -> deliver(row)
+                        .map(v -> true)
+                        .onFailure().recoverWithUni(err -> markFailed(row, err).map(v -> false))
+                        .map(sent -> sent ? row.getLong("id") : -1L))
+                .merge(concurrency)
+                .filter(id -> id > 0)
+                .collect().asList()
+                .chain(this::markSent);
+    }
+
+    private Uni<Void> deliver(Row row) {
+        String kind = row.getString("kind");
+        String topic = row.getString("topic");
+        JsonObject payload = row.getJsonObject("payload");
+        Instant createdAt = row.getOffsetDateTime("created_at").toInstant();
+
+        Uni<Void> delivery = switch (kind) {
+            case OutboxMessageEntity.KIND_EMAIL -> emailService.render(topic, row.getString("locale"), payload)
+                    .chain(email -> emailService.send(row.getString("recipient"), email));
+            case OutboxMessageEntity.KIND_EVENT -> Uni.createFrom()
+                    .completionStage(() -> domainEvents.fireAsync(
+                            new DomainEvent(row.getLong("id"), topic, payload, createdAt)))
+                    .replaceWithVoid();
+            default -> Uni.createFrom().failure(new IllegalStateException("Unknown outbox kind " + kind));
+        };
+
+        return delivery.invoke(() -> {
+            deliveryLag.record(Duration.between(createdAt, Instant.now()));
+            counter(kind, "sent").increment();
+        });
+    }
+
+    private Uni<Void> markSent(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return client.preparedQuery("""
+                        UPDATE outbox_messages
+                        SET status = 'SENT', processed_at = now(), last_error = NULL
+                        WHERE id = ANY($1)
+                        """)
+                .execute(Tuple.of(ids.toArray(new Long[0])))
+                .replaceWithVoid();
+    }
+
+    private Uni<Void> markFailed(Row row, Throwable err) {
+        long id = row.getLong("id");
+        int attempts = row.getInteger("attempts");
+        String kind = row.getString("kind");
+        String error = err.getMessage() != null ? err.getMessage() : err.getClass().getName();
+
+        if (attempts >= maxAttempts) {
+            Log.errorf(err, "Outbox message %d (%s %s) failed permanently after %d attempts",
+                    id, kind, row.getString("topic"), attempts);
+            counter(kind, "failed").increment();
+            return client.preparedQuery("""
+                            UPDATE outbox_messages
+                            SET status = 'FAILED', processed_at = now(), last_error = $2
+                            WHERE id = $1
+                            """)
+                    .execute(Tuple.of(id, error))
+                    .replaceWithVoid();
+        }
+
+        var retryAt = OffsetDateTime.now(ZoneOffset.UTC).plus(backoff(attempts));
+        Log.warnf("Outbox message %d (%s %s) failed, attempt %d, retrying at %s: %s",
+                id, kind, row.getString("topic"), attempts, retryAt, error);
+        counter(kind, "retry").increment();
+        return client.preparedQuery("UPDATE outbox_messages SET available_at = $2, last_error = $3 WHERE id = $1")
+                .execute(Tuple.of(id, retryAt, error))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Exponential backoff with +-20% jitter so rows that failed together
+     * (e.g. SMTP outage) don't all retry in the same tick.
+     */
+    Duration backoff(int attempts) {
+        long base = backoffBase.toMillis() << Math.min(attempts - 1, 20);
+        long capped = Math.min(base, backoffMax.toMillis());
+        long jitter = (long) (capped * 0.2 * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+        return Duration.ofMillis(Math.max(0, capped + jitter));
+    }
+
+    private Uni<Void> refreshStats(Integer processed) {
+        return client.query("""
+                        SELECT count(*) AS depth,
+                               COALESCE(EXTRACT(EPOCH FROM now() - min(created_at)) * 1000, 0)::bigint AS age_ms
+                        FROM outbox_messages
+                        WHERE status = 'PENDING'
+                        """)
+                .execute()
+                .invoke(rows -> {
+                    Row row = rows.iterator().next();
+                    pendingDepth.set(row.getLong("depth"));
+                    oldestPendingAgeMillis.set(row.getLong("age_ms"));
+                })
+                .replaceWithVoid();
+    }
+
+    private Counter counter(String kind, String result) {
+        return Counter.builder("outbox.messages")
+                .description("Outbox deliveries by outcome")
+                .tag("kind", kind)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,33 @@
+package cz.samofujera.outbox;
+
+import cz.samofujera.outbox.entity.OutboxMessageEntity;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Writes outbox rows within the caller's existing transaction.
+ * Use this from endpoints that already have @WithTransaction — the message
+ * becomes visible to {@link OutboxDispatcher} only if the business change commits.
+ */
+@ApplicationScoped
+public class OutboxService {
+
+    public Uni<OutboxMessageEntity> enqueueEmail(String templateKey, String recipient, String locale, JsonObject vars) {
+        var message = new OutboxMessageEntity();
+        message.kind = OutboxMessageEntity.KIND_EMAIL;
+        message.topic = templateKey;
+        message.recipient = recipient;
+        message.locale = locale;
+        message.payload = (vars != null ? vars : new JsonObject()).encode();
+        return message.persist();
+    }
+
+    public Uni<OutboxMessageEntity> enqueueEvent(String topic, JsonObject payload) {
+        var message = new OutboxMessageEntity();
+        message.kind = OutboxMessageEntity.KIND_EVENT;
+        message.topic = topic;
+        message.payload = (payload != null ? payload : new JsonObject()).encode();
+        return message.persist();
+    }
+}
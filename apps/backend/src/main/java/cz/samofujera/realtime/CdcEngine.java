@@ -0,0 +1,387 @@
+package cz.samofujera.realtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.vertx.core.runtime.context.VertxContextSafetyToggle;
+import io.smallrye.common.vertx.VertxContext;
+import io.vertx.core.Context;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional change feed that reads a logical replication slot ({@code pgoutput},
+ * publication {@code samofujera_changes}) instead of {@code LISTEN}. Enabled with
+ * {@code app.cdc.enabled}; needs {@code wal_level = logical} and a role with
+ * the REPLICATION attribute. The publication, and {@code REPLICA IDENTITY FULL}
+ * on its tables, are set up when the engine starts, so databases without CDC
+ * pay nothing for it.
+ * <p>
+ * Every node streams its own slot, {@code app.cdc.slot} followed by
+ * {@code app.cdc.node}, since a slot serves one connection at a time. Slots of
+ * other nodes that have been inactive for {@code app.cdc.slot-retention} are
+ * dropped, so WAL is not kept for nodes that are gone.
+ * <p>
+ * Events go into the same {@link PgNotificationService} stream, decoded by
+ * {@link PgOutputDecoder} with full row images and without the NOTIFY size cap.
+ * The slot keeps WAL while the engine is away, so nothing is lost across
+ * disconnects or restarts. The end LSN of the last published transaction is
+ * saved in {@code cdc_checkpoints} and confirmed to the slot once its events
+ * reached the subscribers; on restart transactions at or before it are
+ * skipped, and {@link EventLog} drops any repeated {@code seq}, so each change
+ * is published once.
+ */
+@ApplicationScoped
+public class CdcEngine {
+
+    @ConfigProperty(name = "app.cdc.enabled", defaultValue = "false")
+    boolean enabled;
+
+    /** Tables whose triggers emit {@code entity_changes}; see {@link #ensurePublication()}. */
+    static final List<String> TABLES = List.of("products", "product_prices", "product_categories",
+            "product_content", "events", "event_occurrences", "membership_plans", "email_template_overrides",
+            "pages", "orders", "subscriptions", "entitlements", "product_variants");
+
+    @ConfigProperty(name = "app.cdc.slot", defaultValue = "samofujera_cdc")
+    String slotPrefix;
+
+    @ConfigProperty(name = "app.cdc.node", defaultValue = "local")
+    String node;
+
+    @ConfigProperty(name = "app.cdc.slot-retention", defaultValue = "PT1H")
+    Duration slotRetention;
+
+    @ConfigProperty(name = "app.cdc.publication", defaultValue = "samofujera_changes")
+    String publication;
+
+    @ConfigProperty(name = "app.cdc.checkpoint-interval", defaultValue = "PT1S")
+    Duration checkpointInterval;
+
+    @ConfigProperty(name = "app.cdc.reconnect-max", defaultValue = "PT30S")
+    Duration reconnectMax;
+
+    @ConfigProperty(name = "quarkus.datasource.jdbc.url")
+    String jdbcUrl;
+
+    @ConfigProperty(name = "quarkus.datasource.username")
+    String username;
+
+    @ConfigProperty(name = "quarkus.datasource.password")
+    String password;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    io.vertx.mutiny.core.Vertx vertx;
+
+    @Inject
+    MeterRegistry registry;
+
+    private volatile boolean running;
+    private volatile long lastCommitMicros;
+    private String slot;
+    private Thread worker;
+    private Counter events;
+    private Counter reconnects;
+
+    @PostConstruct
+    void registerMetrics() {
+        events = Counter.builder("cdc.events")
+                .description("entity_changes events decoded from the replication slot")
+                .register(registry);
+        reconnects = Counter.builder("cdc.reconnects")
+                .description("Replication stream restarts after an error")
+                .register(registry);
+        Gauge.builder("cdc.lag", this, engine -> engine.lastCommitMicros == 0 ? 0
+                        : (System.currentTimeMillis() * 1000 - engine.lastCommitMicros) / 1_000_000.0)
+                .description("Seconds between the commit of the last decoded transaction and now")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        slot = slotName(slotPrefix, node);
+        running = true;
+        worker = new Thread(this::run, "cdc-engine");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void onStop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        int attempts = 0;
+        while (running) {
+            try {
+                stream();
+                attempts = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                attempts++;
+                reconnects.increment();
+                long delay = Math.min(reconnectMax.toMillis(), 1000L << Math.min(attempts - 1, 16));
+                Log.errorf(e, "CDC stream failed, restarting in %d ms", delay);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stream() throws Exception {
+        try (Connection conn = replicationConnection()) {
+            PGConnection pg = conn.unwrap(PGConnection.class);
+            ensurePublication();
+            ensureSlot(pg);
+            dropStaleSlots();
+            long checkpoint = loadCheckpoint();
+            Log.infof("CDC streaming slot %s from %s", slot, LogSequenceNumber.valueOf(checkpoint));
+
+            PGReplicationStream stream = pg.getReplicationAPI()
+                    .replicationStream()
+                    .logical()
+                    .withSlotName(slot)
+                    .withSlotOption("proto_version", 1)
+                    .withSlotOption("publication_names", publication)
+                    .withStartPosition(LogSequenceNumber.valueOf(checkpoint))
+                    .withStatusInterval(10, TimeUnit.SECONDS)
+                    .start();
+
+            var decoder = new PgOutputDecoder();
+            // Subscribers expect a Vert.x context, as with notifications from the LISTEN connection
+            var context = VertxContext.getOrCreateDuplicatedContext(vertx.getDelegate());
+            VertxContextSafetyToggle.setContextSafe(context, true);
+            long processed = checkpoint;
+            CompletableFuture<Void> published = CompletableFuture.completedFuture(null);
+            long savedAt = System.nanoTime();
+            // Keeps this slot from looking abandoned to other nodes while nothing changes
+            long heartbeat = slotRetention.toNanos() / 4;
+            while (running) {
+                ByteBuffer message = stream.readPending();
+                if (message != null) {
+                    PgOutputDecoder.Commit commit = decoder.decode(message);
+                    if (commit != null && commit.endLsn() > checkpoint) {
+                        published = publish(context, commit.events());
+                        lastCommitMicros = commit.commitTimeMicros();
+                        processed = commit.endLsn();
+                    }
+                } else {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                }
+                long sinceSave = System.nanoTime() - savedAt;
+                if ((processed > checkpoint && sinceSave >= checkpointInterval.toNanos()) || sinceSave >= heartbeat) {
+                    // One context runs its tasks in order, so the last commit published means all of them
+                    published.get(10, TimeUnit.SECONDS);
+                    saveCheckpoint(processed);
+                    if (processed > checkpoint) {
+                        // Lets the slot release WAL up to here
+                        stream.setAppliedLSN(LogSequenceNumber.valueOf(processed));
+                        stream.setFlushedLSN(LogSequenceNumber.valueOf(processed));
+                        stream.forceUpdateStatus();
+                    }
+                    checkpoint = processed;
+                    savedAt = System.nanoTime();
+                    if (sinceSave >= heartbeat) {
+                        dropStaleSlots();
+                    }
+                }
+            }
+            if (processed > checkpoint) {
+                published.get(10, TimeUnit.SECONDS);
+                saveCheckpoint(processed);
+            }
+        }
+    }
+
+    /** Hands the events to the subscribers; completes once they have been. */
+    private CompletableFuture<Void> publish(Context context, List<JsonObject> decoded) {
+        var done = new CompletableFuture<Void>();
+        if (decoded.isEmpty()) {
+            done.complete(null);
+            return done;
+        }
+        events.increment(decoded.size());
+        context.runOnContext(v -> {
+            try {
+                decoded.forEach(notifications::publish);
+            } finally {
+                done.complete(null);
+            }
+        });
+        return done;
+    }
+
+    /** A valid slot name: lower case letters, digits and underscores, at most 63 characters. */
+    static String slotName(String prefix, String node) {
+        String name = (prefix + "_" + node).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+        return name.length() > 63 ? name.substring(0, 63) : name;
+    }
+
+    private Connection replicationConnection() throws Exception {
+        Properties props = new Properties();
+        PGProperty.USER.set(props, username);
+        PGProperty.PASSWORD.set(props, password);
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(props, "10");
+        PGProperty.REPLICATION.set(props, "database");
+        PGProperty.PREFER_QUERY_MODE.set(props, "simple");
+        return DriverManager.getConnection(jdbcUrl, props);
+    }
+
+    /**
+     * Creates the publication, or adds the tables it is missing, and gives the
+     * tables full replica identity, so updates and deletes carry the complete
+     * old row.
+     */
+    private void ensurePublication() {
+        List<String> partial = client.preparedQuery("""
+                        SELECT relname FROM pg_class
+                        WHERE relnamespace = 'public'::regnamespace AND relname::text = ANY($1::text[]) AND relreplident <> 'f'
+                        """)
+                .execute(Tuple.of(TABLES.toArray(String[]::new)))
+                .map(rows -> {
+                    var names = new ArrayList<String>();
+                    rows.forEach(row -> names.add(row.getString("relname")));
+                    return names;
+                })
+                .await().atMost(Duration.ofSeconds(10));
+        for (String table : partial) {
+            client.query("ALTER TABLE " + table + " REPLICA IDENTITY FULL").execute()
+                    .await().atMost(Duration.ofSeconds(30));
+        }
+        // entity_change_log rows mark where each statement's changes end and carry its seq
+        var published = new ArrayList<>(TABLES);
+        published.add("entity_change_log");
+        boolean exists = client.preparedQuery("SELECT 1 FROM pg_publication WHERE pubname = $1")
+                .execute(Tuple.of(publication))
+                .map(rows -> rows.rowCount() > 0)
+                .await().atMost(Duration.ofSeconds(10));
+        if (!exists) {
+            client.query("CREATE PUBLICATION \"" + publication + "\" FOR TABLE " + String.join(", ", published))
+                    .execute()
+                    .await().atMost(Duration.ofSeconds(10));
+            Log.infof("Created publication %s", publication);
+            return;
+        }
+        client.preparedQuery("SELECT tablename FROM pg_publication_tables WHERE pubname = $1 AND schemaname = 'public'")
+                .execute(Tuple.of(publication))
+                .await().atMost(Duration.ofSeconds(10))
+                .forEach(row -> published.remove(row.getString("tablename")));
+        if (!published.isEmpty()) {
+            client.query("ALTER PUBLICATION \"" + publication + "\" ADD TABLE " + String.join(", ", published))
+                    .execute()
+                    .await().atMost(Duration.ofSeconds(10));
+            Log.infof("Added %s to publication %s", published, publication);
+        }
+    }
+
+    private void ensureSlot(PGConnection pg) throws Exception {
+        boolean exists = client.preparedQuery("SELECT 1 FROM pg_replication_slots WHERE slot_name = $1")
+                .execute(Tuple.of(slot))
+                .map(rows -> rows.rowCount() > 0)
+                .await().atMost(Duration.ofSeconds(10));
+        if (!exists) {
+            pg.getReplicationAPI().createReplicationSlot()
+                    .logical()
+                    .withSlotName(slot)
+                    .withOutputPlugin("pgoutput")
+                    .make();
+            // Dates the slot for dropStaleSlots until the first checkpoint; 0 starts where the slot is
+            client.preparedQuery("""
+                            INSERT INTO cdc_checkpoints (slot_name, lsn) VALUES ($1, '0/0')
+                            ON CONFLICT (slot_name) DO UPDATE SET lsn = EXCLUDED.lsn, updated_at = now()
+                            """)
+                    .execute(Tuple.of(slot))
+                    .await().atMost(Duration.ofSeconds(10));
+            Log.infof("Created logical replication slot %s", slot);
+        }
+    }
+
+    /** Drops inactive slots of other nodes whose checkpoint is older than the retention. */
+    private void dropStaleSlots() {
+        try {
+            client.preparedQuery("""
+                            SELECT s.slot_name, pg_drop_replication_slot(s.slot_name)
+                            FROM pg_replication_slots s
+                            JOIN cdc_checkpoints c ON c.slot_name = s.slot_name
+                            WHERE left(s.slot_name, length($1)) = $1 AND s.slot_name <> $2 AND NOT s.active
+                              AND c.updated_at < now() - make_interval(secs => $3)
+                            """)
+                    .execute(Tuple.of(slotPrefix + "_", slot, (double) slotRetention.toSeconds()))
+                    .await().atMost(Duration.ofSeconds(10))
+                    .forEach(row -> Log.infof("Dropped stale replication slot %s", row.getString("slot_name")));
+            client.preparedQuery("""
+                            DELETE FROM cdc_checkpoints c
+                            WHERE left(c.slot_name, length($1)) = $1
+                              AND NOT EXISTS (SELECT 1 FROM pg_replication_slots s WHERE s.slot_name = c.slot_name)
+                            """)
+                    .execute(Tuple.of(slotPrefix + "_"))
+                    .await().atMost(Duration.ofSeconds(10));
+        } catch (Exception e) {
+            // A node that came back meanwhile holds its slot again; the next round retries
+            Log.warnf(e, "Could not drop stale replication slots");
+        }
+    }
+
+    /** The saved resume point, or 0 to start where the slot is. */
+    private long loadCheckpoint() {
+        return client.preparedQuery("SELECT lsn::text AS lsn FROM cdc_checkpoints WHERE slot_name = $1")
+                .execute(Tuple.of(slot))
+                .map(rows -> rows.rowCount() == 0 ? 0L
+                        : LogSequenceNumber.valueOf(rows.iterator().next().getString("lsn")).asLong())
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    private void saveCheckpoint(long lsn) {
+        client.preparedQuery("""
+                        INSERT INTO cdc_checkpoints (slot_name, lsn) VALUES ($1, $2::pg_lsn)
+                        ON CONFLICT (slot_name) DO UPDATE SET lsn = EXCLUDED.lsn, updated_at = now()
+                        """)
+                .execute(Tuple.of(slot, LogSequenceNumber.valueOf(lsn).asString()))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+}
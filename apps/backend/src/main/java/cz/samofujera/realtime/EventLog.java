@@ -0,0 +1,197 @@
+package cz.samofujera.realtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recent {@code entity_changes} events, for replaying what an SSE client or the
+ * LISTEN connection missed. Each event carries {@code seq}, the id of its row
+ * in {@code entity_change_log}, assigned by the notifying trigger.
+ * <p>
+ * The last {@code app.sse.replay-buffer} events, at most
+ * {@code app.sse.replay-buffer-bytes} of encoded JSON, are kept in memory in
+ * arrival order, which is commit order, so a replay from there is exact. Older
+ * positions are read from the table. Sequence ids are taken before commit, so
+ * a long transaction can commit a lower id after a higher one; table reads
+ * therefore also return events logged up to {@code app.sse.replay-overlap}
+ * before the resume point. {@code created_at} is the time of the logging
+ * statement, not of its transaction start, so the window only has to cover
+ * the rest of the transaction. Change events are idempotent invalidation
+ * hints, so the occasional repeat is harmless.
+ */
+@ApplicationScoped
+public class EventLog {
+
+    /**
+     * Events after a resume point, or {@code complete = false} when the point is
+     * older than the retained log (or too far back to replay) and the client
+     * has to refetch instead.
+     */
+    public record Replay(boolean complete, List<JsonObject> events) {
+        static final Replay INCOMPLETE = new Replay(false, List.of());
+    }
+
+    private static final String READ_AFTER = """
+            SELECT id, payload FROM entity_change_log
+            WHERE id > $1
+               OR created_at >= (SELECT created_at FROM entity_change_log WHERE id = $1) - $2::interval
+            ORDER BY id
+            LIMIT $3
+            """;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.sse.replay-buffer", defaultValue = "10000")
+    int capacity;
+
+    @ConfigProperty(name = "app.sse.replay-buffer-bytes", defaultValue = "16777216")
+    long maxBytes;
+
+    @ConfigProperty(name = "app.sse.replay-overlap", defaultValue = "PT5S")
+    Duration overlap;
+
+    @ConfigProperty(name = "app.sse.log-retention", defaultValue = "PT1H")
+    Duration retention;
+
+    private record Recent(JsonObject event, long seq, int bytes) {}
+
+    private final ArrayDeque<Recent> recent = new ArrayDeque<>();
+    private final Set<Long> recentSeqs = new HashSet<>();
+    private long recentBytes;
+    private long lastSeq;
+
+    private Counter memoryReplays;
+    private Counter databaseReplays;
+    private Counter incompleteReplays;
+
+    @PostConstruct
+    void registerMetrics() {
+        memoryReplays = Counter.builder("sse.replays").tag("source", "memory")
+                .description("SSE resumes served from the event log").register(registry);
+        databaseReplays = Counter.builder("sse.replays").tag("source", "database")
+                .description("SSE resumes served from the event log").register(registry);
+        incompleteReplays = Counter.builder("sse.replays").tag("source", "none")
+                .description("SSE resumes served from the event log").register(registry);
+    }
+
+    /**
+     * Appends a received event. Returns false for a {@code seq} already seen,
+     * which happens when a catch-up read overlaps the live stream.
+     */
+    public synchronized boolean record(JsonObject event) {
+        Long seq = seq(event);
+        if (seq == null) {
+            return true;
+        }
+        if (!recentSeqs.add(seq)) {
+            return false;
+        }
+        // CDC events carry row images, so the count alone does not bound memory
+        int bytes = event.encode().length();
+        recent.addLast(new Recent(event, seq, bytes));
+        recentBytes += bytes;
+        while (recent.size() > 1 && (recent.size() > capacity || recentBytes > maxBytes)) {
+            Recent evicted = recent.pollFirst();
+            recentSeqs.remove(evicted.seq());
+            recentBytes -= evicted.bytes();
+        }
+        lastSeq = seq;
+        return true;
+    }
+
+    /** Seq of the latest event received, 0 before the first. */
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /** Up to {@code limit} events after {@code seq}, from memory when it is still there. */
+    public Uni<Replay> since(long seq, int limit) {
+        List<JsonObject> fromMemory = recentAfter(seq);
+        if (fromMemory != null) {
+            memoryReplays.increment();
+            return Uni.createFrom().item(fromMemory.size() > limit ? Replay.INCOMPLETE : new Replay(true, fromMemory));
+        }
+        return readAfter(seq, limit).invoke(replay -> (replay.complete() ? databaseReplays : incompleteReplays).increment());
+    }
+
+    /**
+     * Events after {@code seq} from the table, including the overlap window.
+     * Incomplete when the row of {@code seq} has been purged, or more than
+     * {@code limit} events follow it.
+     */
+    public Uni<Replay> readAfter(long seq, int limit) {
+        return client.preparedQuery("SELECT EXISTS (SELECT 1 FROM entity_change_log WHERE id = $1) AS retained")
+                .execute(Tuple.of(seq))
+                .chain(rows -> {
+                    if (!rows.iterator().next().getBoolean("retained")) {
+                        return Uni.createFrom().item(Replay.INCOMPLETE);
+                    }
+                    return client.preparedQuery(READ_AFTER)
+                            .execute(Tuple.of(seq, overlap.toSeconds() + " seconds", limit + 1))
+                            .map(result -> {
+                                List<JsonObject> events = new ArrayList<>();
+                                for (Row row : result) {
+                                    JsonObject payload = new JsonObject(row.getValue("payload").toString());
+                                    events.add(payload.put("channel", "entity_changes"));
+                                }
+                                return events.size() > limit ? Replay.INCOMPLETE : new Replay(true, events);
+                            });
+                });
+    }
+
+    @Scheduled(every = "${app.sse.log-purge-interval:10m}", delayed = "1m",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> purge() {
+        var cutoff = OffsetDateTime.now(ZoneOffset.UTC).minus(retention);
+        return client.preparedQuery("DELETE FROM entity_change_log WHERE created_at < $1")
+                .execute(Tuple.of(cutoff))
+                .invoke(rows -> Log.debugf("Removed %d entity change log rows", rows.rowCount()))
+                .onFailure().invoke(err -> Log.error("Entity change log purge failed", err))
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    /** Events received after {@code seq}, or null when {@code seq} is not in memory. */
+    synchronized List<JsonObject> recentAfter(long seq) {
+        if (!recentSeqs.contains(seq)) {
+            return null;
+        }
+        List<JsonObject> after = new ArrayList<>();
+        for (Iterator<Recent> it = recent.descendingIterator(); it.hasNext(); ) {
+            Recent entry = it.next();
+            if (entry.seq() == seq) break;
+            after.add(entry.event());
+        }
+        return after.reversed();
+    }
+
+    static Long seq(JsonObject event) {
+        Object value = event.getValue("seq");
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
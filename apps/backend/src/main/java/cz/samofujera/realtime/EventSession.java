@@ -0,0 +1,114 @@
+package cz.samofujera.realtime;
+
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Topics of one WebSocket connection, multiplexed onto a single
+ * {@link SubscriberQueue}. Each topic is a registry subscription with the same
+ * (channel, table) filter and visibility as an SSE stream; its events are
+ * wrapped as {@code {"type":"event","topic":...,"seq":...,"event":{...}}}. The
+ * buffer, overflow policy and lag metrics are per connection, not per topic.
+ */
+public final class EventSession {
+
+    private final SubscriptionRegistry registry;
+    private final Long userId;
+    private final boolean admin;
+    private final Map<String, SubscriptionRegistry.Subscription> topics = new ConcurrentHashMap<>();
+    private final Multi<JsonObject> frames;
+    private volatile SubscriberQueue queue;
+
+    EventSession(SubscriptionRegistry registry, Long userId, boolean admin, SubscriberQueue.OverflowPolicy policy) {
+        this.registry = registry;
+        this.userId = userId;
+        this.admin = admin;
+        this.frames = Multi.createFrom().emitter(emitter -> {
+            queue = registry.openQueue(userId, admin, policy, emitter, this::describe);
+            emitter.onTermination(this::close);
+        });
+    }
+
+    /** Outgoing frames; subscribe once, before adding topics. */
+    public Multi<JsonObject> frames() {
+        return frames;
+    }
+
+    public int topicCount() {
+        return topics.size();
+    }
+
+    public boolean hasTopic(String topic) {
+        return topics.containsKey(topic);
+    }
+
+    /**
+     * Adds or replaces a topic. With {@code lastEventId} its missed events come
+     * first, or a {@code reset} frame for the topic when they are no longer known.
+     */
+    public void subscribe(String topic, String channel, String table, Long lastEventId) {
+        SubscriberQueue target = queue;
+        if (target == null) {
+            return;
+        }
+        var subscription = new SubscriptionRegistry.Subscription(userId, admin, channel, table,
+                event -> target.offer(frame(topic, event)));
+        if (lastEventId != null) {
+            target.pause();
+        }
+        SubscriptionRegistry.Subscription previous = topics.put(topic, subscription);
+        if (previous != null) {
+            registry.remove(previous);
+        }
+        registry.add(subscription);
+        if (lastEventId != null) {
+            registry.replay(subscription, lastEventId).subscribe().with(
+                    missed -> target.resume(missed != null
+                            ? missed.stream().map(event -> frame(topic, event)).toList()
+                            : List.of(reset(topic))),
+                    err -> {
+                        Log.warn("WebSocket replay failed; asking the client to refetch", err);
+                        target.resume(List.of(reset(topic)));
+                    });
+        }
+    }
+
+    public boolean unsubscribe(String topic) {
+        SubscriptionRegistry.Subscription subscription = topics.remove(topic);
+        if (subscription == null) {
+            return false;
+        }
+        registry.remove(subscription);
+        return true;
+    }
+
+    public void close() {
+        topics.values().forEach(registry::remove);
+        topics.clear();
+    }
+
+    private JsonObject frame(String topic, JsonObject event) {
+        return new JsonObject()
+                .put("type", "event")
+                .put("topic", topic)
+                .put("seq", EventLog.seq(event))
+                // Row images are already stripped for non-admins by dispatch and replay
+                .put("event", event);
+    }
+
+    private static JsonObject reset(String topic) {
+        return new JsonObject().put("type", "reset").put("topic", topic).put("reason", "replay-unavailable");
+    }
+
+    private String describe() {
+        return topics.entrySet().stream()
+                .map(e -> e.getKey() + "=" + SubscriptionRegistry.describe(e.getValue().key))
+                .collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,121 @@
+package cz.samofujera.realtime;
+
+import io.quarkus.logging.Log;
+import io.quarkus.security.Authenticated;
+import io.quarkus.security.identity.SecurityIdentity;
+import io.quarkus.websockets.next.OnClose;
+import io.quarkus.websockets.next.OnOpen;
+import io.quarkus.websockets.next.OnTextMessage;
+import io.quarkus.websockets.next.WebSocket;
+import io.quarkus.websockets.next.WebSocketConnection;
+import io.vertx.core.json.JsonObject;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * WebSocket transport for the change feed: one socket carries any number of
+ * topics, so a dashboard does not need an SSE connection per table.
+ * <p>
+ * Client frames:
+ * <ul>
+ *   <li>{@code {"op":"subscribe","topic":"orders","channel":"entity_changes","table":"orders","lastEventId":42}}
+ *       (channel, table and lastEventId optional);</li>
+ *   <li>{@code {"op":"unsubscribe","topic":"orders"}};</li>
+ *   <li>{@code {"op":"ping"}}, answered with {@code {"type":"pong"}}.</li>
+ * </ul>
+ * Server frames are acks ({@code subscribed}, {@code unsubscribed}, {@code error}),
+ * {@code event} frames (see {@link EventSession}) and {@code reset}. Events are
+ * written one at a time, the next only after the previous write completed, so
+ * a slow socket backs up into its own bounded buffer and the overflow policy
+ * ({@code ?overflow=}) applies there. Protocol pings keep idle sockets alive
+ * ({@code quarkus.websockets-next.server.auto-ping-interval}).
+ */
+@WebSocket(path = "/api/events/ws")
+@Authenticated
+public class EventSocket {
+
+    @Inject
+    SubscriptionRegistry registry;
+
+    @Inject
+    SecurityIdentity identity;
+
+    @Inject
+    WebSocketConnection connection;
+
+    @ConfigProperty(name = "app.ws.max-topics", defaultValue = "32")
+    int maxTopics;
+
+    private EventSession session;
+
+    @OnOpen
+    void onOpen() {
+        Long userId = identity.getAttribute("user_id");
+        session = registry.openSession(userId, identity.hasRole("ADMIN"), queryParam("overflow"));
+        session.frames()
+                .onItem().call(frame -> connection.sendText(frame.encode()))
+                .subscribe().with(
+                        frame -> {},
+                        err -> {
+                            Log.debugf(err, "WebSocket %s event stream failed", connection.id());
+                            connection.close().subscribe().with(v -> {}, e -> {});
+                        },
+                        // Ends after a reset (disconnect overflow policy)
+                        () -> connection.close().subscribe().with(v -> {}, e -> {}));
+    }
+
+    @OnTextMessage
+    JsonObject onMessage(JsonObject frame) {
+        String op = frame.getString("op", "");
+        String topic = frame.getString("topic");
+        switch (op) {
+            case "ping" -> {
+                return new JsonObject().put("type", "pong");
+            }
+            case "subscribe" -> {
+                if (topic == null || topic.isBlank()) {
+                    return error(null, "topic is required");
+                }
+                if (!session.hasTopic(topic) && session.topicCount() >= maxTopics) {
+                    return error(topic, "too many topics");
+                }
+                Long lastEventId = frame.getValue("lastEventId") instanceof Number n ? n.longValue() : null;
+                session.subscribe(topic, frame.getString("channel"), frame.getString("table"), lastEventId);
+                return new JsonObject().put("type", "subscribed").put("topic", topic);
+            }
+            case "unsubscribe" -> {
+                return session.unsubscribe(topic)
+                        ? new JsonObject().put("type", "unsubscribed").put("topic", topic)
+                        : error(topic, "not subscribed");
+            }
+            default -> {
+                return error(topic, "unknown op");
+            }
+        }
+    }
+
+    @OnClose
+    void onClose() {
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    private String queryParam(String name) {
+        String query = connection.handshakeRequest().query();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+
+    private static JsonObject error(String topic, String message) {
+        return new JsonObject().put("type", "error").put("topic", topic).put("message", message);
+    }
+}
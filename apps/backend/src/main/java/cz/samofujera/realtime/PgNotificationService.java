@@ -1,18 +1,37 @@
 package cz.samofujera.realtime;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.logging.Log;
 import io.quarkus.runtime.StartupEvent;
 import io.smallrye.mutiny.Multi;
-import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.operators.multi.processors.BroadcastProcessor;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.mutiny.pgclient.PgConnection;
 import io.vertx.pgclient.PgConnectOptions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single {@code LISTEN entity_changes} connection per node, fanned out to
+ * in-process subscribers. A dropped connection is re-established with
+ * exponential backoff, and the events committed meanwhile are read back from
+ * the {@link EventLog} so caches and SSE clients do not silently miss them.
+ * With {@code app.cdc.enabled} the {@link CdcEngine} feeds the stream instead.
+ * <p>
+ * The same connection listens on {@code presence}, whose node-to-node messages
+ * are neither logged nor replayed; see {@link #signals(String)}.
+ */
 @ApplicationScoped
 public class PgNotificationService {
 
@@ -25,37 +44,183 @@ public class PgNotificationService {
     @ConfigProperty(name = "quarkus.datasource.password")
     String password;
 
+    @ConfigProperty(name = "app.cdc.enabled", defaultValue = "false")
+    boolean cdcEnabled;
+
+    @ConfigProperty(name = "app.notifications.reconnect-base", defaultValue = "PT1S")
+    Duration reconnectBase;
+
+    @ConfigProperty(name = "app.notifications.reconnect-max", defaultValue = "PT30S")
+    Duration reconnectMax;
+
+    @ConfigProperty(name = "app.notifications.catch-up-limit", defaultValue = "50000")
+    int catchUpLimit;
+
     @Inject
     io.vertx.mutiny.core.Vertx vertx;
 
+    @Inject
+    EventLog eventLog;
+
+    @Inject
+    MeterRegistry registry;
+
+    private static final String PRESENCE = "presence";
+
     private final BroadcastProcessor<JsonObject> processor = BroadcastProcessor.create();
+    private final BroadcastProcessor<JsonObject> signals = BroadcastProcessor.create();
+    private volatile boolean stopped;
+    // Written on the event loop of each connection attempt, read by the next
+    private volatile int attempts;
+    private Counter reconnects;
+
+    @PostConstruct
+    void registerMetrics() {
+        reconnects = Counter.builder("notifications.listen.reconnects")
+                .description("Reconnect attempts of the LISTEN connection")
+                .register(registry);
+    }
 
     void onStart(@Observes StartupEvent event) {
+        if (cdcEnabled) {
+            Log.info("entity_changes come from the CDC engine; listening for presence only");
+        }
+        connect();
+    }
+
+    @PreDestroy
+    void onStop() {
+        stopped = true;
+    }
+
+    private void connect() {
         var connectOptions = PgConnectOptions.fromUri(reactiveUrl)
                 .setUser(username)
                 .setPassword(password);
 
         PgConnection.connect(vertx, connectOptions)
                 .onItem().transformToUni(conn -> {
+                    var listening = new AtomicBoolean();
                     conn.notificationHandler(notification -> {
                         try {
                             JsonObject payload = new JsonObject(notification.getPayload());
                             payload.put("channel", notification.getChannel());
-                            processor.onNext(payload);
+                            if (PRESENCE.equals(notification.getChannel())) {
+                                signals.onNext(payload);
+                            } else {
+                                publish(payload);
+                            }
                         } catch (Exception e) {
                             Log.warn("Failed to parse notification payload", e);
                         }
                     });
-                    return conn.query("LISTEN entity_changes").execute();
+                    // Until LISTEN succeeded, a failure reconnects through the error path below
+                    conn.closeHandler(() -> {
+                        if (listening.get()) {
+                            Log.warn("LISTEN connection closed");
+                            scheduleReconnect();
+                        }
+                    });
+                    return conn.query(cdcEnabled ? "LISTEN " + PRESENCE
+                                    : "LISTEN entity_changes; LISTEN " + PRESENCE).execute()
+                            .invoke(() -> listening.set(true))
+                            .onFailure().call(conn::close);
                 })
                 .subscribe().with(
-                        v -> Log.info("LISTEN connection established for entity_changes"),
-                        err -> Log.error("Failed to setup LISTEN", err)
+                        v -> {
+                            Log.info("LISTEN connection established");
+                            if (attempts > 0 && !cdcEnabled) {
+                                catchUp();
+                            }
+                            attempts = 0;
+                        },
+                        err -> {
+                            Log.error("Failed to setup LISTEN", err);
+                            scheduleReconnect();
+                        }
                 );
     }
 
+    private void scheduleReconnect() {
+        if (stopped) {
+            return;
+        }
+        // Counts the outage from its first failed attempt; catchUp() runs once LISTEN is back
+        attempts++;
+        reconnects.increment();
+        long delay = Math.min(reconnectMax.toMillis(), reconnectBase.toMillis() << Math.min(attempts - 1, 16));
+        Log.infof("Reconnecting LISTEN in %d ms (attempt %d)", delay, attempts);
+        vertx.setTimer(delay, id -> connect());
+    }
+
+    /**
+     * Publishes what was committed while LISTEN was down, read from the event
+     * log after the last event received. Events the new connection has already
+     * delivered are skipped by {@link EventLog#record}.
+     */
+    private void catchUp() {
+        long lastSeq = eventLog.lastSeq();
+        if (lastSeq == 0) {
+            return;
+        }
+        eventLog.readAfter(lastSeq, catchUpLimit).subscribe().with(replay -> {
+            if (!replay.complete()) {
+                Log.warnf("LISTEN outage outlasted the event log after seq %d; caches may be stale until their TTL",
+                        lastSeq);
+            }
+            replay.events().forEach(this::publish);
+        }, err -> Log.error("Failed to catch up entity_changes after reconnect", err));
+    }
+
+    /** Hands an event to subscribers unless its {@code seq} was already published. */
+    void publish(JsonObject payload) {
+        if (eventLog.record(payload)) {
+            processor.onNext(payload);
+        }
+    }
+
     public Multi<JsonObject> stream(String channel) {
         return Multi.createFrom().publisher(processor)
                 .filter(json -> channel == null || channel.equals(json.getString("channel")));
     }
+
+    /**
+     * Messages other nodes sent with {@code pg_notify} on a signal channel
+     * ({@code presence}). Unlike {@link #stream(String)} they carry no
+     * {@code seq} and are lost while the connection is down, so senders repeat
+     * their state periodically.
+     */
+    public Multi<JsonObject> signals(String channel) {
+        return Multi.createFrom().publisher(signals)
+                .filter(json -> channel.equals(json.getString("channel")));
+    }
+
+    /**
+     * Ids of the rows an {@code entity_changes} notification covers (one
+     * notification per statement), or null when the list overflowed the NOTIFY
+     * payload limit and any row of the table may have changed.
+     */
+    public static List<String> ids(JsonObject change) {
+        JsonArray ids = change.getJsonArray("ids");
+        if (ids == null) {
+            return null;
+        }
+        var result = new ArrayList<String>(ids.size());
+        ids.forEach(id -> result.add(String.valueOf(id)));
+        return result;
+    }
+
+    /**
+     * Users affected by a change to a user-owned table (entitlements,
+     * subscriptions, orders), or null when the notification does not say.
+     */
+    public static List<Long> userIds(JsonObject change) {
+        JsonArray userIds = change.getJsonArray("user_ids");
+        if (userIds == null) {
+            return null;
+        }
+        var result = new ArrayList<Long>(userIds.size());
+        userIds.forEach(id -> result.add(((Number) id).longValue()));
+        return result;
+    }
 }
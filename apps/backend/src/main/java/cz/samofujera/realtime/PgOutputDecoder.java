@@ -0,0 +1,216 @@
+package cz.samofujera.realtime;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decodes the {@code pgoutput} logical replication protocol (version 1) into
+ * {@code entity_changes} events.
+ * <p>
+ * A transaction is buffered until its commit. Its {@code entity_change_log}
+ * inserts, written by the statement triggers after each statement, delimit the
+ * statements: each becomes one event with the logged payload ({@code seq},
+ * {@code table}, {@code operation}, ...) plus {@code rows}, the before and after
+ * image of every row the statement changed, with {@code ids} and
+ * {@code user_ids} rebuilt from those rows, so they never overflow. Row changes
+ * the triggers chose not to report (e.g. draft-only page edits) are dropped.
+ */
+final class PgOutputDecoder {
+
+    static final String LOG_TABLE = "entity_change_log";
+
+    /** A decoded transaction: its end LSN (the resume point after it) and its events. */
+    record Commit(long endLsn, long commitTimeMicros, List<JsonObject> events) {}
+
+    private record Column(String name, int typeOid) {}
+
+    private record Relation(String table, List<Column> columns) {}
+
+    private record RowChange(String table, String operation, JsonObject before, JsonObject after) {}
+
+    // Postgres epoch (2000-01-01) in Unix microseconds
+    private static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+
+    private final Map<Integer, Relation> relations = new HashMap<>();
+    private final List<RowChange> transaction = new ArrayList<>();
+
+    /** Feeds one message; returns the transaction on its commit message, otherwise null. */
+    Commit decode(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case 'B' -> transaction.clear();
+            case 'R' -> readRelation(buffer);
+            case 'I' -> {
+                Relation relation = relations.get(buffer.getInt());
+                buffer.get(); // 'N'
+                transaction.add(new RowChange(relation.table(), "INSERT", null, readTuple(buffer, relation)));
+            }
+            case 'U' -> {
+                Relation relation = relations.get(buffer.getInt());
+                JsonObject before = null;
+                byte kind = buffer.get();
+                if (kind == 'K' || kind == 'O') {
+                    before = readTuple(buffer, relation);
+                    buffer.get(); // 'N'
+                }
+                JsonObject after = readTuple(buffer, relation);
+                transaction.add(new RowChange(relation.table(), "UPDATE", before, after));
+            }
+            case 'D' -> {
+                Relation relation = relations.get(buffer.getInt());
+                buffer.get(); // 'K' or 'O'
+                transaction.add(new RowChange(relation.table(), "DELETE", readTuple(buffer, relation), null));
+            }
+            case 'T' -> {
+                int count = buffer.getInt();
+                buffer.get(); // options
+                for (int i = 0; i < count; i++) {
+                    Relation relation = relations.get(buffer.getInt());
+                    transaction.add(new RowChange(relation.table(), "TRUNCATE", null, null));
+                }
+            }
+            case 'C' -> {
+                buffer.get(); // flags
+                buffer.getLong(); // commit LSN
+                long endLsn = buffer.getLong();
+                long commitTime = buffer.getLong() + PG_EPOCH_MICROS;
+                List<JsonObject> events = assemble();
+                transaction.clear();
+                return new Commit(endLsn, commitTime, events);
+            }
+            default -> {
+                // 'Y' (type), 'O' (origin) and 'M' (message) carry nothing we use
+            }
+        }
+        return null;
+    }
+
+    private List<JsonObject> assemble() {
+        List<JsonObject> events = new ArrayList<>();
+        Map<String, List<RowChange>> pending = new LinkedHashMap<>();
+        for (RowChange change : transaction) {
+            if ("TRUNCATE".equals(change.operation())) {
+                // Statement triggers do not fire on TRUNCATE; report the whole table as changed
+                events.add(new JsonObject()
+                        .put("channel", "entity_changes")
+                        .put("table", change.table())
+                        .put("operation", "TRUNCATE")
+                        .put("overflow", true));
+                continue;
+            }
+            if (!LOG_TABLE.equals(change.table())) {
+                pending.computeIfAbsent(change.table() + ":" + change.operation(), k -> new ArrayList<>()).add(change);
+                continue;
+            }
+            if (!"INSERT".equals(change.operation())) {
+                continue;
+            }
+            JsonObject logged = change.after().getJsonObject("payload");
+            if (logged == null) {
+                continue;
+            }
+            List<RowChange> rows = pending.remove(logged.getString("table") + ":" + logged.getString("operation"));
+            events.add(toEvent(logged, rows != null ? rows : List.of()));
+        }
+        return events;
+    }
+
+    private static JsonObject toEvent(JsonObject logged, List<RowChange> rows) {
+        JsonObject event = logged.copy().put("channel", "entity_changes");
+        if (rows.isEmpty()) {
+            return event;
+        }
+        Set<Object> ids = new LinkedHashSet<>();
+        Set<Object> userIds = new LinkedHashSet<>();
+        JsonArray images = new JsonArray();
+        for (RowChange row : rows) {
+            JsonObject current = row.after() != null ? row.after() : row.before();
+            ids.add(current.getValue("id"));
+            if (current.getValue("user_id") != null) {
+                userIds.add(current.getValue("user_id"));
+            }
+            images.add(new JsonObject().put("before", row.before()).put("after", row.after()));
+        }
+        event.remove("overflow");
+        event.put("count", rows.size())
+                .put("ids", new JsonArray(new ArrayList<>(ids)))
+                .put("rows", images);
+        if (logged.containsKey("user_ids")) {
+            event.put("user_ids", new JsonArray(new ArrayList<>(userIds)));
+        }
+        return event;
+    }
+
+    private void readRelation(ByteBuffer buffer) {
+        int id = buffer.getInt();
+        readString(buffer); // namespace
+        String table = readString(buffer);
+        buffer.get(); // replica identity
+        int count = buffer.getShort();
+        List<Column> columns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buffer.get(); // flags
+            String name = readString(buffer);
+            int typeOid = buffer.getInt();
+            buffer.getInt(); // type modifier
+            columns.add(new Column(name, typeOid));
+        }
+        relations.put(id, new Relation(table, columns));
+    }
+
+    private static JsonObject readTuple(ByteBuffer buffer, Relation relation) {
+        int count = buffer.getShort();
+        JsonObject row = new JsonObject();
+        for (int i = 0; i < count; i++) {
+            Column column = relation.columns().get(i);
+            byte kind = buffer.get();
+            switch (kind) {
+                case 'n' -> row.putNull(column.name());
+                case 't', 'b' -> {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    if (kind == 't') {
+                        row.put(column.name(), convert(column.typeOid(), new String(bytes, StandardCharsets.UTF_8)));
+                    }
+                }
+                default -> {
+                    // 'u': unchanged TOASTed value, not sent; leave the column out
+                }
+            }
+        }
+        return row;
+    }
+
+    private static Object convert(int typeOid, String text) {
+        return switch (typeOid) {
+            case 16 -> "t".equals(text);
+            case 20 -> Long.parseLong(text);
+            case 21, 23 -> Integer.parseInt(text);
+            case 700, 701 -> Double.parseDouble(text);
+            case 1700 -> new BigDecimal(text);
+            case 114, 3802 -> text.startsWith("[") ? new JsonArray(text) : text.startsWith("{") ? new JsonObject(text) : text;
+            default -> text;
+        };
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int start = buffer.position();
+        while (buffer.get() != 0) {
+            // scan to the terminating NUL
+        }
+        byte[] bytes = new byte[buffer.position() - start - 1];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,331 @@
+package cz.samofujera.realtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Who is watching which streamed content item right now, held in memory only.
+ * <p>
+ * A viewer session holds a lease on (user, content) that each heartbeat
+ * extends by {@code app.presence.ttl}; a lease that is not renewed expires and
+ * frees its slot. At most {@code app.presence.max-streams} leases per user and
+ * content item are admitted; a further session is rejected until one is
+ * released or expires. Renewing a live lease is a map read and a CAS, with no
+ * lock and no database access.
+ * <p>
+ * Nodes share their leases over {@code app.presence.bus}: with {@code postgres}
+ * each node announces claims and releases at once and re-announces all its live
+ * leases every {@code app.presence.sync-interval}, and peers hold those copies
+ * for one TTL. Two nodes admitting the same user within one NOTIFY round trip
+ * can both succeed; the limit is enforced again from the next admission on.
+ * {@code local} keeps leases on this node only.
+ */
+@ApplicationScoped
+public class PresenceRegistry {
+
+    public enum Outcome { RENEWED, ADMITTED, REJECTED }
+
+    public record Heartbeat(Outcome outcome, int active, int limit) {}
+
+    record Key(long userId, UUID contentId) {}
+
+    static final class Lease {
+        final String sessionId;
+        final boolean local;
+        // 0 once swept, so a racing renewal cannot revive it
+        final AtomicLong expiresAt;
+
+        Lease(String sessionId, boolean local, long expiresAt) {
+            this.sessionId = sessionId;
+            this.local = local;
+            this.expiresAt = new AtomicLong(expiresAt);
+        }
+
+        boolean renew(long now, long until) {
+            long current;
+            do {
+                current = expiresAt.get();
+                if (current <= now) return false;
+            } while (!expiresAt.compareAndSet(current, Math.max(current, until)));
+            return true;
+        }
+
+        boolean expire(long now) {
+            long current = expiresAt.get();
+            return current <= now && expiresAt.compareAndSet(current, 0);
+        }
+    }
+
+    private static final String CHANNEL = "presence";
+    // NOTIFY payloads are limited to 8000 bytes
+    private static final int MAX_MESSAGE_CHARS = 7000;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    Pool client;
+
+    @Inject
+    MeterRegistry meters;
+
+    @ConfigProperty(name = "app.presence.ttl", defaultValue = "PT30S")
+    Duration ttl;
+
+    @ConfigProperty(name = "app.presence.max-streams", defaultValue = "1")
+    int maxStreams;
+
+    @ConfigProperty(name = "app.presence.bus", defaultValue = "postgres")
+    String bus;
+
+    final String node = UUID.randomUUID().toString();
+    final Map<Key, Map<String, Lease>> leases = new ConcurrentHashMap<>();
+
+    /** Where messages for peer nodes go; a no-op with the local bus. */
+    Consumer<JsonObject> outbox = message -> {};
+
+    private Counter heartbeats;
+    private Counter rejections;
+    private Counter messages;
+
+    @PostConstruct
+    void init() {
+        if ("postgres".equals(bus)) {
+            outbox = this::notifyPeers;
+        }
+        heartbeats = Counter.builder("presence.heartbeats")
+                .description("Viewer heartbeats received")
+                .register(meters);
+        rejections = Counter.builder("presence.rejections")
+                .description("Viewer sessions refused over the concurrent stream limit")
+                .register(meters);
+        messages = Counter.builder("presence.sync.messages")
+                .description("Presence messages sent to other nodes")
+                .register(meters);
+        Gauge.builder("presence.leases", this, r -> r.count(true))
+                .description("Live viewer leases held by this node")
+                .tag("origin", "local")
+                .register(meters);
+        Gauge.builder("presence.leases", this, r -> r.count(false))
+                .description("Live viewer leases held by this node")
+                .tag("origin", "remote")
+                .register(meters);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!"postgres".equals(bus)) {
+            return;
+        }
+        notifications.signals(CHANNEL).subscribe().with(this::receive,
+                err -> Log.error("Presence listener failed", err));
+    }
+
+    /**
+     * Extends a live lease of this node. False means the session must be
+     * admitted first, with whatever checks admission needs.
+     */
+    public boolean renew(long userId, UUID contentId, String sessionId) {
+        return renew(new Key(userId, contentId), sessionId, System.currentTimeMillis());
+    }
+
+    /** Renews the session's lease, or admits it if the stream limit allows. */
+    public Heartbeat admit(long userId, UUID contentId, String sessionId) {
+        return admit(new Key(userId, contentId), sessionId, System.currentTimeMillis());
+    }
+
+    public void release(long userId, UUID contentId, String sessionId) {
+        var key = new Key(userId, contentId);
+        if (remove(key, sessionId)) {
+            outbox.accept(message("release", List.of(triple(key, sessionId))));
+        }
+    }
+
+    /** Live leases of the user on the content item, across all nodes this one has heard of. */
+    public int active(long userId, UUID contentId) {
+        Map<String, Lease> sessions = leases.get(new Key(userId, contentId));
+        return sessions == null ? 0 : live(sessions, System.currentTimeMillis());
+    }
+
+    public int limit() {
+        return maxStreams;
+    }
+
+    /** How long a lease outlives its last heartbeat. */
+    public Duration ttl() {
+        return ttl;
+    }
+
+    boolean renew(Key key, String sessionId, long now) {
+        if (heartbeats != null) heartbeats.increment();
+        Map<String, Lease> sessions = leases.get(key);
+        Lease lease = sessions != null ? sessions.get(sessionId) : null;
+        return lease != null && lease.local && lease.renew(now, now + ttl.toMillis());
+    }
+
+    Heartbeat admit(Key key, String sessionId, long now) {
+        long until = now + ttl.toMillis();
+        Outcome[] outcome = new Outcome[1];
+        int[] active = new int[1];
+        // Admission is rare next to renewal, so it may take the bin lock
+        leases.compute(key, (k, current) -> {
+            Map<String, Lease> sessions = current != null ? current : new ConcurrentHashMap<>(4);
+            sessions.values().removeIf(lease -> lease.expire(now) || lease.expiresAt.get() == 0);
+            Lease existing = sessions.get(sessionId);
+            if (existing != null && existing.local && existing.renew(now, until)) {
+                outcome[0] = Outcome.RENEWED;
+            } else {
+                // A session that moved here from another node takes over its own slot
+                sessions.remove(sessionId);
+                if (live(sessions, now) < maxStreams) {
+                    sessions.put(sessionId, new Lease(sessionId, true, until));
+                    outcome[0] = Outcome.ADMITTED;
+                } else {
+                    outcome[0] = Outcome.REJECTED;
+                }
+            }
+            active[0] = live(sessions, now);
+            return sessions.isEmpty() ? null : sessions;
+        });
+        if (outcome[0] == Outcome.ADMITTED) {
+            outbox.accept(message("claim", List.of(triple(key, sessionId))));
+        } else if (outcome[0] == Outcome.REJECTED && rejections != null) {
+            rejections.increment();
+        }
+        return new Heartbeat(outcome[0], active[0], maxStreams);
+    }
+
+    /** Drops expired leases, then re-announces this node's live ones. */
+    @Scheduled(every = "${app.presence.sync-interval:10s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> sync() {
+        long now = System.currentTimeMillis();
+        List<JsonArray> local = sweep(now);
+        if (!local.isEmpty()) {
+            var batch = new ArrayList<JsonArray>();
+            int size = 0;
+            for (JsonArray triple : local) {
+                int length = triple.encode().length() + 1;
+                if (size + length > MAX_MESSAGE_CHARS && !batch.isEmpty()) {
+                    outbox.accept(message("renew", batch));
+                    batch = new ArrayList<>();
+                    size = 0;
+                }
+                batch.add(triple);
+                size += length;
+            }
+            outbox.accept(message("renew", batch));
+        }
+        return Uni.createFrom().voidItem();
+    }
+
+    /** Removes expired leases and returns this node's live ones. */
+    List<JsonArray> sweep(long now) {
+        var local = new ArrayList<JsonArray>();
+        for (Key key : leases.keySet()) {
+            leases.computeIfPresent(key, (k, sessions) -> {
+                sessions.values().removeIf(lease -> lease.expire(now) || lease.expiresAt.get() == 0);
+                for (Lease lease : sessions.values()) {
+                    if (lease.local) local.add(triple(k, lease.sessionId));
+                }
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+        return local;
+    }
+
+    /** Applies a message from another node; copies of its leases live one TTL from now. */
+    void receive(JsonObject message) {
+        if (node.equals(message.getString("node"))) {
+            return;
+        }
+        JsonArray items = message.getJsonArray("leases");
+        if (items == null) {
+            return;
+        }
+        boolean release = "release".equals(message.getString("op"));
+        long until = System.currentTimeMillis() + ttl.toMillis();
+        for (int i = 0; i < items.size(); i++) {
+            JsonArray item = items.getJsonArray(i);
+            var key = new Key(item.getLong(0), UUID.fromString(item.getString(1)));
+            String sessionId = item.getString(2);
+            if (release) {
+                remove(key, sessionId);
+                continue;
+            }
+            leases.compute(key, (k, current) -> {
+                Map<String, Lease> sessions = current != null ? current : new ConcurrentHashMap<>(4);
+                Lease lease = sessions.get(sessionId);
+                // A local lease for the same session means it moved to the sender
+                if (lease == null || lease.local || !lease.renew(System.currentTimeMillis(), until)) {
+                    sessions.put(sessionId, new Lease(sessionId, false, until));
+                }
+                return sessions;
+            });
+        }
+    }
+
+    private boolean remove(Key key, String sessionId) {
+        boolean[] removed = new boolean[1];
+        leases.computeIfPresent(key, (k, sessions) -> {
+            removed[0] = sessions.remove(sessionId) != null;
+            return sessions.isEmpty() ? null : sessions;
+        });
+        return removed[0];
+    }
+
+    private static int live(Map<String, Lease> sessions, long now) {
+        int live = 0;
+        for (Lease lease : sessions.values()) {
+            if (lease.expiresAt.get() > now) live++;
+        }
+        return live;
+    }
+
+    private int count(boolean local) {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (Map<String, Lease> sessions : leases.values()) {
+            for (Lease lease : sessions.values()) {
+                if (lease.local == local && lease.expiresAt.get() > now) count++;
+            }
+        }
+        return count;
+    }
+
+    private JsonObject message(String op, List<JsonArray> items) {
+        return new JsonObject().put("node", node).put("op", op).put("leases", new JsonArray(new ArrayList<>(items)));
+    }
+
+    private static JsonArray triple(Key key, String sessionId) {
+        return new JsonArray().add(key.userId()).add(key.contentId().toString()).add(sessionId);
+    }
+
+    private void notifyPeers(JsonObject message) {
+        messages.increment();
+        client.preparedQuery("SELECT pg_notify('" + CHANNEL + "', $1)")
+                .execute(Tuple.of(message.encode()))
+                .subscribe().with(rows -> {}, err -> Log.warn("Failed to send presence message", err));
+    }
+}
@@ -1,17 +1,24 @@
 package cz.samofujera.realtime;
 
+import cz.samofujera.auth.AuthDtos;
 import io.quarkus.security.Authenticated;
 import io.quarkus.security.identity.SecurityIdentity;
 import io.smallrye.mutiny.Multi;
-import io.vertx.core.json.JsonObject;
+import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
-import org.jboss.resteasy.reactive.RestStreamElementType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import org.jboss.resteasy.reactive.RestResponse;
+
+import java.util.List;
 
 @Path("/api/events")
 @Authenticated
@@ -19,30 +26,65 @@ import org.jboss.resteasy.reactive.RestStreamElementType;
 public class SseResource {
 
     @Inject
-    PgNotificationService notificationService;
+    SubscriptionRegistry registry;
 
     @Inject
     SecurityIdentity identity;
 
+    /**
+     * Change events for the caller: admins see every event, users see events of
+     * shared tables and those of user-owned tables that list them in {@code user_ids}.
+     * {@code overflow} picks what happens when the client falls a full buffer behind:
+     * {@code drop-oldest}, {@code coalesce} or {@code disconnect} (a final
+     * {@code {"type":"reset"}} event, after which the client should refetch).
+     * <p>
+     * Events carry their log sequence as the SSE id, so a reconnecting
+     * {@code EventSource} sends {@code Last-Event-ID} and receives only what it
+     * missed ({@code lastEventId} does the same for clients that cannot set headers).
+     */
     @GET
     @Path("/stream")
     @Produces(MediaType.SERVER_SENT_EVENTS)
-    @RestStreamElementType(MediaType.APPLICATION_JSON)
-    public Multi<JsonObject> stream(@QueryParam("channel") String channel) {
+    public Multi<OutboundSseEvent> stream(@QueryParam("channel") String channel, @QueryParam("table") String table,
+                                          @QueryParam("overflow") String overflow,
+                                          @HeaderParam("Last-Event-ID") String lastEventIdHeader,
+                                          @QueryParam("lastEventId") String lastEventIdParam,
+                                          @Context Sse sse) {
         Long userId = identity.getAttribute("user_id");
+        // Resolved once per connection, not per event
+        boolean admin = identity.hasRole("ADMIN");
+        Long lastEventId = parseEventId(lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam);
 
-        return notificationService.stream(channel)
-                .filter(event -> isAuthorizedForEvent(event, userId));
+        return registry.subscribe(channel, table, userId, admin, overflow, lastEventId)
+                .map(event -> {
+                    var builder = sse.newEventBuilder()
+                            .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                            .data(String.class, event.encode());
+                    Long seq = EventLog.seq(event);
+                    if (seq != null) {
+                        builder.id(seq.toString());
+                    }
+                    return builder.build();
+                });
     }
 
-    private boolean isAuthorizedForEvent(JsonObject event, Long userId) {
-        // For POC: admin sees all, users see their own events
-        String role = identity.getRoles().stream().findFirst().orElse("USER");
-        if ("ADMIN".equals(role)) {
-            return true;
+    /** Open connections with their buffer depth, lag and drop counts, most lagging first. */
+    @GET
+    @Path("/connections")
+    @RolesAllowed("ADMIN")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RestResponse<AuthDtos.ApiResponse<List<SubscriptionRegistry.ConnectionStats>>> connections() {
+        return RestResponse.ok(AuthDtos.ApiResponse.ok(registry.connectionStats()));
+    }
+
+    private static Long parseEventId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
         }
-        // Filter to events that belong to this user
-        Long eventUserId = event.getLong("user_id");
-        return eventUserId == null || eventUserId.equals(userId);
     }
 }
@@ -0,0 +1,266 @@
+package cz.samofujera.realtime;
+
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded buffer between the notification thread and one SSE connection.
+ * Events are emitted only as the connection requests them, so a slow client
+ * fills its own queue and then its {@link OverflowPolicy} applies; it never
+ * holds up dispatch to other connections or grows the heap beyond
+ * {@code capacity} events.
+ */
+final class SubscriberQueue {
+
+    enum OverflowPolicy {
+        /** Discard the oldest queued event. */
+        DROP_OLDEST,
+        /**
+         * Keep only the latest event per (table, ids); when that does not free a
+         * slot, fold the queue into one overflow event per table.
+         */
+        COALESCE,
+        /** Send a reset event and close; the client reconnects and refetches. */
+        DISCONNECT;
+
+        static OverflowPolicy parse(String value, OverflowPolicy fallback) {
+            if (value == null || value.isBlank()) return fallback;
+            return switch (value.trim().toLowerCase().replace('_', '-')) {
+                case "drop-oldest" -> DROP_OLDEST;
+                case "coalesce" -> COALESCE;
+                case "disconnect" -> DISCONNECT;
+                default -> fallback;
+            };
+        }
+    }
+
+    private record Queued(String key, JsonObject event, long enqueuedAtNanos) {}
+
+    final String id;
+    final Long userId;
+    final OverflowPolicy policy;
+    private final int capacity;
+    private final MultiEmitter<? super JsonObject> emitter;
+    private final Runnable onDrop;
+
+    private final ArrayDeque<Queued> queue = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private boolean resetPending;
+    private String resetReason;
+    private int pauses;
+    private long dropped;
+    private long coalesced;
+    private long delivered;
+
+    SubscriberQueue(String id, Long userId, OverflowPolicy policy, int capacity,
+                    MultiEmitter<? super JsonObject> emitter, Runnable onDrop) {
+        this.id = id;
+        this.userId = userId;
+        this.policy = policy;
+        this.capacity = Math.max(1, capacity);
+        this.emitter = emitter;
+        this.onDrop = onDrop;
+        emitter.onRequest(n -> drain());
+    }
+
+    void offer(JsonObject event) {
+        String key = policy == OverflowPolicy.COALESCE ? coalesceKey(event) : null;
+        synchronized (this) {
+            if (resetPending) return;
+            if (key != null && replaceQueued(key, event)) {
+                coalesced++;
+            } else {
+                if (queue.size() >= capacity) {
+                    overflow();
+                }
+                if (resetPending) {
+                    // fall through to drain, which sends the reset
+                } else {
+                    queue.addLast(new Queued(key, event, System.nanoTime()));
+                }
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Holds back delivery until {@link #resume} puts replayed events in front.
+     * Pauses nest: delivery restarts after as many resumes.
+     */
+    synchronized void pause() {
+        pauses++;
+    }
+
+    /**
+     * Delivers missed events ahead of the live ones queued while paused, skipping
+     * any already queued. A null list, or more missed events than the buffer
+     * holds, ends the stream with a reset so the client refetches.
+     */
+    void resume(List<JsonObject> missed) {
+        synchronized (this) {
+            pauses = Math.max(0, pauses - 1);
+            if (missed == null || missed.size() + queue.size() > capacity) {
+                if (!resetPending) {
+                    dropped += queue.size();
+                    queue.clear();
+                    resetPending = true;
+                    resetReason = "replay-unavailable";
+                }
+            } else {
+                Set<String> queued = new HashSet<>();
+                queue.forEach(q -> queued.add(replayKey(q.event())));
+                long now = System.nanoTime();
+                for (int i = missed.size() - 1; i >= 0; i--) {
+                    JsonObject event = missed.get(i);
+                    String key = replayKey(event);
+                    if (key == null || !queued.contains(key)) {
+                        queue.addFirst(new Queued(policy == OverflowPolicy.COALESCE ? coalesceKey(event) : null,
+                                event, now));
+                    }
+                }
+            }
+        }
+        drain();
+    }
+
+    /** Called with the lock held and the queue full. */
+    private void overflow() {
+        switch (policy) {
+            case DROP_OLDEST -> {
+                queue.pollFirst();
+                dropped++;
+                onDrop.run();
+            }
+            case COALESCE -> {
+                foldPerTable();
+                while (queue.size() >= capacity) {
+                    queue.pollFirst();
+                    dropped++;
+                    onDrop.run();
+                }
+            }
+            case DISCONNECT -> {
+                dropped += queue.size();
+                queue.clear();
+                resetPending = true;
+                resetReason = "slow-consumer";
+                onDrop.run();
+            }
+        }
+    }
+
+    private boolean replaceQueued(String key, JsonObject event) {
+        for (Iterator<Queued> it = queue.iterator(); it.hasNext(); ) {
+            Queued queued = it.next();
+            if (key.equals(queued.key())) {
+                it.remove();
+                // Keep the original timestamp so lag reflects how long the entity has waited
+                queue.addLast(new Queued(key, event, queued.enqueuedAtNanos()));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void foldPerTable() {
+        Map<String, Queued> perTable = new LinkedHashMap<>();
+        for (Queued queued : queue) {
+            JsonObject event = queued.event();
+            JsonObject change = event.containsKey("event") ? event.getJsonObject("event") : event;
+            perTable.merge(event.getString("topic", "") + "/" + change.getString("table", ""), queued,
+                    (first, next) -> first);
+        }
+        coalesced += queue.size() - perTable.size();
+        queue.clear();
+        perTable.forEach((key, first) -> {
+            JsonObject event = first.event();
+            JsonObject change = event.containsKey("event") ? event.getJsonObject("event") : event;
+            JsonObject folded = new JsonObject()
+                    .put("channel", change.getString("channel"))
+                    .put("table", change.getString("table"))
+                    .put("operation", "COALESCED")
+                    .put("overflow", true);
+            if (change != event) {
+                // Multiplexed frame: keep the envelope, replace the change
+                folded = event.copy().put("event", folded);
+                folded.remove("seq");
+            }
+            queue.addLast(new Queued("table:" + key, folded, first.enqueuedAtNanos()));
+        });
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (!isPaused() && emitter.requested() > 0) {
+                JsonObject next;
+                synchronized (this) {
+                    Queued queued = queue.pollFirst();
+                    next = queued != null ? queued.event() : null;
+                    if (next != null) delivered++;
+                }
+                if (next == null) break;
+                emitter.emit(next);
+            }
+            String reset;
+            synchronized (this) {
+                reset = resetPending && pauses == 0 && queue.isEmpty() ? resetReason : null;
+            }
+            if (reset != null && !emitter.isCancelled()) {
+                emitter.emit(new JsonObject().put("type", "reset").put("reason", reset));
+                emitter.complete();
+                return;
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private synchronized boolean isPaused() {
+        return pauses > 0;
+    }
+
+    synchronized int depth() {
+        return queue.size();
+    }
+
+    /** Age of the oldest undelivered event, 0 when caught up. */
+    synchronized long lagMillis() {
+        Queued oldest = queue.peekFirst();
+        return oldest == null ? 0 : (System.nanoTime() - oldest.enqueuedAtNanos()) / 1_000_000;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    synchronized long coalesced() {
+        return coalesced;
+    }
+
+    synchronized long delivered() {
+        return delivered;
+    }
+
+    // Multiplexed frames carry their topic; the same seq may be queued once per topic
+    private static String replayKey(JsonObject event) {
+        Long seq = EventLog.seq(event);
+        return seq == null ? null : seq + "/" + event.getString("topic", "");
+    }
+
+    private static String coalesceKey(JsonObject event) {
+        JsonObject change = event.containsKey("event") ? event.getJsonObject("event") : event;
+        Object ids = change.getValue("ids");
+        return event.getString("topic", "") + "/" + change.getString("table", "") + ":"
+                + (ids != null ? ids.toString() : "*");
+    }
+}
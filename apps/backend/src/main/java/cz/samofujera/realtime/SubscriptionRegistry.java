@@ -0,0 +1,312 @@
+package cz.samofujera.realtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import io.vertx.core.json.JsonObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Routes {@code entity_changes} notifications to SSE connections through
+ * indexes instead of offering every event to every connection.
+ * <p>
+ * Connections are indexed by their (channel, table) filter, either part of which
+ * may be a wildcard, so an event only looks up the four keys that can match it.
+ * Events of user-owned tables carry {@code user_ids}; those reach admins through
+ * the filter index and users through a per-user index, so the cost of an event
+ * depends on how many connections receive it, not on how many are open.
+ * <p>
+ * Each connection drains its own bounded {@link SubscriberQueue} at the pace the
+ * client reads, so a slow client only ever loses its own events, according to
+ * {@code app.sse.overflow-policy} or the {@code overflow} query parameter.
+ */
+@ApplicationScoped
+public class SubscriptionRegistry {
+
+    /** One open stream. A null channel or table matches any. */
+    static final class Subscription {
+        final Long userId;
+        final boolean admin;
+        final Key key;
+        final Consumer<JsonObject> sink;
+
+        Subscription(Long userId, boolean admin, String channel, String table, Consumer<JsonObject> sink) {
+            this.userId = userId;
+            this.admin = admin;
+            this.key = new Key(channel, table);
+            this.sink = sink;
+        }
+
+        boolean matches(String channel, String table) {
+            return (key.channel() == null || key.channel().equals(channel))
+                    && (key.table() == null || key.table().equals(table));
+        }
+    }
+
+    record Key(String channel, String table) {}
+
+    /** Per-connection delivery state for the admin connections view. */
+    public record ConnectionStats(String id, Long userId, boolean admin, String topics,
+                                  String policy, int depth, long lagMillis, long delivered,
+                                  long coalesced, long dropped) {}
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    MeterRegistry meters;
+
+    @Inject
+    EventLog eventLog;
+
+    @ConfigProperty(name = "app.sse.buffer-size", defaultValue = "256")
+    int bufferSize;
+
+    @ConfigProperty(name = "app.sse.overflow-policy", defaultValue = "drop-oldest")
+    String defaultPolicy;
+
+    /** An SSE stream or WebSocket session; {@code topics} describes its filters for the stats view. */
+    record Connection(Long userId, boolean admin, Supplier<String> topics, SubscriberQueue queue) {}
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final Map<SubscriberQueue.OverflowPolicy, Counter> overflowCounters =
+            new EnumMap<>(SubscriberQueue.OverflowPolicy.class);
+
+    private final Map<Key, Set<Subscription>> admins = new ConcurrentHashMap<>();
+    private final Map<Key, Set<Subscription>> publicEvents = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscription>> byUser = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerMetrics() {
+        for (var policy : SubscriberQueue.OverflowPolicy.values()) {
+            overflowCounters.put(policy, Counter.builder("sse.overflows")
+                    .description("Times a full SSE buffer applied its overflow policy")
+                    .tag("policy", policy.name().toLowerCase())
+                    .register(meters));
+        }
+        Gauge.builder("sse.connections", connections, Map::size)
+                .description("Open SSE connections")
+                .register(meters);
+        Gauge.builder("sse.subscriptions", this, SubscriptionRegistry::size)
+                .description("Topic subscriptions across open SSE streams and WebSocket sessions")
+                .register(meters);
+        Gauge.builder("sse.buffer.depth", this, r -> r.connectionStats().stream()
+                        .mapToInt(ConnectionStats::depth).sum())
+                .description("Events queued for SSE connections but not yet written")
+                .register(meters);
+        Gauge.builder("sse.buffer.max-lag", this, r -> r.connectionStats().stream()
+                        .mapToLong(ConnectionStats::lagMillis).max().orElse(0))
+                .description("Age in ms of the oldest event waiting on any SSE connection")
+                .baseUnit("milliseconds")
+                .register(meters);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        notifications.stream(null).subscribe().with(this::dispatch,
+                err -> Log.error("SSE fan-out listener failed", err));
+    }
+
+    /**
+     * Stream of the events this user may see, optionally narrowed to one channel
+     * and table. With {@code lastEventId} the stream starts with the visible
+     * events logged after it, then continues live without gaps or repeats.
+     */
+    public Multi<JsonObject> subscribe(String channel, String table, Long userId, boolean admin, String overflow,
+                                       Long lastEventId) {
+        var policy = policy(overflow);
+        var key = new Key(channel, table);
+        return Multi.createFrom().emitter(emitter -> {
+            var queue = openQueue(userId, admin, policy, emitter, () -> describe(key));
+            var subscription = new Subscription(userId, admin, channel, table, queue::offer);
+            if (lastEventId != null) {
+                // Registered first and paused, so nothing committed during the replay read is lost
+                queue.pause();
+            }
+            add(subscription);
+            emitter.onTermination(() -> remove(subscription));
+            if (lastEventId != null) {
+                replay(subscription, lastEventId).subscribe().with(queue::resume, err -> {
+                    Log.warn("SSE replay failed; asking the client to refetch", err);
+                    queue.resume(null);
+                });
+            }
+        });
+    }
+
+    /** Events after {@code lastEventId} the subscription may see, or null when they are no longer known. */
+    Uni<List<JsonObject>> replay(Subscription subscription, long lastEventId) {
+        return eventLog.since(lastEventId, bufferSize).map(replay -> replay.complete()
+                ? replay.events().stream()
+                        .filter(e -> visible(subscription, e))
+                        .map(e -> subscription.admin ? e : withoutRows(e))
+                        .toList()
+                : null);
+    }
+
+    /**
+     * A WebSocket session: one buffered stream over which the client adds and
+     * removes topics, each with the same filters and visibility as an SSE stream.
+     */
+    public EventSession openSession(Long userId, boolean admin, String overflow) {
+        return new EventSession(this, userId, admin, policy(overflow));
+    }
+
+    SubscriberQueue openQueue(Long userId, boolean admin, SubscriberQueue.OverflowPolicy policy,
+                              MultiEmitter<? super JsonObject> emitter, Supplier<String> topics) {
+        Counter overflows = overflowCounters.get(policy);
+        String id = UUID.randomUUID().toString();
+        var queue = new SubscriberQueue(id, userId, policy, bufferSize, emitter,
+                () -> { if (overflows != null) overflows.increment(); });
+        connections.put(id, new Connection(userId, admin, topics, queue));
+        emitter.onTermination(() -> connections.remove(id));
+        return queue;
+    }
+
+    SubscriberQueue.OverflowPolicy policy(String overflow) {
+        return SubscriberQueue.OverflowPolicy.parse(overflow,
+                SubscriberQueue.OverflowPolicy.parse(defaultPolicy, SubscriberQueue.OverflowPolicy.DROP_OLDEST));
+    }
+
+    static String describe(Key key) {
+        return (key.channel() != null ? key.channel() : "*") + "/" + (key.table() != null ? key.table() : "*");
+    }
+
+    /** Open connections, most lagging first. */
+    public List<ConnectionStats> connectionStats() {
+        return connections.values().stream()
+                .map(c -> new ConnectionStats(c.queue().id, c.userId(), c.admin(), c.topics().get(),
+                        c.queue().policy.name(), c.queue().depth(), c.queue().lagMillis(),
+                        c.queue().delivered(), c.queue().coalesced(), c.queue().dropped()))
+                .sorted(Comparator.comparingLong(ConnectionStats::lagMillis).reversed())
+                .toList();
+    }
+
+    void add(Subscription subscription) {
+        if (subscription.admin) {
+            addTo(admins, subscription.key, subscription);
+            return;
+        }
+        addTo(publicEvents, subscription.key, subscription);
+        if (subscription.userId != null) {
+            addTo(byUser, subscription.userId, subscription);
+        }
+    }
+
+    void remove(Subscription subscription) {
+        if (subscription.admin) {
+            removeFrom(admins, subscription.key, subscription);
+            return;
+        }
+        removeFrom(publicEvents, subscription.key, subscription);
+        if (subscription.userId != null) {
+            removeFrom(byUser, subscription.userId, subscription);
+        }
+    }
+
+    void dispatch(JsonObject event) {
+        String channel = event.getString("channel");
+        String table = event.getString("table");
+        deliver(admins, channel, table, event);
+
+        event = withoutRows(event);
+        List<Long> userIds = PgNotificationService.userIds(event);
+        if (userIds == null) {
+            deliver(publicEvents, channel, table, event);
+            return;
+        }
+        for (Long userId : userIds) {
+            Set<Subscription> subscriptions = byUser.get(userId);
+            if (subscriptions == null) continue;
+            for (Subscription subscription : subscriptions) {
+                if (subscription.matches(channel, table)) {
+                    subscription.sink.accept(event);
+                }
+            }
+        }
+    }
+
+    // Row images from the CDC feed may hold drafts and other users' data; admins only
+    static JsonObject withoutRows(JsonObject event) {
+        if (!event.containsKey("rows")) {
+            return event;
+        }
+        JsonObject copy = event.copy();
+        copy.remove("rows");
+        return copy;
+    }
+
+    /** Whether {@code dispatch} would deliver the event to the subscription. */
+    static boolean visible(Subscription subscription, JsonObject event) {
+        if (!subscription.matches(event.getString("channel"), event.getString("table"))) {
+            return false;
+        }
+        if (subscription.admin) {
+            return true;
+        }
+        List<Long> userIds = PgNotificationService.userIds(event);
+        return userIds == null || (subscription.userId != null && userIds.contains(subscription.userId));
+    }
+
+    public int size() {
+        int total = 0;
+        for (Set<Subscription> set : admins.values()) total += set.size();
+        for (Set<Subscription> set : publicEvents.values()) total += set.size();
+        return total;
+    }
+
+    private static void deliver(Map<Key, Set<Subscription>> index, String channel, String table, JsonObject event) {
+        // The (up to) four distinct keys whose filter matches this event
+        send(index.get(new Key(channel, table)), event);
+        if (table != null) {
+            send(index.get(new Key(channel, null)), event);
+        }
+        if (channel != null) {
+            send(index.get(new Key(null, table)), event);
+        }
+        if (channel != null && table != null) {
+            send(index.get(new Key(null, null)), event);
+        }
+    }
+
+    private static void send(Set<Subscription> subscriptions, JsonObject event) {
+        if (subscriptions == null) return;
+        for (Subscription subscription : subscriptions) {
+            subscription.sink.accept(event);
+        }
+    }
+
+    // compute() on both sides, so an add never lands in a set that a remove is dropping
+    private static <K> void addTo(Map<K, Set<Subscription>> index, K key, Subscription subscription) {
+        index.compute(key, (k, set) -> {
+            Set<Subscription> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscription);
+            return target;
+        });
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Subscription>> index, K key, Subscription subscription) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(subscription);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
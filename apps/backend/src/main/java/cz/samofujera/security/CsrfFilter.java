@@ -24,7 +24,9 @@ public class CsrfFilter {
 
     private void handle(RoutingContext ctx) {
         String method = ctx.request().method().name();
-        if (!MUTATING_METHODS.contains(method)) {
+        // A WebSocket upgrade is a GET, but the socket acts with the session cookie like a POST would
+        boolean upgrade = "websocket".equalsIgnoreCase(ctx.request().getHeader("Upgrade"));
+        if (!MUTATING_METHODS.contains(method) && !upgrade) {
             ctx.next();
             return;
         }
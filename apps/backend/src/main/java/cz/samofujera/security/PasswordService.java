@@ -3,8 +3,27 @@ package cz.samofujera.security;
 import com.password4j.Argon2Function;
 import com.password4j.Password;
 import com.password4j.types.Argon2;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.WorkerExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Argon2 hashing takes 64 MB and tens of milliseconds per call, so it runs on a
+ * dedicated worker pool of {@code app.security.argon2.threads} instead of the
+ * event loop. The results resume on the caller's context, which keeps
+ * Hibernate Reactive sessions usable afterwards.
+ */
 @ApplicationScoped
 public class PasswordService {
 
@@ -16,11 +35,50 @@ public class PasswordService {
             Argon2.ID
     );
 
-    public String hash(String password) {
-        return Password.hash(password).with(ARGON2).getResult();
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MeterRegistry meters;
+
+    @ConfigProperty(name = "app.security.argon2.threads", defaultValue = "4")
+    int threads;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private WorkerExecutor executor;
+
+    @PostConstruct
+    void init() {
+        executor = vertx.createSharedWorkerExecutor("argon2", threads, 60, TimeUnit.SECONDS);
+        Gauge.builder("auth.argon2.in-flight", inFlight, AtomicInteger::get)
+                .description("Password hashes being computed or waiting for a worker")
+                .register(meters);
+        Gauge.builder("auth.argon2.queue.depth", this, s -> Math.max(0, s.inFlight.get() - s.threads))
+                .description("Password hashes waiting for a free Argon2 worker")
+                .register(meters);
+    }
+
+    @PreDestroy
+    void close() {
+        if (executor != null) {
+            executor.closeAndForget();
+        }
+    }
+
+    public Uni<String> hash(String password) {
+        return offload(() -> Password.hash(password).with(ARGON2).getResult());
+    }
+
+    public Uni<Boolean> verify(String password, String hash) {
+        return offload(() -> Password.check(password, hash).with(ARGON2));
     }
 
-    public boolean verify(String password, String hash) {
-        return Password.check(password, hash).with(ARGON2);
+    private <T> Uni<T> offload(Callable<T> work) {
+        return Uni.createFrom().deferred(() -> {
+            inFlight.incrementAndGet();
+            // Unordered: concurrent logins from one connection need not wait on each other
+            return executor.executeBlocking(work, false)
+                    .onTermination().invoke(inFlight::decrementAndGet);
+        });
     }
 }
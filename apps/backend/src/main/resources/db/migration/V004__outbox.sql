@@ -0,0 +1,25 @@
+-- V004: Transactional outbox for emails and domain events
+-- Rows are written in the same transaction as the business change and
+-- picked up by OutboxDispatcher in batches (FOR UPDATE SKIP LOCKED).
+
+CREATE TABLE outbox_messages (
+    id BIGSERIAL PRIMARY KEY,
+    kind VARCHAR(20) NOT NULL,
+    topic VARCHAR(100) NOT NULL,
+    recipient VARCHAR(255),
+    locale VARCHAR(5),
+    payload JSONB NOT NULL DEFAULT '{}',
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    available_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    processed_at TIMESTAMPTZ
+);
+
+-- Claim query only ever scans pending rows that are due
+CREATE INDEX idx_outbox_messages_pending ON outbox_messages(available_at, id)
+    WHERE status = 'PENDING';
+
+CREATE INDEX idx_outbox_messages_processed_at ON outbox_messages(processed_at)
+    WHERE status = 'SENT';
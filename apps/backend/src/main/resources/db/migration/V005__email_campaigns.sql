@@ -0,0 +1,26 @@
+-- V005: Bulk email campaigns with persisted progress (pause/resume)
+
+CREATE TABLE email_campaigns (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    name VARCHAR(255) NOT NULL,
+    template_key VARCHAR(100) NOT NULL,
+    locale VARCHAR(5) NOT NULL DEFAULT 'cs',
+    audience VARCHAR(30) NOT NULL DEFAULT 'ACTIVE_MEMBERS',
+    status VARCHAR(20) NOT NULL DEFAULT 'DRAFT',
+    rate_per_second INT NOT NULL DEFAULT 10,
+    cursor_user_id BIGINT NOT NULL DEFAULT 0,
+    sent_count INT NOT NULL DEFAULT 0,
+    failed_count INT NOT NULL DEFAULT 0,
+    lease_until TIMESTAMPTZ,
+    last_error TEXT,
+    created_by BIGINT REFERENCES users(id),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    started_at TIMESTAMPTZ,
+    completed_at TIMESTAMPTZ
+);
+
+CREATE INDEX idx_email_campaigns_status ON email_campaigns(status);
+
+-- Keyset audience scan: members are users with an ACTIVE subscription, walked by user id
+CREATE INDEX idx_subscriptions_active_user_id ON subscriptions(user_id) WHERE status = 'ACTIVE';
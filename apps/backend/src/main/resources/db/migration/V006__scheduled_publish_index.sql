@@ -0,0 +1,4 @@
+-- V006: Scheduled publishing loads only the upcoming window, not the whole pages table
+
+CREATE INDEX idx_pages_scheduled_publish_at ON pages(scheduled_publish_at)
+    WHERE scheduled_publish_at IS NOT NULL;
@@ -0,0 +1,7 @@
+-- V007: Page revisions stored as periodic full snapshots plus JSON Patch deltas
+-- storage: FULL (content set), DELTA / DELTA_GZIP (content_delta holds an RFC 6902
+-- patch from the previous version, optionally gzip-compressed)
+
+ALTER TABLE page_revisions
+    ADD COLUMN storage VARCHAR(12) NOT NULL DEFAULT 'FULL',
+    ADD COLUMN content_delta BYTEA;
@@ -0,0 +1,3 @@
+-- V008: Optimistic concurrency for partial (JSON Patch) page content updates
+
+ALTER TABLE pages ADD COLUMN content_version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,21 @@
+-- V009: entity_changes notifications for the tables behind sitemaps and the product feed
+
+CREATE TRIGGER products_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON products
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change();
+
+CREATE TRIGGER product_prices_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON product_prices
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change();
+
+CREATE TRIGGER pages_notify_insert_delete
+    AFTER INSERT OR DELETE ON pages
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change();
+
+-- Draft edits save often and do not change any sitemap entry
+CREATE TRIGGER pages_notify_update
+    AFTER UPDATE ON pages
+    FOR EACH ROW
+    WHEN ((OLD.status, OLD.slug, OLD.noindex, OLD.published_at)
+          IS DISTINCT FROM (NEW.status, NEW.slug, NEW.noindex, NEW.published_at))
+    EXECUTE FUNCTION notify_entity_change();
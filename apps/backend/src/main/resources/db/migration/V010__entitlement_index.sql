@@ -0,0 +1,28 @@
+-- V010: Covering index for access checks and per-user change notifications
+
+-- Active-grant lookups by user, optionally narrowed to one entity; expiry is
+-- compared at query time since now() cannot appear in an index predicate
+CREATE INDEX idx_entitlements_active
+    ON entitlements(user_id, entity_type, entity_id) INCLUDE (expires_at)
+    WHERE revoked_at IS NULL;
+
+-- Like notify_entity_change() but carries user_id, so caches can drop one user
+CREATE OR REPLACE FUNCTION notify_entitlement_change()
+RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM pg_notify(
+        'entity_changes',
+        json_build_object(
+            'table', TG_TABLE_NAME,
+            'operation', TG_OP,
+            'id', COALESCE(NEW.id, OLD.id),
+            'user_id', COALESCE(NEW.user_id, OLD.user_id)
+        )::text
+    );
+    RETURN COALESCE(NEW, OLD);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER entitlements_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON entitlements
+    FOR EACH ROW EXECUTE FUNCTION notify_entitlement_change();
@@ -0,0 +1,19 @@
+-- V011: State columns and indexes for the expiry sweeper
+
+-- Set by ExpirySweeper once expires_at has passed; revoked_at stays reserved
+-- for deliberate revocation (refunds, admin action)
+ALTER TABLE entitlements ADD COLUMN expired_at TIMESTAMPTZ;
+
+-- Active-grant index without rows the sweeper has retired, so it stops
+-- growing with dead grants
+DROP INDEX idx_entitlements_active;
+CREATE INDEX idx_entitlements_active
+    ON entitlements(user_id, entity_type, entity_id) INCLUDE (expires_at)
+    WHERE revoked_at IS NULL AND expired_at IS NULL;
+
+-- Sweeper batches walk these in (deadline, id) order
+CREATE INDEX idx_entitlements_expiring ON entitlements(expires_at, id)
+    WHERE revoked_at IS NULL AND expired_at IS NULL AND expires_at IS NOT NULL;
+
+CREATE INDEX idx_subscriptions_period_end ON subscriptions(current_period_end, id)
+    WHERE status = 'ACTIVE' AND current_period_end IS NOT NULL;
@@ -0,0 +1,75 @@
+-- V012: Set-based entitlement grant/revoke jobs
+
+CREATE TABLE entitlement_grant_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    action VARCHAR(10) NOT NULL DEFAULT 'GRANT',
+    audience VARCHAR(30) NOT NULL DEFAULT 'ACTIVE_MEMBERS',
+    plan_id UUID REFERENCES membership_plans(id),
+    entity_type VARCHAR(30) NOT NULL,
+    entity_id UUID NOT NULL,
+    expires_at TIMESTAMPTZ,
+    -- REVOKE only: retire just the grants of this job instead of every bulk grant
+    source_job_id UUID REFERENCES entitlement_grant_jobs(id),
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    cursor_user_id BIGINT NOT NULL DEFAULT 0,
+    total_count INT NOT NULL DEFAULT 0,
+    processed_count INT NOT NULL DEFAULT 0,
+    affected_count INT NOT NULL DEFAULT 0,
+    lease_until TIMESTAMPTZ,
+    last_error TEXT,
+    created_by BIGINT REFERENCES users(id),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    started_at TIMESTAMPTZ,
+    completed_at TIMESTAMPTZ
+);
+
+CREATE INDEX idx_entitlement_grant_jobs_status ON entitlement_grant_jobs(status);
+
+-- Uploaded audience of a USER_LIST job, walked by user id like the member audience
+CREATE TABLE entitlement_grant_job_users (
+    job_id UUID NOT NULL REFERENCES entitlement_grant_jobs(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users(id),
+    PRIMARY KEY (job_id, user_id)
+);
+
+-- One live grant per (user, entity, source): re-running a chunk inserts nothing.
+-- Rows with a NULL key never conflict; of the others only exact duplicates
+-- would keep the index from building, and all but the oldest are retired.
+UPDATE entitlements SET revoked_at = now()
+WHERE id IN (
+    SELECT id FROM (
+        SELECT id, row_number() OVER (
+            PARTITION BY user_id, entity_type, entity_id, source_type, source_id
+            ORDER BY granted_at, id) AS n
+        FROM entitlements
+        WHERE revoked_at IS NULL AND entity_id IS NOT NULL AND source_id IS NOT NULL
+    ) ranked
+    WHERE n > 1
+);
+
+CREATE UNIQUE INDEX uq_entitlements_live_grant
+    ON entitlements(user_id, entity_type, entity_id, source_type, source_id)
+    WHERE revoked_at IS NULL;
+
+-- Bulk jobs set app.bulk_notify = 'off' for their transaction and publish one
+-- notification per chunk instead of one per row
+CREATE OR REPLACE FUNCTION notify_entitlement_change()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF current_setting('app.bulk_notify', true) = 'off' THEN
+        RETURN COALESCE(NEW, OLD);
+    END IF;
+    PERFORM pg_notify(
+        'entity_changes',
+        json_build_object(
+            'table', TG_TABLE_NAME,
+            'operation', TG_OP,
+            'id', COALESCE(NEW.id, OLD.id),
+            'user_id', COALESCE(NEW.user_id, OLD.user_id)
+        )::text
+    );
+    RETURN COALESCE(NEW, OLD);
+END;
+$$ LANGUAGE plpgsql;
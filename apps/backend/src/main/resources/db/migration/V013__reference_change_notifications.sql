@@ -0,0 +1,13 @@
+-- V013: Change notifications for cached reference tables (see ReferenceCaches)
+
+CREATE TRIGGER membership_plans_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON membership_plans
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change();
+
+CREATE TRIGGER product_categories_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON product_categories
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change();
+
+CREATE TRIGGER email_template_overrides_notify_change
+    AFTER INSERT OR UPDATE OR DELETE ON email_template_overrides
+    FOR EACH ROW EXECUTE FUNCTION notify_entity_change();
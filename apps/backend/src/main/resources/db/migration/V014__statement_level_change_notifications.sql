@@ -0,0 +1,131 @@
+-- V014: One entity_changes notification per statement instead of per row
+--
+-- Payload: {"table", "operation", "count", "ids": [...]} plus "user_ids" for
+-- user-owned tables. NOTIFY payloads are limited to 8000 bytes; when the id
+-- list does not fit it is dropped and "overflow": true is set, which listeners
+-- treat as "any row of this table may have changed". user_ids are kept on
+-- overflow when they still fit, so per-user caches stay precise.
+
+DROP TRIGGER IF EXISTS products_notify_change ON products;
+DROP TRIGGER IF EXISTS product_prices_notify_change ON product_prices;
+DROP TRIGGER IF EXISTS pages_notify_insert_delete ON pages;
+DROP TRIGGER IF EXISTS pages_notify_update ON pages;
+DROP TRIGGER IF EXISTS entitlements_notify_change ON entitlements;
+DROP TRIGGER IF EXISTS subscriptions_notify_change ON subscriptions;
+DROP TRIGGER IF EXISTS membership_plans_notify_change ON membership_plans;
+DROP TRIGGER IF EXISTS product_categories_notify_change ON product_categories;
+DROP TRIGGER IF EXISTS email_template_overrides_notify_change ON email_template_overrides;
+
+DROP FUNCTION IF EXISTS notify_entity_change();
+DROP FUNCTION IF EXISTS notify_entitlement_change();
+
+CREATE OR REPLACE FUNCTION emit_entity_changes(tbl TEXT, op TEXT, ids JSONB, user_ids JSONB)
+RETURNS VOID AS $$
+DECLARE
+    head JSONB;
+    payload TEXT;
+BEGIN
+    IF ids IS NULL OR jsonb_array_length(ids) = 0 THEN
+        RETURN;
+    END IF;
+    head := jsonb_build_object('table', tbl, 'operation', op, 'count', jsonb_array_length(ids));
+    IF user_ids IS NOT NULL THEN
+        head := head || jsonb_build_object('user_ids', user_ids);
+    END IF;
+    payload := (head || jsonb_build_object('ids', ids))::text;
+    IF octet_length(payload) > 7900 THEN
+        payload := (head || '{"overflow": true}'::jsonb)::text;
+        IF octet_length(payload) > 7900 THEN
+            payload := ((head - 'user_ids') || '{"overflow": true}'::jsonb)::text;
+        END IF;
+    END IF;
+    PERFORM pg_notify('entity_changes', payload);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Transition tables are named new_rows / old_rows by every trigger below
+CREATE OR REPLACE FUNCTION notify_entity_changes()
+RETURNS TRIGGER AS $$
+DECLARE
+    ids JSONB;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        SELECT jsonb_agg(id) INTO ids FROM old_rows;
+    ELSE
+        SELECT jsonb_agg(id) INTO ids FROM new_rows;
+    END IF;
+    PERFORM emit_entity_changes(TG_TABLE_NAME, TG_OP, ids, NULL);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Tables with a user_id column also report the distinct affected users (empty
+-- for rows without one, so such changes are not broadcast to every user)
+CREATE OR REPLACE FUNCTION notify_user_entity_changes()
+RETURNS TRIGGER AS $$
+DECLARE
+    ids JSONB;
+    user_ids JSONB;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        SELECT jsonb_agg(id), COALESCE(jsonb_agg(DISTINCT user_id) FILTER (WHERE user_id IS NOT NULL), '[]')
+        INTO ids, user_ids FROM old_rows;
+    ELSE
+        SELECT jsonb_agg(id), COALESCE(jsonb_agg(DISTINCT user_id) FILTER (WHERE user_id IS NOT NULL), '[]')
+        INTO ids, user_ids FROM new_rows;
+    END IF;
+    PERFORM emit_entity_changes(TG_TABLE_NAME, TG_OP, ids, user_ids);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Draft edits save often and change nothing public; only these columns count
+CREATE OR REPLACE FUNCTION notify_page_changes()
+RETURNS TRIGGER AS $$
+DECLARE
+    ids JSONB;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        SELECT jsonb_agg(id) INTO ids FROM old_rows;
+    ELSIF TG_OP = 'INSERT' THEN
+        SELECT jsonb_agg(id) INTO ids FROM new_rows;
+    ELSE
+        SELECT jsonb_agg(n.id) INTO ids
+        FROM new_rows n JOIN old_rows o ON o.id = n.id
+        WHERE (o.status, o.slug, o.noindex, o.published_at)
+              IS DISTINCT FROM (n.status, n.slug, n.noindex, n.published_at);
+    END IF;
+    PERFORM emit_entity_changes(TG_TABLE_NAME, TG_OP, ids, NULL);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Transition tables are only allowed on single-event triggers, hence three per table
+DO $$
+DECLARE
+    t RECORD;
+BEGIN
+    FOR t IN SELECT * FROM (VALUES
+            ('products', 'notify_entity_changes'),
+            ('product_prices', 'notify_entity_changes'),
+            ('product_categories', 'notify_entity_changes'),
+            ('product_content', 'notify_entity_changes'),
+            ('events', 'notify_entity_changes'),
+            ('event_occurrences', 'notify_entity_changes'),
+            ('membership_plans', 'notify_entity_changes'),
+            ('email_template_overrides', 'notify_entity_changes'),
+            ('pages', 'notify_page_changes'),
+            ('orders', 'notify_user_entity_changes'),
+            ('subscriptions', 'notify_user_entity_changes'),
+            ('entitlements', 'notify_user_entity_changes')
+        ) AS v(tbl, fn)
+    LOOP
+        EXECUTE format('CREATE TRIGGER %I AFTER INSERT ON %I REFERENCING NEW TABLE AS new_rows '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION %I()', t.tbl || '_notify_insert', t.tbl, t.fn);
+        EXECUTE format('CREATE TRIGGER %I AFTER UPDATE ON %I REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION %I()', t.tbl || '_notify_update', t.tbl, t.fn);
+        EXECUTE format('CREATE TRIGGER %I AFTER DELETE ON %I REFERENCING OLD TABLE AS old_rows '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION %I()', t.tbl || '_notify_delete', t.tbl, t.fn);
+    END LOOP;
+END;
+$$;
@@ -0,0 +1,43 @@
+-- V015: Append-only log of entity_changes notifications for SSE replay
+--
+-- Every notification gets the id of its log row as "seq", so ids are the same
+-- on every node and SSE clients can resume with Last-Event-ID. Rows are kept
+-- for app.sse.log-retention and purged by EventLog.
+
+CREATE TABLE entity_change_log (
+    id BIGSERIAL PRIMARY KEY,
+    -- Statement time, not transaction start: a long transaction must not log
+    -- its changes with a time from before the overlap window of later resumes
+    created_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp(),
+    payload JSONB NOT NULL
+);
+
+CREATE INDEX idx_entity_change_log_created ON entity_change_log (created_at);
+
+CREATE OR REPLACE FUNCTION emit_entity_changes(tbl TEXT, op TEXT, ids JSONB, user_ids JSONB)
+RETURNS VOID AS $$
+DECLARE
+    seq BIGINT;
+    head JSONB;
+    payload TEXT;
+BEGIN
+    IF ids IS NULL OR jsonb_array_length(ids) = 0 THEN
+        RETURN;
+    END IF;
+    seq := nextval(pg_get_serial_sequence('entity_change_log', 'id'));
+    head := jsonb_build_object('seq', seq, 'table', tbl, 'operation', op, 'count', jsonb_array_length(ids));
+    IF user_ids IS NOT NULL THEN
+        head := head || jsonb_build_object('user_ids', user_ids);
+    END IF;
+    payload := (head || jsonb_build_object('ids', ids))::text;
+    IF octet_length(payload) > 7900 THEN
+        payload := (head || '{"overflow": true}'::jsonb)::text;
+        IF octet_length(payload) > 7900 THEN
+            payload := ((head - 'user_ids') || '{"overflow": true}'::jsonb)::text;
+        END IF;
+    END IF;
+    -- The log keeps what listeners saw, so a replay is indistinguishable from the live event
+    INSERT INTO entity_change_log (id, payload) VALUES (seq, payload::jsonb);
+    PERFORM pg_notify('entity_changes', payload);
+END;
+$$ LANGUAGE plpgsql;
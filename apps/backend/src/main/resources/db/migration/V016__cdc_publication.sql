@@ -0,0 +1,43 @@
+-- V016: Resume points of the optional CDC engine (app.cdc.enabled)
+--
+-- The engine creates its publication, and sets REPLICA IDENTITY FULL on the
+-- published tables, when it starts; without CDC the tables stay as they are.
+--
+-- Once every node runs CDC, NOTIFY is redundant. Turn it off per database with
+--   ALTER DATABASE samofujera SET app.change_feed = 'cdc';
+
+CREATE TABLE cdc_checkpoints (
+    slot_name TEXT PRIMARY KEY,
+    lsn PG_LSN NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE OR REPLACE FUNCTION emit_entity_changes(tbl TEXT, op TEXT, ids JSONB, user_ids JSONB)
+RETURNS VOID AS $$
+DECLARE
+    seq BIGINT;
+    head JSONB;
+    payload TEXT;
+BEGIN
+    IF ids IS NULL OR jsonb_array_length(ids) = 0 THEN
+        RETURN;
+    END IF;
+    seq := nextval(pg_get_serial_sequence('entity_change_log', 'id'));
+    head := jsonb_build_object('seq', seq, 'table', tbl, 'operation', op, 'count', jsonb_array_length(ids));
+    IF user_ids IS NOT NULL THEN
+        head := head || jsonb_build_object('user_ids', user_ids);
+    END IF;
+    payload := (head || jsonb_build_object('ids', ids))::text;
+    IF octet_length(payload) > 7900 THEN
+        payload := (head || '{"overflow": true}'::jsonb)::text;
+        IF octet_length(payload) > 7900 THEN
+            payload := ((head - 'user_ids') || '{"overflow": true}'::jsonb)::text;
+        END IF;
+    END IF;
+    -- The log keeps what listeners saw, so a replay is indistinguishable from the live event
+    INSERT INTO entity_change_log (id, payload) VALUES (seq, payload::jsonb);
+    IF current_setting('app.change_feed', true) IS DISTINCT FROM 'cdc' THEN
+        PERFORM pg_notify('entity_changes', payload);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
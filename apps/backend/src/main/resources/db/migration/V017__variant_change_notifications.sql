@@ -0,0 +1,11 @@
+-- V017: product_variants join the entity_changes feed (stock and availability push)
+
+CREATE TRIGGER product_variants_notify_insert AFTER INSERT ON product_variants
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_changes();
+CREATE TRIGGER product_variants_notify_update AFTER UPDATE ON product_variants
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_changes();
+CREATE TRIGGER product_variants_notify_delete AFTER DELETE ON product_variants
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_entity_changes();
@@ -0,0 +1,3 @@
+-- V018: Consecutive failed runs of a campaign; recovery gives up and marks it FAILED at the limit
+
+ALTER TABLE email_campaigns ADD COLUMN attempts INT NOT NULL DEFAULT 0;
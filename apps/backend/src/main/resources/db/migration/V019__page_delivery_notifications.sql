@@ -0,0 +1,31 @@
+-- V019: Page notifications also cover the columns of the public page response
+--
+-- Nodes cache the published response of a page (PageDeliveryCache) and drop it
+-- when a notification names the page. Title, SEO fields and the published
+-- revision are part of that response, so changing them must notify too.
+-- Draft content edits still do not.
+
+CREATE OR REPLACE FUNCTION notify_page_changes()
+RETURNS TRIGGER AS $$
+DECLARE
+    ids JSONB;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        SELECT jsonb_agg(id) INTO ids FROM old_rows;
+    ELSIF TG_OP = 'INSERT' THEN
+        SELECT jsonb_agg(id) INTO ids FROM new_rows;
+    ELSE
+        SELECT jsonb_agg(n.id) INTO ids
+        FROM new_rows n JOIN old_rows o ON o.id = n.id
+        WHERE (o.status, o.slug, o.noindex, o.nofollow, o.published_at, o.published_revision_id,
+               o.title, o.meta_title, o.meta_description, o.meta_keywords, o.og_title, o.og_description,
+               o.og_image_id)
+              IS DISTINCT FROM
+              (n.status, n.slug, n.noindex, n.nofollow, n.published_at, n.published_revision_id,
+               n.title, n.meta_title, n.meta_description, n.meta_keywords, n.og_title, n.og_description,
+               n.og_image_id);
+    END IF;
+    PERFORM emit_entity_changes(TG_TABLE_NAME, TG_OP, ids, NULL);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
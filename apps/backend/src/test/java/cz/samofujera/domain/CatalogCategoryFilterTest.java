@@ -0,0 +1,94 @@
+package cz.samofujera.domain;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent catalog requests filtered by category, each round starting with
+ * the category cache empty, so all of them wait on one shared load and then
+ * query products in their own session.
+ */
+@QuarkusTest
+public class CatalogCategoryFilterTest {
+
+    private static final int PRODUCTS = 5;
+    private static final int REQUESTS = 16;
+    private static final int ROUNDS = 5;
+
+    @Inject
+    ReferenceCaches caches;
+
+    @Inject
+    Pool client;
+
+    @AfterEach
+    public void cleanup() {
+        client.query("DELETE FROM products WHERE slug LIKE 'category-filter-%'").execute()
+                .await().atMost(Duration.ofSeconds(10));
+        client.query("DELETE FROM product_categories WHERE slug = 'category-filter'").execute()
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testConcurrentColdMissesEachGetTheirProducts() throws Exception {
+        UUID category = client.query("""
+                        INSERT INTO product_categories (name, slug) VALUES ('Category filter', 'category-filter')
+                        RETURNING id
+                        """).execute()
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getUUID("id");
+        client.preparedQuery("""
+                        WITH p AS (
+                            INSERT INTO products (title, slug, product_type, status)
+                            SELECT 'Category filter ' || i, 'category-filter-' || i, 'DIGITAL', 'ACTIVE'
+                            FROM generate_series(1, %d) AS i
+                            RETURNING id
+                        )
+                        INSERT INTO product_category_assignments (product_id, category_id) SELECT id, $1 FROM p
+                        """.formatted(PRODUCTS))
+                .execute(Tuple.of(category))
+                .await().atMost(Duration.ofSeconds(10));
+
+        ExecutorService pool = Executors.newFixedThreadPool(REQUESTS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                caches.onEntityChange(new JsonObject().put("table", "product_categories"));
+                var start = new CountDownLatch(1);
+                List<Future<List<String>>> responses = new ArrayList<>();
+                for (int i = 0; i < REQUESTS; i++) {
+                    responses.add(pool.submit(() -> {
+                        start.await();
+                        return given().queryParam("category", "category-filter").queryParam("limit", 50)
+                                .when().get("/api/catalog/products")
+                                .then().statusCode(200)
+                                .extract().jsonPath().<String>getList("data.items.slug");
+                    }));
+                }
+                start.countDown();
+                for (Future<List<String>> response : responses) {
+                    assertEquals(PRODUCTS, response.get().size());
+                    assertTrue(response.get().stream().allMatch(slug -> slug.startsWith("category-filter-")));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
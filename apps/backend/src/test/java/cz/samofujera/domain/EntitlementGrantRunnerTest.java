@@ -0,0 +1,320 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.realtime.PgNotificationService;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs grant and revoke jobs over an uploaded user list with the test chunk
+ * size, and over the active members of a plan, and checks chunking, idempotent
+ * re-runs, resuming from the saved cursor, that revokes leave purchases alone
+ * and that a failing job gives up.
+ */
+@QuarkusTest
+public class EntitlementGrantRunnerTest {
+
+    private static final int USERS = 25;
+    private static final String EMAILS = "grant-runner-%@example.com";
+    private static final String PLAN = "grant-runner-plan";
+
+    @Inject
+    EntitlementGrantRunner runner;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    Pool client;
+
+    @ConfigProperty(name = "app.entitlements.bulk.chunk-size")
+    int chunkSize;
+
+    @ConfigProperty(name = "app.entitlements.bulk.max-attempts")
+    int maxAttempts;
+
+    private List<Long> userIds;
+    private List<String> emails;
+    private final List<UUID> jobs = new ArrayList<>();
+
+    @BeforeEach
+    public void seedUsers() {
+        userIds = new ArrayList<>();
+        emails = new ArrayList<>();
+        client.query("""
+                        INSERT INTO users (email, password_hash)
+                        SELECT 'grant-runner-' || lpad(i::text, 2, '0') || '@example.com', 'x'
+                        FROM generate_series(1, %d) AS i
+                        RETURNING id, email
+                        """.formatted(USERS)).execute()
+                .await().atMost(Duration.ofSeconds(10))
+                .forEach(row -> {
+                    userIds.add(row.getLong("id"));
+                    emails.add(row.getString("email"));
+                });
+        userIds.sort(null);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        execute("ALTER TABLE entitlements DROP CONSTRAINT IF EXISTS test_grant_runner_failure");
+        execute("DELETE FROM entitlements WHERE user_id IN (SELECT id FROM users WHERE email LIKE '" + EMAILS + "')");
+        for (UUID jobId : jobs.reversed()) {
+            execute("DELETE FROM entitlement_grant_jobs WHERE id = '" + jobId + "'");
+        }
+        jobs.clear();
+        execute("DELETE FROM subscriptions WHERE user_id IN (SELECT id FROM users WHERE email LIKE '" + EMAILS + "')");
+        execute("DELETE FROM users WHERE email LIKE '" + EMAILS + "'");
+        execute("DELETE FROM membership_plans WHERE slug = '" + PLAN + "'");
+    }
+
+    @Test
+    public void testGrantRunsInChunksAndReRunChangesNothing() throws Exception {
+        UUID product = UUID.randomUUID();
+        UUID jobId = createJob("GRANT", product, null);
+
+        var chunks = new CopyOnWriteArrayList<Integer>();
+        var listener = notifications.stream("entity_changes")
+                .filter(change -> "entitlements".equals(change.getString("table"))
+                        && "INSERT".equals(change.getString("operation")))
+                .filter(change -> PgNotificationService.userIds(change) != null
+                        && userIds.containsAll(PgNotificationService.userIds(change)))
+                .subscribe().with(change -> chunks.add(change.getInteger("count")));
+        try {
+            assertTrue(runner.start(jobId).await().atMost(Duration.ofSeconds(10)));
+            Row done = awaitStatus(jobId, "COMPLETED");
+            assertEquals(USERS, done.getInteger("total_count"));
+            assertEquals(USERS, done.getInteger("processed_count"));
+            assertEquals(USERS, done.getInteger("affected_count"));
+            assertEquals(userIds.get(USERS - 1), done.getLong("cursor_user_id"));
+
+            // One statement, and so one notification, per chunk of users
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (chunks.stream().mapToInt(Integer::intValue).sum() < USERS && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(List.of(chunkSize, chunkSize, USERS - 2 * chunkSize), chunks);
+        } finally {
+            listener.cancel();
+        }
+        assertEquals(USERS, liveGrants(product, "GRANT"));
+
+        // A re-run from the start, as after a crash before completion, inserts nothing
+        execute("UPDATE entitlement_grant_jobs SET status = 'RUNNING', cursor_user_id = 0 WHERE id = '" + jobId + "'");
+        assertTrue(runner.start(jobId).await().atMost(Duration.ofSeconds(10)));
+        Row rerun = awaitStatus(jobId, "COMPLETED");
+        assertEquals(2 * USERS, rerun.getInteger("processed_count"));
+        assertEquals(USERS, rerun.getInteger("affected_count"));
+        assertEquals(USERS, liveGrants(product, "GRANT"));
+    }
+
+    @Test
+    public void testActiveMembersAreGrantedInChunksAndRevoked() throws Exception {
+        UUID plan = client.query("INSERT INTO membership_plans (name, slug) VALUES ('Grant runner', '" + PLAN + "')"
+                        + " RETURNING id").execute()
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getUUID("id");
+        List<Long> active = new ArrayList<>();
+        var subscriptions = new ArrayList<Tuple>();
+        for (int i = 0; i < USERS; i++) {
+            boolean expired = i % 8 == 3;
+            subscriptions.add(Tuple.of(userIds.get(i), plan, expired ? "EXPIRED" : "ACTIVE"));
+            if (!expired) active.add(userIds.get(i));
+        }
+        client.preparedQuery("INSERT INTO subscriptions (user_id, plan_id, status) VALUES ($1, $2, $3)")
+                .executeBatch(subscriptions)
+                .await().atMost(Duration.ofSeconds(10));
+        assertTrue(active.size() > 2 * chunkSize && active.size() < USERS);
+
+        UUID product = UUID.randomUUID();
+        UUID grant = createMemberJob("GRANT", product, plan);
+        var chunks = new CopyOnWriteArrayList<Integer>();
+        var listener = notifications.stream("entity_changes")
+                .filter(change -> "entitlements".equals(change.getString("table"))
+                        && "INSERT".equals(change.getString("operation")))
+                .filter(change -> PgNotificationService.userIds(change) != null
+                        && userIds.containsAll(PgNotificationService.userIds(change)))
+                .subscribe().with(change -> chunks.add(change.getInteger("count")));
+        try {
+            assertTrue(runner.start(grant).await().atMost(Duration.ofSeconds(10)));
+            Row done = awaitStatus(grant, "COMPLETED");
+            assertEquals(active.size(), done.getInteger("total_count"));
+            assertEquals(active.size(), done.getInteger("affected_count"));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (chunks.stream().mapToInt(Integer::intValue).sum() < active.size() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(List.of(chunkSize, chunkSize, active.size() - 2 * chunkSize), chunks);
+        } finally {
+            listener.cancel();
+        }
+
+        List<Long> granted = new ArrayList<>();
+        client.preparedQuery("""
+                        SELECT user_id FROM entitlements WHERE entity_id = $1 AND revoked_at IS NULL ORDER BY user_id
+                        """)
+                .execute(Tuple.of(product))
+                .await().atMost(Duration.ofSeconds(10))
+                .forEach(row -> granted.add(row.getLong("user_id")));
+        // Members whose subscription expired get nothing
+        assertEquals(active, granted);
+
+        UUID revoke = createMemberJob("REVOKE", product, plan);
+        assertTrue(runner.start(revoke).await().atMost(Duration.ofSeconds(10)));
+        assertEquals(active.size(), awaitStatus(revoke, "COMPLETED").getInteger("affected_count"));
+        assertEquals(0, liveGrants(product, "GRANT"));
+    }
+
+    @Test
+    public void testResumesAfterSavedCursor() throws Exception {
+        UUID product = UUID.randomUUID();
+        UUID jobId = createJob("GRANT", product, null);
+        long cursor = userIds.get(14);
+        // As left by a runner that died after the first chunks
+        execute("UPDATE entitlement_grant_jobs SET status = 'RUNNING', cursor_user_id = " + cursor
+                + " WHERE id = '" + jobId + "'");
+
+        assertTrue(runner.start(jobId).await().atMost(Duration.ofSeconds(10)));
+        Row done = awaitStatus(jobId, "COMPLETED");
+        assertEquals(USERS - 15, done.getInteger("processed_count"));
+
+        List<Long> granted = new ArrayList<>();
+        client.preparedQuery("SELECT user_id FROM entitlements WHERE entity_id = $1 ORDER BY user_id")
+                .execute(Tuple.of(product))
+                .await().atMost(Duration.ofSeconds(10))
+                .forEach(row -> granted.add(row.getLong("user_id")));
+        assertEquals(userIds.subList(15, USERS), granted);
+    }
+
+    @Test
+    public void testRevokeLeavesPurchasedEntitlementsAlone() throws Exception {
+        UUID product = UUID.randomUUID();
+        client.preparedQuery("""
+                        INSERT INTO entitlements (user_id, source_type, source_id, entity_type, entity_id)
+                        VALUES ($1, 'ORDER', gen_random_uuid(), 'PRODUCT', $2)
+                        """)
+                .execute(Tuple.of(userIds.get(0), product))
+                .await().atMost(Duration.ofSeconds(10));
+        UUID first = createJob("GRANT", product, null);
+        assertTrue(runner.start(first).await().atMost(Duration.ofSeconds(10)));
+        awaitStatus(first, "COMPLETED");
+        UUID second = createJob("GRANT", product, null);
+        assertTrue(runner.start(second).await().atMost(Duration.ofSeconds(10)));
+        awaitStatus(second, "COMPLETED");
+        assertEquals(2 * USERS, liveGrants(product, "GRANT"));
+
+        // Limited to the first job's grants
+        UUID revokeFirst = createJob("REVOKE", product, first);
+        assertTrue(runner.start(revokeFirst).await().atMost(Duration.ofSeconds(10)));
+        assertEquals(USERS, awaitStatus(revokeFirst, "COMPLETED").getInteger("affected_count"));
+        assertEquals(USERS, liveGrants(product, "GRANT"));
+
+        UUID revokeAll = createJob("REVOKE", product, null);
+        assertTrue(runner.start(revokeAll).await().atMost(Duration.ofSeconds(10)));
+        assertEquals(USERS, awaitStatus(revokeAll, "COMPLETED").getInteger("affected_count"));
+        assertEquals(0, liveGrants(product, "GRANT"));
+        assertEquals(1, liveGrants(product, "ORDER"));
+    }
+
+    @Test
+    public void testFailingJobGivesUpAfterMaxAttempts() throws Exception {
+        UUID product = UUID.randomUUID();
+        execute("ALTER TABLE entitlements ADD CONSTRAINT test_grant_runner_failure"
+                + " CHECK (entity_id IS DISTINCT FROM '" + product + "') NOT VALID");
+        UUID jobId = createJob("GRANT", product, null);
+
+        assertTrue(runner.start(jobId).await().atMost(Duration.ofSeconds(10)));
+        Row retrying = awaitRow(jobId, row -> row.getInteger("attempts") == 1);
+        assertEquals("RUNNING", retrying.getString("status"));
+        assertNull(retrying.getValue("lease_until"));
+        assertNotNull(retrying.getString("last_error"));
+
+        execute("UPDATE entitlement_grant_jobs SET attempts = " + (maxAttempts - 1) + " WHERE id = '" + jobId + "'");
+        assertTrue(runner.start(jobId).await().atMost(Duration.ofSeconds(10)));
+        Row failed = awaitStatus(jobId, "FAILED");
+        assertEquals(maxAttempts, failed.getInteger("attempts"));
+        assertNull(failed.getValue("lease_until"));
+        // Recovery no longer picks it up
+        assertFalse(runner.start(jobId).await().atMost(Duration.ofSeconds(10)));
+    }
+
+    private UUID createJob(String action, UUID entityId, UUID sourceJobId) {
+        UUID jobId = client.preparedQuery("""
+                        INSERT INTO entitlement_grant_jobs (action, audience, entity_type, entity_id, source_job_id)
+                        VALUES ($1, 'USER_LIST', 'PRODUCT', $2, $3)
+                        RETURNING id
+                        """)
+                .execute(Tuple.of(action, entityId, sourceJobId))
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getUUID("id");
+        jobs.add(jobId);
+        runner.stageUsers(jobId, emails).await().atMost(Duration.ofSeconds(10));
+        runner.countAudience(jobId).await().atMost(Duration.ofSeconds(10));
+        return jobId;
+    }
+
+    private UUID createMemberJob(String action, UUID entityId, UUID planId) {
+        UUID jobId = client.preparedQuery("""
+                        INSERT INTO entitlement_grant_jobs (action, audience, plan_id, entity_type, entity_id)
+                        VALUES ($1, 'ACTIVE_MEMBERS', $2, 'PRODUCT', $3)
+                        RETURNING id
+                        """)
+                .execute(Tuple.of(action, planId, entityId))
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getUUID("id");
+        jobs.add(jobId);
+        runner.countAudience(jobId).await().atMost(Duration.ofSeconds(10));
+        return jobId;
+    }
+
+    private long liveGrants(UUID entityId, String sourceType) {
+        return client.preparedQuery("""
+                        SELECT count(*) AS n FROM entitlements
+                        WHERE entity_id = $1 AND source_type = $2 AND revoked_at IS NULL
+                        """)
+                .execute(Tuple.of(entityId, sourceType))
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getLong("n");
+    }
+
+    private Row awaitStatus(UUID jobId, String status) throws InterruptedException {
+        return awaitRow(jobId, row -> status.equals(row.getString("status")));
+    }
+
+    private Row awaitRow(UUID jobId, Predicate<Row> done) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (true) {
+            Row row = client.preparedQuery("SELECT * FROM entitlement_grant_jobs WHERE id = $1")
+                    .execute(Tuple.of(jobId))
+                    .await().atMost(Duration.ofSeconds(10)).iterator().next();
+            if (done.test(row)) {
+                return row;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Job " + jobId + " stuck in " + row.getString("status")
+                        + " after " + row.getInteger("attempts") + " attempts");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private void execute(String sql) {
+        client.query(sql).execute().await().atMost(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,62 @@
+package cz.samofujera.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EntitlementIndexTest {
+
+    @Test
+    public void testLookupsHonourTypeAndExpiry() {
+        UUID owned = UUID.randomUUID();
+        UUID expired = UUID.randomUUID();
+        UUID renewed = UUID.randomUUID();
+        long now = 1_000_000L;
+
+        var grants = EntitlementIndex.Grants.of(List.of(
+                new EntitlementIndex.Grant("PRODUCT", owned, Long.MAX_VALUE),
+                new EntitlementIndex.Grant("PRODUCT", expired, now - 1),
+                new EntitlementIndex.Grant("PRODUCT", renewed, now - 1),
+                new EntitlementIndex.Grant("PRODUCT", renewed, now + 60_000),
+                new EntitlementIndex.Grant("EVENT", owned, Long.MAX_VALUE)));
+
+        assertTrue(grants.has("PRODUCT", owned, now));
+        assertTrue(grants.has("EVENT", owned, now));
+        assertFalse(grants.has("PRODUCT", expired, now));
+        assertTrue(grants.has("PRODUCT", renewed, now));
+        assertFalse(grants.has("PRODUCT", renewed, now + 60_000));
+        assertFalse(grants.has("MEMBERSHIP", owned, now));
+        assertFalse(grants.has("PRODUCT", UUID.randomUUID(), now));
+        assertEquals(Set.of(owned, renewed), new HashSet<>(grants.ids("PRODUCT", now)));
+    }
+
+    @Test
+    public void testMatchesLinearScanOnRandomIds() {
+        var random = new Random(7);
+        var all = new ArrayList<EntitlementIndex.Grant>();
+        var owned = new HashSet<UUID>();
+        for (int i = 0; i < 5_000; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            all.add(new EntitlementIndex.Grant("PRODUCT", id, Long.MAX_VALUE));
+            owned.add(id);
+        }
+        var grants = EntitlementIndex.Grants.of(all);
+
+        var probes = new ArrayList<UUID>(owned);
+        for (int i = 0; i < 5_000; i++) probes.add(new UUID(random.nextLong(), random.nextLong()));
+
+        for (UUID probe : probes) {
+            assertEquals(owned.contains(probe), grants.has("PRODUCT", probe, 0), probe.toString());
+        }
+        assertEquals(owned, new HashSet<>(grants.ids("PRODUCT", 0)));
+    }
+}
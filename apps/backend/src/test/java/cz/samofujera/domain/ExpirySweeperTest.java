@@ -0,0 +1,98 @@
+package cz.samofujera.domain;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class ExpirySweeperTest {
+
+    private static final String EMAIL = "expiry@example.com";
+
+    @Inject
+    ExpirySweeper sweeper;
+
+    @Inject
+    Pool client;
+
+    @AfterEach
+    public void cleanup() {
+        client.preparedQuery("""
+                        DELETE FROM outbox_messages WHERE topic = 'entitlement.expired'
+                          AND (payload->>'userId')::bigint IN (SELECT id FROM users WHERE email = $1)
+                        """).execute(Tuple.of(EMAIL))
+                .await().atMost(Duration.ofSeconds(10));
+        client.preparedQuery("DELETE FROM entitlements WHERE user_id IN (SELECT id FROM users WHERE email = $1)")
+                .execute(Tuple.of(EMAIL))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testExpiredEntitlementsAreMarkedOnceWithEvent() {
+        long userId = client.preparedQuery("""
+                        INSERT INTO users (email, password_hash) VALUES ($1, 'x')
+                        ON CONFLICT (email) DO UPDATE SET updated_at = now() RETURNING id
+                        """).execute(Tuple.of(EMAIL))
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getLong("id");
+        Row expired = client.query("""
+                        INSERT INTO entitlements (user_id, source_type, entity_type, entity_id, expires_at)
+                        VALUES (%1$d, 'ORDER', 'PRODUCT', gen_random_uuid(), now() - interval '1 hour')
+                        RETURNING id, entity_id
+                        """.formatted(userId)).execute()
+                .await().atMost(Duration.ofSeconds(10)).iterator().next();
+        client.query("""
+                        INSERT INTO entitlements (user_id, source_type, entity_type, entity_id, expires_at)
+                        VALUES (%d, 'ORDER', 'PRODUCT', gen_random_uuid(), now() + interval '1 day')
+                        """.formatted(userId)).execute()
+                .await().atMost(Duration.ofSeconds(10));
+
+        var result = sweeper.sweep().await().atMost(Duration.ofSeconds(30));
+        assertTrue(result.locked());
+        assertTrue(result.entitlements() >= 1);
+
+        long stillActive = client.query("""
+                        SELECT count(*) AS n FROM entitlements
+                        WHERE user_id = %d AND expired_at IS NULL
+                        """.formatted(userId)).execute()
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getLong("n");
+        assertEquals(1, stillActive);
+
+        List<JsonObject> events = expiredEvents(userId);
+        assertEquals(1, events.size());
+        JsonObject event = events.get(0);
+        assertEquals(expired.getUUID("id").toString(), event.getString("entitlementId"));
+        assertEquals(userId, event.getLong("userId"));
+        assertEquals("PRODUCT", event.getString("entityType"));
+        assertEquals(expired.getUUID("entity_id").toString(), event.getString("entityId"));
+
+        // Already retired rows are not picked up again, nor announced twice
+        assertEquals(0, sweeper.sweep().await().atMost(Duration.ofSeconds(30)).entitlements());
+        assertEquals(1, expiredEvents(userId).size());
+    }
+
+    private List<JsonObject> expiredEvents(long userId) {
+        var events = new ArrayList<JsonObject>();
+        client.preparedQuery("""
+                        SELECT kind, payload FROM outbox_messages
+                        WHERE topic = 'entitlement.expired' AND (payload->>'userId')::bigint = $1
+                        """).execute(Tuple.of(userId))
+                .await().atMost(Duration.ofSeconds(10))
+                .forEach(row -> {
+                    assertEquals("EVENT", row.getString("kind"));
+                    events.add((JsonObject) row.getValue("payload"));
+                });
+        return events;
+    }
+}
@@ -0,0 +1,95 @@
+package cz.samofujera.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HtmlRendererTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static final String V3_CONTENT = """
+            {"version":3,"sections":[{"id":"s1","blocks":[
+              {"id":"b1","type":"text","content":{"root":{"children":[
+                {"type":"heading","tag":"h1","children":[{"type":"text","text":"Vítejte <script>"}]},
+                {"type":"paragraph","format":"center","children":[
+                  {"type":"text","text":"tučně","format":1},
+                  {"type":"link","url":"javascript:alert(1)","children":[{"type":"text","text":"odkaz"}]}]}]}}},
+              {"id":"b2","type":"image","src":"https://cdn.example/a.jpg","altText":"\\"quoted\\""},
+              {"id":"b3","type":"separator"},
+              {"id":"b4","type":"button","text":"Koupit","url":"/produkty/kniha","openInNewTab":true},
+              {"id":"b5","type":"products","mode":"manual","productIds":[]}
+            ]}]}
+            """;
+
+    @Test
+    public void testRendersBlocksAndEscapes() {
+        String html = HtmlRenderer.pageDocument(mapper,
+                new HtmlRenderer.PageMeta("O nás", null, "Popis & více", null, null, null, null, false, false),
+                V3_CONTENT, "cs", "https://samofujera.cz/o-nas");
+
+        assertTrue(html.startsWith("<!DOCTYPE html><html lang=\"cs\">"));
+        assertTrue(html.contains("<title>O nás | Sámo Fujera</title>"));
+        assertTrue(html.contains("<meta name=\"description\" content=\"Popis &amp; více\">"));
+        assertTrue(html.contains("<link rel=\"canonical\" href=\"https://samofujera.cz/o-nas\">"));
+        assertTrue(html.contains("<h1>Vítejte &lt;script&gt;</h1>"));
+        assertTrue(html.contains("<p style=\"text-align:center\"><strong>tučně</strong><a href=\"#\">odkaz</a></p>"));
+        assertTrue(html.contains("alt=\"&quot;quoted&quot;\""));
+        assertTrue(html.contains("<hr>"));
+        assertTrue(html.contains("<a href=\"/produkty/kniha\" target=\"_blank\" rel=\"noopener noreferrer\">Koupit</a>"));
+        assertFalse(html.contains("<script>"));
+    }
+
+    @Test
+    public void testRendersLegacyLexicalState() {
+        var out = new StringBuilder();
+        HtmlRenderer.renderContent(out, mapper.valueToTree(Map.of("root", Map.of("children", List.of(
+                Map.of("type", "list", "listType", "number", "children", List.of(
+                        Map.of("type", "listitem", "children", List.of(Map.of("type", "text", "text", "jedna"))))))))));
+        assertEquals("<ol><li>jedna</li></ol>", out.toString());
+    }
+
+    @Test
+    public void testProductDocumentUsesLocaleCurrencyAndJsonLd() {
+        var product = new HtmlRenderer.ProductView("Kniha", "kniha", "Krátce", "První řádek\n\nDruhý </script>",
+                null, null, "SKU-1", "in_stock",
+                Map.of("CZK", new BigDecimal("1290"), "EUR", new BigDecimal("51.9")),
+                List.of("https://cdn.example/k.jpg"), "Sámo Fujera");
+
+        String cs = HtmlRenderer.productDocument(mapper, product, "cs", "https://samofujera.cz/produkty/kniha");
+        String sk = HtmlRenderer.productDocument(mapper, product, "sk", "https://samofujera.cz/produkty/kniha");
+
+        assertTrue(cs.contains("1 290 Kč"));
+        assertTrue(cs.contains("Skladem"));
+        assertTrue(cs.contains("\"priceCurrency\":\"CZK\""));
+        assertTrue(cs.contains("<p>První řádek</p><p>Druhý &lt;/script&gt;</p>"));
+        assertTrue(sk.contains("51,90 €"));
+        assertTrue(sk.contains("\"priceCurrency\":\"EUR\""));
+        assertTrue(sk.contains("https://schema.org/InStock"));
+        assertTrue(sk.contains("<meta property=\"og:locale\" content=\"sk_SK\">"));
+    }
+
+    @Test
+    public void testSafeUrl() {
+        assertEquals("#", HtmlRenderer.safeUrl("JavaScript:alert(1)"));
+        assertEquals("#", HtmlRenderer.safeUrl("data:text/html,x"));
+        assertEquals("https://a.cz", HtmlRenderer.safeUrl("https://a.cz"));
+        assertEquals("/a:b", HtmlRenderer.safeUrl("/a:b"));
+        assertEquals("mailto:a@b.cz", HtmlRenderer.safeUrl("mailto:a@b.cz"));
+    }
+
+    @Test
+    public void testResolveLocale() {
+        assertEquals("sk", SeoRenderResource.resolveLocale(null, "sk-SK,sk;q=0.9,cs;q=0.8"));
+        assertEquals("cs", SeoRenderResource.resolveLocale(null, "en-US,en;q=0.9"));
+        assertEquals("cs", SeoRenderResource.resolveLocale("de", "sk"));
+        assertEquals("sk", SeoRenderResource.resolveLocale("sk", null));
+    }
+}
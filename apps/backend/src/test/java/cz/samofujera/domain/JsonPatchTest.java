@@ -0,0 +1,58 @@
+package cz.samofujera.domain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonPatchTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testDiffThenApplyRoundTrips() throws Exception {
+        JsonNode source = mapper.readTree("""
+                {"blocks":[{"id":"a","text":"one"},{"id":"b","text":"two"},{"id":"c","text":"three"}],
+                 "meta":{"a/b":1,"gone":true}}
+                """);
+        JsonNode target = mapper.readTree("""
+                {"blocks":[{"id":"a","text":"one"},{"id":"x","text":"new"},{"id":"b","text":"TWO"},{"id":"c","text":"three"}],
+                 "meta":{"a/b":2,"added":[1,2]}}
+                """);
+
+        ArrayNode patch = JsonPatch.diff(source, target);
+
+        assertEquals(target, JsonPatch.apply(source, patch));
+        for (JsonNode operation : patch) {
+            assertTrue(!operation.get("path").asText().equals("/blocks"), "array must not be replaced wholesale");
+        }
+    }
+
+    @Test
+    public void testApplySupportsAllOperations() throws Exception {
+        JsonNode document = mapper.readTree("""
+                {"list":[1,2,3],"obj":{"k":"v"}}
+                """);
+        JsonNode patch = mapper.readTree("""
+                [{"op":"test","path":"/obj/k","value":"v"},
+                 {"op":"add","path":"/list/-","value":4},
+                 {"op":"remove","path":"/list/0"},
+                 {"op":"replace","path":"/obj/k","value":"w"},
+                 {"op":"copy","from":"/obj","path":"/copy"},
+                 {"op":"move","from":"/list/0","path":"/first"}]
+                """);
+
+        assertEquals(mapper.readTree("""
+                {"list":[3,4],"obj":{"k":"w"},"copy":{"k":"w"},"first":2}
+                """), JsonPatch.apply(document, patch));
+
+        assertThrows(JsonPatch.TestFailedException.class, () -> JsonPatch.apply(document,
+                mapper.readTree("[{\"op\":\"test\",\"path\":\"/obj/k\",\"value\":\"nope\"}]")));
+        assertThrows(JsonPatch.PatchException.class, () -> JsonPatch.apply(document,
+                mapper.readTree("[{\"op\":\"remove\",\"path\":\"/missing\"}]")));
+    }
+}
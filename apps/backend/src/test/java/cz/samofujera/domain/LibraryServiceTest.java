@@ -0,0 +1,114 @@
+package cz.samofujera.domain;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The cached library must not outlive access: items drop out once their
+ * {@code expires_at} passes, and a revoked grant drops out through the
+ * {@code entity_changes} feed.
+ */
+@QuarkusTest
+public class LibraryServiceTest {
+
+    private static final String EMAIL = "library-cache@example.com";
+
+    @Inject
+    LibraryService library;
+
+    @Inject
+    Pool client;
+
+    @AfterEach
+    public void cleanup() {
+        client.preparedQuery("DELETE FROM entitlements WHERE user_id IN (SELECT id FROM users WHERE email = $1)")
+                .execute(Tuple.of(EMAIL))
+                .await().atMost(Duration.ofSeconds(10));
+        client.preparedQuery("DELETE FROM users WHERE email = $1").execute(Tuple.of(EMAIL))
+                .await().atMost(Duration.ofSeconds(10));
+        client.query("DELETE FROM products WHERE slug LIKE 'library-cache-%'").execute()
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testCurrentDropsOnlyEndedAccess() {
+        Instant now = Instant.parse("2026-01-01T12:00:00Z");
+        var forever = item(null);
+        var later = item(now.plusSeconds(60));
+        var ended = item(now);
+
+        var unchanged = List.of(forever, later);
+        assertSame(unchanged, LibraryService.current(unchanged, now));
+        assertEquals(List.of(forever, later), LibraryService.current(List.of(forever, ended, later), now));
+    }
+
+    @Test
+    public void testCachedLibraryHonoursExpiryAndRevocation() throws Exception {
+        long userId = client.preparedQuery("INSERT INTO users (email, password_hash) VALUES ($1, 'x') RETURNING id")
+                .execute(Tuple.of(EMAIL))
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getLong("id");
+        UUID owned = product("library-cache-owned");
+        UUID expiring = product("library-cache-expiring");
+        grant(userId, owned, null);
+        grant(userId, expiring, Instant.now().plusSeconds(2));
+
+        assertEquals(2, library.library(userId).await().atMost(Duration.ofSeconds(10)).size());
+        assertNotNull(library.item(userId, expiring).await().atMost(Duration.ofSeconds(10)));
+
+        // Served from the cache, without any change notification
+        Thread.sleep(2_500);
+        var items = library.library(userId).await().atMost(Duration.ofSeconds(10));
+        assertEquals(List.of(owned), items.stream().map(LibraryDtos.LibraryItemResponse::productId).toList());
+        assertNull(library.item(userId, expiring).await().atMost(Duration.ofSeconds(10)));
+
+        client.preparedQuery("UPDATE entitlements SET revoked_at = now() WHERE user_id = $1 AND entity_id = $2")
+                .execute(Tuple.of(userId, owned))
+                .await().atMost(Duration.ofSeconds(10));
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!library.library(userId).await().atMost(Duration.ofSeconds(10)).isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Revoked product is still in the cached library");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private UUID product(String slug) {
+        return client.preparedQuery("""
+                        INSERT INTO products (title, slug, product_type, status)
+                        VALUES ($1, $1, 'DIGITAL', 'ACTIVE') RETURNING id
+                        """)
+                .execute(Tuple.of(slug))
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getUUID("id");
+    }
+
+    private void grant(long userId, UUID productId, Instant expiresAt) {
+        client.preparedQuery("""
+                        INSERT INTO entitlements (user_id, source_type, entity_type, entity_id, expires_at)
+                        VALUES ($1, 'ORDER', 'PRODUCT', $2, $3)
+                        """)
+                .execute(Tuple.of(userId, productId, expiresAt == null ? null
+                        : expiresAt.atOffset(ZoneOffset.UTC)))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    private static LibraryDtos.LibraryItemResponse item(Instant expiresAt) {
+        return new LibraryDtos.LibraryItemResponse(UUID.randomUUID(), "Produkt", "produkt", "DIGITAL", null,
+                Instant.EPOCH, expiresAt, List.of(), null);
+    }
+}
@@ -0,0 +1,92 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.observability.QueryBudget;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.vertx.mutiny.sqlclient.Pool;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.hasSize;
+
+/**
+ * The order list loads the items of a whole page in one query, so its
+ * statement count does not grow with the number of orders on the page.
+ */
+@QuarkusTest
+public class OrderQueryBudgetTest {
+
+    private static final String EMAIL = "order-budget@example.com";
+
+    @Inject
+    Pool client;
+
+    @AfterEach
+    public void cleanup() {
+        String user = "(SELECT id FROM users WHERE email = '" + EMAIL + "')";
+        execute("DELETE FROM order_items WHERE order_id IN (SELECT id FROM orders WHERE user_id IN " + user + ")");
+        execute("DELETE FROM orders WHERE user_id IN " + user);
+        execute("DELETE FROM sessions WHERE user_id IN " + user);
+        execute("DELETE FROM outbox_messages WHERE recipient = '" + EMAIL + "'"
+                + " OR (payload->>'user_id')::bigint IN " + user);
+        execute("DELETE FROM users WHERE email = '" + EMAIL + "'");
+    }
+
+    @Test
+    public void testOrderListQueriesDoNotGrowWithOrders() {
+        String session = login();
+        long userId = client.query("SELECT id FROM users WHERE email = '" + EMAIL + "'").execute()
+                .await().atMost(Duration.ofSeconds(10)).iterator().next().getLong("id");
+
+        seedOrders(userId, 2);
+        int fewOrders = QueryBudget.of(given().cookie("SESSION_ID", session)
+                .get("/api/orders")
+                .then().statusCode(200)
+                .body("data.items", hasSize(2))
+                // Session lookup, count, page and items, with room for auth changes
+                .spec(QueryBudget.atMost(6)));
+
+        seedOrders(userId, 10);
+        given().cookie("SESSION_ID", session)
+                .get("/api/orders")
+                .then().statusCode(200)
+                .body("data.items", hasSize(12))
+                .spec(QueryBudget.exactly(fewOrders));
+    }
+
+    private String login() {
+        given().contentType(ContentType.JSON)
+                .body("""
+                        {"email": "%s", "password": "password123", "displayName": "Budget"}
+                        """.formatted(EMAIL))
+                .post("/api/auth/register");
+        return given().contentType(ContentType.JSON)
+                .body("""
+                        {"email": "%s", "password": "password123"}
+                        """.formatted(EMAIL))
+                .post("/api/auth/login")
+                .then().statusCode(200)
+                .extract().cookie("SESSION_ID");
+    }
+
+    private void execute(String sql) {
+        client.query(sql).execute().await().atMost(Duration.ofSeconds(10));
+    }
+
+    private void seedOrders(long userId, int count) {
+        client.query("""
+                        WITH o AS (
+                            INSERT INTO orders (user_id, status, total_amount)
+                            SELECT %d, 'PAID', 200 FROM generate_series(1, %d)
+                            RETURNING id
+                        )
+                        INSERT INTO order_items (order_id, quantity, unit_price, total_price)
+                        SELECT o.id, 1, 100, 100 FROM o, generate_series(1, 2)
+                        """.formatted(userId, count)).execute()
+                .await().atMost(Duration.ofSeconds(10));
+    }
+}
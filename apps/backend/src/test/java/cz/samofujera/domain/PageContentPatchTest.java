@@ -0,0 +1,153 @@
+package cz.samofujera.domain;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Partial content updates and full updates share one optimistic concurrency
+ * check on {@code contentVersion}, carried in If-Match and returned as ETag.
+ */
+@QuarkusTest
+public class PageContentPatchTest {
+
+    private static final String EMAIL = "page-patch-admin@example.com";
+    private static final String SLUG = "content-patch-page";
+
+    @Inject
+    Pool client;
+
+    private String session;
+    private UUID pageId;
+
+    @BeforeEach
+    public void setup() {
+        session = adminSession();
+        pageId = client.preparedQuery("""
+                        INSERT INTO pages (slug, title, content)
+                        VALUES ($1, 'Patch', '{"version": 3, "sections": [{"id": "s1", "blocks": [{"id": "b1", "type": "text", "content": null}]}]}')
+                        RETURNING id
+                        """)
+                .execute(Tuple.of(SLUG))
+                .await().atMost(Duration.ofSeconds(10))
+                .iterator().next().getUUID("id");
+    }
+
+    @AfterEach
+    public void cleanup() {
+        client.preparedQuery("DELETE FROM pages WHERE slug = $1").execute(Tuple.of(SLUG))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testPatchAppliesOperationsAndBumpsVersion() {
+        patch("\"0\"", """
+                [{"op": "replace", "path": "/sections/0/blocks/0/content", "value": {"root": "ahoj"}}]
+                """)
+                .then().statusCode(204)
+                .header("ETag", "\"1\"");
+
+        Row page = page();
+        assertEquals(1, page.getInteger("content_version"));
+        assertTrue(page.getString("content").contains("ahoj"));
+    }
+
+    @Test
+    public void testPatchRejections() {
+        String replace = """
+                [{"op": "replace", "path": "/sections/0/blocks/0/content", "value": null}]
+                """;
+        // No version to check against
+        patch(null, replace).then().statusCode(428);
+        // Someone saved in between
+        patch("\"5\"", replace).then().statusCode(412).header("ETag", "\"0\"");
+        // A "test" operation that does not hold
+        patch("\"0\"", """
+                [{"op": "test", "path": "/sections/0/id", "value": "other"}]
+                """).then().statusCode(409);
+        // Not a patch, and a patch that does not apply
+        patch("\"0\"", "{not json").then().statusCode(400);
+        patch("\"0\"", """
+                [{"op": "remove", "path": "/sections/7"}]
+                """).then().statusCode(400);
+
+        assertEquals(0, page().getInteger("content_version"));
+    }
+
+    @Test
+    public void testFullUpdateRequiresIfMatch() {
+        String update = """
+                {"slug": "%s", "title": "Nový titulek", "content": {"version": 3, "sections": []}}
+                """.formatted(SLUG);
+
+        put("\"3\"", update).then().statusCode(412).header("ETag", "\"0\"");
+        assertEquals("Patch", page().getString("title"));
+
+        put("\"0\"", update).then().statusCode(200)
+                .header("ETag", "\"1\"")
+                .body("data.contentVersion", equalTo(1));
+        // The patch was based on version 0, which the full update superseded
+        patch("\"0\"", """
+                [{"op": "remove", "path": "/sections/0"}]
+                """).then().statusCode(412).header("ETag", "\"1\"");
+
+        // Without If-Match nothing is overwritten
+        put(null, update).then().statusCode(428);
+        put("\"1\"", update).then().statusCode(200).header("ETag", "\"2\"");
+    }
+
+    private Response patch(String ifMatch, String body) {
+        var request = given().cookie("SESSION_ID", session)
+                .contentType("application/json-patch+json")
+                .body(body);
+        if (ifMatch != null) request.header("If-Match", ifMatch);
+        return request.when().patch("/api/admin/pages/" + pageId + "/content");
+    }
+
+    private Response put(String ifMatch, String body) {
+        var request = given().cookie("SESSION_ID", session)
+                .contentType(ContentType.JSON)
+                .body(body);
+        if (ifMatch != null) request.header("If-Match", ifMatch);
+        return request.when().put("/api/admin/pages/" + pageId);
+    }
+
+    private Row page() {
+        return client.preparedQuery("SELECT title, content::text AS content, content_version FROM pages WHERE id = $1")
+                .execute(Tuple.of(pageId))
+                .await().atMost(Duration.ofSeconds(10))
+                .iterator().next();
+    }
+
+    private String adminSession() {
+        given().contentType(ContentType.JSON)
+                .body("""
+                        {"email": "%s", "password": "password123", "displayName": "Page admin"}
+                        """.formatted(EMAIL))
+                .post("/api/auth/register");
+        client.preparedQuery("UPDATE users SET role = 'ADMIN' WHERE email = $1").execute(Tuple.of(EMAIL))
+                .await().atMost(Duration.ofSeconds(10));
+        return given().contentType(ContentType.JSON)
+                .body("""
+                        {"email": "%s", "password": "password123"}
+                        """.formatted(EMAIL))
+                .post("/api/auth/login")
+                .then().statusCode(200)
+                .extract().cookie("SESSION_ID");
+    }
+}
@@ -0,0 +1,117 @@
+package cz.samofujera.domain;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Published pages are answered from memory with a strong ETag. Changes written
+ * straight to the database, as another node would, must still reach the cache
+ * through the {@code entity_changes} feed.
+ */
+@QuarkusTest
+public class PageDeliveryCacheTest {
+
+    private static final String SLUG = "delivery-cache-page";
+
+    @Inject
+    Pool client;
+
+    @Inject
+    PageDeliveryCache cache;
+
+    @AfterEach
+    public void cleanup() {
+        client.preparedQuery("DELETE FROM pages WHERE slug = $1").execute(Tuple.of(SLUG))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testRepeatedRequestWithEtagIsNotModified() {
+        UUID pageId = seedPublishedPage("Původní");
+
+        String etag = given().when().get("/api/pages/" + SLUG)
+                .then().statusCode(200)
+                .body("data.title", equalTo("Původní"))
+                .extract().header("ETag");
+        assertNotNull(etag);
+
+        given().header("If-None-Match", etag)
+                .when().get("/api/pages/" + SLUG)
+                .then().statusCode(304)
+                .header("ETag", etag);
+
+        cache.invalidatePage(pageId);
+        // Rebuilt from the same revision: same bytes, same ETag
+        given().header("If-None-Match", etag)
+                .when().get("/api/pages/" + SLUG)
+                .then().statusCode(304);
+    }
+
+    @Test
+    public void testChangeFromAnotherNodeInvalidatesCachedPage() throws Exception {
+        UUID pageId = seedPublishedPage("Původní");
+        String etag = given().when().get("/api/pages/" + SLUG)
+                .then().statusCode(200).extract().header("ETag");
+
+        execute("UPDATE pages SET title = 'Nový' WHERE id = $1", pageId);
+        awaitEvicted();
+        String updated = given().header("If-None-Match", etag)
+                .when().get("/api/pages/" + SLUG)
+                .then().statusCode(200)
+                .body("data.title", equalTo("Nový"))
+                .extract().header("ETag");
+        assertNotEquals(etag, updated);
+
+        execute("UPDATE pages SET status = 'DRAFT' WHERE id = $1", pageId);
+        awaitEvicted();
+        given().when().get("/api/pages/" + SLUG).then().statusCode(404);
+    }
+
+    private UUID seedPublishedPage(String title) {
+        UUID pageId = client.preparedQuery("""
+                        INSERT INTO pages (slug, title, status, content, published_at)
+                        VALUES ($1, $2, 'PUBLISHED', '{"blocks": []}', now())
+                        RETURNING id
+                        """)
+                .execute(Tuple.of(SLUG, title))
+                .await().atMost(Duration.ofSeconds(10))
+                .iterator().next().getUUID("id");
+        client.preparedQuery("""
+                        WITH revision AS (
+                            INSERT INTO page_revisions (page_id, version, content, title, slug)
+                            VALUES ($1, 1, '{"blocks": []}', $2, $3)
+                            RETURNING id
+                        )
+                        UPDATE pages SET published_revision_id = (SELECT id FROM revision) WHERE id = $1
+                        """)
+                .execute(Tuple.of(pageId, title, SLUG))
+                .await().atMost(Duration.ofSeconds(10));
+        return pageId;
+    }
+
+    private void execute(String sql, UUID pageId) {
+        client.preparedQuery(sql).execute(Tuple.of(pageId)).await().atMost(Duration.ofSeconds(10));
+    }
+
+    private void awaitEvicted() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (cache.get(SLUG) != null) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Page " + SLUG + " was not evicted from the delivery cache");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
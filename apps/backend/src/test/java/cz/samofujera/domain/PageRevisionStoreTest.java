@@ -0,0 +1,201 @@
+package cz.samofujera.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import cz.samofujera.domain.entity.PageRevisionEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Appends revisions of a large page through {@link PageRevisionStore} and checks
+ * what ends up in the table: snapshots and the head in full, deltas in between,
+ * and every version rebuilt by {@code content} exactly as it was written. Write
+ * and read latency are compared with storing every revision as a full copy.
+ */
+@QuarkusTest
+public class PageRevisionStoreTest {
+
+    private static final String SLUG = "revision-store-page";
+    private static final String FULL_COPY_SLUG = "revision-store-full-copy";
+
+    @Inject
+    PageRevisionStore store;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @Inject
+    Pool client;
+
+    @ConfigProperty(name = "app.pages.revisions.snapshot-interval", defaultValue = "10")
+    int snapshotInterval;
+
+    @AfterEach
+    public void cleanup() {
+        client.preparedQuery("DELETE FROM pages WHERE slug = ANY($1)")
+                .execute(Tuple.of(new String[] {SLUG, FULL_COPY_SLUG}))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testAppendCompactsOlderRevisionsIntoDeltas() throws Exception {
+        UUID pageId = page(SLUG);
+
+        int revisions = snapshotInterval * 2 + 5;
+        List<String> written = contents(revisions);
+        for (String json : written) {
+            Panache.withTransaction(() -> store.append(revision(pageId, json))).await().atMost(Duration.ofSeconds(10));
+        }
+
+        List<PageRevisionEntity> stored = Panache.withSession(
+                        () -> PageRevisionEntity.findVersionRange(pageId, 1, revisions))
+                .await().atMost(Duration.ofSeconds(10));
+        assertEquals(revisions, stored.size());
+
+        long fullCopyBytes = 0;
+        long storedBytes = 0;
+        for (PageRevisionEntity revision : stored) {
+            int version = revision.version;
+            fullCopyBytes += written.get(version - 1).getBytes(StandardCharsets.UTF_8).length;
+            if (version == revisions || PageRevisionStore.isSnapshotVersion(version, snapshotInterval)) {
+                assertEquals(PageRevisionStore.FULL, revision.storage, "version " + version);
+                assertNotNull(revision.content);
+                storedBytes += revision.content.getBytes(StandardCharsets.UTF_8).length;
+            } else {
+                assertTrue(revision.storage.startsWith(PageRevisionStore.DELTA), "version " + version);
+                assertNull(revision.content);
+                storedBytes += revision.contentDelta.length;
+            }
+        }
+        assertTrue(storedBytes * 4 < fullCopyBytes, "delta storage should be far below full copies");
+
+        for (int version = 1; version <= revisions; version++) {
+            int v = version;
+            String rebuilt = Panache.withSession(() -> PageRevisionEntity.findByPageAndVersion(pageId, v)
+                            .chain(store::content))
+                    .await().atMost(Duration.ofSeconds(10));
+            assertEquals(mapper.readTree(written.get(v - 1)), mapper.readTree(rebuilt), "version " + v);
+        }
+    }
+
+    /**
+     * Deltas cost extra work on both paths: a write diffs against the previous
+     * revision and a read replays up to a snapshot interval of patches. Both
+     * must stay within the same order of magnitude as full copies.
+     */
+    @Test
+    public void testLatencyStaysCloseToFullCopies() throws Exception {
+        UUID deltaPage = page(SLUG);
+        UUID fullCopyPage = page(FULL_COPY_SLUG);
+        int revisions = snapshotInterval * 3;
+        List<String> written = contents(revisions);
+
+        long storeWrite = 0;
+        long fullCopyWrite = 0;
+        for (String json : written) {
+            storeWrite += timed(() -> Panache.withTransaction(() -> store.append(revision(deltaPage, json))));
+            // As publishing stored revisions before the store: every version as a full row
+            fullCopyWrite += timed(() -> Panache.withTransaction(() -> PageRevisionEntity.findMaxVersion(fullCopyPage)
+                    .chain(max -> {
+                        var revision = revision(fullCopyPage, json);
+                        revision.version = max + 1;
+                        return revision.persist();
+                    })));
+        }
+
+        long storeRead = 0;
+        long fullCopyRead = 0;
+        for (int version = 1; version <= revisions; version++) {
+            int v = version;
+            storeRead += timed(() -> Panache.withSession(() -> PageRevisionEntity.findByPageAndVersion(deltaPage, v)
+                    .chain(store::content)));
+            fullCopyRead += timed(() -> Panache.withSession(() -> PageRevisionEntity.findByPageAndVersion(fullCopyPage, v)
+                    .map(revision -> revision.content)));
+        }
+
+        assertTrue(storeWrite < fullCopyWrite * 10, "writes: store %d ms, full copies %d ms"
+                .formatted(storeWrite / 1_000_000, fullCopyWrite / 1_000_000));
+        assertTrue(storeRead < fullCopyRead * 10, "reads: store %d ms, full copies %d ms"
+                .formatted(storeRead / 1_000_000, fullCopyRead / 1_000_000));
+    }
+
+    private UUID page(String slug) {
+        return client.preparedQuery("INSERT INTO pages (slug, title) VALUES ($1, 'Revize') RETURNING id")
+                .execute(Tuple.of(slug))
+                .await().atMost(Duration.ofSeconds(10))
+                .iterator().next().getUUID("id");
+    }
+
+    private List<String> contents(int revisions) throws Exception {
+        var random = new Random(42);
+        ObjectNode content = landingPage(300);
+        List<String> written = new ArrayList<>();
+        for (int i = 1; i <= revisions; i++) {
+            edit(content, random, i);
+            written.add(mapper.writeValueAsString(content));
+        }
+        return written;
+    }
+
+    private static PageRevisionEntity revision(UUID pageId, String json) {
+        var revision = new PageRevisionEntity();
+        revision.pageId = pageId;
+        revision.content = json;
+        revision.createdAt = Instant.now();
+        return revision;
+    }
+
+    private static long timed(Supplier<Uni<?>> operation) {
+        long start = System.nanoTime();
+        operation.get().await().atMost(Duration.ofSeconds(10));
+        return System.nanoTime() - start;
+    }
+
+    private ObjectNode landingPage(int blocks) {
+        ObjectNode page = mapper.createObjectNode();
+        ArrayNode list = page.putArray("blocks");
+        for (int i = 0; i < blocks; i++) {
+            list.add(block("b" + i, i));
+        }
+        return page;
+    }
+
+    private ObjectNode block(String id, int seed) {
+        ObjectNode block = mapper.createObjectNode();
+        block.put("id", id);
+        block.put("type", seed % 3 == 0 ? "heading" : "paragraph");
+        block.put("text", ("Obsah bloku " + seed + " ").repeat(40));
+        block.putObject("style").put("align", "left").put("padding", 16);
+        return block;
+    }
+
+    private void edit(ObjectNode page, Random random, int version) {
+        ArrayNode blocks = (ArrayNode) page.get("blocks");
+        ((ObjectNode) blocks.get(random.nextInt(blocks.size()))).put("text", "Upraveno ve verzi " + version);
+        if (version % 7 == 0) {
+            blocks.insert(random.nextInt(blocks.size()), block("n" + version, version));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package cz.samofujera.domain;
+
+import cz.samofujera.domain.entity.PageEntity;
+import cz.samofujera.domain.entity.ProductEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.panache.common.Page;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.RecordComponent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Admin lists load {@link PageEntity.Summary} and {@link ProductEntity.Summary}
+ * instead of full entities. Checks that the projections leave out the large
+ * columns, and that over rows with large page content and product descriptions
+ * loading them allocates a fraction of what the entities do and is faster.
+ */
+@QuarkusTest
+public class ProjectionQueryTest {
+
+    private static final int ROWS = 200;
+    private static final int RUNS = 3;
+
+    @Inject
+    Pool client;
+
+    @AfterEach
+    public void cleanup() {
+        client.query("DELETE FROM pages WHERE slug LIKE 'projection-%'")
+                .execute().await().atMost(Duration.ofSeconds(10));
+        client.query("DELETE FROM products WHERE slug LIKE 'projection-%'")
+                .execute().await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testSummariesProjectEntityFieldsWithoutLargeColumns() {
+        assertProjects(PageEntity.Summary.class, PageEntity.class, "content");
+        assertProjects(ProductEntity.Summary.class, ProductEntity.class, "description");
+    }
+
+    @Test
+    public void testPageSummariesSkipContent() {
+        seedPages();
+        long contentBytes = sumBytes("SELECT coalesce(sum(octet_length(content::text)), 0) AS bytes "
+                + "FROM pages WHERE slug LIKE 'projection-%'");
+
+        // Warm up both paths so class loading and query plan caching are not counted
+        loadPages();
+        loadPageSummaries();
+
+        var entities = new Loaded<List<PageEntity>>();
+        Cost entityCost = measure(() -> entities.value = loadPages());
+        var summaries = new Loaded<List<PageEntity.Summary>>();
+        Cost summaryCost = measure(() -> summaries.value = loadPageSummaries());
+
+        assertEquals(ROWS, entities.value.size());
+        assertEquals(ROWS, summaries.value.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(entities.value.get(i).id, summaries.value.get(i).id());
+            assertEquals(entities.value.get(i).slug, summaries.value.get(i).slug());
+            assertEquals(entities.value.get(i).title, summaries.value.get(i).title());
+        }
+        long loadedContent = entities.value.stream().mapToLong(page -> page.content.length()).sum();
+        assertTrue(loadedContent * 2 >= contentBytes, "entities should hold the page content");
+
+        assertCheaper(entityCost, summaryCost, contentBytes);
+    }
+
+    @Test
+    public void testProductSummariesSkipDescription() {
+        seedProducts();
+        long descriptionBytes = sumBytes("SELECT coalesce(sum(octet_length(description)), 0) AS bytes "
+                + "FROM products WHERE slug LIKE 'projection-%'");
+
+        loadProducts();
+        loadProductSummaries();
+
+        var entities = new Loaded<List<ProductEntity>>();
+        Cost entityCost = measure(() -> entities.value = loadProducts());
+        var summaries = new Loaded<List<ProductEntity.Summary>>();
+        Cost summaryCost = measure(() -> summaries.value = loadProductSummaries());
+
+        assertEquals(ROWS, entities.value.size());
+        assertEquals(ROWS, summaries.value.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(entities.value.get(i).id, summaries.value.get(i).id());
+            assertEquals(entities.value.get(i).shortDescription, summaries.value.get(i).shortDescription());
+        }
+        long loadedDescriptions = entities.value.stream().mapToLong(product -> product.description.length()).sum();
+        assertTrue(loadedDescriptions * 2 >= descriptionBytes, "entities should hold the descriptions");
+
+        assertCheaper(entityCost, summaryCost, descriptionBytes);
+    }
+
+    private static void assertProjects(Class<? extends Record> summary, Class<?> entity, String skipped) {
+        List<String> columns = Arrays.stream(summary.getRecordComponents()).map(RecordComponent::getName).toList();
+        assertFalse(columns.contains(skipped), summary.getName() + " must not load " + skipped);
+        // Panache binds record components to entity fields by name
+        for (String column : columns) {
+            assertDoesNotThrow(() -> entity.getField(column), entity.getSimpleName() + " has no field " + column);
+        }
+    }
+
+    private static void assertCheaper(Cost entity, Cost summary, long skippedBytes) {
+        assertTrue(entity.allocated() >= skippedBytes,
+                "entity load allocated " + entity.allocated() + " B for " + skippedBytes + " B of large columns");
+        assertTrue(summary.allocated() * 4 < entity.allocated(),
+                "projection allocated " + summary.allocated() + " B, entities " + entity.allocated() + " B");
+        assertTrue(summary.nanos() < entity.nanos(),
+                "projection took " + summary.nanos() / 1_000 + " us, entities " + entity.nanos() / 1_000 + " us");
+    }
+
+    private record Cost(long allocated, long nanos) {}
+
+    /**
+     * The least allocation and time over a few runs of {@code load}, so a run
+     * that happened to overlap other work does not count. Allocation is summed
+     * over the calling thread and the event loops, where rows are decoded;
+     * schedulers and worker pools are left out.
+     */
+    private static Cost measure(Runnable load) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocated = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long[] ids = loadThreads();
+            long before = sum(threads.getThreadAllocatedBytes(ids));
+            long start = System.nanoTime();
+            load.run();
+            nanos = Math.min(nanos, System.nanoTime() - start);
+            allocated = Math.min(allocated, sum(threads.getThreadAllocatedBytes(ids)) - before);
+        }
+        return new Cost(allocated, nanos);
+    }
+
+    private static long[] loadThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread == Thread.currentThread() || thread.getName().startsWith("vert.x-eventloop"))
+                .mapToLong(Thread::threadId)
+                .toArray();
+    }
+
+    private static long sum(long[] allocated) {
+        long total = 0;
+        for (long bytes : allocated) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private static final class Loaded<T> {
+        T value;
+    }
+
+    private List<PageEntity> loadPages() {
+        return await(() -> PageEntity.<PageEntity>find("slug like 'projection-%'", Sort.by("slug"))
+                .page(Page.of(0, ROWS))
+                .list());
+    }
+
+    private List<PageEntity.Summary> loadPageSummaries() {
+        return await(() -> PageEntity.find("slug like 'projection-%'", Sort.by("slug"))
+                .project(PageEntity.Summary.class)
+                .page(Page.of(0, ROWS))
+                .list());
+    }
+
+    private List<ProductEntity> loadProducts() {
+        return await(() -> ProductEntity.<ProductEntity>find("slug like 'projection-%'", Sort.by("slug"))
+                .page(Page.of(0, ROWS))
+                .list());
+    }
+
+    private List<ProductEntity.Summary> loadProductSummaries() {
+        return await(() -> ProductEntity.find("slug like 'projection-%'", Sort.by("slug"))
+                .project(ProductEntity.Summary.class)
+                .page(Page.of(0, ROWS))
+                .list());
+    }
+
+    private static <T> List<T> await(Supplier<Uni<List<T>>> query) {
+        return Panache.withSession(query).await().atMost(Duration.ofSeconds(30));
+    }
+
+    private long sumBytes(String sql) {
+        return client.query(sql).execute().await().atMost(Duration.ofSeconds(10))
+                .iterator().next().getLong("bytes");
+    }
+
+    private void seedPages() {
+        var content = new StringBuilder("{\"version\":1,\"blocks\":[");
+        for (int b = 0; b < 400; b++) {
+            if (b > 0) content.append(',');
+            content.append("{\"id\":\"b").append(b)
+                    .append("\",\"type\":\"text\",\"props\":{\"html\":\"<p>")
+                    .append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(4))
+                    .append("</p>\"}}");
+        }
+        content.append("]}");
+
+        var batch = new ArrayList<Tuple>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(Tuple.of("projection-%03d".formatted(i), "Projection " + i, content.toString()));
+        }
+        client.preparedQuery("""
+                        INSERT INTO pages (slug, title, status, page_type, content)
+                        VALUES ($1, $2, 'DRAFT', 'CUSTOM', $3::jsonb)
+                        """)
+                .executeBatch(batch).await().atMost(Duration.ofSeconds(30));
+    }
+
+    private void seedProducts() {
+        String description = "<p>" + "Podrobný popis produktu s obrázky a odkazy. ".repeat(1500) + "</p>";
+        var batch = new ArrayList<Tuple>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(Tuple.of("projection-%03d".formatted(i), "Projection " + i, description, "Krátký popis " + i));
+        }
+        client.preparedQuery("""
+                        INSERT INTO products (slug, title, product_type, description, short_description)
+                        VALUES ($1, $2, 'PHYSICAL', $3, $4)
+                        """)
+                .executeBatch(batch).await().atMost(Duration.ofSeconds(30));
+    }
+}
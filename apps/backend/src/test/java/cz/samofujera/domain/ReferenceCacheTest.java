@@ -0,0 +1,120 @@
+package cz.samofujera.domain;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReferenceCacheTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(1);
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() {
+        var loads = new AtomicInteger();
+        var cache = new ReferenceCache<String, String>("test", Set.of("t"), Duration.ofHours(1), 10,
+                key -> Uni.createFrom().item(() -> key + loads.incrementAndGet()));
+
+        Uni<String> first = cache.get("a");
+        Uni<String> second = cache.get("a");
+
+        assertSame(first, second);
+        assertEquals("a1", first.await().atMost(WAIT));
+        assertEquals("a1", second.await().atMost(WAIT));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    public void testInvalidationAndExpiryReload() {
+        var loads = new AtomicInteger();
+        var cache = new ReferenceCache<String, Integer>("test", Set.of("t"), Duration.ofHours(1), 10,
+                key -> Uni.createFrom().item(loads::incrementAndGet));
+        assertEquals(1, cache.get("a").await().atMost(WAIT));
+        cache.invalidateAll();
+        assertEquals(2, cache.get("a").await().atMost(WAIT));
+
+        var expiring = new ReferenceCache<String, Integer>("test", Set.of("t"), Duration.ZERO, 10,
+                key -> Uni.createFrom().item(loads::incrementAndGet));
+        assertEquals(3, expiring.get("a").await().atMost(WAIT));
+        assertEquals(4, expiring.get("a").await().atMost(WAIT));
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        var attempts = new AtomicInteger();
+        var cache = new ReferenceCache<String, String>("test", Set.of("t"), Duration.ofHours(1), 10,
+                key -> attempts.incrementAndGet() == 1
+                        ? Uni.createFrom().failure(new IllegalStateException("db down"))
+                        : Uni.createFrom().item("ok"));
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a").await().atMost(WAIT));
+        assertEquals("ok", cache.get("a").await().atMost(WAIT));
+        assertEquals(1, cache.stats().loadFailures());
+    }
+
+    @Test
+    public void testFullCacheKeepsItsEntries() {
+        var loads = new AtomicInteger();
+        var cache = new ReferenceCache<String, Integer>("test", Set.of("t"), Duration.ofHours(1), 1,
+                key -> Uni.createFrom().item(loads::incrementAndGet));
+
+        assertEquals(1, cache.get("a").await().atMost(WAIT));
+        // No room and nothing expired: "b" is loaded each time, "a" stays cached
+        assertEquals(2, cache.get("b").await().atMost(WAIT));
+        assertEquals(3, cache.get("b").await().atMost(WAIT));
+        assertEquals(1, cache.get("a").await().atMost(WAIT));
+        assertEquals(1, cache.stats().size());
+
+        var expiring = new ReferenceCache<String, Integer>("test", Set.of("t"), Duration.ZERO, 1,
+                key -> Uni.createFrom().item(loads::incrementAndGet));
+        expiring.get("a").await().atMost(WAIT);
+        // An expired entry makes room
+        expiring.get("b").await().atMost(WAIT);
+        assertEquals(1, expiring.stats().size());
+    }
+
+    @Test
+    public void testSharedLoadResumesEachCallerOnItsOwnContext() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            var loaded = new CompletableFuture<String>();
+            var cache = new ReferenceCache<String, String>("test", Set.of("t"), Duration.ofHours(1), 10,
+                    key -> Uni.createFrom().completionStage(loaded));
+            Context first = vertx.getOrCreateContext();
+            Context second = vertx.getOrCreateContext();
+            var resumedOn = new ConcurrentHashMap<Context, Context>();
+            var done = new CountDownLatch(2);
+            for (Context context : List.of(first, second)) {
+                context.runOnContext(v -> cache.get("a").subscribe().with(value -> {
+                    resumedOn.put(context, Vertx.currentContext());
+                    done.countDown();
+                }));
+            }
+            // The load completes on the first caller's context
+            first.runOnContext(v -> loaded.complete("value"));
+
+            assertTrue(done.await(1, TimeUnit.SECONDS));
+            assertSame(first, resumedOn.get(first));
+            assertSame(second, resumedOn.get(second));
+            assertEquals(1, cache.stats().misses());
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(1, TimeUnit.SECONDS);
+        }
+    }
+}
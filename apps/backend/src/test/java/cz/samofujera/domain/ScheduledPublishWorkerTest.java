@@ -0,0 +1,131 @@
+package cz.samofujera.domain;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Timer wheel behaviour of scheduled publishing: due pages get published once,
+ * schedules found in the database on reload are armed, and a page that was
+ * rescheduled or cancelled before its timer fired stays a draft.
+ */
+@QuarkusTest
+public class ScheduledPublishWorkerTest {
+
+    @Inject
+    ScheduledPublishWorker worker;
+
+    @Inject
+    Pool client;
+
+    @AfterEach
+    public void cleanup() {
+        client.query("DELETE FROM pages WHERE slug LIKE 'scheduled-test-%'").execute()
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testDuePageIsPublishedByTimer() throws Exception {
+        Instant at = Instant.now().plusMillis(500);
+        UUID pageId = seedDraft("due", at);
+
+        worker.schedule(pageId, at);
+        assertEquals(at, worker.pendingAt(pageId));
+
+        Row page = awaitStatus(pageId, "PUBLISHED");
+        assertNotNull(page.getUUID("published_revision_id"));
+        assertNull(page.getValue("scheduled_publish_at"));
+        assertNull(worker.pendingAt(pageId));
+    }
+
+    @Test
+    public void testReloadArmsSchedulesWithinHorizon() throws Exception {
+        // Schedules made before a restart, or on another node, exist only in the database
+        Instant soon = Instant.now().plusMillis(500).truncatedTo(ChronoUnit.MILLIS);
+        UUID due = seedDraft("reload-due", soon);
+        UUID later = seedDraft("reload-later", Instant.now().plus(Duration.ofDays(1)));
+
+        worker.loadUpcoming().await().atMost(Duration.ofSeconds(10));
+
+        assertEquals(soon, worker.pendingAt(due));
+        assertNull(worker.pendingAt(later));
+        awaitStatus(due, "PUBLISHED");
+    }
+
+    @Test
+    public void testRescheduledOrCancelledPageIsNotPublished() throws Exception {
+        Instant at = Instant.now().plusMillis(300);
+        UUID moved = seedDraft("moved", at);
+        UUID cancelled = seedDraft("cancelled", at);
+        worker.schedule(moved, at);
+        worker.schedule(cancelled, at);
+
+        Instant nextWeek = Instant.now().plus(Duration.ofDays(7));
+        execute("UPDATE pages SET scheduled_publish_at = $2 WHERE id = $1", moved, nextWeek);
+        worker.schedule(moved, nextWeek);
+        execute("UPDATE pages SET scheduled_publish_at = NULL WHERE id = $1", cancelled, null);
+        worker.cancel(cancelled);
+
+        Thread.sleep(1_000);
+        assertEquals("DRAFT", page(moved).getString("status"));
+        assertEquals("DRAFT", page(cancelled).getString("status"));
+        // A timer that fires from a stale schedule still finds the page not due
+        assertFalse(worker.publishIfDue(moved).await().atMost(Duration.ofSeconds(10)));
+        assertEquals("DRAFT", page(moved).getString("status"));
+    }
+
+    private UUID seedDraft(String name, Instant at) {
+        return client.preparedQuery("""
+                        INSERT INTO pages (slug, title, status, scheduled_publish_at)
+                        VALUES ($1, $2, 'DRAFT', $3)
+                        RETURNING id
+                        """)
+                .execute(Tuple.of("scheduled-test-" + name, name, OffsetDateTime.ofInstant(at, ZoneOffset.UTC)))
+                .await().atMost(Duration.ofSeconds(10))
+                .iterator().next().getUUID("id");
+    }
+
+    private void execute(String sql, UUID pageId, Instant at) {
+        client.preparedQuery(sql)
+                .execute(at != null
+                        ? Tuple.of(pageId, OffsetDateTime.ofInstant(at, ZoneOffset.UTC))
+                        : Tuple.of(pageId))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    private Row page(UUID pageId) {
+        return client.preparedQuery(
+                        "SELECT status, published_revision_id, scheduled_publish_at FROM pages WHERE id = $1")
+                .execute(Tuple.of(pageId))
+                .await().atMost(Duration.ofSeconds(10))
+                .iterator().next();
+    }
+
+    private Row awaitStatus(UUID pageId, String status) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            Row row = page(pageId);
+            if (status.equals(row.getString("status"))) {
+                return row;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Page " + pageId + " did not reach " + status);
+    }
+}
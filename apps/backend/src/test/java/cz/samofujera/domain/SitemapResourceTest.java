@@ -0,0 +1,89 @@
+package cz.samofujera.domain;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Seeds more products than fit one sitemap shard and checks the index, the
+ * shard split and that a repeated request returns the same cached document,
+ * also when the cached file disappears between requests.
+ */
+@QuarkusTest
+public class SitemapResourceTest {
+
+    private static final int PRODUCTS = SitemapService.URLS_PER_SHARD + 1_500;
+
+    @Inject
+    Pool client;
+
+    @ConfigProperty(name = "app.seo.cache-dir", defaultValue = "seo-cache")
+    String cacheDir;
+
+    @AfterEach
+    public void cleanup() {
+        client.query("DELETE FROM products WHERE slug LIKE 'sitemap-%'").execute()
+                .await().atMost(Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void testProductsAreShardedAt50kUrls() {
+        client.query("""
+                        INSERT INTO products (title, slug, product_type, status)
+                        SELECT 'Sitemap ' || i, 'sitemap-' || lpad(i::text, 6, '0'), 'DIGITAL', 'ACTIVE'
+                        FROM generate_series(1, %d) AS i
+                        """.formatted(PRODUCTS)).execute()
+                .await().atMost(Duration.ofSeconds(60));
+
+        given().when().get("/api/seo/sitemap.xml")
+                .then().statusCode(200)
+                .body(containsString("/sitemaps/products-1.xml"))
+                .body(containsString("/sitemaps/products-2.xml"));
+
+        String first = given().when().get("/api/seo/sitemaps/products-1.xml")
+                .then().statusCode(200).extract().asString();
+        String cached = given().when().get("/api/seo/sitemaps/products-1.xml")
+                .then().statusCode(200).extract().asString();
+        assertEquals(SitemapService.URLS_PER_SHARD, first.split("<url>", -1).length - 1);
+        assertEquals(first, cached);
+
+        String second = given().when().get("/api/seo/sitemaps/products-2.xml")
+                .then().statusCode(200).extract().asString();
+        assertEquals(PRODUCTS - SitemapService.URLS_PER_SHARD, second.split("<url>", -1).length - 1);
+        // The second shard continues right after the last slug of the first
+        assertTrue(first.contains("sitemap-%06d".formatted(SitemapService.URLS_PER_SHARD) + "</loc>"));
+        assertTrue(second.contains("sitemap-%06d".formatted(SitemapService.URLS_PER_SHARD + 1) + "</loc>"));
+    }
+
+    @Test
+    public void testShardDeletedByInvalidationIsRegenerated() throws Exception {
+        client.query("""
+                        INSERT INTO products (title, slug, product_type, status)
+                        VALUES ('Sitemap 1', 'sitemap-000001', 'DIGITAL', 'ACTIVE')
+                        """).execute()
+                .await().atMost(Duration.ofSeconds(10));
+        given().when().get("/api/seo/sitemaps/products-1.xml")
+                .then().statusCode(200)
+                .body(containsString("sitemap-000001</loc>"));
+
+        // As an invalidation racing the request would
+        Files.deleteIfExists(Path.of(cacheDir, "products-1.xml"));
+        given().when().get("/api/seo/sitemaps/products-1.xml")
+                .then().statusCode(200)
+                .body(containsString("sitemap-000001</loc>"))
+                .body(endsWith("</urlset>\n"));
+    }
+}
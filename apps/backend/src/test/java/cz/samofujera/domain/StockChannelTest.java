@@ -0,0 +1,64 @@
+package cz.samofujera.domain;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Viewers get only what changed between two pushes, so a reload that finds the
+ * same stock sends nothing.
+ */
+public class StockChannelTest {
+
+    private static final UUID PRODUCT = UUID.randomUUID();
+    private static final UUID SMALL = UUID.randomUUID();
+    private static final UUID LARGE = UUID.randomUUID();
+
+    @Test
+    public void testDeltaCarriesOnlyChangedStock() {
+        var before = snapshot("in_stock", stock(SMALL, 5, "in_stock"), stock(LARGE, 2, "in_stock"));
+        var after = snapshot("in_stock", stock(SMALL, 5, "in_stock"), stock(LARGE, 0, "out_of_stock"));
+
+        JsonObject delta = StockChannel.deltaMessage(before, after);
+        assertEquals("delta", delta.getString("type"));
+        assertFalse(delta.containsKey("availability"));
+        assertEquals(1, delta.getJsonArray("variants").size());
+        assertEquals(0, delta.getJsonArray("variants").getJsonObject(0).getInteger("stock"));
+
+        assertNull(StockChannel.deltaMessage(after, after));
+    }
+
+    @Test
+    public void testDeltaReportsRemovedVariantsAndProductAvailability() {
+        var before = snapshot("in_stock", stock(SMALL, 5, "in_stock"), stock(LARGE, 2, "in_stock"));
+        var after = snapshot("out_of_stock", stock(SMALL, 5, "in_stock"));
+
+        JsonObject delta = StockChannel.deltaMessage(before, after);
+        assertEquals("out_of_stock", delta.getString("availability"));
+        assertEquals(LARGE.toString(), delta.getJsonArray("removedVariants").getString(0));
+        assertFalse(delta.containsKey("variants"));
+
+        JsonObject snapshot = StockChannel.snapshotMessage(after);
+        assertEquals("snapshot", snapshot.getString("type"));
+        assertEquals(1, snapshot.getJsonArray("variants").size());
+    }
+
+    private static StockChannel.Snapshot snapshot(String availability, StockChannel.VariantStock... variants) {
+        Map<UUID, StockChannel.VariantStock> byId = new LinkedHashMap<>();
+        for (var variant : variants) {
+            byId.put(variant.id(), variant);
+        }
+        return new StockChannel.Snapshot(PRODUCT, true, availability, null, byId);
+    }
+
+    private static StockChannel.VariantStock stock(UUID id, int stock, String availability) {
+        return new StockChannel.VariantStock(id, stock, availability);
+    }
+}
@@ -0,0 +1,131 @@
+package cz.samofujera.email;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompiledTemplateTest {
+
+    @Test
+    public void testSubstitutesAndEscapesVariables() {
+        var template = CompiledTemplate.html("<p>Ahoj {{ name }}, objednávka {{orderId}}.</p>");
+
+        assertEquals("<p>Ahoj &lt;b&gt;Jan&lt;/b&gt;, objednávka SF-1.</p>",
+                template.render(Map.of("name", "<b>Jan</b>", "orderId", "SF-1")));
+        assertEquals("<p>Ahoj , objednávka .</p>", template.render(Map.of()));
+    }
+
+    @Test
+    public void testTextTemplateDoesNotEscape() {
+        var template = CompiledTemplate.text("Objednávka {{orderId}} & faktura");
+
+        assertEquals("Objednávka A&B & faktura", template.render(Map.of("orderId", "A&B")));
+    }
+
+    @Test
+    public void testNonPlaceholderBracesAreKeptVerbatim() {
+        String source = "<style>a{{color: red}}</style><p>{{name}}</p>{{unclosed";
+        var template = CompiledTemplate.html(source);
+
+        assertEquals("<style>a{{color: red}}</style><p>Jan</p>{{unclosed", template.render(Map.of("name", "Jan")));
+        assertEquals(1, template.variables().size());
+    }
+
+    @Test
+    public void testBulkRenderIntoReusedBuffer() {
+        // Roughly the size of a React Email build output
+        var source = new StringBuilder("<!DOCTYPE html><html><body>");
+        for (int i = 0; i < 200; i++) {
+            source.append("<table><tr><td style=\"padding:8px;font-family:sans-serif\">Řádek ").append(i)
+                    .append("</td></tr></table>");
+            if (i % 50 == 0) source.append("<p>Dobrý den {{name}}, vaše objednávka {{orderId}}</p>");
+        }
+        source.append("</body></html>");
+        var template = CompiledTemplate.html(source.toString());
+
+        int recipients = 1_000;
+        var vars = new HashMap<String, Object>();
+        var out = new StringBuilder(source.length() + 1024);
+        long totalChars = 0;
+
+        for (int i = 0; i < recipients; i++) {
+            vars.put("name", "Uživatel " + i);
+            vars.put("orderId", "SF-" + i);
+            out.setLength(0);
+            template.render(vars, out);
+            totalChars += out.length();
+        }
+
+        assertEquals(template.render(Map.of("name", "Uživatel 999", "orderId", "SF-999")), out.toString());
+        assertTrue(totalChars > (long) recipients * source.length() / 2);
+    }
+
+    @Test
+    public void testBatchRendersFasterThanPerRecipientSubstitution() {
+        String source = reactEmailSized();
+        var template = CompiledTemplate.html(source);
+        int recipients = 10_000;
+
+        // Warm up both paths so the comparison is not about JIT compilation
+        renderCompiled(template, 1_000);
+        renderBySubstitution(source, 1_000);
+
+        long compiled = renderCompiled(template, recipients);
+        long substituted = renderBySubstitution(source, recipients);
+
+        double compiledPerSecond = recipients / (compiled / 1e9);
+        double substitutedPerSecond = recipients / (substituted / 1e9);
+        assertTrue(compiled < substituted, "compiled %.0f renders/s, substitution %.0f renders/s"
+                .formatted(compiledPerSecond, substitutedPerSecond));
+        // A campaign page of 10k recipients must never be held up by rendering
+        assertTrue(compiled < 5_000_000_000L, "10k renders took " + compiled / 1_000_000 + " ms");
+    }
+
+    private static String reactEmailSized() {
+        var source = new StringBuilder("<!DOCTYPE html><html><body>");
+        for (int i = 0; i < 200; i++) {
+            source.append("<table><tr><td style=\"padding:8px;font-family:sans-serif\">Řádek ").append(i)
+                    .append("</td></tr></table>");
+            if (i % 50 == 0) source.append("<p>Dobrý den {{name}}, vaše objednávka {{orderId}}</p>");
+        }
+        return source.append("</body></html>").toString();
+    }
+
+    private static long renderCompiled(CompiledTemplate template, int recipients) {
+        var vars = new HashMap<String, Object>();
+        var out = new StringBuilder(template.render(Map.of()).length() + 1024);
+        long start = System.nanoTime();
+        for (int i = 0; i < recipients; i++) {
+            vars.put("name", "Uživatel <" + i + ">");
+            vars.put("orderId", "SF-" + i);
+            out.setLength(0);
+            template.render(vars, out);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(out.indexOf("Uživatel &lt;" + (recipients - 1) + "&gt;") > 0);
+        return elapsed;
+    }
+
+    /** What rendering did before templates were compiled: replace each placeholder in the source. */
+    private static long renderBySubstitution(String source, int recipients) {
+        String last = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < recipients; i++) {
+            var vars = Map.of("name", "Uživatel <" + i + ">", "orderId", "SF-" + i);
+            String result = source;
+            for (var entry : vars.entrySet()) {
+                String value = entry.getValue().replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                        .replace("\"", "&quot;").replace("'", "&#39;");
+                result = result.replace("{{" + entry.getKey() + "}}", value);
+            }
+            last = result;
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(last.contains("Uživatel &lt;" + (recipients - 1) + "&gt;"));
+        return elapsed;
+    }
+}
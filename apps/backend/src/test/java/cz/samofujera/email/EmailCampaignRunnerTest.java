@@ -0,0 +1,158 @@
+package cz.samofujera.email;
+
+import cz.samofujera.domain.entity.EmailCampaignEntity;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a campaign over the pooled SMTP mailer against the {@link SmtpStub} and
+ * checks that the configured rate is honoured and every member gets one email.
+ */
+@QuarkusTest
+@WithTestResource(SmtpStub.class)
+public class EmailCampaignRunnerTest {
+
+    private static final int MEMBERS = 1_200;
+    private static final int RATE_PER_SECOND = 400;
+
+    @Inject
+    EmailCampaignRunner runner;
+
+    @Inject
+    Pool client;
+
+    private final List<UUID> campaigns = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() {
+        for (UUID id : campaigns) {
+            execute("DELETE FROM email_campaigns WHERE id = '" + id + "'");
+        }
+        campaigns.clear();
+        execute("DELETE FROM outbox_messages WHERE recipient LIKE '%@campaign.test'");
+        execute("DELETE FROM subscriptions WHERE plan_id IN (SELECT id FROM membership_plans WHERE slug = 'campaign-plan')");
+        execute("DELETE FROM users WHERE email LIKE '%@campaign.test'");
+        execute("DELETE FROM membership_plans WHERE slug = 'campaign-plan'");
+    }
+
+    @Test
+    public void testCampaignReachesAllMembersAtConfiguredRate() throws Exception {
+        SmtpStub.clear();
+        seedMembers();
+
+        var campaign = new EmailCampaignEntity();
+        campaign.name = "Members";
+        campaign.templateKey = "welcome";
+        campaign.locale = EmailTemplates.DEFAULT_LOCALE;
+        campaign.ratePerSecond = RATE_PER_SECOND;
+        UUID id = Panache.withTransaction(campaign::<EmailCampaignEntity>persist)
+                .await().atMost(Duration.ofSeconds(10)).id;
+        campaigns.add(id);
+
+        long start = System.nanoTime();
+        assertTrue(runner.start(id).await().atMost(Duration.ofSeconds(10)));
+        // A second start while the lease is held is refused
+        assertTrue(!runner.start(id).await().atMost(Duration.ofSeconds(10)));
+
+        EmailCampaignEntity done = awaitStatus(id, "COMPLETED", Duration.ofSeconds(30));
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        assertEquals(MEMBERS, done.sentCount);
+        assertEquals(0, done.failedCount);
+        assertEquals(MEMBERS, SmtpStub.received().length);
+        // Burst of one second's worth, the rest paced by the bucket
+        assertTrue(seconds >= (MEMBERS - RATE_PER_SECOND) / (double) RATE_PER_SECOND * 0.9,
+                "campaign finished faster than its rate limit allows");
+    }
+
+    @Test
+    public void testPagesFitInHalfALease() {
+        // PT2M lease: a 1/s campaign checkpoints (and renews) every 60 recipients
+        assertEquals(60, runner.pageSize(1));
+        assertEquals(500, runner.pageSize(RATE_PER_SECOND));
+    }
+
+    @Test
+    public void testCampaignFailsAfterMaxAttempts() throws Exception {
+        var campaign = new EmailCampaignEntity();
+        campaign.name = "Broken audience";
+        campaign.templateKey = "welcome";
+        campaign.locale = EmailTemplates.DEFAULT_LOCALE;
+        campaign.audience = "NOBODY";
+        campaign.ratePerSecond = 10;
+        UUID id = Panache.withTransaction(campaign::<EmailCampaignEntity>persist)
+                .await().atMost(Duration.ofSeconds(10)).id;
+        campaigns.add(id);
+        // A recovered run one failure short of the limit
+        client.preparedQuery("UPDATE email_campaigns SET status = 'RUNNING', attempts = $2 WHERE id = $1")
+                .execute(Tuple.of(id, 4))
+                .await().atMost(Duration.ofSeconds(5));
+
+        assertTrue(runner.start(id).await().atMost(Duration.ofSeconds(10)));
+
+        awaitStatus(id, "FAILED", Duration.ofSeconds(10));
+        var row = client.preparedQuery("SELECT attempts, lease_until, last_error FROM email_campaigns WHERE id = $1")
+                .execute(Tuple.of(id))
+                .await().atMost(Duration.ofSeconds(5))
+                .iterator().next();
+        assertEquals(5, row.getInteger("attempts"));
+        assertNull(row.getValue("lease_until"));
+        assertTrue(row.getString("last_error").contains("NOBODY"));
+    }
+
+    private void seedMembers() {
+        client.query("""
+                        WITH plan AS (
+                            INSERT INTO membership_plans (name, slug) VALUES ('Campaign plan', 'campaign-plan')
+                            RETURNING id
+                        ), members AS (
+                            INSERT INTO users (email, password_hash, display_name)
+                            SELECT 'member' || g || '@campaign.test', 'x', 'Member ' || g
+                            FROM generate_series(1, %d) g
+                            RETURNING id
+                        )
+                        INSERT INTO subscriptions (user_id, plan_id, status)
+                        SELECT members.id, plan.id, 'ACTIVE' FROM members, plan
+                        """.formatted(MEMBERS))
+                .execute()
+                .await().atMost(Duration.ofSeconds(30));
+    }
+
+    private void execute(String sql) {
+        client.query(sql).execute().await().atMost(Duration.ofSeconds(30));
+    }
+
+    private EmailCampaignEntity awaitStatus(UUID id, String status, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            var row = client.preparedQuery("SELECT status, sent_count, failed_count FROM email_campaigns WHERE id = $1")
+                    .execute(Tuple.of(id))
+                    .await().atMost(Duration.ofSeconds(5))
+                    .iterator().next();
+            if (status.equals(row.getString("status"))) {
+                var result = new EmailCampaignEntity();
+                result.status = status;
+                result.sentCount = row.getInteger("sent_count");
+                result.failedCount = row.getInteger("failed_count");
+                return result;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Campaign did not reach " + status + " within " + timeout);
+    }
+}
@@ -0,0 +1,95 @@
+package cz.samofujera.email;
+
+import com.icegreen.greenmail.store.FolderException;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GreenMail SMTP server for tests that deliver over the real, pooled mailer
+ * instead of the MockMailbox. Annotate the test with
+ * {@code @WithTestResource(SmtpStub.class)}; {@link #stopServer()} and
+ * {@link #startServer()} simulate an outage of the relay.
+ */
+public class SmtpStub implements QuarkusTestResourceLifecycleManager {
+
+    private static int port;
+    private static volatile GreenMail server;
+
+    @Override
+    public Map<String, String> start() {
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException("No free port for the SMTP stub", e);
+        }
+        startServer();
+        return Map.of(
+                "quarkus.mailer.mock", "false",
+                "quarkus.mailer.host", "127.0.0.1",
+                "quarkus.mailer.port", String.valueOf(port),
+                "quarkus.mailer.start-tls", "DISABLED");
+    }
+
+    @Override
+    public void stop() {
+        stopServer();
+    }
+
+    /** Messages received since the last {@link #clear()}. */
+    public static MimeMessage[] received() {
+        return server.getReceivedMessages();
+    }
+
+    public static List<MimeMessage> receivedBy(String recipient) {
+        var messages = new ArrayList<MimeMessage>();
+        for (MimeMessage message : received()) {
+            try {
+                for (Address to : message.getAllRecipients()) {
+                    if (recipient.equalsIgnoreCase(((InternetAddress) to).getAddress())) {
+                        messages.add(message);
+                    }
+                }
+            } catch (MessagingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return messages;
+    }
+
+    /** Forgets received messages; connections stay open. */
+    public static void clear() {
+        try {
+            server.purgeEmailFromAllMailboxes();
+        } catch (FolderException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Starts the relay on its port, unless it is running. */
+    public static synchronized void startServer() {
+        if (server != null) {
+            return;
+        }
+        server = new GreenMail(new ServerSetup(port, "127.0.0.1", ServerSetup.PROTOCOL_SMTP));
+        server.start();
+    }
+
+    /** Takes the relay down; open pooled connections are closed by the server. */
+    public static synchronized void stopServer() {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+    }
+}
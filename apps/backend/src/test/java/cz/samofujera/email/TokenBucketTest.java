@@ -0,0 +1,41 @@
+package cz.samofujera.email;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testBurstIsFreeThenSendsArePaced() {
+        var bucket = new TokenBucket(10, 2);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.reserveNanos(now));
+        assertEquals(0, bucket.reserveNanos(now));
+        // Bucket is empty: each further send waits one more 1/10 s slot
+        assertEquals(SECOND / 10, bucket.reserveNanos(now));
+        assertEquals(2 * SECOND / 10, bucket.reserveNanos(now));
+    }
+
+    @Test
+    public void testRefillIsCappedAtBurst() {
+        var bucket = new TokenBucket(10, 2);
+        long now = System.nanoTime();
+        bucket.reserveNanos(now);
+        bucket.reserveNanos(now);
+
+        long later = now + 60 * SECOND;
+        assertEquals(0, bucket.reserveNanos(later));
+        assertEquals(0, bucket.reserveNanos(later));
+        assertEquals(SECOND / 10, bucket.reserveNanos(later));
+    }
+
+    @Test
+    public void testRejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+    }
+}
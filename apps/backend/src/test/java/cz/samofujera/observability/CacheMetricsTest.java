@@ -0,0 +1,39 @@
+package cz.samofujera.observability;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cache meters read the live counters, so lookups counted before or after
+ * registration both show up on /q/metrics.
+ */
+public class CacheMetricsTest {
+
+    @Test
+    public void testHitRatioStartsAtZero() {
+        assertEquals(0.0, new CacheMetrics().hitRatio());
+    }
+
+    @Test
+    public void testMetersFollowLookups() {
+        var registry = new SimpleMeterRegistry();
+        var size = new AtomicInteger();
+        var metrics = new CacheMetrics();
+        metrics.hit();
+        metrics.register(registry, "library", size::get);
+        metrics.hit();
+        metrics.hit();
+        metrics.miss();
+        size.set(7);
+
+        assertEquals(3.0, registry.get("cache.gets").tag("cache", "library").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+        assertEquals(0.75, registry.get("cache.hit.ratio").tag("cache", "library").gauge().value());
+        assertEquals(7.0, registry.get("cache.size").tag("cache", "library").gauge().value());
+    }
+}
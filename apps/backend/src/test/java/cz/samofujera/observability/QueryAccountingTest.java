@@ -0,0 +1,40 @@
+package cz.samofujera.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The same query issued per row must collapse into one shape, whatever its
+ * parameters or literals, so loops stand out by count.
+ */
+public class QueryAccountingTest {
+
+    @Test
+    public void testShapesIgnoreParametersAndListLengths() {
+        assertEquals("select * from order_items where order_id = ?",
+                QueryAccounting.shape("select *\n  from order_items where order_id = $1"));
+        assertEquals(QueryAccounting.shape("select id from products where id in ($1, $2, $3) and status = 'ACTIVE'"),
+                QueryAccounting.shape("select id from products where id in ($1) and status = 'DRAFT'"));
+        assertEquals("select p1_0.id from products p1_0 limit ?",
+                QueryAccounting.shape("select p1_0.id from products p1_0 limit 20"));
+    }
+
+    @Test
+    public void testRepeatedShapesAreReportedOverThreshold() {
+        var accounting = new QueryAccounting();
+        accounting.record("select count(*) from orders where user_id = $1", 1_000_000);
+        for (int i = 0; i < 20; i++) {
+            accounting.record("select * from order_items where order_id = $1", 500_000);
+        }
+
+        assertEquals(21, accounting.statements());
+        assertEquals(11_000_000, accounting.nanos());
+        Map<String, Integer> repeated = accounting.repeated(10);
+        assertEquals(Map.of("select * from order_items where order_id = ?", 20), repeated);
+        assertTrue(accounting.repeated(20).isEmpty());
+    }
+}
@@ -0,0 +1,50 @@
+package cz.samofujera.observability;
+
+import io.restassured.builder.ResponseSpecBuilder;
+import io.restassured.response.ValidatableResponse;
+import io.restassured.specification.ResponseSpecification;
+import org.hamcrest.FeatureMatcher;
+import org.hamcrest.Matcher;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Query budgets for endpoint tests, read from the {@code X-DB-Queries} header
+ * that {@link QueryAccountingFilter} sets in the test profile:
+ * <pre>
+ * given().get("/api/orders").then().statusCode(200).spec(QueryBudget.atMost(4));
+ * </pre>
+ */
+public final class QueryBudget {
+
+    private QueryBudget() {}
+
+    /** Fails the request when it ran more than {@code statements} SQL statements. */
+    public static ResponseSpecification atMost(int statements) {
+        return new ResponseSpecBuilder()
+                .expectHeader(QueryAccountingFilter.QUERIES_HEADER, queries(lessThanOrEqualTo(statements)))
+                .build();
+    }
+
+    /** Fails the request unless it ran exactly {@code statements} SQL statements. */
+    public static ResponseSpecification exactly(int statements) {
+        return new ResponseSpecBuilder()
+                .expectHeader(QueryAccountingFilter.QUERIES_HEADER, queries(equalTo(statements)))
+                .build();
+    }
+
+    /** Statements the request ran. */
+    public static int of(ValidatableResponse response) {
+        return Integer.parseInt(response.extract().header(QueryAccountingFilter.QUERIES_HEADER));
+    }
+
+    private static Matcher<String> queries(Matcher<Integer> count) {
+        return new FeatureMatcher<>(count, "SQL statements", "SQL statements") {
+            @Override
+            protected Integer featureValueOf(String header) {
+                return Integer.parseInt(header);
+            }
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package cz.samofujera.outbox;
+
+import cz.samofujera.email.SmtpStub;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Delivers outbox emails over the pooled SMTP mailer to the {@link SmtpStub},
+ * including a relay outage that must leave the row for a later retry.
+ */
+@QuarkusTest
+@WithTestResource(SmtpStub.class)
+public class OutboxDispatcherTest {
+
+    private static final String EMAILS = "outbox%@example.com";
+
+    @Inject
+    OutboxDispatcher dispatcher;
+
+    @Inject
+    Pool client;
+
+    @BeforeEach
+    void clearMailbox() {
+        SmtpStub.clear();
+    }
+
+    @AfterEach
+    void cleanup() {
+        SmtpStub.startServer();
+        client.preparedQuery("""
+                        DELETE FROM outbox_messages
+                        WHERE recipient LIKE $1
+                           OR (payload->>'user_id')::bigint IN (SELECT id FROM users WHERE email LIKE $1)
+                        """)
+                .execute(Tuple.of(EMAILS))
+                .await().atMost(Duration.ofSeconds(10));
+        client.preparedQuery("DELETE FROM users WHERE email LIKE $1").execute(Tuple.of(EMAILS))
+                .await().atMost(Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void testRegistrationEmailIsDeliveredThroughOutbox() throws Exception {
+        register("outbox@example.com");
+
+        // Nothing is sent on the request path
+        assertTrue(SmtpStub.receivedBy("outbox@example.com").isEmpty());
+
+        int processed = dispatcher.dispatchPending().await().atMost(Duration.ofSeconds(10));
+        assertTrue(processed >= 2, "welcome email and user.registered event should be claimed");
+
+        var mails = SmtpStub.receivedBy("outbox@example.com");
+        assertEquals(1, mails.size());
+        assertEquals("Vítejte na Samo Fujera", mails.get(0).getSubject());
+
+        // Delivered rows are not claimed again
+        dispatcher.dispatchPending().await().atMost(Duration.ofSeconds(10));
+        assertEquals(1, SmtpStub.receivedBy("outbox@example.com").size());
+    }
+
+    @Test
+    public void testRelayOutageIsRetried() {
+        register("outbox-retry@example.com");
+
+        SmtpStub.stopServer();
+        dispatcher.dispatchPending().await().atMost(Duration.ofSeconds(30));
+        Row pending = welcome("outbox-retry@example.com");
+        assertEquals("PENDING", pending.getString("status"));
+        assertEquals(1, pending.getInteger("attempts"));
+        assertNotNull(pending.getString("last_error"));
+        assertTrue(pending.getBoolean("later"), "a failed delivery is retried after a backoff");
+
+        SmtpStub.startServer();
+        client.preparedQuery("UPDATE outbox_messages SET available_at = now() WHERE recipient = $1")
+                .execute(Tuple.of("outbox-retry@example.com"))
+                .await().atMost(Duration.ofSeconds(10));
+        dispatcher.dispatchPending().await().atMost(Duration.ofSeconds(30));
+
+        Row sent = welcome("outbox-retry@example.com");
+        assertEquals("SENT", sent.getString("status"));
+        assertEquals(2, sent.getInteger("attempts"));
+        assertNull(sent.getString("last_error"));
+        assertEquals(1, SmtpStub.receivedBy("outbox-retry@example.com").size());
+    }
+
+    @Test
+    public void testBackoffGrowsAndIsCapped() {
+        Duration first = dispatcher.backoff(1);
+        Duration third = dispatcher.backoff(3);
+        Duration huge = dispatcher.backoff(30);
+
+        assertTrue(third.compareTo(first) > 0);
+        assertTrue(huge.compareTo(Duration.ofMinutes(72)) <= 0);
+    }
+
+    private void register(String email) {
+        given()
+                .contentType(ContentType.JSON)
+                .body("""
+                        {"email": "%s", "password": "password123", "displayName": "Outbox User"}
+                        """.formatted(email))
+                .when()
+                .post("/api/auth/register")
+                .then()
+                .statusCode(201);
+    }
+
+    private Row welcome(String email) {
+        return client.preparedQuery("""
+                        SELECT status, attempts, last_error, available_at > now() AS later
+                        FROM outbox_messages WHERE recipient = $1 AND topic = 'welcome'
+                        """)
+                .execute(Tuple.of(email))
+                .await().atMost(Duration.ofSeconds(10)).iterator().next();
+    }
+}
@@ -0,0 +1,92 @@
+package cz.samofujera.realtime;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mutiny.sqlclient.Pool;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bulk writes produce one notification per statement, and a statement too large
+ * for the NOTIFY payload limit falls back to an overflow notification.
+ */
+@QuarkusTest
+public class EntityChangeNotificationTest {
+
+    private static final int STATEMENTS = 50;
+    private static final int ROWS_PER_STATEMENT = 100;
+
+    @Inject
+    PgNotificationService notifications;
+
+    @Inject
+    Pool client;
+
+    @AfterEach
+    public void cleanup() {
+        client.query("DELETE FROM products WHERE slug LIKE 'notify-%'").execute()
+                .await().atMost(Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void testBulkInsertsAreCoalescedPerStatement() {
+        List<JsonObject> received = new CopyOnWriteArrayList<>();
+        var subscription = notifications.stream("entity_changes")
+                .filter(change -> "products".equals(change.getString("table"))
+                        && "INSERT".equals(change.getString("operation")))
+                .subscribe().with(received::add);
+        try {
+            for (int s = 0; s < STATEMENTS; s++) {
+                client.query("""
+                                INSERT INTO products (title, slug, product_type, status)
+                                SELECT 'Notify ' || i, 'notify-%d-' || i, 'DIGITAL', 'DRAFT'
+                                FROM generate_series(1, %d) AS i
+                                """.formatted(s, ROWS_PER_STATEMENT)).execute()
+                        .await().atMost(Duration.ofSeconds(30));
+            }
+            waitFor(() -> received.size() >= STATEMENTS);
+
+            assertEquals(STATEMENTS, received.size());
+            received.forEach(change -> assertEquals(ROWS_PER_STATEMENT,
+                    PgNotificationService.ids(change).size()));
+
+            received.clear();
+            client.query("""
+                            INSERT INTO products (title, slug, product_type, status)
+                            SELECT 'Notify ' || i, 'notify-big-' || i, 'DIGITAL', 'DRAFT'
+                            FROM generate_series(1, 1000) AS i
+                            """).execute()
+                    .await().atMost(Duration.ofSeconds(30));
+            waitFor(() -> !received.isEmpty());
+
+            JsonObject overflow = received.get(0);
+            assertTrue(overflow.getBoolean("overflow", false));
+            assertEquals(1000, overflow.getInteger("count"));
+            assertNull(PgNotificationService.ids(overflow));
+        } finally {
+            subscription.cancel();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
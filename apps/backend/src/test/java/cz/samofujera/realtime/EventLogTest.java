@@ -0,0 +1,67 @@
+package cz.samofujera.realtime;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * In-memory part of the event log: replays follow arrival order, skip repeats
+ * from catch-up reads and give up once the resume point has been evicted, by
+ * count or by size.
+ */
+public class EventLogTest {
+
+    @Test
+    public void testReplaysEventsReceivedAfterResumePoint() {
+        var log = new EventLog();
+        log.capacity = 4;
+        log.maxBytes = Long.MAX_VALUE;
+
+        // Commit order, not seq order: 7 committed after 8
+        for (long seq : new long[] {5, 6, 8, 7}) {
+            assertTrue(log.record(event(seq)));
+        }
+        assertFalse(log.record(event(6)), "catch-up repeats are dropped");
+        assertEquals(7, log.lastSeq());
+
+        assertEquals(List.of(8L, 7L), seqs(log.recentAfter(6)));
+        assertEquals(List.of(), seqs(log.recentAfter(7)));
+
+        log.record(event(9));
+        assertNull(log.recentAfter(5), "evicted resume points fall back to the table");
+        assertEquals(List.of(7L, 9L), seqs(log.recentAfter(8)));
+    }
+
+    @Test
+    public void testLargeEventsAreEvictedByBytes() {
+        var log = new EventLog();
+        log.capacity = 1_000;
+        int size = event(1).put("rows", "x".repeat(1_000)).encode().length();
+        log.maxBytes = 3L * size;
+
+        for (long seq = 1; seq <= 5; seq++) {
+            log.record(event(seq).put("rows", "x".repeat(1_000)));
+        }
+        assertNull(log.recentAfter(2), "older events were evicted to stay within the byte budget");
+        assertEquals(List.of(4L, 5L), seqs(log.recentAfter(3)));
+
+        // One event larger than the budget still replaces the rest
+        log.record(event(6).put("rows", "x".repeat(10_000)));
+        assertNull(log.recentAfter(5));
+        assertEquals(List.of(), seqs(log.recentAfter(6)));
+    }
+
+    private static JsonObject event(long seq) {
+        return new JsonObject().put("seq", seq).put("channel", "entity_changes").put("table", "products");
+    }
+
+    private static List<Long> seqs(List<JsonObject> events) {
+        return events.stream().map(EventLog::seq).toList();
+    }
+}
@@ -0,0 +1,62 @@
+package cz.samofujera.realtime;
+
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * One WebSocket session carries several topics over one buffer: each event is
+ * framed once per matching topic, and removing a topic stops only its frames.
+ */
+public class EventSessionTest {
+
+    private static final String CHANNEL = "entity_changes";
+
+    @Test
+    public void testTopicsAreMultiplexedAndRemovable() {
+        var registry = new SubscriptionRegistry();
+        registry.bufferSize = 16;
+        EventSession session = registry.openSession(7L, false, null);
+        AssertSubscriber<JsonObject> client = session.frames().subscribe().withSubscriber(AssertSubscriber.create(100));
+
+        session.subscribe("orders", CHANNEL, "orders", null);
+        session.subscribe("all", CHANNEL, null, null);
+        assertEquals(2, registry.size());
+
+        registry.dispatch(event(1, "orders", 7));
+        registry.dispatch(event(2, "entitlements", 8));
+        registry.dispatch(event(3, "products", null));
+
+        List<JsonObject> frames = client.getItems();
+        // Event 1 matches both topics, event 2 belongs to another user
+        assertEquals(List.of("all/1", "all/3", "orders/1"), frames.stream()
+                .map(f -> f.getString("topic") + "/" + f.getLong("seq"))
+                .sorted()
+                .toList());
+        assertEquals("event", frames.get(0).getString("type"));
+        assertEquals(1L, EventLog.seq(frames.get(0).getJsonObject("event")));
+
+        assertTrue(session.unsubscribe("all"));
+        assertFalse(session.unsubscribe("all"));
+        registry.dispatch(event(4, "products", null));
+        assertEquals(3, client.getItems().size());
+
+        session.close();
+        assertEquals(0, registry.size());
+    }
+
+    private static JsonObject event(long seq, String table, Integer userId) {
+        JsonObject event = new JsonObject().put("seq", seq).put("channel", CHANNEL).put("table", table);
+        if (userId != null) {
+            event.put("user_ids", new JsonArray().add(userId));
+        }
+        return event;
+    }
+}
@@ -0,0 +1,162 @@
+package cz.samofujera.realtime;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * pgoutput transactions decode into the same events as NOTIFY, one per logged
+ * statement, with full row images and ids rebuilt from the rows.
+ */
+public class PgOutputDecoderTest {
+
+    private static final int TEXT = 25;
+    private static final int INT8 = 20;
+    private static final int JSONB = 3802;
+
+    @Test
+    public void testStatementBecomesEventWithRowImages() throws IOException {
+        var decoder = new PgOutputDecoder();
+        assertNull(decoder.decode(relation(1, "entitlements", "id", INT8, "user_id", INT8, "entity_type", TEXT)));
+        assertNull(decoder.decode(relation(2, "entity_change_log", "id", INT8, "payload", JSONB)));
+
+        assertNull(decoder.decode(begin()));
+        assertNull(decoder.decode(update(1, new String[] {"10", "7", "PRODUCT"}, new String[] {"10", "7", "EVENT"})));
+        assertNull(decoder.decode(update(1, new String[] {"11", "8", "PRODUCT"}, new String[] {"11", "8", "EVENT"})));
+        // Overflowed NOTIFY payload: no ids in the log
+        assertNull(decoder.decode(insert(2, "42",
+                "{\"seq\": 42, \"table\": \"entitlements\", \"operation\": \"UPDATE\", \"count\": 2, "
+                        + "\"user_ids\": [], \"overflow\": true}")));
+        PgOutputDecoder.Commit commit = decoder.decode(commit(0x1000));
+
+        assertEquals(0x1000, commit.endLsn());
+        assertEquals(1, commit.events().size());
+        JsonObject event = commit.events().get(0);
+        assertEquals(42L, EventLog.seq(event));
+        assertEquals("entity_changes", event.getString("channel"));
+        assertFalse(event.containsKey("overflow"));
+        assertEquals(List.of("10", "11"), PgNotificationService.ids(event));
+        assertEquals(List.of(7L, 8L), PgNotificationService.userIds(event));
+        JsonObject row = event.getJsonArray("rows").getJsonObject(0);
+        assertEquals("PRODUCT", row.getJsonObject("before").getString("entity_type"));
+        assertEquals("EVENT", row.getJsonObject("after").getString("entity_type"));
+    }
+
+    @Test
+    public void testUnloggedChangesAreDroppedAndTruncateOverflows() throws IOException {
+        var decoder = new PgOutputDecoder();
+        decoder.decode(relation(3, "pages", "id", TEXT, "content", TEXT));
+
+        decoder.decode(begin());
+        // A draft edit: the page trigger logs nothing for it
+        decoder.decode(update(3, new String[] {"p1", "a"}, new String[] {"p1", "b"}));
+        assertTrue(decoder.decode(commit(0x2000)).events().isEmpty());
+
+        decoder.decode(begin());
+        decoder.decode(truncate(3));
+        JsonObject event = decoder.decode(commit(0x3000)).events().get(0);
+        assertEquals("TRUNCATE", event.getString("operation"));
+        assertNull(PgNotificationService.ids(event));
+    }
+
+    private static ByteBuffer relation(int id, String table, Object... columns) throws IOException {
+        return message(out -> {
+            out.writeByte('R');
+            out.writeInt(id);
+            string(out, "public");
+            string(out, table);
+            out.writeByte('f');
+            out.writeShort(columns.length / 2);
+            for (int i = 0; i < columns.length; i += 2) {
+                out.writeByte(0);
+                string(out, (String) columns[i]);
+                out.writeInt((Integer) columns[i + 1]);
+                out.writeInt(-1);
+            }
+        });
+    }
+
+    private static ByteBuffer begin() throws IOException {
+        return message(out -> {
+            out.writeByte('B');
+            out.writeLong(0);
+            out.writeLong(0);
+            out.writeInt(1);
+        });
+    }
+
+    private static ByteBuffer commit(long endLsn) throws IOException {
+        return message(out -> {
+            out.writeByte('C');
+            out.writeByte(0);
+            out.writeLong(endLsn - 8);
+            out.writeLong(endLsn);
+            out.writeLong(0);
+        });
+    }
+
+    private static ByteBuffer insert(int relation, String... values) throws IOException {
+        return message(out -> {
+            out.writeByte('I');
+            out.writeInt(relation);
+            out.writeByte('N');
+            tuple(out, values);
+        });
+    }
+
+    private static ByteBuffer update(int relation, String[] before, String[] after) throws IOException {
+        return message(out -> {
+            out.writeByte('U');
+            out.writeInt(relation);
+            out.writeByte('O');
+            tuple(out, before);
+            out.writeByte('N');
+            tuple(out, after);
+        });
+    }
+
+    private static ByteBuffer truncate(int relation) throws IOException {
+        return message(out -> {
+            out.writeByte('T');
+            out.writeInt(1);
+            out.writeByte(0);
+            out.writeInt(relation);
+        });
+    }
+
+    private static void tuple(DataOutputStream out, String[] values) throws IOException {
+        out.writeShort(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeByte('t');
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void string(DataOutputStream out, String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(0);
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static ByteBuffer message(Writer writer) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
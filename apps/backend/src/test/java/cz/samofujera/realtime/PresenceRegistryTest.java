@@ -0,0 +1,174 @@
+package cz.samofujera.realtime;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 50k simulated viewers heartbeating from several threads: each user keeps
+ * exactly one stream of a lecture, second sessions are refused, and every
+ * renewal finds its lease. Expiry and peer messages are driven with explicit
+ * clocks.
+ */
+public class PresenceRegistryTest {
+
+    private static final int VIEWERS = 50_000;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+    private static final UUID LECTURE = UUID.randomUUID();
+
+    @Test
+    public void testConcurrentViewersAreLimitedPerUser() throws Exception {
+        var registry = registry();
+        long now = 1_000_000;
+        var admitted = new LongAdder();
+        var rejected = new LongAdder();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Every user opens a player; every tenth also tries a second tab at the same time
+            List<Future<?>> opens = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t;
+                opens.add(pool.submit(() -> {
+                    for (long user = 1 + offset; user <= VIEWERS; user += THREADS) {
+                        count(registry.admit(key(user), "a", now), admitted, rejected);
+                        if (user % 10 == 0) {
+                            count(registry.admit(key(user), "b", now), admitted, rejected);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : opens) f.get();
+            assertEquals(VIEWERS, admitted.sum());
+            assertEquals(VIEWERS / 10, rejected.sum());
+
+            var renewed = new LongAdder();
+            List<Future<?>> beats = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t;
+                beats.add(pool.submit(() -> {
+                    for (int round = 1; round <= ROUNDS; round++) {
+                        for (long user = 1 + offset; user <= VIEWERS; user += THREADS) {
+                            if (registry.renew(key(user), "a", now + round * 1_000L)) renewed.increment();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : beats) f.get();
+            assertEquals((long) VIEWERS * ROUNDS, renewed.sum());
+        } finally {
+            pool.shutdown();
+        }
+
+        // Sessions "b" never got a lease, so renewing one fails
+        assertFalse(registry.renew(key(10), "b", now));
+        assertEquals(VIEWERS, registry.sweep(now).size());
+    }
+
+    @Test
+    public void testOnlyRefusedSessionsCountAsRejections() {
+        var registry = registry();
+        registry.meters = new SimpleMeterRegistry();
+        registry.init();
+
+        assertEquals(PresenceRegistry.Outcome.ADMITTED, registry.admit(key(1), "a", 0).outcome());
+        assertEquals(PresenceRegistry.Outcome.RENEWED, registry.admit(key(1), "a", 1).outcome());
+        assertEquals(PresenceRegistry.Outcome.REJECTED, registry.admit(key(1), "b", 2).outcome());
+        assertEquals(1.0, registry.meters.get("presence.rejections").counter().count());
+    }
+
+    @Test
+    public void testExpiredAndReleasedLeasesFreeTheSlot() {
+        var registry = registry();
+        long ttl = registry.ttl.toMillis();
+
+        assertEquals(PresenceRegistry.Outcome.ADMITTED, registry.admit(key(1), "a", 0).outcome());
+        assertEquals(PresenceRegistry.Outcome.REJECTED, registry.admit(key(1), "b", ttl - 1).outcome());
+        // No heartbeat for a full TTL: the lease lapses and cannot be renewed
+        assertFalse(registry.renew(key(1), "a", ttl));
+        assertEquals(PresenceRegistry.Outcome.ADMITTED, registry.admit(key(1), "b", ttl).outcome());
+
+        registry.release(1, LECTURE, "b");
+        assertEquals(PresenceRegistry.Outcome.ADMITTED, registry.admit(key(1), "a", ttl).outcome());
+        assertTrue(registry.sweep(3 * ttl).isEmpty());
+        assertTrue(registry.leases.isEmpty());
+    }
+
+    @Test
+    public void testPeerLeasesCountTowardsTheLimit() {
+        var sent = new ArrayList<JsonObject>();
+        var peer = registry();
+        peer.outbox = sent::add;
+        var registry = registry();
+
+        peer.admit(new PresenceRegistry.Key(1, LECTURE), "a", System.currentTimeMillis());
+        assertEquals("claim", sent.get(0).getString("op"));
+        sent.forEach(registry::receive);
+        long now = System.currentTimeMillis();
+        assertEquals(PresenceRegistry.Outcome.REJECTED, registry.admit(key(1), "b", now).outcome());
+        // A remote lease is not this node's to renew
+        assertFalse(registry.renew(key(1), "a", now));
+
+        // Our own messages are ignored
+        registry.receive(sent.get(0).copy().put("node", registry.node).put("op", "release"));
+        assertEquals(1, registry.active(1, LECTURE));
+
+        sent.clear();
+        peer.release(1, LECTURE, "a");
+        sent.forEach(registry::receive);
+        assertEquals(PresenceRegistry.Outcome.ADMITTED, registry.admit(key(1), "b", now).outcome());
+    }
+
+    @Test
+    public void testRenewalsAreBatchedUnderTheNotifyLimit() {
+        var sent = new ArrayList<JsonObject>();
+        var registry = registry();
+        long now = System.currentTimeMillis();
+        for (long user = 1; user <= 1_000; user++) {
+            registry.admit(key(user), UUID.randomUUID().toString(), now);
+        }
+        registry.outbox = sent::add;
+        registry.sync().await().indefinitely();
+
+        assertTrue(sent.size() > 1);
+        int leases = 0;
+        for (JsonObject message : sent) {
+            assertEquals("renew", message.getString("op"));
+            assertTrue(message.encode().length() < 8000);
+            JsonArray items = message.getJsonArray("leases");
+            leases += items.size();
+        }
+        assertEquals(1_000, leases);
+    }
+
+    private static PresenceRegistry registry() {
+        var registry = new PresenceRegistry();
+        registry.ttl = Duration.ofSeconds(30);
+        registry.maxStreams = 1;
+        return registry;
+    }
+
+    private static PresenceRegistry.Key key(long userId) {
+        return new PresenceRegistry.Key(userId, LECTURE);
+    }
+
+    private static void count(PresenceRegistry.Heartbeat heartbeat, LongAdder admitted, LongAdder rejected) {
+        if (heartbeat.outcome() == PresenceRegistry.Outcome.ADMITTED) admitted.increment();
+        if (heartbeat.outcome() == PresenceRegistry.Outcome.REJECTED) rejected.increment();
+    }
+}
@@ -0,0 +1,144 @@
+package cz.samofujera.realtime;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.helpers.test.AssertSubscriber;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A client that stops reading fills only its own buffer; each overflow policy
+ * keeps the queue within capacity and resumes at the client's pace.
+ */
+public class SubscriberQueueTest {
+
+    private static final int CAPACITY = 8;
+
+    @Test
+    public void testDropOldestKeepsNewestEvents() {
+        var overflows = new LongAdder();
+        var queue = new AtomicReference<SubscriberQueue>();
+        AssertSubscriber<JsonObject> client = subscribe(SubscriberQueue.OverflowPolicy.DROP_OLDEST, queue, overflows);
+
+        for (int i = 0; i < 100; i++) {
+            queue.get().offer(change("products", i));
+        }
+        assertEquals(CAPACITY, queue.get().depth());
+        assertEquals(100 - CAPACITY, queue.get().dropped());
+        assertEquals(100 - CAPACITY, overflows.sum());
+
+        client.request(CAPACITY);
+        assertEquals(CAPACITY, client.getItems().size());
+        assertEquals(100 - CAPACITY, firstId(client.getItems().get(0)));
+        assertEquals(0, queue.get().depth());
+
+        // Caught up: events pass straight through while demand remains
+        client.request(1);
+        queue.get().offer(change("products", 500));
+        assertEquals(500, firstId(client.getItems().get(CAPACITY)));
+    }
+
+    @Test
+    public void testCoalesceKeepsLatestChangePerEntity() {
+        var queue = new AtomicReference<SubscriberQueue>();
+        AssertSubscriber<JsonObject> client = subscribe(SubscriberQueue.OverflowPolicy.COALESCE, queue, new LongAdder());
+
+        // The same three entities changing over and over take three slots
+        for (int i = 0; i < 90; i++) {
+            queue.get().offer(change("products", i % 3).put("operation", "UPDATE").put("seq", i));
+        }
+        assertEquals(3, queue.get().depth());
+        assertEquals(87, queue.get().coalesced());
+        client.request(3);
+        assertEquals(87, client.getItems().get(0).getInteger("seq"));
+        assertEquals(89, client.getItems().get(2).getInteger("seq"));
+
+        // Distinct entities beyond capacity fold into one overflow event per table
+        for (int i = 0; i < 20; i++) {
+            queue.get().offer(change(i % 2 == 0 ? "products" : "events", 100 + i));
+        }
+        assertTrue(queue.get().depth() <= CAPACITY);
+        assertEquals(0, queue.get().dropped());
+        client.request(CAPACITY);
+        JsonObject folded = client.getItems().get(3);
+        assertEquals("products", folded.getString("table"));
+        assertTrue(folded.getBoolean("overflow"));
+    }
+
+    @Test
+    public void testDisconnectSendsResetAndCompletes() {
+        var overflows = new LongAdder();
+        var queue = new AtomicReference<SubscriberQueue>();
+        AssertSubscriber<JsonObject> client = subscribe(SubscriberQueue.OverflowPolicy.DISCONNECT, queue, overflows);
+
+        for (int i = 0; i <= CAPACITY; i++) {
+            queue.get().offer(change("orders", i));
+        }
+        // The reset waits for the client's next read, then the stream ends
+        client.request(1);
+        client.assertCompleted();
+        assertEquals(1, client.getItems().size());
+        assertEquals("reset", client.getItems().get(0).getString("type"));
+        assertEquals(1, overflows.sum());
+
+        // Later events are ignored rather than queued for a closed connection
+        queue.get().offer(change("orders", 99));
+        assertEquals(0, queue.get().depth());
+    }
+
+    @Test
+    public void testResumeReplaysMissedEventsBeforeLiveOnes() {
+        var queue = new AtomicReference<SubscriberQueue>();
+        AssertSubscriber<JsonObject> client = subscribe(SubscriberQueue.OverflowPolicy.DROP_OLDEST, queue, new LongAdder());
+        client.request(10);
+        queue.get().pause();
+
+        // Live events arrive while the replay is being read; seq 12 is in both
+        queue.get().offer(change("products", 1).put("seq", 12));
+        queue.get().offer(change("products", 2).put("seq", 13));
+        assertEquals(0, client.getItems().size());
+
+        queue.get().resume(List.of(
+                change("products", 3).put("seq", 11),
+                change("products", 1).put("seq", 12)));
+        assertEquals(List.of(11L, 12L, 13L), client.getItems().stream().map(EventLog::seq).toList());
+    }
+
+    @Test
+    public void testResumeBeyondTheLogResetsTheClient() {
+        var queue = new AtomicReference<SubscriberQueue>();
+        AssertSubscriber<JsonObject> client = subscribe(SubscriberQueue.OverflowPolicy.COALESCE, queue, new LongAdder());
+        queue.get().pause();
+        queue.get().resume(null);
+
+        client.request(1);
+        client.assertCompleted();
+        assertEquals("replay-unavailable", client.getItems().get(0).getString("reason"));
+    }
+
+    private static AssertSubscriber<JsonObject> subscribe(SubscriberQueue.OverflowPolicy policy,
+                                                          AtomicReference<SubscriberQueue> queue,
+                                                          LongAdder overflows) {
+        return Multi.createFrom().<JsonObject>emitter(emitter -> queue.set(
+                        new SubscriberQueue("test", 1L, policy, CAPACITY, emitter, overflows::increment)))
+                .subscribe().withSubscriber(AssertSubscriber.create(0));
+    }
+
+    private static JsonObject change(String table, long id) {
+        return new JsonObject()
+                .put("channel", "entity_changes")
+                .put("table", table)
+                .put("ids", new JsonArray().add(String.valueOf(id)));
+    }
+
+    private static long firstId(JsonObject event) {
+        return Long.parseLong(event.getJsonArray("ids").getString(0));
+    }
+}
@@ -0,0 +1,74 @@
+package cz.samofujera.realtime;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fan-out over 10k simulated SSE connections: every event must reach exactly the
+ * connections allowed to see it, at a cost independent of the connection count.
+ */
+public class SubscriptionRegistryTest {
+
+    private static final int USERS = 10_000;
+    private static final int ADMINS = 10;
+    private static final String CHANNEL = "entity_changes";
+
+    @Test
+    public void testEventsReachOnlyMatchingSubscribers() {
+        var registry = new SubscriptionRegistry();
+        var perUser = new AtomicLongArray(USERS + 1);
+        var adminDeliveries = new LongAdder();
+        for (long userId = 1; userId <= USERS; userId++) {
+            int index = (int) userId;
+            // Every tenth user only follows orders
+            String table = userId % 10 == 0 ? "orders" : null;
+            registry.add(new SubscriptionRegistry.Subscription(userId, false, CHANNEL, table,
+                    event -> perUser.incrementAndGet(index)));
+        }
+        for (int i = 0; i < ADMINS; i++) {
+            registry.add(new SubscriptionRegistry.Subscription(null, true, null, null,
+                    event -> adminDeliveries.increment()));
+        }
+        assertEquals(USERS + ADMINS, registry.size());
+
+        // Entitlement change for user 7: user 7 and the admins only
+        registry.dispatch(owned("entitlements", 7));
+        assertEquals(1, perUser.get(7));
+        assertEquals(0, perUser.get(8));
+        assertEquals(ADMINS, adminDeliveries.sum());
+
+        // Entitlement change for user 10, who only follows orders: admins only
+        registry.dispatch(owned("entitlements", 10));
+        assertEquals(0, perUser.get(10));
+
+        // Shared table: everyone not narrowed to orders, plus admins
+        registry.dispatch(new JsonObject().put("channel", CHANNEL).put("table", "products"));
+        assertEquals(2, perUser.get(7));
+        assertEquals(1, perUser.get(8));
+        assertEquals(0, perUser.get(10));
+        assertEquals(ADMINS * 3, adminDeliveries.sum());
+
+        // Ten user-scoped events per user: each reaches its owner and the admins only
+        int events = 10 * USERS;
+        for (int i = 0; i < events; i++) {
+            registry.dispatch(owned("entitlements", 1 + i % USERS));
+        }
+        assertEquals(12, perUser.get(7));
+        assertEquals(11, perUser.get(8));
+        assertEquals(0, perUser.get(10));
+        assertEquals(ADMINS * (3 + events), adminDeliveries.sum());
+    }
+
+    private static JsonObject owned(String table, long userId) {
+        return new JsonObject()
+                .put("channel", CHANNEL)
+                .put("table", table)
+                .put("user_ids", new JsonArray().add(userId));
+    }
+}
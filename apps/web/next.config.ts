@@ -1,6 +1,15 @@
 import type { NextConfig } from "next";
 
+const apiUrl = process.env.NEXT_PUBLIC_API_URL || "http://localhost:8080";
+
 const nextConfig: NextConfig = {
+  async rewrites() {
+    return [
+      { source: "/sitemap.xml", destination: `${apiUrl}/api/seo/sitemap.xml` },
+      { source: "/sitemaps/:name", destination: `${apiUrl}/api/seo/sitemaps/:name` },
+      { source: "/feeds/products.xml", destination: `${apiUrl}/api/seo/feeds/products.xml` },
+    ];
+  },
   experimental: {
     swcPlugins: [["@lingui/swc-plugin", {}]],
   },
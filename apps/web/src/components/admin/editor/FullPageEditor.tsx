@@ -3,7 +3,7 @@
 import { useState, useCallback, useRef, useEffect } from "react";
 import { useQuery, useMutation, useQueryClient } from "@tanstack/react-query";
 import { useParams } from "next/navigation";
-import { pageAdminApi } from "@samofujera/api-client";
+import { ApiError, pageAdminApi } from "@samofujera/api-client";
 import { useAutosave } from "../../../hooks/useAutosave";
 import type { SerializedEditorState } from "lexical";
 import { EditorToolbar } from "./EditorToolbar";
@@ -12,6 +12,7 @@ import { SectionList, type SectionListHandle } from "./SectionList";
 import type { SectionEditorHandle } from "./PageEditor";
 import type { PageSection, SectionPageContent, TextBlock } from "./types";
 import { createEmptySection, createTextBlock } from "./types";
+import { diffContent } from "./contentPatch";
 import { TopBar } from "../../../components/nav/TopBar";
 import { PublicNav } from "../../../components/nav/PublicNav";
 import { Footer } from "../../../components/nav/Footer";
@@ -90,8 +91,13 @@ export function FullPageEditor() {
   const [sectionListCanRedo, setSectionListCanRedo] = useState(false);
   const [canUndo, setCanUndo] = useState(false);
   const [canRedo, setCanRedo] = useState(false);
+  const [conflict, setConflict] = useState(false);
 
   // Refs
+  // Version and content the server has; autosave patches from them and sends the version as If-Match
+  const contentVersionRef = useRef<number | null>(null);
+  const savedContentRef = useRef<SectionPageContent | null>(null);
+  const savedSettingsRef = useRef<string | null>(null);
   const sectionListRef = useRef<SectionListHandle>(null);
   const textEditorRefs = useRef<Map<string, SectionEditorHandle>>(new Map());
 
@@ -109,7 +115,25 @@ export function FullPageEditor() {
     setOgDescription(pageData.ogDescription ?? "");
     setNoindex(pageData.noindex ?? false);
     setNofollow(pageData.nofollow ?? false);
-    setSections(parseSections(pageData.content));
+    const parsed = parseSections(pageData.content);
+    setSections(parsed);
+    contentVersionRef.current = pageData.contentVersion;
+    // Older content formats are converted here, so the first save replaces them in full
+    savedContentRef.current =
+      pageData.content?.version === 3 ? structuredClone(serializeContent(parsed)) : null;
+    savedSettingsRef.current = JSON.stringify({
+      slug: pageData.slug,
+      title: pageData.title,
+      metaTitle: pageData.metaTitle || null,
+      metaDescription: pageData.metaDescription || null,
+      ogImageId: pageData.ogImageId || null,
+      showInNav: pageData.showInNav ?? false,
+      metaKeywords: pageData.metaKeywords || null,
+      ogTitle: pageData.ogTitle || null,
+      ogDescription: pageData.ogDescription || null,
+      noindex: pageData.noindex ?? false,
+      nofollow: pageData.nofollow ?? false,
+    });
     setInitialized(true);
   }
 
@@ -141,10 +165,9 @@ export function FullPageEditor() {
 
   const { markDirty, isDirty, isSaving: isAutosaving, lastSavedAt, saveNow } = useAutosave({
     onSave: async () => {
-      await pageAdminApi.updatePage(pageId, {
+      const settings = {
         slug: slugRef.current,
         title: titleRef.current,
-        content: serializeContent(sectionsRef.current) as unknown as Record<string, unknown>,
         metaTitle: metaTitleRef.current || null,
         metaDescription: metaDescriptionRef.current || null,
         ogImageId: ogImageIdRef.current || null,
@@ -154,9 +177,48 @@ export function FullPageEditor() {
         ogDescription: ogDescriptionRef.current || null,
         noindex: noindexRef.current,
         nofollow: nofollowRef.current,
-      });
+      };
+      const settingsJson = JSON.stringify(settings);
+      const content = structuredClone(serializeContent(sectionsRef.current));
+      const version = contentVersionRef.current;
+      // Nothing to save against until the page has loaded
+      if (version === null) return;
+
+      try {
+        if (savedContentRef.current) {
+          // Only the changed blocks
+          const operations = diffContent(savedContentRef.current, content);
+          if (operations.length > 0) {
+            contentVersionRef.current = await pageAdminApi.patchContent(pageId, operations, version);
+          }
+          if (settingsJson !== savedSettingsRef.current) {
+            const saved = await pageAdminApi.updatePage(
+              pageId,
+              { ...settings, content: null },
+              contentVersionRef.current ?? version,
+            );
+            contentVersionRef.current = saved.data.contentVersion;
+          }
+        } else {
+          const saved = await pageAdminApi.updatePage(
+            pageId,
+            { ...settings, content: content as unknown as Record<string, unknown> },
+            version,
+          );
+          contentVersionRef.current = saved.data.contentVersion;
+        }
+      } catch (error) {
+        if (error instanceof ApiError && error.status === 412) {
+          // Someone else saved in between; stop autosaving instead of overwriting their changes
+          setConflict(true);
+        }
+        throw error;
+      }
+      savedContentRef.current = content;
+      savedSettingsRef.current = settingsJson;
       queryClient.invalidateQueries({ queryKey: ["admin", "pages"] });
     },
+    enabled: !conflict,
     debounceMs: 3000,
     fallbackMs: 30000,
   });
@@ -308,6 +370,21 @@ export function FullPageEditor() {
           onSettingsToggle={() => setShowSettings(!showSettings)}
         />
 
+        {conflict && (
+          <div className="fixed inset-x-0 top-12 z-10 flex items-center justify-center gap-3 border-b border-amber-300 bg-amber-50 px-4 py-2 text-sm text-amber-900">
+            <span>
+              Stránku mezitím upravil někdo jiný. Vaše změny nebyly uloženy.
+            </span>
+            <button
+              type="button"
+              className="font-medium underline"
+              onClick={() => window.location.reload()}
+            >
+              Načíst znovu
+            </button>
+          </div>
+        )}
+
         {/* Editor content area — scrollable, mimics public layout exactly */}
         <div className="flex-1 overflow-y-auto overflow-x-hidden pt-12">
           <div className="flex flex-col min-h-full">
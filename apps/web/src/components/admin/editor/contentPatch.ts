@@ -0,0 +1,39 @@
+import type { JsonPatchOperation } from "@samofujera/api-client";
+import type { PageSection, SectionPageContent } from "./types";
+
+const same = (a: unknown, b: unknown) => JSON.stringify(a) === JSON.stringify(b);
+
+const sameIds = (a: { id: string }[], b: { id: string }[]) =>
+  a.length === b.length && a.every((item, i) => item.id === b[i]?.id);
+
+/**
+ * JSON Patch from the last saved content to the current one, so autosave only
+ * sends what changed: single blocks when sections and blocks kept their order,
+ * a whole section when its blocks were added, removed or reordered, and the
+ * whole section list when sections were.
+ */
+export function diffContent(
+  saved: SectionPageContent,
+  current: SectionPageContent,
+): JsonPatchOperation[] {
+  if (!sameIds(saved.sections, current.sections)) {
+    return [{ op: "replace", path: "/sections", value: current.sections }];
+  }
+  const operations: JsonPatchOperation[] = [];
+  current.sections.forEach((section, i) => {
+    const previous = saved.sections[i] as PageSection;
+    if (same(previous, section)) return;
+    const { blocks: previousBlocks, ...previousRest } = previous;
+    const { blocks, ...rest } = section;
+    if (!sameIds(previousBlocks, blocks) || !same(previousRest, rest)) {
+      operations.push({ op: "replace", path: `/sections/${i}`, value: section });
+      return;
+    }
+    blocks.forEach((block, j) => {
+      if (!same(previousBlocks[j], block)) {
+        operations.push({ op: "replace", path: `/sections/${i}/blocks/${j}`, value: block });
+      }
+    });
+  });
+  return operations;
+}
@@ -123,20 +123,24 @@ export function PageCreateSheet({ open, onOpenChange }: PageCreateSheetProps) {
           },
         ],
       };
-      await pageAdminApi.updatePage(response.data.id, {
-        slug: finalSlug,
-        title,
-        content: defaultContent as unknown as Record<string, unknown>,
-        metaTitle: null,
-        metaDescription: null,
-        ogImageId: null,
-        showInNav: false,
-        metaKeywords: null,
-        ogTitle: null,
-        ogDescription: null,
-        noindex: false,
-        nofollow: false,
-      });
+      await pageAdminApi.updatePage(
+        response.data.id,
+        {
+          slug: finalSlug,
+          title,
+          content: defaultContent as unknown as Record<string, unknown>,
+          metaTitle: null,
+          metaDescription: null,
+          ogImageId: null,
+          showInNav: false,
+          metaKeywords: null,
+          ogTitle: null,
+          ogDescription: null,
+          noindex: false,
+          nofollow: false,
+        },
+        response.data.contentVersion,
+      );
       return response;
     },
     onSuccess: async (response) => {
@@ -58,11 +58,15 @@ export function ProductCreateDialog({
         version: 3,
         sections: [createProductSection(product.id)],
       };
-      await pageAdminApi.updatePage(pageResponse.data.id, {
-        slug: product.slug,
-        title: product.title,
-        content: content as unknown as Record<string, unknown>,
-      });
+      await pageAdminApi.updatePage(
+        pageResponse.data.id,
+        {
+          slug: product.slug,
+          title: product.title,
+          content: content as unknown as Record<string, unknown>,
+        },
+        pageResponse.data.contentVersion,
+      );
       return response;
     },
     onSuccess: async (response) => {
@@ -747,11 +747,15 @@ export function ProductEditDialog({ productId, open, onOpenChange }: ProductEdit
       const page = pageQuery.data?.data;
       if (page && (page.slug !== values.slug || page.title !== values.title)) {
         try {
-          await pageAdminApi.updatePage(page.id, {
-            slug: values.slug,
-            title: values.title,
-            content: page.content,
-          });
+          await pageAdminApi.updatePage(
+            page.id,
+            {
+              slug: values.slug,
+              title: values.title,
+              content: page.content,
+            },
+            page.contentVersion,
+          );
         } catch {
           // Non-critical — page sync failure shouldn't block product save
         }
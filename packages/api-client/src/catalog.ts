@@ -1,4 +1,4 @@
-import { apiFetch } from "./client";
+import { apiFetch, BASE_URL } from "./client";
 import type {
   ApiResponse,
   CategoryResponse,
@@ -36,6 +36,10 @@ export const catalogApi = {
       `/api/catalog/products/${slug}`,
     ),
 
+  /** Live availability; open with `new EventSource(url)`, messages are `AvailabilityMessage`. */
+  availabilityStreamUrl: (slug: string) =>
+    `${BASE_URL}/api/catalog/products/${slug}/availability/stream`,
+
   getProductPreview: (slug: string) =>
     apiFetch<ApiResponse<ProductDetailResponse>>(
       `/api/catalog/products/${slug}?preview=true`,
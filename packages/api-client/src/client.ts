@@ -11,10 +11,7 @@ export class ApiError extends Error {
   }
 }
 
-export async function apiFetch<T>(
-  path: string,
-  init?: RequestInit,
-): Promise<T> {
+async function request(path: string, init?: RequestInit): Promise<Response> {
   const isFormData = init?.body instanceof FormData;
   const res = await fetch(`${BASE_URL}${path}`, {
     ...init,
@@ -27,9 +24,28 @@ export async function apiFetch<T>(
   if (!res.ok) {
     throw new ApiError(res.status, await res.json().catch(() => null));
   }
+  return res;
+}
 
+async function parseBody<T>(res: Response): Promise<T> {
   if (res.status === 204 || res.headers.get("content-length") === "0") return undefined as T;
   const text = await res.text();
   if (!text) return undefined as T;
   return JSON.parse(text) as T;
 }
+
+export async function apiFetch<T>(
+  path: string,
+  init?: RequestInit,
+): Promise<T> {
+  return parseBody<T>(await request(path, init));
+}
+
+/** Like apiFetch, but also returns the response ETag (optimistic concurrency). */
+export async function apiFetchWithETag<T>(
+  path: string,
+  init?: RequestInit,
+): Promise<{ data: T; etag: string | null }> {
+  const res = await request(path, init);
+  return { data: await parseBody<T>(res), etag: res.headers.get("ETag") };
+}
@@ -5,6 +5,7 @@ import type {
   ContentResponse,
   DownloadResponse,
   EventAccessResponse,
+  PresenceResponse,
 } from "./types";
 
 export const libraryApi = {
@@ -21,6 +22,19 @@ export const libraryApi = {
       `/api/library/${productId}/event`,
     ),
 
+  // Player heartbeat for streamed content; 409 when the user's stream limit is reached
+  heartbeat: (productId: string, contentId: string, sessionId: string) =>
+    apiFetch<ApiResponse<PresenceResponse>>(
+      `/api/library/${productId}/content/${contentId}/presence`,
+      { method: "POST", body: JSON.stringify({ sessionId }) },
+    ),
+
+  endPresence: (productId: string, contentId: string, sessionId: string) =>
+    apiFetch<void>(
+      `/api/library/${productId}/content/${contentId}/presence/${sessionId}`,
+      { method: "DELETE" },
+    ),
+
   download: (contentId: string) =>
     apiFetch<ApiResponse<DownloadResponse>>(
       `/api/delivery/${contentId}/download`,
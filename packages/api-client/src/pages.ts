@@ -1,4 +1,4 @@
-import { apiFetch } from "./client";
+import { apiFetch, apiFetchWithETag } from "./client";
 import type {
   ApiResponse,
   PageListResponse,
@@ -8,8 +8,11 @@ import type {
   SchedulePublishRequest,
   PublicPageResponse,
   RevisionResponse,
+  JsonPatchOperation,
 } from "./types";
 
+const versionTag = (contentVersion: number) => `"${contentVersion}"`;
+
 export const pageAdminApi = {
   getPages: (params?: {
     page?: number;
@@ -39,12 +42,36 @@ export const pageAdminApi = {
       body: JSON.stringify(data),
     }),
 
-  updatePage: (id: string, data: UpdatePageRequest) =>
+  /** Fails with 412 if someone saved since contentVersion. */
+  updatePage: (id: string, data: UpdatePageRequest, contentVersion: number) =>
     apiFetch<ApiResponse<PageDetailResponse>>(`/api/admin/pages/${id}`, {
       method: "PUT",
       body: JSON.stringify(data),
+      headers: { "If-Match": versionTag(contentVersion) },
     }),
 
+  /** Applies JSON Patch operations to the content; resolves to the new contentVersion. */
+  patchContent: async (
+    id: string,
+    operations: JsonPatchOperation[],
+    contentVersion: number,
+  ) => {
+    const { etag } = await apiFetchWithETag<void>(
+      `/api/admin/pages/${id}/content`,
+      {
+        method: "PATCH",
+        body: JSON.stringify(operations),
+        headers: {
+          "Content-Type": "application/json-patch+json",
+          "If-Match": versionTag(contentVersion),
+        },
+      },
+    );
+    const next = etag ? Number.parseInt(etag.replace(/^W\//, "").replace(/"/g, ""), 10) : NaN;
+    // The server bumps the version by exactly one per successful patch
+    return Number.isNaN(next) ? contentVersion + 1 : next;
+  },
+
   publishPage: (id: string) =>
     apiFetch<void>(`/api/admin/pages/${id}/publish`, { method: "PUT" }),
 
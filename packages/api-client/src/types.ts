@@ -130,6 +130,23 @@ export interface VariantResponse {
   hidden: boolean;
 }
 
+export interface VariantStock {
+  id: string;
+  stock: number;
+  availability: string | null;
+}
+
+/** "snapshot" carries every field; "delta" only those that changed. */
+export interface AvailabilityMessage {
+  type: "snapshot" | "delta";
+  productId: string;
+  active?: boolean;
+  availability?: string | null;
+  stockLimit?: number | null;
+  variants?: VariantStock[];
+  removedVariants?: string[];
+}
+
 export interface ContentResponse {
   id: string;
   productId: string;
@@ -254,9 +271,13 @@ export interface CheckoutResponse {
 export interface LibraryItem {
   productId: string;
   productTitle: string;
+  productSlug: string;
   productType: ProductType;
   thumbnailUrl: string | null;
   grantedAt: string;
+  expiresAt: string | null;
+  contents: ContentResponse[];
+  event: EventAccessResponse | null;
 }
 
 export interface DownloadResponse {
@@ -295,6 +316,14 @@ export interface OccurrenceItem {
   streamUrl: string | null;
 }
 
+export interface PresenceResponse {
+  sessionId: string;
+  active: boolean;
+  activeStreams: number;
+  maxStreams: number;
+  ttlSeconds: number;
+}
+
 // Admin
 
 export interface CreateVariantRequest {
@@ -439,6 +468,8 @@ export interface PageResponse {
 
 export interface PageDetailResponse extends PageResponse {
   content: Record<string, unknown> | null;
+  /** Bumped by every content write; send it as If-Match to detect concurrent edits. */
+  contentVersion: number;
   metaKeywords: string | null;
   ogTitle: string | null;
   ogDescription: string | null;
@@ -476,6 +507,12 @@ export interface UpdatePageRequest {
   nofollow?: boolean;
 }
 
+/** RFC 6902 operation for PATCH /api/admin/pages/{id}/content. */
+export type JsonPatchOperation =
+  | { op: "add" | "replace" | "test"; path: string; value: unknown }
+  | { op: "remove"; path: string }
+  | { op: "move" | "copy"; from: string; path: string };
+
 export interface SchedulePublishRequest {
   scheduledPublishAt: string;
 }